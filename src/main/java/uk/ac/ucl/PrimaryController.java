@@ -2,10 +2,11 @@ package uk.ac.ucl;
 
 import java.io.IOException;
 import java.net.URL;
-import java.util.ArrayList;
-import java.util.List;
 import java.util.Random;
 import java.util.ResourceBundle;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
 import javafx.animation.KeyFrame;
 import javafx.animation.Timeline;
 import javafx.fxml.FXML;
@@ -17,23 +18,27 @@ import javafx.scene.control.Slider;
 import javafx.util.Duration;
 
 import uk.ac.ucl.geo.GeoJsonData;
-import uk.ac.ucl.model.Person;
+import uk.ac.ucl.model.Population;
 import uk.ac.ucl.model.RenderingConfig;
 import uk.ac.ucl.model.SimulationParameters;
 import uk.ac.ucl.model.SimulationResult;
 import uk.ac.ucl.service.CsvLoggingService;
-import uk.ac.ucl.service.DiffusionSimulationService;
 import uk.ac.ucl.service.DiffusionSimulationServiceImpl;
 import uk.ac.ucl.service.GeographicDataService;
 import uk.ac.ucl.service.GeographicDataServiceImpl;
 import uk.ac.ucl.service.MapRenderingService;
 import uk.ac.ucl.service.MapRenderingServiceImpl;
+import uk.ac.ucl.service.PublishingDiffusionService;
+import uk.ac.ucl.util.BackpressurePolicy;
+import uk.ac.ucl.util.BackpressurePublisher;
 import uk.ac.ucl.util.BoundingBox;
 
 /**
  * Primary controller for the MarketDiffusion JavaFX application.
  * Manages the user interface, coordinates diffusion simulation services,
  * and handles map rendering with real-time visualization.
+ * Step results are published to subscribers for CSV logging and console output, which run on a
+ * background thread so neither slows the animation.
  */
 public class PrimaryController implements Initializable {
 
@@ -68,13 +73,22 @@ public class PrimaryController implements Initializable {
     private Slider speedSlider;
 
     private final GeographicDataService geographicDataService = new GeographicDataServiceImpl();
-    private final DiffusionSimulationService diffusionSimulationService = new DiffusionSimulationServiceImpl();
+    private final PublishingDiffusionService diffusionSimulationService =
+            new PublishingDiffusionService(new DiffusionSimulationServiceImpl());
     private final MapRenderingService mapRenderingService = new MapRenderingServiceImpl();
     private final CsvLoggingService csvLoggingService = new CsvLoggingService();
     private final RenderingConfig renderingConfig = RenderingConfig.getDefault();
 
+    // One thread delivers every run's results in order, so a run's log is closed before the next opens
+    private final ExecutorService resultExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "simulation-results");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private BackpressurePublisher<SimulationResult> resultPublisher;
+
     private GeoJsonData currentGeoData;
-    private List<Person> people = new ArrayList<>();
+    private Population population = new Population(new double[0], new double[0]);
     private Random random = new Random();
     private Timeline diffusionAnimation;
     private int currentTimeStep = 0;
@@ -167,7 +181,7 @@ public class PrimaryController implements Initializable {
      * Initializes adopters and begins the Timeline-based animation loop.
      */
     private void startDiffusionAnimation() {
-        if (animationRunning || people.isEmpty()) return;
+        if (animationRunning || population.isEmpty()) return;
 
         animationRunning = true;
         startButton.setDisable(true);
@@ -176,17 +190,9 @@ public class PrimaryController implements Initializable {
         currentTimeStep = 0;
 
         resetAdoptionStates();
+        openResultStream();
         initializeAdopters();
 
-        // Start CSV logging
-        try {
-            String selectedCountry = countryChoice.getValue();
-            csvLoggingService.startLogging(selectedCountry != null ? selectedCountry : "unknown");
-        } catch (Exception e) {
-            System.err.println("Failed to start CSV logging: " + e.getMessage());
-            // Continue simulation even if logging fails
-        }
-
         double animationDelay = speedSlider.getValue();
         diffusionAnimation = new Timeline(new KeyFrame(
             Duration.millis(animationDelay),
@@ -207,8 +213,8 @@ public class PrimaryController implements Initializable {
             diffusionAnimation.stop();
         }
 
-        // Stop CSV logging
-        csvLoggingService.stopLogging();
+        // Subscribers finish their backlog, and the CSV log is closed, after the last step
+        closeResultStream();
 
         startButton.setDisable(false);
         stopButton.setDisable(true);
@@ -228,31 +234,59 @@ public class PrimaryController implements Initializable {
         System.out.println("Diffusion reset - Time step: 0");
     }
 
+    /**
+     * Creates the publisher for a run and subscribes the CSV logger, which must see every step,
+     * and the console output, which only needs to keep up with the most recent steps.
+     */
+    private void openResultStream() {
+        resultPublisher = new BackpressurePublisher<>(resultExecutor, Flow.defaultBufferSize(),
+                BackpressurePolicy.LATEST);
+        String selectedCountry = countryChoice.getValue();
+        resultPublisher.subscribe(csvLoggingService.loggingSubscriber(
+                selectedCountry != null ? selectedCountry : "unknown"), BackpressurePolicy.BUFFER);
+        resultPublisher.subscribe(BackpressurePublisher.subscriber(this::printResult, null));
+        diffusionSimulationService.setResultPublisher(resultPublisher);
+    }
+
+    private void closeResultStream() {
+        diffusionSimulationService.setResultPublisher(null);
+        if (resultPublisher != null) {
+            resultPublisher.close();
+            resultPublisher = null;
+        }
+    }
+
+    private void printResult(SimulationResult result) {
+        if (result.getTimeStep() == 0) {
+            System.out.printf("Initialization complete - Time step: %d, Adopted: %d/%d (%.1f%%)%n",
+                    result.getTimeStep(), result.getTotalAdopted(), result.getTotalPopulation(),
+                    result.getAdoptionPercentage());
+        } else {
+            System.out.printf("Time step: %d, New adopters: %d, Total adopted: %d/%d (%.1f%%)%n",
+                    result.getTimeStep(), result.getNewAdopters(), result.getTotalAdopted(),
+                    result.getTotalPopulation(), result.getAdoptionPercentage());
+        }
+        if (result.isComplete()) {
+            System.out.println("Diffusion complete - All people have adopted!");
+        }
+    }
+
     private void resetAdoptionStates() {
-        diffusionSimulationService.resetAdoptionStates(people);
+        diffusionSimulationService.resetAdoptionStates(population);
     }
 
     /**
      * Randomly selects initial adopters based on the k parameter and renders the map.
      */
     private void initializeAdopters() {
-        if (people.isEmpty()) return;
+        if (population.isEmpty()) return;
 
         int k = (int) kSlider.getValue();
-        diffusionSimulationService.initializeAdopters(people, k);
+        diffusionSimulationService.initializeAdopters(population, k);
 
         if (currentGeoData != null) {
             renderCurrentMap();
         }
-
-        int adoptedCount = diffusionSimulationService.countAdopters(people);
-        double adoptionPercentage = (adoptedCount * 100.0) / people.size();
-
-        // Log initialization to CSV
-        csvLoggingService.logDiffusionStep(currentTimeStep, adoptedCount, adoptedCount, people.size(), adoptionPercentage);
-
-        System.out.printf("Initialization complete - Time step: %d, Adopted: %d/%d (%.1f%%)%n",
-                currentTimeStep, adoptedCount, people.size(), adoptionPercentage);
     }
 
     /**
@@ -267,22 +301,13 @@ public class PrimaryController implements Initializable {
         int k = (int) kSlider.getValue();
         SimulationParameters params = new SimulationParameters(p, q, k);
 
-        SimulationResult result = diffusionSimulationService.performDiffusionStep(people, params, currentTimeStep);
+        SimulationResult result = diffusionSimulationService.performDiffusionStep(population, params, currentTimeStep);
 
         if (currentGeoData != null) {
             renderCurrentMap();
         }
 
-        // Log diffusion step to CSV
-        csvLoggingService.logDiffusionStep(result.getTimeStep(), result.getNewAdopters(),
-                result.getTotalAdopted(), result.getTotalPopulation(), result.getAdoptionPercentage());
-
-        System.out.printf("Time step: %d, New adopters: %d, Total adopted: %d/%d (%.1f%%)%n",
-                result.getTimeStep(), result.getNewAdopters(), result.getTotalAdopted(),
-                result.getTotalPopulation(), result.getAdoptionPercentage());
-
         if (result.isComplete()) {
-            System.out.println("Diffusion complete - All people have adopted!");
             stopDiffusionAnimation();
         }
     }
@@ -328,7 +353,7 @@ public class PrimaryController implements Initializable {
 
             mapRenderingService.renderPopulation(
                 mapCanvas.getGraphicsContext2D(),
-                people,
+                population,
                 currentBounds,
                 canvasWidth,
                 canvasHeight,
@@ -345,9 +370,9 @@ public class PrimaryController implements Initializable {
         if (currentGeoData == null || currentBounds == null) return;
 
         int numPeople = (int) numPoints.getValue();
-        people = geographicDataService.generateRandomPointsInCountry(currentGeoData, currentBounds, numPeople);
+        population = geographicDataService.generatePopulationInCountry(currentGeoData, currentBounds, numPeople);
 
-        System.out.println("Generated " + people.size() + " people");
+        System.out.println("Generated " + population.size() + " people");
         resetAdoptionStates();
 
         if (currentGeoData != null) {
@@ -0,0 +1,51 @@
+package uk.ac.ucl.model;
+
+/**
+ * Immutable outcome of fitting Bass coefficients to an observed adoption curve.
+ */
+public class CalibrationResult {
+    private final String curveName;
+    private final SimulationParameters parameters;
+    private final double sumSquaredError;
+    private final int timeSteps;
+    private final int evaluations;
+
+    /**
+     * Creates a calibration result.
+     *
+     * @param curveName name of the observed curve that was fitted
+     * @param parameters fitted parameters; k is the observed starting adopter count
+     * @param sumSquaredError sum over time steps of the squared difference in cumulative adopters
+     * @param timeSteps number of time steps compared, including the starting state
+     * @param evaluations number of model curves evaluated during the fit
+     */
+    public CalibrationResult(String curveName, SimulationParameters parameters, double sumSquaredError,
+                             int timeSteps, int evaluations) {
+        this.curveName = curveName;
+        this.parameters = parameters;
+        this.sumSquaredError = sumSquaredError;
+        this.timeSteps = timeSteps;
+        this.evaluations = evaluations;
+    }
+
+    public String getCurveName() { return curveName; }
+    public SimulationParameters getParameters() { return parameters; }
+    public double getSumSquaredError() { return sumSquaredError; }
+    public int getTimeSteps() { return timeSteps; }
+    public int getEvaluations() { return evaluations; }
+
+    /**
+     * Calculates the root-mean-square error per time step.
+     *
+     * @return error in adopters
+     */
+    public double getRootMeanSquaredError() {
+        return Math.sqrt(sumSquaredError / timeSteps);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("CalibrationResult[%s, %s, rmse=%.2f, evaluations=%d]",
+                curveName, parameters, getRootMeanSquaredError(), evaluations);
+    }
+}
@@ -0,0 +1,63 @@
+package uk.ac.ucl.model;
+
+/**
+ * Immutable summary of a set of Monte Carlo replicates of the same simulation.
+ * Holds each replicate's cumulative adoption curve together with the mean and
+ * quantile curves across replicates. Index {@code t} of every curve is the number of
+ * adopters after step {@code t}, with index 0 holding the initial adopters; replicates
+ * that finish early are extended with their final value.
+ */
+public class MonteCarloResult {
+    private final SimulationParameters parameters;
+    private final int totalPopulation;
+    private final int[][] replicateCurves;
+    private final double[] meanCurve;
+    private final double[] quantileLevels;
+    private final double[][] quantileCurves;
+
+    /**
+     * Creates a result from curves that have already been aligned to a common length.
+     * The arrays are used directly rather than copied.
+     *
+     * @param parameters the parameters every replicate was run with
+     * @param totalPopulation population size
+     * @param replicateCurves cumulative adopters per replicate and time step
+     * @param meanCurve mean cumulative adopters per time step
+     * @param quantileLevels quantile levels in {@code [0, 1]}
+     * @param quantileCurves cumulative adopters per quantile level and time step
+     */
+    public MonteCarloResult(SimulationParameters parameters, int totalPopulation, int[][] replicateCurves,
+                            double[] meanCurve, double[] quantileLevels, double[][] quantileCurves) {
+        this.parameters = parameters;
+        this.totalPopulation = totalPopulation;
+        this.replicateCurves = replicateCurves;
+        this.meanCurve = meanCurve;
+        this.quantileLevels = quantileLevels;
+        this.quantileCurves = quantileCurves;
+    }
+
+    public SimulationParameters getParameters() { return parameters; }
+    public int getTotalPopulation() { return totalPopulation; }
+    public int getReplicateCount() { return replicateCurves.length; }
+
+    /** @return number of entries in each curve, one more than the number of steps run */
+    public int getCurveLength() { return meanCurve.length; }
+
+    /** @return cumulative adopters for one replicate; callers must not modify it */
+    public int[] getReplicateCurve(int replicate) { return replicateCurves[replicate]; }
+
+    /** @return mean cumulative adopters per time step; callers must not modify it */
+    public double[] getMeanCurve() { return meanCurve; }
+
+    /** @return quantile levels, in the order of {@link #getQuantileCurve}; callers must not modify it */
+    public double[] getQuantileLevels() { return quantileLevels; }
+
+    /** @return cumulative adopters at the given quantile level index; callers must not modify it */
+    public double[] getQuantileCurve(int levelIndex) { return quantileCurves[levelIndex]; }
+
+    @Override
+    public String toString() {
+        return String.format("MonteCarloResult[%s, replicates=%d, steps=%d, population=%d]",
+                parameters, getReplicateCount(), getCurveLength() - 1, totalPopulation);
+    }
+}
@@ -0,0 +1,46 @@
+package uk.ac.ucl.model;
+
+/**
+ * Immutable observed adoption curve, such as sales data or a logged simulation run.
+ * Index {@code t} holds the cumulative adopters at time step {@code t}; index 0 is the starting state.
+ */
+public class ObservedCurve {
+    private final String name;
+    private final int totalPopulation;
+    private final int[] cumulativeAdopters;
+
+    /**
+     * Creates an observed curve. The array is used directly rather than copied.
+     *
+     * @param name identifier of the curve, for example a product or file name
+     * @param totalPopulation size of the market the curve was observed in
+     * @param cumulativeAdopters cumulative adopters per time step
+     * @throws IllegalArgumentException if the curve is empty or a value lies outside [0, totalPopulation]
+     */
+    public ObservedCurve(String name, int totalPopulation, int[] cumulativeAdopters) {
+        if (cumulativeAdopters.length == 0) {
+            throw new IllegalArgumentException("Observed curve must contain at least one time step");
+        }
+        for (int adopters : cumulativeAdopters) {
+            if (adopters < 0 || adopters > totalPopulation) {
+                throw new IllegalArgumentException("Cumulative adopters must be between 0 and the population size");
+            }
+        }
+        this.name = name;
+        this.totalPopulation = totalPopulation;
+        this.cumulativeAdopters = cumulativeAdopters;
+    }
+
+    public String getName() { return name; }
+    public int getTotalPopulation() { return totalPopulation; }
+    public int getLength() { return cumulativeAdopters.length; }
+    public int getAdopters(int timeStep) { return cumulativeAdopters[timeStep]; }
+
+    /** @return cumulative adopters per time step; callers must not modify it */
+    public int[] getCumulativeAdopters() { return cumulativeAdopters; }
+
+    @Override
+    public String toString() {
+        return String.format("ObservedCurve[%s, steps=%d, population=%d]", name, getLength() - 1, totalPopulation);
+    }
+}
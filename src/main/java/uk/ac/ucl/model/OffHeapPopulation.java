@@ -0,0 +1,374 @@
+package uk.ac.ucl.model;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Population store held outside the Java heap, for populations too large for {@link Population}.
+ * Coordinates, adoption flags and the step at which each person adopted live in direct buffers,
+ * or in a memory-mapped population file. Opening a prepared file maps it rather than reading it,
+ * so even 100 million people (about 2 GB) are ready as soon as the adopter count has been taken
+ * from the flag words; pages are loaded as they are first touched.
+ * <p>
+ * A file holds a 16-byte header, then the x and y coordinates, the adoption flags as 64-bit words
+ * and the adoption step per person ({@code -1} for none), all little-endian so reads on common
+ * hardware need no byte swapping. A buffer covers at most 2 GB, so each array is held in chunks
+ * of {@value #CHUNK_ELEMENTS} elements.
+ * <p>
+ * The map renderer, the sharded diffusion service and the stepped distance engine
+ * {@code DiffusionSimulationServiceImpl} read a store in place. A run still needs heap in
+ * proportion to the population: the stepped engine keeps its candidate lists and distance field
+ * there, and the sharded service's shards copy their tiles onto their own heaps, which are separate
+ * from the heap of the process holding the store when shards run as separate processes.
+ * <p>
+ * Mapped files are unmapped only when the store is garbage collected. Stores are not thread-safe.
+ */
+public class OffHeapPopulation implements PopulationStore {
+
+    private static final int MAGIC = 0x4D444F50; // "MDOP"
+    static final int FORMAT_VERSION = 1;
+    private static final int HEADER_BYTES = 4 * Integer.BYTES;
+
+    private static final int CHUNK_BITS = 27;
+    private static final int CHUNK_ELEMENTS = 1 << CHUNK_BITS;
+    private static final int CHUNK_MASK = CHUNK_ELEMENTS - 1;
+
+    private final int size;
+    private final DoubleBuffer[] xChunks;
+    private final DoubleBuffer[] yChunks;
+    private final LongBuffer[] wordChunks;
+    private final IntBuffer[] stepChunks;
+    private final boolean fileBacked;
+    // The typed chunks are views; changes are forced through the mappings they were created from
+    private final List<MappedByteBuffer> mappings = new ArrayList<>();
+    private int adoptedCount;
+    private long adoptionVersion;
+
+    /** Supplies the buffer for one chunk of a region, starting at a byte offset from the header. */
+    private interface RegionSource {
+        ByteBuffer get(long offset, int bytes) throws IOException;
+    }
+
+    private OffHeapPopulation(int size, RegionSource regions, boolean fileBacked) throws IOException {
+        this.size = size;
+        this.fileBacked = fileBacked;
+        RegionSource source = (offset, bytes) -> {
+            ByteBuffer region = regions.get(offset, bytes);
+            if (region instanceof MappedByteBuffer) {
+                mappings.add((MappedByteBuffer) region);
+            }
+            return region;
+        };
+        long offset = HEADER_BYTES;
+        int[] lengths = chunkLengths(size);
+        xChunks = new DoubleBuffer[lengths.length];
+        yChunks = new DoubleBuffer[lengths.length];
+        stepChunks = new IntBuffer[lengths.length];
+        for (int c = 0; c < lengths.length; c++) {
+            xChunks[c] = source.get(offset, lengths[c] * Double.BYTES).asDoubleBuffer();
+            offset += (long) lengths[c] * Double.BYTES;
+        }
+        for (int c = 0; c < lengths.length; c++) {
+            yChunks[c] = source.get(offset, lengths[c] * Double.BYTES).asDoubleBuffer();
+            offset += (long) lengths[c] * Double.BYTES;
+        }
+        int[] wordLengths = chunkLengths(wordCount(size));
+        wordChunks = new LongBuffer[wordLengths.length];
+        for (int c = 0; c < wordLengths.length; c++) {
+            wordChunks[c] = source.get(offset, wordLengths[c] * Long.BYTES).asLongBuffer();
+            offset += (long) wordLengths[c] * Long.BYTES;
+        }
+        for (int c = 0; c < lengths.length; c++) {
+            stepChunks[c] = source.get(offset, lengths[c] * Integer.BYTES).asIntBuffer();
+            offset += (long) lengths[c] * Integer.BYTES;
+        }
+    }
+
+    /**
+     * Allocates a store in direct memory, with every coordinate 0 and no adopters. Direct memory is
+     * limited by {@code -XX:MaxDirectMemorySize}, which defaults to the maximum heap size.
+     *
+     * @param size number of people
+     * @return the new store
+     * @throws IllegalArgumentException if size is negative
+     */
+    public static OffHeapPopulation allocate(int size) {
+        checkSize(size);
+        try {
+            OffHeapPopulation population = new OffHeapPopulation(size,
+                    (offset, bytes) -> ByteBuffer.allocateDirect(bytes).order(ByteOrder.LITTLE_ENDIAN), false);
+            population.clearAdoptionSteps();
+            return population;
+        } catch (IOException e) {
+            throw new IllegalStateException("Direct allocation cannot fail with an I/O error", e);
+        }
+    }
+
+    /**
+     * Creates a population file, replacing any existing one, and maps it for writing. Every
+     * coordinate is 0 and no one has adopted; positions are then set with {@link #setPosition}.
+     *
+     * @param file path of the population file
+     * @param size number of people
+     * @return the new store, backed by the file
+     * @throws IOException if the file cannot be created or mapped
+     * @throws IllegalArgumentException if size is negative
+     */
+    public static OffHeapPopulation create(Path file, int size) throws IOException {
+        checkSize(size);
+        Path directory = file.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC).putInt(FORMAT_VERSION).putInt(size).putInt(0).flip();
+            while (header.hasRemaining()) {
+                channel.write(header, HEADER_BYTES - header.remaining());
+            }
+            OffHeapPopulation population = new OffHeapPopulation(size, mapper(channel, FileChannel.MapMode.READ_WRITE), true);
+            population.clearAdoptionSteps();
+            return population;
+        }
+    }
+
+    /**
+     * Maps an existing population file. A read-only store rejects changes to adoption states with
+     * a {@link java.nio.ReadOnlyBufferException}; a writable one writes them through to the file.
+     *
+     * @param file path of the population file
+     * @param writable whether adoption states and positions may be changed
+     * @return the store, backed by the file
+     * @throws IOException if the file cannot be mapped or is not a population file
+     */
+    public static OffHeapPopulation open(Path file, boolean writable) throws IOException {
+        StandardOpenOption[] options = writable
+                ? new StandardOpenOption[]{StandardOpenOption.READ, StandardOpenOption.WRITE}
+                : new StandardOpenOption[]{StandardOpenOption.READ};
+        try (FileChannel channel = FileChannel.open(file, options)) {
+            if (channel.size() < HEADER_BYTES) {
+                throw new IOException("Not a population file: " + file);
+            }
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            while (header.hasRemaining()) {
+                if (channel.read(header, header.position()) < 0) {
+                    throw new IOException("Truncated population file header: " + file);
+                }
+            }
+            header.flip();
+            if (header.getInt() != MAGIC) {
+                throw new IOException("Not a population file: " + file);
+            }
+            int version = header.getInt();
+            if (version != FORMAT_VERSION) {
+                throw new IOException("Unsupported population file version " + version + ": " + file);
+            }
+            int size = header.getInt();
+            if (size < 0 || channel.size() != fileBytes(size)) {
+                throw new IOException("Population file size does not match its header: " + file);
+            }
+
+            FileChannel.MapMode mode = writable ? FileChannel.MapMode.READ_WRITE : FileChannel.MapMode.READ_ONLY;
+            OffHeapPopulation population = new OffHeapPopulation(size, mapper(channel, mode), true);
+            population.adoptedCount = population.countFlags();
+            return population;
+        }
+    }
+
+    private static RegionSource mapper(FileChannel channel, FileChannel.MapMode mode) {
+        // A mapping stays valid after its channel is closed
+        return (offset, bytes) -> channel.map(mode, offset, bytes).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private static void checkSize(int size) {
+        if (size < 0) {
+            throw new IllegalArgumentException("Population size must be non-negative");
+        }
+    }
+
+    private static int wordCount(int size) {
+        return (int) (((long) size + 63) >>> 6);
+    }
+
+    private static long fileBytes(int size) {
+        return HEADER_BYTES + (long) size * (2 * Double.BYTES + Integer.BYTES) + (long) wordCount(size) * Long.BYTES;
+    }
+
+    private static int[] chunkLengths(int elements) {
+        int[] lengths = new int[(elements + CHUNK_MASK) >>> CHUNK_BITS];
+        for (int c = 0; c < lengths.length; c++) {
+            lengths[c] = Math.min(CHUNK_ELEMENTS, elements - (c << CHUNK_BITS));
+        }
+        return lengths;
+    }
+
+    private int countFlags() {
+        int count = 0;
+        for (LongBuffer chunk : wordChunks) {
+            for (int w = 0, n = chunk.limit(); w < n; w++) {
+                count += Long.bitCount(chunk.get(w));
+            }
+        }
+        return count;
+    }
+
+    private void clearAdoptionSteps() {
+        for (IntBuffer chunk : stepChunks) {
+            for (int i = 0, n = chunk.limit(); i < n; i++) {
+                chunk.put(i, -1);
+            }
+        }
+    }
+
+    @Override
+    public int size() { return size; }
+
+    @Override
+    public boolean isEmpty() { return size == 0; }
+
+    @Override
+    public double getXPos(int index) {
+        checkIndex(index);
+        return xChunks[index >>> CHUNK_BITS].get(index & CHUNK_MASK);
+    }
+
+    @Override
+    public double getYPos(int index) {
+        checkIndex(index);
+        return yChunks[index >>> CHUNK_BITS].get(index & CHUNK_MASK);
+    }
+
+    /**
+     * Sets a person's position, as when preparing a population file.
+     *
+     * @param index the person
+     * @param x x-coordinate
+     * @param y y-coordinate
+     */
+    public void setPosition(int index, double x, double y) {
+        checkIndex(index);
+        xChunks[index >>> CHUNK_BITS].put(index & CHUNK_MASK, x);
+        yChunks[index >>> CHUNK_BITS].put(index & CHUNK_MASK, y);
+    }
+
+    @Override
+    public boolean hasAdopted(int index) {
+        checkIndex(index);
+        int word = index >>> 6;
+        return (wordChunks[word >>> CHUNK_BITS].get(word & CHUNK_MASK) & (1L << index)) != 0;
+    }
+
+    @Override
+    public void setHasAdopted(int index, boolean hasAdopted) {
+        checkIndex(index);
+        int word = index >>> 6;
+        LongBuffer chunk = wordChunks[word >>> CHUNK_BITS];
+        long bits = chunk.get(word & CHUNK_MASK);
+        long mask = 1L << index;
+        if (((bits & mask) != 0) == hasAdopted) return;
+        chunk.put(word & CHUNK_MASK, hasAdopted ? bits | mask : bits & ~mask);
+        adoptedCount += hasAdopted ? 1 : -1;
+        adoptionVersion++;
+    }
+
+    /**
+     * Resets every person to the non-adopted state and clears their adoption steps.
+     */
+    @Override
+    public void resetAdoptionStates() {
+        for (LongBuffer chunk : wordChunks) {
+            for (int w = 0, n = chunk.limit(); w < n; w++) {
+                chunk.put(w, 0L);
+            }
+        }
+        clearAdoptionSteps();
+        adoptedCount = 0;
+        adoptionVersion++;
+    }
+
+    /**
+     * @param index the person
+     * @return the time step at which the person adopted, or -1 if none has been recorded
+     */
+    public int getAdoptionStep(int index) {
+        checkIndex(index);
+        return stepChunks[index >>> CHUNK_BITS].get(index & CHUNK_MASK);
+    }
+
+    @Override
+    public void setAdoptionStep(int index, int step) {
+        checkIndex(index);
+        stepChunks[index >>> CHUNK_BITS].put(index & CHUNK_MASK, step);
+    }
+
+    @Override
+    public int countAdopters() {
+        return adoptedCount;
+    }
+
+    @Override
+    public int countNonAdopters() {
+        return size - adoptedCount;
+    }
+
+    @Override
+    public int nextAdopter(int fromIndex) {
+        if (fromIndex < 0) {
+            throw new IndexOutOfBoundsException("Index " + fromIndex + " is negative");
+        }
+        if (fromIndex >= size) return -1;
+
+        // Bits past the last person are never set, so whole words can be skipped
+        int word = fromIndex >>> 6;
+        int words = wordCount(size);
+        long bits = wordChunks[word >>> CHUNK_BITS].get(word & CHUNK_MASK) & (-1L << fromIndex);
+        while (bits == 0) {
+            if (++word == words) return -1;
+            bits = wordChunks[word >>> CHUNK_BITS].get(word & CHUNK_MASK);
+        }
+        return (word << 6) + Long.numberOfTrailingZeros(bits);
+    }
+
+    @Override
+    public long getAdoptionVersion() {
+        return adoptionVersion;
+    }
+
+    /** @return whether the store is mapped from a population file */
+    public boolean isFileBacked() {
+        return fileBacked;
+    }
+
+    /**
+     * Writes any changes to a file-backed store through to the storage device. Does nothing for a
+     * store in direct memory.
+     */
+    public void force() {
+        if (!fileBacked) return;
+        for (MappedByteBuffer mapping : mappings) {
+            mapping.force();
+        }
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for population of " + size);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "OffHeapPopulation{size=" + size + ", adopters=" + adoptedCount
+                + (fileBacked ? ", mapped" : ", direct") + "}";
+    }
+}
@@ -0,0 +1,175 @@
+package uk.ac.ucl.model;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Structure-of-arrays store for a simulated population.
+ * Coordinates live in primitive arrays and adoption states in a bitset, so large populations
+ * avoid a heap object per person. Positions are fixed at construction; adoption states are mutable
+ * and an adopter count is kept up to date as they change, so counting never rescans the population.
+ * Optional per-person innovation and imitation propensities sit alongside the coordinates as
+ * {@code float} arrays; engines that support them scale each person's p and q by their propensity.
+ */
+public class Population implements PopulationStore {
+    private final double[] xPositions;
+    private final double[] yPositions;
+    private final BitSet adopted;
+    private float[] innovationPropensities;
+    private float[] imitationPropensities;
+    private int adoptedCount;
+    private long adoptionVersion;
+
+    /**
+     * Creates a population backed by the given coordinate arrays, with no adopters.
+     * The arrays are used directly rather than copied and must not be modified afterwards.
+     *
+     * @param xPositions x-coordinate of each person
+     * @param yPositions y-coordinate of each person
+     * @throws IllegalArgumentException if the arrays differ in length
+     */
+    public Population(double[] xPositions, double[] yPositions) {
+        if (xPositions.length != yPositions.length) {
+            throw new IllegalArgumentException("Coordinate arrays must have the same length");
+        }
+        this.xPositions = xPositions;
+        this.yPositions = yPositions;
+        this.adopted = new BitSet(xPositions.length);
+    }
+
+    /**
+     * Creates a population holding the positions and adoption states of the given people.
+     *
+     * @param people the people to copy
+     * @return a new population in the same order as the list
+     */
+    public static Population fromPeople(List<Person> people) {
+        int size = people.size();
+        double[] xs = new double[size];
+        double[] ys = new double[size];
+        for (int i = 0; i < size; i++) {
+            Person person = people.get(i);
+            xs[i] = person.getXPos();
+            ys[i] = person.getYPos();
+        }
+
+        Population population = new Population(xs, ys);
+        for (int i = 0; i < size; i++) {
+            if (people.get(i).hasAdopted()) {
+                population.setHasAdopted(i, true);
+            }
+        }
+        return population;
+    }
+
+    /**
+     * Creates one {@link Person} per member of this population.
+     *
+     * @return a new mutable list of people in population order
+     */
+    public List<Person> toPeople() {
+        List<Person> people = new ArrayList<>(size());
+        for (int i = 0; i < size(); i++) {
+            people.add(new Person(xPositions[i], yPositions[i], adopted.get(i)));
+        }
+        return people;
+    }
+
+    public int size() { return xPositions.length; }
+    public boolean isEmpty() { return xPositions.length == 0; }
+
+    public double getXPos(int index) { return xPositions[index]; }
+    public double getYPos(int index) { return yPositions[index]; }
+
+    public boolean hasAdopted(int index) { return adopted.get(index); }
+
+    public void setHasAdopted(int index, boolean hasAdopted) {
+        if (adopted.get(index) != hasAdopted) {
+            adopted.set(index, hasAdopted);
+            adoptedCount += hasAdopted ? 1 : -1;
+            adoptionVersion++;
+        }
+    }
+
+    /**
+     * Resets every person to the non-adopted state.
+     */
+    public void resetAdoptionStates() {
+        adopted.clear();
+        adoptedCount = 0;
+        adoptionVersion++;
+    }
+
+    /** @return number of adopters, maintained incrementally */
+    public int countAdopters() {
+        return adoptedCount;
+    }
+
+    /** @return number of non-adopters, maintained incrementally */
+    public int countNonAdopters() {
+        return size() - adoptedCount;
+    }
+
+    @Override
+    public int nextAdopter(int fromIndex) {
+        return adopted.nextSetBit(fromIndex);
+    }
+
+    @Override
+    public long getAdoptionVersion() {
+        return adoptionVersion;
+    }
+
+    /**
+     * Sets per-person propensities that scale the global innovation and imitation coefficients.
+     * A propensity of 1 is an average person and 0 never adopts through that channel. The arrays
+     * are used directly rather than copied and must not be modified afterwards.
+     *
+     * @param innovationPropensities innovation propensity per person, or null for everyone alike
+     * @param imitationPropensities imitation propensity per person, or null for everyone alike
+     * @throws IllegalArgumentException if an array's length differs from the population size or
+     *         it holds a negative or non-finite value
+     */
+    public void setPropensities(float[] innovationPropensities, float[] imitationPropensities) {
+        checkPropensities(innovationPropensities, "Innovation");
+        checkPropensities(imitationPropensities, "Imitation");
+        this.innovationPropensities = innovationPropensities;
+        this.imitationPropensities = imitationPropensities;
+    }
+
+    private void checkPropensities(float[] propensities, String kind) {
+        if (propensities == null) return;
+        if (propensities.length != size()) {
+            throw new IllegalArgumentException(kind + " propensities must have one entry per person");
+        }
+        for (float propensity : propensities) {
+            if (!(propensity >= 0) || Float.isInfinite(propensity)) {
+                throw new IllegalArgumentException(kind + " propensities must be finite and non-negative");
+            }
+        }
+    }
+
+    @Override
+    public float[] getInnovationPropensities() { return innovationPropensities; }
+
+    @Override
+    public float[] getImitationPropensities() { return imitationPropensities; }
+
+    /** @return the backing x-coordinate array; callers must not modify it */
+    public double[] getXPositions() { return xPositions; }
+
+    /** @return the backing y-coordinate array; callers must not modify it */
+    public double[] getYPositions() { return yPositions; }
+
+    /**
+     * @return the live adoption bitset, where bit {@code i} is set if person {@code i} has adopted;
+     *         callers must change adoption through {@link #setHasAdopted} so the count stays correct
+     */
+    public BitSet getAdoptionStates() { return adopted; }
+
+    @Override
+    public String toString() {
+        return String.format("Population[size=%d, adopted=%d]", size(), countAdopters());
+    }
+}
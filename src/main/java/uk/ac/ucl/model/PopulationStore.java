@@ -0,0 +1,70 @@
+package uk.ac.ucl.model;
+
+/**
+ * Per-person positions and adoption states, whether held on the heap by {@link Population} or
+ * off the heap by {@link OffHeapPopulation}. Services that only read positions and read or write
+ * adoption states accept this, so they work on either store without copying it.
+ * Optional per-person propensities are held only on the heap, so stores without them return null.
+ */
+public interface PopulationStore {
+
+    int size();
+
+    boolean isEmpty();
+
+    double getXPos(int index);
+
+    double getYPos(int index);
+
+    boolean hasAdopted(int index);
+
+    void setHasAdopted(int index, boolean hasAdopted);
+
+    /**
+     * Resets every person to the non-adopted state.
+     */
+    void resetAdoptionStates();
+
+    /** @return number of adopters, maintained incrementally */
+    int countAdopters();
+
+    /** @return number of non-adopters, maintained incrementally */
+    int countNonAdopters();
+
+    /**
+     * Returns the first adopter at or after an index, so adopters can be visited without testing
+     * every person.
+     *
+     * @param fromIndex index to start from, inclusive; non-negative
+     * @return the index of the next adopter, or -1 if there is none
+     */
+    int nextAdopter(int fromIndex);
+
+    /**
+     * Returns a counter that changes whenever any adoption state changes. Structures derived
+     * from the adoption states can record it and compare later to detect outside modification.
+     *
+     * @return current adoption version
+     */
+    long getAdoptionVersion();
+
+    /** @return innovation propensity per person, or null if everyone is alike; callers must not modify it */
+    default float[] getInnovationPropensities() {
+        return null;
+    }
+
+    /** @return imitation propensity per person, or null if everyone is alike; callers must not modify it */
+    default float[] getImitationPropensities() {
+        return null;
+    }
+
+    /**
+     * Records the time step at which a person adopted. Stores that do not keep adoption steps
+     * ignore it.
+     *
+     * @param index the person
+     * @param step the time step, or -1 for none
+     */
+    default void setAdoptionStep(int index, int step) {
+    }
+}
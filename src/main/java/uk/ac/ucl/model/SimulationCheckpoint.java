@@ -0,0 +1,101 @@
+package uk.ac.ucl.model;
+
+/**
+ * Snapshot of a simulation part-way through a run, enough to resume it with the same results as
+ * if it had never stopped. Holds the population with its adoption states and propensities, the
+ * step at which each person adopted, and the engine state that later random draws depend on:
+ * the order of its non-adopter index, the seed and state of each random stream, and the
+ * partial sums of its innovation weight tree when one is in use.
+ * The arrays are used directly rather than copied.
+ */
+public class SimulationCheckpoint {
+    private final int timeStep;
+    private final Population population;
+    private final int[] adoptionSteps;
+    private final int[] nonAdopterOrder;
+    private final long[] randomSeeds;
+    private final long[] randomStates;
+    private final double[] innovationWeightState;
+    private final int innovationWeightUpdates;
+
+    /**
+     * Creates a checkpoint.
+     *
+     * @param timeStep last completed time step, 0 right after the initial adopters were drawn
+     * @param population the population, including its adoption states
+     * @param adoptionSteps time step at which each person adopted, or -1 for non-adopters
+     * @param nonAdopterOrder indices of the non-adopters in the engine's draw order
+     * @param randomSeeds seed of each of the engine's random streams
+     * @param randomStates current state of each random stream, in the same order
+     * @throws IllegalArgumentException if the arrays do not match the population or each other
+     */
+    public SimulationCheckpoint(int timeStep, Population population, int[] adoptionSteps, int[] nonAdopterOrder,
+                                long[] randomSeeds, long[] randomStates) {
+        this(timeStep, population, adoptionSteps, nonAdopterOrder, randomSeeds, randomStates, null, 0);
+    }
+
+    /**
+     * Creates a checkpoint of an engine that samples innovators from a weight tree.
+     *
+     * @param timeStep last completed time step, 0 right after the initial adopters were drawn
+     * @param population the population, including its adoption states
+     * @param adoptionSteps time step at which each person adopted, or -1 for non-adopters
+     * @param nonAdopterOrder indices of the non-adopters in the engine's draw order
+     * @param randomSeeds seed of each of the engine's random streams
+     * @param randomStates current state of each random stream, in the same order
+     * @param innovationWeightState partial sums of the innovation weight tree, one per person, or
+     *                              null if the engine has no live tree
+     * @param innovationWeightUpdates incremental updates applied to the tree since it was last resummed
+     * @throws IllegalArgumentException if the arrays do not match the population or each other
+     */
+    public SimulationCheckpoint(int timeStep, Population population, int[] adoptionSteps, int[] nonAdopterOrder,
+                                long[] randomSeeds, long[] randomStates, double[] innovationWeightState,
+                                int innovationWeightUpdates) {
+        if (adoptionSteps.length != population.size()) {
+            throw new IllegalArgumentException("Adoption steps must have one entry per person");
+        }
+        if (nonAdopterOrder.length != population.countNonAdopters()) {
+            throw new IllegalArgumentException("Non-adopter order must have one entry per non-adopter");
+        }
+        if (randomSeeds.length != randomStates.length) {
+            throw new IllegalArgumentException("Random seeds and states must have the same length");
+        }
+        if (innovationWeightState != null && innovationWeightState.length != population.size()) {
+            throw new IllegalArgumentException("Innovation weight state must have one entry per person");
+        }
+        this.timeStep = timeStep;
+        this.population = population;
+        this.adoptionSteps = adoptionSteps;
+        this.nonAdopterOrder = nonAdopterOrder;
+        this.randomSeeds = randomSeeds;
+        this.randomStates = randomStates;
+        this.innovationWeightState = innovationWeightState;
+        this.innovationWeightUpdates = innovationWeightUpdates;
+    }
+
+    public int getTimeStep() { return timeStep; }
+    public Population getPopulation() { return population; }
+
+    /** @return time step at which each person adopted, or -1; callers must not modify it */
+    public int[] getAdoptionSteps() { return adoptionSteps; }
+
+    /** @return the engine's non-adopter index order; callers must not modify it */
+    public int[] getNonAdopterOrder() { return nonAdopterOrder; }
+
+    /** @return seed of each random stream; callers must not modify it */
+    public long[] getRandomSeeds() { return randomSeeds; }
+
+    /** @return state of each random stream; callers must not modify it */
+    public long[] getRandomStates() { return randomStates; }
+
+    /** @return partial sums of the innovation weight tree, or null; callers must not modify it */
+    public double[] getInnovationWeightState() { return innovationWeightState; }
+
+    public int getInnovationWeightUpdates() { return innovationWeightUpdates; }
+
+    @Override
+    public String toString() {
+        return String.format("SimulationCheckpoint[step=%d, adopters=%d, population=%d]",
+                timeStep, population.countAdopters(), population.size());
+    }
+}
@@ -0,0 +1,97 @@
+package uk.ac.ucl.model;
+
+/**
+ * Immutable summary of one run in a parameter sweep.
+ * Records when the run crossed 50% and 90% adoption and its largest single-step uptake.
+ */
+public class SweepRunSummary {
+    private final String country;
+    private final SimulationParameters parameters;
+    private final int replicate;
+    private final long seed;
+    private final int totalPopulation;
+    private final int finalAdopted;
+    private final int steps;
+    private final int timeTo50;
+    private final int timeTo90;
+    private final int peakNewAdopters;
+    private final int peakStep;
+
+    /**
+     * Creates a run summary with the specified metrics.
+     *
+     * @param country name of the population the run used
+     * @param parameters simulation parameters of the run
+     * @param replicate replicate number within the parameter set
+     * @param seed random seed of the run
+     * @param totalPopulation population size
+     * @param finalAdopted adopters when the run stopped
+     * @param steps number of steps run
+     * @param timeTo50 first step with at least half the population adopted, or -1 if never reached
+     * @param timeTo90 first step with at least 90% of the population adopted, or -1 if never reached
+     * @param peakNewAdopters largest number of new adopters in a single step
+     * @param peakStep step at which the peak occurred, or 0 if no step added adopters
+     */
+    public SweepRunSummary(String country, SimulationParameters parameters, int replicate, long seed,
+                           int totalPopulation, int finalAdopted, int steps, int timeTo50, int timeTo90,
+                           int peakNewAdopters, int peakStep) {
+        this.country = country;
+        this.parameters = parameters;
+        this.replicate = replicate;
+        this.seed = seed;
+        this.totalPopulation = totalPopulation;
+        this.finalAdopted = finalAdopted;
+        this.steps = steps;
+        this.timeTo50 = timeTo50;
+        this.timeTo90 = timeTo90;
+        this.peakNewAdopters = peakNewAdopters;
+        this.peakStep = peakStep;
+    }
+
+    /**
+     * Summarises a cumulative adoption curve.
+     *
+     * @param country name of the population the run used
+     * @param parameters simulation parameters of the run
+     * @param replicate replicate number within the parameter set
+     * @param seed random seed of the run
+     * @param totalPopulation population size
+     * @param curve cumulative adopters after initialisation (index 0) and after each step
+     * @return summary of the curve
+     */
+    public static SweepRunSummary fromCurve(String country, SimulationParameters parameters, int replicate,
+                                            long seed, int totalPopulation, int[] curve) {
+        int timeTo50 = -1;
+        int timeTo90 = -1;
+        int peakNewAdopters = 0;
+        int peakStep = 0;
+        for (int t = 0; t < curve.length; t++) {
+            if (timeTo50 < 0 && 2L * curve[t] >= totalPopulation) timeTo50 = t;
+            if (timeTo90 < 0 && 10L * curve[t] >= 9L * totalPopulation) timeTo90 = t;
+            if (t > 0 && curve[t] - curve[t - 1] > peakNewAdopters) {
+                peakNewAdopters = curve[t] - curve[t - 1];
+                peakStep = t;
+            }
+        }
+        return new SweepRunSummary(country, parameters, replicate, seed, totalPopulation,
+                curve[curve.length - 1], curve.length - 1, timeTo50, timeTo90, peakNewAdopters, peakStep);
+    }
+
+    public String getCountry() { return country; }
+    public SimulationParameters getParameters() { return parameters; }
+    public int getReplicate() { return replicate; }
+    public long getSeed() { return seed; }
+    public int getTotalPopulation() { return totalPopulation; }
+    public int getFinalAdopted() { return finalAdopted; }
+    public int getSteps() { return steps; }
+    public int getTimeTo50() { return timeTo50; }
+    public int getTimeTo90() { return timeTo90; }
+    public int getPeakNewAdopters() { return peakNewAdopters; }
+    public int getPeakStep() { return peakStep; }
+
+    @Override
+    public String toString() {
+        return String.format("SweepRunSummary[%s, %s, replicate=%d, t50=%d, t90=%d, peak=%d@%d]",
+                country, parameters, replicate, timeTo50, timeTo90, peakNewAdopters, peakStep);
+    }
+}
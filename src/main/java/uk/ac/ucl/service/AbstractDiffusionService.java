@@ -0,0 +1,134 @@
+package uk.ac.ucl.service;
+
+import uk.ac.ucl.model.Person;
+import uk.ac.ucl.model.Population;
+import uk.ac.ucl.model.SimulationParameters;
+import uk.ac.ucl.model.SimulationResult;
+
+import java.util.List;
+
+/**
+ * Shared base for the array-based diffusion engines. Implements the {@code List<Person>} overloads
+ * by mirroring the list onto a {@link Population}, along with counting, completion and reset, so an
+ * engine only supplies its {@code Population} steps and selection. Subclasses record the population
+ * they last worked on with {@link #setCurrentPopulation} for {@link #getAdoptedCount} and
+ * {@link #getNonAdoptedCount}.
+ */
+public abstract class AbstractDiffusionService implements DiffusionSimulationService {
+
+    private final PopulationMirror mirror = new PopulationMirror();
+    private Population currentPopulation;
+
+    @Override
+    public void initializeAdopters(List<Person> population, int k) {
+        if (population.isEmpty()) return;
+
+        Population bound = mirror.bind(population);
+        initializeAdopters(bound, k);
+        mirror.writeAdoptionStates(bound, population);
+    }
+
+    @Override
+    public SimulationResult performDiffusionStep(List<Person> population, SimulationParameters params, int currentTimeStep) {
+        if (population.isEmpty()) {
+            return new SimulationResult(currentTimeStep, 0, 0, 0, true);
+        }
+
+        Population bound = mirror.bind(population);
+        SimulationResult result = performDiffusionStep(bound, params, currentTimeStep);
+        mirror.writeAdoptionStates(bound, population);
+        return result;
+    }
+
+    @Override
+    public double calculateEuclideanDistance(Person p1, Person p2) {
+        double dx = p1.getXPos() - p2.getXPos();
+        double dy = p1.getYPos() - p2.getYPos();
+        return Math.sqrt(dx * dx + dy * dy);
+    }
+
+    @Override
+    public void resetAdoptionStates(List<Person> population) {
+        for (Person person : population) {
+            person.setHasAdopted(false);
+        }
+        currentPopulation = null;
+    }
+
+    @Override
+    public void resetAdoptionStates(Population population) {
+        currentPopulation = population;
+        population.resetAdoptionStates();
+    }
+
+    @Override
+    public int countAdopters(List<Person> population) {
+        return (int) population.stream().filter(Person::hasAdopted).count();
+    }
+
+    @Override
+    public int countAdopters(Population population) {
+        return population.countAdopters();
+    }
+
+    @Override
+    public int countNonAdopters(List<Person> population) {
+        return population.size() - countAdopters(population);
+    }
+
+    @Override
+    public int countNonAdopters(Population population) {
+        return population.countNonAdopters();
+    }
+
+    @Override
+    public boolean isSimulationComplete(List<Person> population) {
+        return countNonAdopters(population) == 0;
+    }
+
+    @Override
+    public boolean isSimulationComplete(Population population) {
+        return countNonAdopters(population) == 0;
+    }
+
+    @Override
+    public int getAdoptedCount() {
+        return currentPopulation == null ? 0 : currentPopulation.countAdopters();
+    }
+
+    @Override
+    public int getNonAdoptedCount() {
+        return currentPopulation == null ? 0 : currentPopulation.countNonAdopters();
+    }
+
+    /**
+     * Binds a list of people to the population mirroring it, for {@code List<Person>} operations
+     * a subclass implements itself. Copy the result back with {@link #writeAdoptionStates}.
+     *
+     * @param people the caller's list
+     * @return population mirroring the list
+     */
+    protected Population bind(List<Person> people) {
+        return mirror.bind(people);
+    }
+
+    /**
+     * Copies adoption states from a population returned by {@link #bind} back onto the list.
+     *
+     * @param population the bound population
+     * @param people the caller's list
+     */
+    protected void writeAdoptionStates(Population population, List<Person> people) {
+        mirror.writeAdoptionStates(population, people);
+    }
+
+    /** @return the population most recently simulated, or null after a list was reset */
+    protected Population getCurrentPopulation() {
+        return currentPopulation;
+    }
+
+    /** @param population the population being simulated, reported by the adoption counts */
+    protected void setCurrentPopulation(Population population) {
+        currentPopulation = population;
+    }
+}
@@ -0,0 +1,17 @@
+package uk.ac.ucl.service;
+
+/**
+ * How a {@link HybridDiffusionService} decides who imitates. Both modes take the stepped engine's
+ * Bass counts, so they give the same adoption curve; they differ in who adopts and at what cost.
+ */
+public enum AggregationMode {
+
+    /** Every step runs the distance-based agent engine, {@link DiffusionSimulationServiceImpl}. */
+    AGENTS,
+
+    /**
+     * Saturated grid cells adopt as aggregate counts and only cells on the diffusion front
+     * compare individual distances to adopters.
+     */
+    HYBRID
+}
@@ -0,0 +1,184 @@
+package uk.ac.ucl.service;
+
+import uk.ac.ucl.model.CalibrationResult;
+import uk.ac.ucl.model.ObservedCurve;
+import uk.ac.ucl.model.SimulationParameters;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fits Bass coefficients p and q to observed cumulative adoption curves.
+ * The model curve is the discrete mean-field recurrence of {@link MeanFieldBassSolver}, which
+ * reproduces the agent engine's adopter counts exactly, so a fit is a fit to the agent model.
+ * Each error evaluation replays the recurrence against the observed curve without storing the
+ * model curve, so fitting allocates nothing beyond the result.
+ * Because the rounded step rules make the error piecewise constant, the search is a coarse grid
+ * over the whole unit square followed by a pattern search on small local grids around the best point.
+ */
+public class BassCalibrator {
+
+    // Innovation coefficients in practice span several orders of magnitude, so p is searched on a log grid
+    private static final double[] INITIAL_P_GRID = logGrid(1e-4, 1.0, 25);
+    private static final int INITIAL_Q_POINTS = 41;
+    private static final int LOCAL_POINTS = 9;
+    private static final int MAX_REFINEMENTS = 60;
+    private static final double SHRINK_FACTOR = 0.5;
+    private static final double MIN_RADIUS = 1e-7;
+
+    private final ExecutorService executor;
+
+    /**
+     * Creates a calibrator.
+     *
+     * @param executor executor used by {@link #fitAll}; owned by the caller
+     */
+    public BassCalibrator(ExecutorService executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Fits p and q to a single observed curve, starting from its first observed adopter count.
+     *
+     * @param curve the observed curve
+     * @return fitted parameters and error
+     */
+    public CalibrationResult fit(ObservedCurve curve) {
+        int[] observed = curve.getCumulativeAdopters();
+        int totalPopulation = curve.getTotalPopulation();
+
+        double bestP = 0.0;
+        double bestQ = 0.0;
+        double bestError = squaredError(0.0, 0.0, observed, totalPopulation);
+        int evaluations = 1;
+
+        for (double p : INITIAL_P_GRID) {
+            for (int j = 0; j < INITIAL_Q_POINTS; j++) {
+                double q = j / (double) (INITIAL_Q_POINTS - 1);
+                double error = squaredError(p, q, observed, totalPopulation);
+                evaluations++;
+                if (error < bestError) {
+                    bestError = error;
+                    bestP = p;
+                    bestQ = q;
+                }
+            }
+        }
+
+        // Re-centre on any improvement; shrink the local grid only when it finds nothing better
+        double pRadius = Math.max(bestP, INITIAL_P_GRID[0]);
+        double qRadius = 1.0 / (INITIAL_Q_POINTS - 1);
+        for (int iteration = 0; iteration < MAX_REFINEMENTS && qRadius > MIN_RADIUS; iteration++) {
+            double centreP = bestP;
+            double centreQ = bestQ;
+            boolean improved = false;
+            for (int i = 0; i < LOCAL_POINTS; i++) {
+                double p = clampUnit(centreP + pRadius * (2.0 * i / (LOCAL_POINTS - 1) - 1.0));
+                for (int j = 0; j < LOCAL_POINTS; j++) {
+                    double q = clampUnit(centreQ + qRadius * (2.0 * j / (LOCAL_POINTS - 1) - 1.0));
+                    double error = squaredError(p, q, observed, totalPopulation);
+                    evaluations++;
+                    if (error < bestError) {
+                        bestError = error;
+                        bestP = p;
+                        bestQ = q;
+                        improved = true;
+                    }
+                }
+            }
+            if (!improved) {
+                pRadius *= SHRINK_FACTOR;
+                qRadius *= SHRINK_FACTOR;
+            }
+        }
+
+        SimulationParameters params = new SimulationParameters(bestP, bestQ, observed[0]);
+        return new CalibrationResult(curve.getName(), params, bestError, observed.length, evaluations);
+    }
+
+    /**
+     * Fits every curve in a batch. Each worker task takes the next unfitted curve from a shared
+     * counter, so long and short curves balance out across threads.
+     *
+     * @param curves the observed curves
+     * @param threads number of worker tasks to submit
+     * @return one result per curve, in the same order
+     * @throws IllegalStateException if a fit fails or the calling thread is interrupted
+     */
+    public List<CalibrationResult> fitAll(List<ObservedCurve> curves, int threads) {
+        CalibrationResult[] results = new CalibrationResult[curves.size()];
+        AtomicInteger nextCurve = new AtomicInteger();
+
+        List<Future<?>> futures = new ArrayList<>(threads);
+        for (int t = 0; t < Math.max(1, threads); t++) {
+            futures.add(executor.submit(() -> {
+                for (int i = nextCurve.getAndIncrement(); i < results.length; i = nextCurve.getAndIncrement()) {
+                    results[i] = fit(curves.get(i));
+                }
+            }));
+        }
+
+        try {
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            futures.forEach(future -> future.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while calibrating", e);
+        } catch (ExecutionException e) {
+            futures.forEach(future -> future.cancel(true));
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException("Calibration failed", e.getCause());
+        }
+
+        List<CalibrationResult> resultList = new ArrayList<>(results.length);
+        for (CalibrationResult result : results) {
+            resultList.add(result);
+        }
+        return resultList;
+    }
+
+    /**
+     * Sums squared differences between the observed curve and the mean-field curve started from
+     * the observed initial count. After the model completes or stalls it holds its final value.
+     *
+     * @param p innovation coefficient
+     * @param q imitation coefficient
+     * @param observed observed cumulative adopters
+     * @param totalPopulation population size
+     * @return sum of squared errors over all observed time steps
+     */
+    static double squaredError(double p, double q, int[] observed, int totalPopulation) {
+        int adopted = observed[0];
+        double error = 0.0;
+        for (int t = 1; t < observed.length; t++) {
+            if (adopted < totalPopulation) {
+                adopted = MeanFieldBassSolver.nextAdopted(p, q, adopted, totalPopulation);
+            }
+            double difference = adopted - observed[t];
+            error += difference * difference;
+        }
+        return error;
+    }
+
+    private static double clampUnit(double value) {
+        return value < 0 ? 0 : (value > 1 ? 1 : value);
+    }
+
+    private static double[] logGrid(double from, double to, int points) {
+        double[] grid = new double[points];
+        double ratio = Math.log(to / from) / (points - 1);
+        for (int i = 0; i < points; i++) {
+            grid[i] = from * Math.exp(ratio * i);
+        }
+        grid[points - 1] = to;
+        return grid;
+    }
+}
@@ -1,16 +1,24 @@
 package uk.ac.ucl.service;
 
+import uk.ac.ucl.model.ObservedCurve;
+import uk.ac.ucl.model.SimulationResult;
+
+import java.io.BufferedReader;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Flow;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 
 /**
  * Service for logging diffusion simulation data to CSV files.
- * Creates timestamped CSV files with real-time simulation data.
+ * Creates timestamped CSV files with real-time simulation data, and reads them back as adoption curves.
+ * Logging methods are synchronized, so a run can be logged from a subscriber thread.
  */
 public class CsvLoggingService {
 
@@ -29,7 +37,7 @@ public class CsvLoggingService {
      * @param simulationName The name/identifier for this simulation (e.g., country name)
      * @throws IOException if file creation or writing fails
      */
-    public void startLogging(String simulationName) throws IOException {
+    public synchronized void startLogging(String simulationName) throws IOException {
         if (isLogging) {
             stopLogging();
         }
@@ -74,7 +82,7 @@ public class CsvLoggingService {
      * @param totalPopulation Total population size
      * @param adoptionPercentage Percentage of population that has adopted
      */
-    public void logDiffusionStep(int timeStep, int newAdopters, int totalAdopted,
+    public synchronized void logDiffusionStep(int timeStep, int newAdopters, int totalAdopted,
                                 int totalPopulation, double adoptionPercentage) {
         if (!isLogging || csvWriter == null) {
             return;
@@ -98,7 +106,7 @@ public class CsvLoggingService {
      * Stops the current logging session and closes the CSV file.
      * Displays the path of the saved file.
      */
-    public void stopLogging() {
+    public synchronized void stopLogging() {
         if (!isLogging || csvWriter == null) {
             return;
         }
@@ -120,7 +128,7 @@ public class CsvLoggingService {
      *
      * @return true if logging is active, false otherwise
      */
-    public boolean isLogging() {
+    public synchronized boolean isLogging() {
         return isLogging;
     }
 
@@ -129,10 +137,96 @@ public class CsvLoggingService {
      *
      * @return the current file path, or null if not logging
      */
-    public String getCurrentFilePath() {
+    public synchronized String getCurrentFilePath() {
         return currentFilePath;
     }
 
+    /**
+     * Creates a subscriber that logs one run from a stream of step results: it starts logging
+     * when subscribed, writes a row per result and stops logging when the stream completes.
+     * A failure to start logging is reported and the run's results are then ignored.
+     *
+     * @param simulationName The name/identifier for this simulation (e.g., country name)
+     * @return a subscriber that requests every result
+     */
+    public Flow.Subscriber<SimulationResult> loggingSubscriber(String simulationName) {
+        return new Flow.Subscriber<SimulationResult>() {
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                try {
+                    startLogging(simulationName);
+                } catch (IOException e) {
+                    System.err.println("Failed to start CSV logging: " + e.getMessage());
+                }
+                subscription.request(Long.MAX_VALUE);
+            }
+
+            @Override
+            public void onNext(SimulationResult result) {
+                logDiffusionStep(result.getTimeStep(), result.getNewAdopters(), result.getTotalAdopted(),
+                        result.getTotalPopulation(), result.getAdoptionPercentage());
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                System.err.println("Simulation results failed: " + throwable.getMessage());
+                stopLogging();
+            }
+
+            @Override
+            public void onComplete() {
+                stopLogging();
+            }
+        };
+    }
+
+    /**
+     * Reads an adoption curve from a CSV file with a header row. Only the TotalAdopted and
+     * TotalPopulation columns are required, so files written by this service and external
+     * sales data in the same shape can both be read. Rows are taken as consecutive time steps,
+     * the first being the starting state.
+     *
+     * @param file the CSV file to read
+     * @return the observed curve, named after the file
+     * @throws IOException if the file cannot be read
+     * @throws IllegalArgumentException if a required column is missing or a value is malformed
+     */
+    public static ObservedCurve readAdoptionCurve(Path file) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(file)) {
+            String header = reader.readLine();
+            if (header == null) {
+                throw new IllegalArgumentException("CSV file is empty: " + file);
+            }
+            List<String> columns = Arrays.asList(header.trim().split(","));
+            int adoptedColumn = columns.indexOf("TotalAdopted");
+            int populationColumn = columns.indexOf("TotalPopulation");
+            if (adoptedColumn < 0 || populationColumn < 0) {
+                throw new IllegalArgumentException("CSV file must have TotalAdopted and TotalPopulation columns: " + file);
+            }
+
+            int[] adopters = new int[64];
+            int length = 0;
+            int totalPopulation = 0;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) continue;
+                String[] fields = line.split(",");
+                try {
+                    totalPopulation = Integer.parseInt(fields[populationColumn].trim());
+                    if (length == adopters.length) {
+                        adopters = Arrays.copyOf(adopters, length * 2);
+                    }
+                    adopters[length++] = Integer.parseInt(fields[adoptedColumn].trim());
+                } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+                    throw new IllegalArgumentException("Malformed row in " + file + ": " + line, e);
+                }
+            }
+
+            String name = file.getFileName().toString().replaceFirst("\\.csv$", "");
+            return new ObservedCurve(name, totalPopulation, Arrays.copyOf(adopters, length));
+        }
+    }
+
     /**
      * Sanitizes a filename by removing or replacing invalid characters.
      *
@@ -1,6 +1,7 @@
 package uk.ac.ucl.service;
 
 import uk.ac.ucl.model.Person;
+import uk.ac.ucl.model.Population;
 import uk.ac.ucl.model.SimulationParameters;
 import uk.ac.ucl.model.SimulationResult;
 
@@ -9,6 +10,8 @@ import java.util.List;
 /**
  * Service interface for Bass diffusion model simulation operations.
  * Handles initialization, step execution, and population management for market diffusion.
+ * Each operation accepts either a {@code List<Person>} or an array-backed {@link Population};
+ * the population overloads avoid a heap object per person and are preferred for large runs.
  */
 public interface DiffusionSimulationService {
 
@@ -20,6 +23,14 @@ public interface DiffusionSimulationService {
      */
     void initializeAdopters(List<Person> population, int k);
 
+    /**
+     * Randomly selects k initial adopters from an array-backed population.
+     *
+     * @param population the population to select from
+     * @param k number of initial adopters to select
+     */
+    void initializeAdopters(Population population, int k);
+
     /**
      * Executes one step of the Bass diffusion model simulation.
      *
@@ -30,6 +41,29 @@ public interface DiffusionSimulationService {
      */
     SimulationResult performDiffusionStep(List<Person> population, SimulationParameters params, int currentTimeStep);
 
+    /**
+     * Executes one step of the Bass diffusion model simulation on an array-backed population.
+     *
+     * @param population the current population
+     * @param params simulation parameters (p, q, k)
+     * @param currentTimeStep the current simulation time step
+     * @return result containing adoption metrics and completion status
+     */
+    SimulationResult performDiffusionStep(Population population, SimulationParameters params, int currentTimeStep);
+
+    /**
+     * Initializes {@code k} adopters and runs the simulation until everyone has adopted,
+     * {@code maxSteps} steps have run, or a step adopts no one (after which nothing can change).
+     * Intended for batch use: no per-step result objects are created.
+     *
+     * @param population the population to simulate; its adoption states are reset first
+     * @param params simulation parameters (p, q, k)
+     * @param maxSteps maximum number of steps to run
+     * @return cumulative adopters after initialization (index 0) and after each step run
+     * @throws IllegalArgumentException if maxSteps is negative
+     */
+    int[] runToCompletion(Population population, SimulationParameters params, int maxSteps);
+
     /**
      * Selects new adopters based on proximity to existing adopters.
      *
@@ -54,6 +88,13 @@ public interface DiffusionSimulationService {
      */
     void resetAdoptionStates(List<Person> population);
 
+    /**
+     * Resets all people in an array-backed population to non-adopted state.
+     *
+     * @param population the population to reset
+     */
+    void resetAdoptionStates(Population population);
+
     /**
      * Counts the number of adopters in the population.
      *
@@ -62,6 +103,14 @@ public interface DiffusionSimulationService {
      */
     int countAdopters(List<Person> population);
 
+    /**
+     * Counts the number of adopters in an array-backed population.
+     *
+     * @param population the population to count
+     * @return number of adopters
+     */
+    int countAdopters(Population population);
+
     /**
      * Counts the number of non-adopters in the population.
      *
@@ -70,6 +119,14 @@ public interface DiffusionSimulationService {
      */
     int countNonAdopters(List<Person> population);
 
+    /**
+     * Counts the number of non-adopters in an array-backed population.
+     *
+     * @param population the population to count
+     * @return number of non-adopters
+     */
+    int countNonAdopters(Population population);
+
     /**
      * Determines if the simulation has completed (all people adopted).
      *
@@ -78,6 +135,31 @@ public interface DiffusionSimulationService {
      */
     boolean isSimulationComplete(List<Person> population);
 
+    /**
+     * Determines if the simulation has completed for an array-backed population.
+     *
+     * @param population the population to check
+     * @return true if simulation is complete
+     */
+    boolean isSimulationComplete(Population population);
+
+    /**
+     * Returns the adopter count of the population most recently initialized, stepped or reset
+     * by this service. The count is maintained as people adopt, so this is cheap enough to call
+     * from the UI or a logger on every step.
+     *
+     * @return number of adopters, or 0 if no population has been simulated yet
+     */
+    int getAdoptedCount();
+
+    /**
+     * Returns the non-adopter count of the population most recently initialized, stepped or
+     * reset by this service.
+     *
+     * @return number of non-adopters, or 0 if no population has been simulated yet
+     */
+    int getNonAdoptedCount();
+
     /**
      * Sets the random seed for reproducible results.
      *
@@ -1,33 +1,187 @@
 package uk.ac.ucl.service;
 
 import uk.ac.ucl.model.Person;
+import uk.ac.ucl.model.Population;
+import uk.ac.ucl.model.PopulationStore;
+import uk.ac.ucl.model.SimulationCheckpoint;
 import uk.ac.ucl.model.SimulationParameters;
 import uk.ac.ucl.model.SimulationResult;
+import uk.ac.ucl.util.BoundingBox;
+import uk.ac.ucl.util.DistanceKernel;
+import uk.ac.ucl.util.FenwickTree;
+import uk.ac.ucl.util.PartialSelection;
+import uk.ac.ucl.util.RandomStream;
+import uk.ac.ucl.util.SpatialGrid;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
-import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 /**
  * Implementation of Bass diffusion model simulation with distance-based adoption.
  * Uses spatial proximity to determine which non-adopters are most likely to adopt next.
+ * The engine reads positions and adoption states through {@link PopulationStore}, so it steps an
+ * {@link uk.ac.ucl.model.OffHeapPopulation} in place as well as a {@link Population}; its own working
+ * arrays, such as the candidate lists and the distance field, still take heap in proportion to the
+ * population. {@code List<Person>} callers are adapted onto a population mirror whose adoption
+ * states are copied back after each operation.
+ * Random draws come from per-phase streams derived from the seed, so results for a seed do not
+ * depend on whether the distance phase runs on a fork/join pool or how many threads it has.
+ * When the population carries per-person propensities, innovators are drawn with probability
+ * proportional to innovation propensity from a {@link FenwickTree} updated as people adopt, and
+ * imitators are ranked by distance divided by imitation propensity.
+ * The engine records the step at which each person adopted, and can capture and restore a
+ * {@link SimulationCheckpoint} from which a run continues exactly as it would have uninterrupted.
  */
 public class DiffusionSimulationServiceImpl implements DiffusionSimulationService {
 
-    private final Random random = new Random();
+    // Above this many new adopters, the distance field update indexes them in a grid
+    private static final int INDEXED_UPDATE_THRESHOLD = 32;
+
+    // Parallel selection only pays off once there are enough candidates to split
+    private static final int PARALLEL_THRESHOLD = 16384;
+    private static final int MIN_CHUNK_SIZE = 4096;
+    private static final int CHUNKS_PER_THREAD = 4;
+
+    // Relative slack on pruned search bounds, far above the rounding error of key = distance / propensity
+    private static final double THRESHOLD_MARGIN = 1e-9;
+    private static final int THRESHOLD_BUCKETS = 1024;
+
+    private RandomStream initialAdoptersRandom;
+    private RandomStream innovatorsRandom;
+    private DistanceSearchMode distanceSearchMode;
+    private ImitatorSelectionStrategy imitatorSelectionStrategy = ImitatorSelectionStrategy.BOUNDED_HEAP;
+    private ForkJoinPool forkJoinPool;
+
+    // Reusable scratch arrays for selection: non-adopter indices, their distances, the picks
+    private int[] candidateIndex = new int[0];
+    private double[] candidateDistance = new double[0];
+    private int[] selectedIndex = new int[0];
+
+    // Adopters to search for the current step: a grid when there are many, otherwise packed coordinates.
+    // The grid object is kept between steps and re-fitted rather than reallocated
+    private int[] searchIndex = new int[0];
+    private SpatialGrid searchGrid;
+    private SpatialGrid reusableGrid;
+    private double[] searchXs = new double[0];
+    private double[] searchYs = new double[0];
+    private int searchAdopterCount;
+
+    // Per-chunk winners gathered for the merge step of parallel selection
+    private int[] mergePosition = new int[0];
+    private double[] mergeDistance = new double[0];
+    private int[] mergeIndex = new int[0];
+
+    // Non-adopters, valid while the population's adoption version matches the one recorded here
+    private final NonAdopterIndex nonAdopters = new NonAdopterIndex();
+    private PopulationStore nonAdopterIndexPopulation;
+    private long nonAdopterIndexVersion;
+
+    // Time step at which each person adopted (-1 for non-adopters), kept alongside the non-adopter
+    // index, and the step that adoptions are currently being recorded against
+    private int[] adoptionSteps = new int[0];
+    private int recordingStep;
+
+    // Incremental nearest-adopter distance field, valid for the population and adoption version
+    // recorded here, and this engine's adoptions that it does not yet account for
+    private PopulationStore distanceFieldPopulation;
+    private long distanceFieldVersion;
+    private int[] pendingAdopters = new int[0];
+    private int pendingAdopterCount;
+    private double[] nearestAdopterDistance;
+
+    // Threshold pruning, used by runToCompletion: every adopter within exactRadius[i] of person i
+    // is reflected in nearestAdopterDistance[i], so the field is exact wherever it does not exceed
+    // that radius. Adopters skipped by a pruned search are found again through adopterGrid, which
+    // holds every adopter of the run
+    private boolean pruneToThreshold;
+    private double imitationThreshold;
+    private double[] exactRadius;
+    private SpatialGrid adopterGrid;
+    private final int[] thresholdHistogram = new int[THRESHOLD_BUCKETS];
+
+    // Innovation propensities of the non-adopters (zero once adopted), valid for the propensity
+    // array, population and adoption version recorded here
+    private FenwickTree innovationWeights;
+    private double[] innovationWeightValues = new double[0];
+    private float[] innovationWeightsSource;
+    private PopulationStore innovationWeightsPopulation;
+    private long innovationWeightsVersion;
+    private int innovationWeightUpdates;
+
+    // Population most recently simulated, whose counters back getAdoptedCount/getNonAdoptedCount
+    private PopulationStore currentPopulation;
+
+    // Population mirror used to adapt List<Person> callers onto the array-based engine
+    private final PopulationMirror mirror = new PopulationMirror();
+
+    /**
+     * Creates a simulation service that maintains an incremental nearest-adopter distance field.
+     */
+    public DiffusionSimulationServiceImpl() {
+        this(DistanceSearchMode.INCREMENTAL);
+    }
+
+    /**
+     * Creates a simulation service with the given nearest-adopter search strategy.
+     *
+     * @param distanceSearchMode how nearest adopters are located during imitator selection
+     */
+    public DiffusionSimulationServiceImpl(DistanceSearchMode distanceSearchMode) {
+        this(distanceSearchMode, null);
+    }
+
+    /**
+     * Creates a simulation service that runs the nearest-adopter distance phase on a fork/join pool.
+     * Large populations are split into chunks of non-adopters whose closest candidates are merged,
+     * giving the same adopters as the sequential engine for a given seed.
+     *
+     * @param distanceSearchMode how nearest adopters are located during imitator selection
+     * @param forkJoinPool pool for the parallel distance phase, or null to run sequentially
+     */
+    public DiffusionSimulationServiceImpl(DistanceSearchMode distanceSearchMode, ForkJoinPool forkJoinPool) {
+        this.distanceSearchMode = distanceSearchMode;
+        this.forkJoinPool = forkJoinPool;
+        seedStreams(RandomStream.fromEntropy());
+    }
 
     @Override
     public void initializeAdopters(List<Person> population, int k) {
         if (population.isEmpty()) return;
 
+        Population bound = mirror.bind(population);
+        initializeAdopters(bound, k);
+        mirror.writeAdoptionStates(bound, population);
+    }
+
+    @Override
+    public void initializeAdopters(Population population, int k) {
+        initializeAdopters((PopulationStore) population, k);
+    }
+
+    /**
+     * Resets a population store and adopts {@code k} people drawn at random, reading and writing
+     * the store in place.
+     *
+     * @param population the store to initialize
+     * @param k number of initial adopters
+     */
+    public void initializeAdopters(PopulationStore population, int k) {
+        currentPopulation = population;
+        if (population.isEmpty()) return;
+
         int actualK = Math.min(k, population.size());
-        resetAdoptionStates(population);
+        population.resetAdoptionStates();
+        recordingStep = 0;
 
-        Collections.shuffle(population, random);
+        ensureNonAdopterIndex(population);
         for (int i = 0; i < actualK; i++) {
-            population.get(i).setHasAdopted(true);
+            adopt(population, nonAdopters.draw(initialAdoptersRandom));
         }
     }
 
@@ -37,14 +191,140 @@ public class DiffusionSimulationServiceImpl implements DiffusionSimulationServic
             return new SimulationResult(currentTimeStep, 0, 0, 0, true);
         }
 
-        int adoptedCount = countAdopters(population);
-        int nonAdoptedCount = countNonAdopters(population);
-        int totalPopulation = population.size();
+        Population bound = mirror.bind(population);
+        SimulationResult result = performDiffusionStep(bound, params, currentTimeStep);
+        mirror.writeAdoptionStates(bound, population);
+        return result;
+    }
+
+    @Override
+    public SimulationResult performDiffusionStep(Population population, SimulationParameters params, int currentTimeStep) {
+        return performDiffusionStep((PopulationStore) population, params, currentTimeStep);
+    }
+
+    /**
+     * Performs one diffusion step on a population store in place, recording each new adopter's
+     * step in stores that keep adoption steps.
+     *
+     * @param population the store to update
+     * @param params simulation parameters
+     * @param currentTimeStep the current time step number
+     * @return result of the step
+     */
+    public SimulationResult performDiffusionStep(PopulationStore population, SimulationParameters params,
+                                                 int currentTimeStep) {
+        currentPopulation = population;
+        if (population.isEmpty()) {
+            return new SimulationResult(currentTimeStep, 0, 0, 0, true);
+        }
 
-        if (nonAdoptedCount == 0) {
+        int adoptedCount = population.countAdopters();
+        int totalPopulation = population.size();
+        if (adoptedCount == totalPopulation) {
             return new SimulationResult(currentTimeStep, 0, adoptedCount, totalPopulation, true);
         }
 
+        recordingStep = currentTimeStep;
+        int actualNewAdopters = advance(population, params);
+        int finalAdoptedCount = adoptedCount + actualNewAdopters;
+        boolean isComplete = finalAdoptedCount >= totalPopulation;
+
+        return new SimulationResult(currentTimeStep, actualNewAdopters, finalAdoptedCount, totalPopulation, isComplete);
+    }
+
+    @Override
+    public int[] runToCompletion(Population population, SimulationParameters params, int maxSteps) {
+        return runToCompletion((PopulationStore) population, params, maxSteps);
+    }
+
+    /**
+     * Initializes adopters and runs on a population store in place until everyone has adopted,
+     * a step adopts nobody, or the step limit is reached.
+     *
+     * @param population the store to simulate
+     * @param params simulation parameters
+     * @param maxSteps maximum number of steps to run
+     * @return cumulative adopters per time step, starting with the initial adopters
+     * @throws IllegalArgumentException if {@code maxSteps} is negative
+     */
+    public int[] runToCompletion(PopulationStore population, SimulationParameters params, int maxSteps) {
+        if (maxSteps < 0) {
+            throw new IllegalArgumentException("Maximum steps must be non-negative");
+        }
+
+        initializeAdopters(population, params.getK());
+        // Every step that changes anything adopts at least one person, so this bounds the curve
+        int[] curve = new int[Math.min(maxSteps, population.countNonAdopters()) + 1];
+        curve[0] = population.countAdopters();
+
+        // Nobody else touches the population until the run returns, so the pruned distance field
+        // and the grid of every adopter can be carried from step to step
+        pruneToThreshold = distanceSearchMode == DistanceSearchMode.INCREMENTAL && !population.isEmpty();
+        if (pruneToThreshold) {
+            buildRunAdopterGrid(population);
+        }
+        int steps = 0;
+        try {
+            while (steps < maxSteps && population.countNonAdopters() > 0) {
+                // Step sizes depend only on the counts, so a step that adopts no one never will again
+                recordingStep = steps + 1;
+                if (advance(population, params) == 0) break;
+                curve[++steps] = population.countAdopters();
+            }
+        } finally {
+            if (pruneToThreshold) {
+                pruneToThreshold = false;
+                // The pruned field is not exact everywhere, so a later step starts afresh
+                distanceFieldPopulation = null;
+            }
+        }
+        return steps + 1 == curve.length ? curve : Arrays.copyOf(curve, steps + 1);
+    }
+
+    /**
+     * Fits the run's adopter grid to the whole population and fills it with the current adopters.
+     * {@link #adopt} adds everyone who adopts later in the run.
+     *
+     * @param population the population being simulated
+     */
+    private void buildRunAdopterGrid(PopulationStore population) {
+        int size = population.size();
+        double minX = Double.MAX_VALUE, maxX = -Double.MAX_VALUE;
+        double minY = Double.MAX_VALUE, maxY = -Double.MAX_VALUE;
+        for (int i = 0; i < size; i++) {
+            double x = population.getXPos(i);
+            double y = population.getYPos(i);
+            minX = Math.min(minX, x);
+            maxX = Math.max(maxX, x);
+            minY = Math.min(minY, y);
+            maxY = Math.max(maxY, y);
+        }
+
+        if (adopterGrid == null) {
+            adopterGrid = new SpatialGrid(new BoundingBox(minX, maxX, minY, maxY), size);
+        } else {
+            adopterGrid.reset(minX, maxX, minY, maxY, size);
+        }
+        for (int i = population.nextAdopter(0); i >= 0; i = population.nextAdopter(i + 1)) {
+            adopterGrid.insert(population.getXPos(i), population.getYPos(i));
+        }
+    }
+
+    /**
+     * Performs one diffusion step on a population with at least one non-adopter.
+     * Works entirely in reusable buffers; with the bounded-heap strategy and no fork/join pool
+     * it allocates nothing once the buffers have grown to the population size.
+     *
+     * @param population the population to update
+     * @param params simulation parameters
+     * @return number of people who adopted in this step
+     */
+    private int advance(PopulationStore population, SimulationParameters params) {
+        // Maintained by the population as people adopt, so neither count rescans it
+        int adoptedCount = population.countAdopters();
+        int nonAdoptedCount = population.countNonAdopters();
+        int totalPopulation = population.size();
+
         // Bass diffusion components:
         // Innovators: p * N(t) - chosen randomly
         // Imitators: q * N(t) * A(t) / M - chosen by proximity
@@ -70,39 +350,104 @@ public class DiffusionSimulationServiceImpl implements DiffusionSimulationServic
             actualNewAdopters += selectImitatorsByDistance(population, imitators);
         }
 
-        int finalAdoptedCount = countAdopters(population);
-        boolean isComplete = finalAdoptedCount >= totalPopulation;
-
-        return new SimulationResult(currentTimeStep, actualNewAdopters, finalAdoptedCount, totalPopulation, isComplete);
+        return actualNewAdopters;
     }
 
     /**
      * Selects innovators randomly from non-adopters (Bass model p component).
+     * Draws directly from the dense non-adopter index, so this costs O(innovators)
+     * and allocates nothing.
      *
      * @param population the population to select from
      * @param numInnovators number of innovators to select
      * @return actual number of innovators selected
      */
-    private int selectInnovators(List<Person> population, int numInnovators) {
-        List<Person> nonAdopters = new ArrayList<>();
-        for (Person person : population) {
-            if (!person.hasAdopted()) {
-                nonAdopters.add(person);
-            }
+    private int selectInnovators(PopulationStore population, int numInnovators) {
+        ensureNonAdopterIndex(population);
+        if (nonAdopters.size() == 0) return 0;
+        if (population.getInnovationPropensities() != null) {
+            return selectWeightedInnovators(population, numInnovators);
         }
 
-        if (nonAdopters.isEmpty()) return 0;
-
         int actualInnovators = Math.min(numInnovators, nonAdopters.size());
-        Collections.shuffle(nonAdopters, random);
-
         for (int i = 0; i < actualInnovators; i++) {
-            nonAdopters.get(i).setHasAdopted(true);
+            adopt(population, nonAdopters.draw(innovatorsRandom));
         }
 
         return actualInnovators;
     }
 
+    /**
+     * Selects innovators with probability proportional to innovation propensity, without
+     * replacement. Each draw is a search of the weight tree, so this costs O(innovators log N);
+     * people with zero propensity are never drawn, so fewer may be selected than requested.
+     *
+     * @param population the population to select from, which has innovation propensities
+     * @param numInnovators number of innovators to select
+     * @return actual number of innovators selected
+     */
+    private int selectWeightedInnovators(PopulationStore population, int numInnovators) {
+        ensureInnovationWeights(population);
+        int selected = 0;
+        while (selected < numInnovators && nonAdopters.size() > 0) {
+            double total = innovationWeights.total();
+            if (!(total > 0)) break;
+
+            int person = innovationWeights.find(innovatorsRandom.nextDouble() * total);
+            if (population.hasAdopted(person) || innovationWeightValues[person] == 0) {
+                // Rounding drift in the tree landed on a zero weight; resum exactly and redraw
+                rebuildInnovationWeights(population);
+                continue;
+            }
+            adopt(population, person);
+            selected++;
+        }
+        return selected;
+    }
+
+    /**
+     * Rebuilds the innovation weight tree if it does not describe the population's current
+     * propensities and adoption states.
+     *
+     * @param population the population being simulated
+     */
+    private void ensureInnovationWeights(PopulationStore population) {
+        if (!hasCurrentInnovationWeights(population)) {
+            rebuildInnovationWeights(population);
+        }
+    }
+
+    private boolean hasCurrentInnovationWeights(PopulationStore population) {
+        return population == innovationWeightsPopulation
+                && population.getInnovationPropensities() == innovationWeightsSource
+                && population.getAdoptionVersion() == innovationWeightsVersion;
+    }
+
+    private void rebuildInnovationWeights(PopulationStore population) {
+        loadInnovationWeightValues(population);
+        innovationWeights.build(innovationWeightValues);
+        innovationWeightUpdates = 0;
+    }
+
+    /**
+     * Sets each person's weight from the population's propensities and adoption states and marks
+     * the tree as describing them; the caller fills the tree itself.
+     */
+    private void loadInnovationWeightValues(PopulationStore population) {
+        int size = population.size();
+        float[] propensities = population.getInnovationPropensities();
+        if (innovationWeightValues.length != size) {
+            innovationWeightValues = new double[size];
+            innovationWeights = new FenwickTree(size);
+        }
+        for (int i = 0; i < size; i++) {
+            innovationWeightValues[i] = population.hasAdopted(i) ? 0.0 : propensities[i];
+        }
+        innovationWeightsSource = propensities;
+        innovationWeightsPopulation = population;
+        innovationWeightsVersion = population.getAdoptionVersion();
+    }
+
     /**
      * Selects imitators based on proximity to existing adopters (Bass model q component).
      *
@@ -110,45 +455,522 @@ public class DiffusionSimulationServiceImpl implements DiffusionSimulationServic
      * @param numImitators number of imitators to select
      * @return actual number of imitators selected
      */
-    private int selectImitatorsByDistance(List<Person> population, int numImitators) {
-        List<Person> nonAdopters = new ArrayList<>();
-        List<Person> adopters = new ArrayList<>();
+    private int selectImitatorsByDistance(PopulationStore population, int numImitators) {
+        int size = population.size();
+        ensureCandidateCapacity(size);
+        ensureNonAdopterIndex(population);
 
-        for (Person person : population) {
-            if (person.hasAdopted()) {
-                adopters.add(person);
+        int candidateCount = nonAdopters.size();
+        if (candidateCount == 0 || candidateCount == size) return 0;
+        nonAdopters.copyTo(candidateIndex);
+
+        int actualImitators = Math.min(numImitators, candidateCount);
+        prepareDistanceSearch(population);
+        if (pruneToThreshold) {
+            imitationThreshold = staleImitationThreshold(population, candidateCount, actualImitators);
+        }
+
+        boolean useHeap = imitatorSelectionStrategy == ImitatorSelectionStrategy.BOUNDED_HEAP;
+        if (forkJoinPool != null && candidateCount >= PARALLEL_THRESHOLD) {
+            selectClosestInParallel(population, candidateCount, actualImitators, useHeap);
+        } else {
+            computeDistanceRange(population, 0, candidateCount);
+            if (useHeap) {
+                PartialSelection.selectSmallest(candidateDistance, candidateIndex, candidateCount,
+                        actualImitators, selectedIndex);
+            }
+        }
+
+        if (!useHeap) {
+            List<PersonDistance> nonAdoptersWithDistance = new ArrayList<>(candidateCount);
+            for (int c = 0; c < candidateCount; c++) {
+                nonAdoptersWithDistance.add(new PersonDistance(candidateIndex[c], candidateDistance[c]));
+            }
+
+            Collections.sort(nonAdoptersWithDistance,
+                    Comparator.<PersonDistance>comparingDouble(pd -> pd.distance).thenComparingInt(pd -> pd.index));
+
+            for (int i = 0; i < actualImitators; i++) {
+                selectedIndex[i] = nonAdoptersWithDistance.get(i).index;
+            }
+        }
+
+        // Adopt in index order so the non-adopter index, and with it later random draws,
+        // does not depend on which selection strategy produced the picks
+        Arrays.sort(selectedIndex, 0, actualImitators);
+        for (int i = 0; i < actualImitators; i++) {
+            adopt(population, selectedIndex[i]);
+        }
+
+        return actualImitators;
+    }
+
+    /**
+     * Returns the {@code m}-th smallest ranking key computed from the distance field before this
+     * step's adopters are applied. Applying adopters only lowers keys, so every candidate that
+     * will be selected has a final key no greater than this, and the distance search for anyone
+     * else can stop there.
+     *
+     * @param population the population being simulated
+     * @param candidateCount number of non-adopters listed in {@code candidateIndex}
+     * @param m number of imitators to be selected
+     * @return an upper bound on the key of every candidate selected this step
+     */
+    private double staleImitationThreshold(PopulationStore population, int candidateCount, int m) {
+        float[] imitationPropensities = population.getImitationPropensities();
+        double maxKey = 0.0;
+        int ranked = 0;
+        for (int c = 0; c < candidateCount; c++) {
+            double key = rankingKey(nearestAdopterDistance[candidateIndex[c]], imitationPropensities, candidateIndex[c]);
+            candidateDistance[c] = key;
+            if (key < Double.MAX_VALUE) {
+                maxKey = Math.max(maxKey, key);
+                ranked++;
+            }
+        }
+        if (ranked < m || !(maxKey > 0)) return Double.MAX_VALUE;
+
+        Arrays.fill(thresholdHistogram, 0);
+        double scale = THRESHOLD_BUCKETS / maxKey;
+        for (int c = 0; c < candidateCount; c++) {
+            double key = candidateDistance[c];
+            if (key < Double.MAX_VALUE) {
+                thresholdHistogram[Math.min(THRESHOLD_BUCKETS - 1, (int) (key * scale))]++;
+            }
+        }
+        int seen = 0;
+        for (int bucket = 0; bucket < THRESHOLD_BUCKETS - 1; bucket++) {
+            seen += thresholdHistogram[bucket];
+            if (seen >= m) return (bucket + 1) / scale * (1 + THRESHOLD_MARGIN);
+        }
+        return maxKey;
+    }
+
+    /**
+     * Splits the candidates into chunks on the fork/join pool. Each chunk computes its
+     * distances and, for the bounded-heap strategy, its own closest {@code m} candidates;
+     * the chunk winners are then merged into the global closest {@code m}. Because every
+     * global winner is also a winner in its chunk, this selects exactly the sequential set.
+     *
+     * @param population the population being simulated
+     * @param candidateCount number of non-adopters listed in {@code candidateIndex}
+     * @param m number of imitators to select into {@code selectedIndex}
+     * @param useHeap whether chunks should also select their closest candidates
+     */
+    private void selectClosestInParallel(PopulationStore population, int candidateCount, int m, boolean useHeap) {
+        int chunkCount = Math.max(1, Math.min(forkJoinPool.getParallelism() * CHUNKS_PER_THREAD,
+                candidateCount / MIN_CHUNK_SIZE));
+        int[] chunkSelected = new int[chunkCount];
+        forkJoinPool.invoke(new CandidateChunkTask(population, candidateCount, chunkCount, 0, chunkCount,
+                useHeap ? m : 0, chunkSelected));
+
+        if (!useHeap) return;
+
+        int merged = 0;
+        for (int chunk = 0; chunk < chunkCount; chunk++) {
+            int from = chunkStart(chunk, chunkCount, candidateCount);
+            for (int j = 0; j < chunkSelected[chunk]; j++) {
+                int position = mergePosition[from + j];
+                mergeDistance[merged] = candidateDistance[position];
+                mergeIndex[merged] = candidateIndex[position];
+                merged++;
+            }
+        }
+        PartialSelection.selectSmallest(mergeDistance, mergeIndex, merged, m, selectedIndex);
+    }
+
+    private static int chunkStart(int chunk, int chunkCount, int candidateCount) {
+        return (int) ((long) chunk * candidateCount / chunkCount);
+    }
+
+    /**
+     * Fork/join task covering a range of candidate chunks, split in halves down to single chunks.
+     */
+    private class CandidateChunkTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final PopulationStore population;
+        private final int candidateCount;
+        private final int chunkCount;
+        private final int firstChunk;
+        private final int endChunk;
+        private final int m;
+        private final int[] chunkSelected;
+
+        CandidateChunkTask(PopulationStore population, int candidateCount, int chunkCount,
+                           int firstChunk, int endChunk, int m, int[] chunkSelected) {
+            this.population = population;
+            this.candidateCount = candidateCount;
+            this.chunkCount = chunkCount;
+            this.firstChunk = firstChunk;
+            this.endChunk = endChunk;
+            this.m = m;
+            this.chunkSelected = chunkSelected;
+        }
+
+        @Override
+        protected void compute() {
+            if (endChunk - firstChunk > 1) {
+                int mid = (firstChunk + endChunk) >>> 1;
+                invokeAll(new CandidateChunkTask(population, candidateCount, chunkCount, firstChunk, mid, m, chunkSelected),
+                          new CandidateChunkTask(population, candidateCount, chunkCount, mid, endChunk, m, chunkSelected));
+                return;
+            }
+
+            int from = chunkStart(firstChunk, chunkCount, candidateCount);
+            int to = chunkStart(firstChunk + 1, chunkCount, candidateCount);
+            computeDistanceRange(population, from, to);
+            if (m > 0) {
+                // Chunk winners go into the chunk's own slice of the merge buffer
+                chunkSelected[firstChunk] = PartialSelection.selectSmallestPositions(
+                        candidateDistance, candidateIndex, from, to, m, mergePosition, from);
+            }
+        }
+    }
+
+    /**
+     * Prepares the adopter lookup structures for the configured {@link DistanceSearchMode}:
+     * every adopter for the full-recompute modes, or only the people who adopted since the
+     * previous update for the incremental distance field.
+     *
+     * @param population the population being simulated
+     */
+    private void prepareDistanceSearch(PopulationStore population) {
+        int[] search = searchIndex;
+        int searchCount;
+
+        if (distanceSearchMode == DistanceSearchMode.INCREMENTAL) {
+            int size = population.size();
+            if (population == distanceFieldPopulation && population.getAdoptionVersion() == distanceFieldVersion) {
+                // Only this engine's adoptions since the last update remain to be applied
+                search = pendingAdopters;
+                searchCount = pendingAdopterCount;
             } else {
-                nonAdopters.add(person);
+                // Adoption states changed outside the engine, so the field starts afresh from every adopter
+                distanceFieldPopulation = population;
+                if (nearestAdopterDistance == null || nearestAdopterDistance.length != size) {
+                    nearestAdopterDistance = new double[size];
+                    exactRadius = new double[size];
+                }
+                Arrays.fill(nearestAdopterDistance, Double.MAX_VALUE);
+                Arrays.fill(exactRadius, Double.POSITIVE_INFINITY);
+                searchCount = listAdopters(population, search);
             }
+            pendingAdopterCount = 0;
+            distanceFieldVersion = population.getAdoptionVersion();
+        } else {
+            searchCount = listAdopters(population, search);
+        }
+
+        boolean useGrid = distanceSearchMode == DistanceSearchMode.SPATIAL_INDEX
+                || (distanceSearchMode == DistanceSearchMode.INCREMENTAL && searchCount > INDEXED_UPDATE_THRESHOLD);
+
+        searchGrid = useGrid ? buildAdopterIndex(population, search, searchCount) : null;
+        searchAdopterCount = 0;
+        if (!useGrid) {
+            // Packed contiguously so the distance kernel streams through them without indirection
+            for (int s = 0; s < searchCount; s++) {
+                searchXs[searchAdopterCount] = population.getXPos(search[s]);
+                searchYs[searchAdopterCount] = population.getYPos(search[s]);
+                searchAdopterCount++;
+            }
+        }
+    }
+
+    private static int listAdopters(PopulationStore population, int[] destination) {
+        int count = 0;
+        for (int i = population.nextAdopter(0); i >= 0; i = population.nextAdopter(i + 1)) {
+            destination[count++] = i;
         }
+        return count;
+    }
 
-        if (nonAdopters.isEmpty() || adopters.isEmpty()) return 0;
+    /**
+     * Fills {@code candidateDistance} for candidates {@code [from, to)} with each one's distance
+     * to the nearest adopter, using the structures from {@link #prepareDistanceSearch}.
+     * Only reads shared state and writes entries owned by the range, so disjoint ranges
+     * may run concurrently.
+     *
+     * @param population the population being simulated
+     * @param from first candidate position, inclusive
+     * @param to last candidate position, exclusive
+     */
+    private void computeDistanceRange(PopulationStore population, int from, int to) {
+        float[] imitationPropensities = population.getImitationPropensities();
+        boolean incremental = distanceSearchMode == DistanceSearchMode.INCREMENTAL;
 
-        List<PersonDistance> nonAdoptersWithDistance = new ArrayList<>();
-        for (Person nonAdopter : nonAdopters) {
-            double minDistance = Double.MAX_VALUE;
-            for (Person adopter : adopters) {
-                double distance = calculateEuclideanDistance(nonAdopter, adopter);
+        for (int c = from; c < to; c++) {
+            int i = candidateIndex[c];
+            double x = population.getXPos(i);
+            double y = population.getYPos(i);
+            double minDistance = incremental ? nearestAdopterDistance[i] : Double.MAX_VALUE;
+            if (pruneToThreshold) {
+                minDistance = prunedNearestDistance(i, x, y, minDistance, imitationPropensities);
+            } else if (searchGrid != null) {
+                // Only an adopter closer than the current field entry can change it
+                double distance = searchGrid.nearestDistance(x, y, minDistance);
+                if (distance < minDistance) {
+                    minDistance = distance;
+                }
+            } else {
+                double distance = DistanceKernel.minDistance(x, y, searchXs, searchYs, 0, searchAdopterCount);
                 minDistance = Math.min(minDistance, distance);
             }
-            nonAdoptersWithDistance.add(new PersonDistance(nonAdopter, minDistance));
+            if (incremental) {
+                nearestAdopterDistance[i] = minDistance;
+            }
+            candidateDistance[c] = rankingKey(minDistance, imitationPropensities, i);
         }
+    }
 
-        Collections.sort(nonAdoptersWithDistance, Comparator.comparingDouble(pd -> pd.distance));
+    /**
+     * Applies this step's adopters to one candidate's distance field entry, searching only as far
+     * as the candidate could still rank among the imitators. A candidate whose search stops short
+     * keeps a field entry above its stop radius, so its key stays above the threshold and it is
+     * correctly passed over; its exact radius records how far the field can be trusted.
+     *
+     * @param i the candidate
+     * @param x the candidate's x-coordinate
+     * @param y the candidate's y-coordinate
+     * @param distance the candidate's current field entry
+     * @param imitationPropensities imitation propensities, or null
+     * @return the updated field entry
+     */
+    private double prunedNearestDistance(int i, double x, double y, double distance, float[] imitationPropensities) {
+        double reach = imitationPropensities == null
+                ? imitationThreshold
+                : imitationThreshold * imitationPropensities[i] * (1 + THRESHOLD_MARGIN);
+        double bound = Math.min(distance, reach);
 
-        int actualImitators = Math.min(numImitators, nonAdoptersWithDistance.size());
-        for (int i = 0; i < actualImitators; i++) {
-            nonAdoptersWithDistance.get(i).person.setHasAdopted(true);
+        if (exactRadius[i] < bound) {
+            // Adopters skipped by earlier pruned searches may lie within the bound, so search them all
+            distance = Math.min(distance, adopterGrid.nearestDistance(x, y, bound));
+            exactRadius[i] = bound;
+        } else if (searchGrid != null) {
+            distance = Math.min(distance, searchGrid.nearestDistance(x, y, bound));
+            exactRadius[i] = bound;
+        } else {
+            distance = Math.min(distance, DistanceKernel.minDistance(x, y, searchXs, searchYs, 0, searchAdopterCount));
         }
+        return distance;
+    }
 
-        return actualImitators;
+    private static double rankingKey(double distance, float[] imitationPropensities, int i) {
+        if (imitationPropensities == null) return distance;
+        // A keener imitator ranks as if proportionally closer; zero propensity ranks last
+        float propensity = imitationPropensities[i];
+        return propensity > 0 ? distance / propensity : Double.MAX_VALUE;
+    }
+
+    /**
+     * Builds a uniform grid index over a set of people, sized to their bounding box.
+     * The returned grid is reused by the next call.
+     *
+     * @param population the population holding the coordinates
+     * @param members indices of the people to index
+     * @param count number of entries of {@code members} in use
+     * @return spatial index containing every member position
+     */
+    private SpatialGrid buildAdopterIndex(PopulationStore population, int[] members, int count) {
+        double minX = Double.MAX_VALUE, maxX = -Double.MAX_VALUE;
+        double minY = Double.MAX_VALUE, maxY = -Double.MAX_VALUE;
+        for (int m = 0; m < count; m++) {
+            double x = population.getXPos(members[m]);
+            double y = population.getYPos(members[m]);
+            minX = Math.min(minX, x);
+            maxX = Math.max(maxX, x);
+            minY = Math.min(minY, y);
+            maxY = Math.max(maxY, y);
+        }
+
+        if (reusableGrid == null) {
+            reusableGrid = new SpatialGrid(new BoundingBox(minX, maxX, minY, maxY), count);
+        } else {
+            reusableGrid.reset(minX, maxX, minY, maxY, count);
+        }
+        SpatialGrid grid = reusableGrid;
+        for (int m = 0; m < count; m++) {
+            grid.insert(population.getXPos(members[m]), population.getYPos(members[m]));
+        }
+        return grid;
+    }
+
+    /**
+     * Rebuilds the dense non-adopter index if it does not describe the population's
+     * current adoption states, for example after a reset or an outside modification.
+     *
+     * @param population the population being simulated
+     */
+    private void ensureNonAdopterIndex(PopulationStore population) {
+        if (population == nonAdopterIndexPopulation && population.getAdoptionVersion() == nonAdopterIndexVersion) {
+            return;
+        }
+
+        int size = population.size();
+        if (population != nonAdopterIndexPopulation || adoptionSteps.length != size) {
+            adoptionSteps = new int[size];
+            Arrays.fill(adoptionSteps, -1);
+        }
+        nonAdopters.rebuild(size, population::hasAdopted);
+        for (int i = 0; i < size; i++) {
+            if (!population.hasAdopted(i)) {
+                adoptionSteps[i] = -1;
+            } else if (adoptionSteps[i] < 0) {
+                // Adopted outside the engine, so the closest known step is the current one
+                adoptionSteps[i] = recordingStep;
+            }
+        }
+        nonAdopterIndexPopulation = population;
+        nonAdopterIndexVersion = population.getAdoptionVersion();
+    }
+
+    /**
+     * Marks a non-adopter as adopted, swap-removes them from the dense non-adopter index and
+     * zeroes their innovation weight if the weight tree is live.
+     *
+     * @param population the population being simulated
+     * @param index the person who adopts
+     */
+    private void adopt(PopulationStore population, int index) {
+        long previousVersion = population.getAdoptionVersion();
+        population.setHasAdopted(index, true);
+        population.setAdoptionStep(index, recordingStep);
+
+        nonAdopters.remove(index);
+        nonAdopterIndexVersion = population.getAdoptionVersion();
+        adoptionSteps[index] = recordingStep;
+        if (population == distanceFieldPopulation && previousVersion == distanceFieldVersion) {
+            pendingAdopters[pendingAdopterCount++] = index;
+            distanceFieldVersion = population.getAdoptionVersion();
+        }
+        if (pruneToThreshold) {
+            adopterGrid.insert(population.getXPos(index), population.getYPos(index));
+        }
+
+        if (population == innovationWeightsPopulation && previousVersion == innovationWeightsVersion
+                && population.getInnovationPropensities() == innovationWeightsSource) {
+            innovationWeights.add(index, -innovationWeightValues[index]);
+            innovationWeightValues[index] = 0.0;
+            innovationWeightsVersion = population.getAdoptionVersion();
+            // Incremental updates accumulate rounding error in the tree; resum it now and then
+            if (++innovationWeightUpdates > population.size()) {
+                rebuildInnovationWeights(population);
+            }
+        }
+    }
+
+    private void ensureCandidateCapacity(int size) {
+        if (candidateIndex.length < size) {
+            candidateIndex = new int[size];
+            candidateDistance = new double[size];
+            selectedIndex = new int[size];
+            searchIndex = new int[size];
+            searchXs = new double[size];
+            searchYs = new double[size];
+            // Copied so adoptions still pending for the distance field are kept
+            pendingAdopters = Arrays.copyOf(pendingAdopters, size);
+            mergePosition = new int[size];
+            mergeDistance = new double[size];
+            mergeIndex = new int[size];
+        }
+    }
+
+    /**
+     * Returns the time step at which each person in a population adopted: 0 for the initial
+     * adopters, the step passed to {@link #performDiffusionStep} for later ones, and -1 for
+     * non-adopters. People adopted outside the engine are credited to the most recent step.
+     *
+     * @param population the population being simulated
+     * @return a new array with one entry per person
+     */
+    public int[] getAdoptionSteps(Population population) {
+        ensureNonAdopterIndex(population);
+        return Arrays.copyOf(adoptionSteps, population.size());
+    }
+
+    /**
+     * Captures the state needed to resume a run from the current point, without disturbing the
+     * run itself. A live innovation weight tree is saved as it stands, rounding error included,
+     * so this run and a resumed one make the same draws from here on.
+     *
+     * @param population the population being simulated
+     * @param timeStep last completed time step
+     * @return a checkpoint sharing no arrays with the population or the engine
+     */
+    public SimulationCheckpoint createCheckpoint(Population population, int timeStep) {
+        ensureNonAdopterIndex(population);
+        double[] weightState = hasCurrentInnovationWeights(population) ? innovationWeights.getState() : null;
+
+        Population copy = new Population(population.getXPositions().clone(), population.getYPositions().clone());
+        BitSet adopted = population.getAdoptionStates();
+        for (int i = adopted.nextSetBit(0); i >= 0; i = adopted.nextSetBit(i + 1)) {
+            copy.setHasAdopted(i, true);
+        }
+        float[] innovation = population.getInnovationPropensities();
+        float[] imitation = population.getImitationPropensities();
+        if (innovation != null || imitation != null) {
+            copy.setPropensities(innovation == null ? null : innovation.clone(),
+                    imitation == null ? null : imitation.clone());
+        }
+
+        long[] seeds = {initialAdoptersRandom.getSeed(), innovatorsRandom.getSeed()};
+        long[] states = {initialAdoptersRandom.getState(), innovatorsRandom.getState()};
+        return new SimulationCheckpoint(timeStep, copy, Arrays.copyOf(adoptionSteps, population.size()),
+                nonAdopters.toArray(), seeds, states, weightState, innovationWeightUpdates);
+    }
+
+    /**
+     * Restores the engine from a checkpoint and returns its population, ready for
+     * {@link #performDiffusionStep} with the step after the checkpoint's. The population is used
+     * directly, so the checkpoint should not be restored twice.
+     *
+     * @param checkpoint a checkpoint from {@link #createCheckpoint}
+     * @return the checkpoint's population
+     * @throws IllegalArgumentException if the checkpoint was not taken from this engine type or
+     *         its engine state does not match its population
+     */
+    public Population restoreCheckpoint(SimulationCheckpoint checkpoint) {
+        long[] seeds = checkpoint.getRandomSeeds();
+        long[] states = checkpoint.getRandomStates();
+        if (seeds.length != 2) {
+            throw new IllegalArgumentException("Checkpoint has " + seeds.length + " random streams, expected 2");
+        }
+        initialAdoptersRandom = new RandomStream(seeds[0]);
+        initialAdoptersRandom.setState(states[0]);
+        innovatorsRandom = new RandomStream(seeds[1]);
+        innovatorsRandom.setState(states[1]);
+
+        Population population = checkpoint.getPopulation();
+        nonAdopters.restore(population.size(), checkpoint.getNonAdopterOrder(), population::hasAdopted);
+        nonAdopterIndexPopulation = population;
+        nonAdopterIndexVersion = population.getAdoptionVersion();
+        adoptionSteps = checkpoint.getAdoptionSteps().clone();
+        recordingStep = checkpoint.getTimeStep();
+
+        // The distance field is rebuilt exactly from the adoption states, while the weight tree
+        // carries rounding from its updates and is restored as saved
+        distanceFieldPopulation = null;
+        innovationWeightsPopulation = null;
+        double[] weightState = checkpoint.getInnovationWeightState();
+        if (weightState != null) {
+            if (population.getInnovationPropensities() == null) {
+                throw new IllegalArgumentException("Checkpoint has innovation weights but no innovation propensities");
+            }
+            loadInnovationWeightValues(population);
+            innovationWeights.setState(weightState);
+            innovationWeightUpdates = checkpoint.getInnovationWeightUpdates();
+        }
+        currentPopulation = population;
+        return population;
     }
 
     @Override
     public void selectNewAdoptersByDistance(List<Person> population, int newAdopters) {
         // Legacy method - kept for interface compatibility
         // This method now only selects by distance (imitators only)
-        selectImitatorsByDistance(population, newAdopters);
+        Population bound = mirror.bind(population);
+        selectImitatorsByDistance(bound, newAdopters);
+        mirror.writeAdoptionStates(bound, population);
     }
 
     @Override
@@ -163,6 +985,13 @@ public class DiffusionSimulationServiceImpl implements DiffusionSimulationServic
         for (Person person : population) {
             person.setHasAdopted(false);
         }
+        currentPopulation = null;
+    }
+
+    @Override
+    public void resetAdoptionStates(Population population) {
+        currentPopulation = population;
+        population.resetAdoptionStates();
     }
 
     @Override
@@ -170,32 +999,91 @@ public class DiffusionSimulationServiceImpl implements DiffusionSimulationServic
         return (int) population.stream().mapToInt(person -> person.hasAdopted() ? 1 : 0).sum();
     }
 
+    @Override
+    public int countAdopters(Population population) {
+        return population.countAdopters();
+    }
+
     @Override
     public int countNonAdopters(List<Person> population) {
         return population.size() - countAdopters(population);
     }
 
+    @Override
+    public int countNonAdopters(Population population) {
+        return population.countNonAdopters();
+    }
+
     @Override
     public boolean isSimulationComplete(List<Person> population) {
         return countNonAdopters(population) == 0;
     }
 
+    @Override
+    public boolean isSimulationComplete(Population population) {
+        return countNonAdopters(population) == 0;
+    }
+
+    @Override
+    public int getAdoptedCount() {
+        return currentPopulation == null ? 0 : currentPopulation.countAdopters();
+    }
+
+    @Override
+    public int getNonAdoptedCount() {
+        return currentPopulation == null ? 0 : currentPopulation.countNonAdopters();
+    }
+
     @Override
     public void setSeed(long seed) {
-        random.setSeed(seed);
+        seedStreams(new RandomStream(seed));
+    }
+
+    private void seedStreams(RandomStream master) {
+        initialAdoptersRandom = master.derive(PhaseStreams.INITIAL_ADOPTERS);
+        innovatorsRandom = master.derive(PhaseStreams.INNOVATORS);
+    }
+
+    public DistanceSearchMode getDistanceSearchMode() {
+        return distanceSearchMode;
+    }
+
+    public void setDistanceSearchMode(DistanceSearchMode distanceSearchMode) {
+        this.distanceSearchMode = distanceSearchMode;
+    }
+
+    public ForkJoinPool getForkJoinPool() {
+        return forkJoinPool;
+    }
+
+    /**
+     * Sets the pool used for the parallel distance phase.
+     *
+     * @param forkJoinPool pool to split large steps across, or null to run sequentially
+     */
+    public void setForkJoinPool(ForkJoinPool forkJoinPool) {
+        this.forkJoinPool = forkJoinPool;
+    }
+
+    public ImitatorSelectionStrategy getImitatorSelectionStrategy() {
+        return imitatorSelectionStrategy;
+    }
+
+    public void setImitatorSelectionStrategy(ImitatorSelectionStrategy imitatorSelectionStrategy) {
+        this.imitatorSelectionStrategy = imitatorSelectionStrategy;
     }
 
     /**
-     * Helper class to associate a person with their distance to the nearest adopter.
-     * Used for distance-based adoption selection.
+     * Helper class to associate a person's index with their distance to the nearest adopter.
+     * Used by the full-sort selection strategy.
      */
     private static class PersonDistance {
-        final Person person;
+        final int index;
         final double distance;
 
-        PersonDistance(Person person, double distance) {
-            this.person = person;
+        PersonDistance(int index, double distance) {
+            this.index = index;
             this.distance = distance;
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,20 @@
+package uk.ac.ucl.service;
+
+/**
+ * Strategy used by the diffusion engine to find each non-adopter's nearest adopter.
+ * All modes produce identical distances and therefore identical adoption results.
+ */
+public enum DistanceSearchMode {
+
+    /** Compares every non-adopter against every adopter: O(non-adopters × adopters) per step. */
+    BRUTE_FORCE,
+
+    /** Indexes adopters in a uniform {@link uk.ac.ucl.util.SpatialGrid}: near-constant time per query. */
+    SPATIAL_INDEX,
+
+    /**
+     * Keeps a per-person nearest-adopter distance field across steps and only compares
+     * non-adopters against people who adopted since the previous step.
+     */
+    INCREMENTAL
+}
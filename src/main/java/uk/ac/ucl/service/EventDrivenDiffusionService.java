@@ -0,0 +1,360 @@
+package uk.ac.ucl.service;
+
+import uk.ac.ucl.model.Person;
+import uk.ac.ucl.model.Population;
+import uk.ac.ucl.model.SimulationParameters;
+import uk.ac.ucl.model.SimulationResult;
+import uk.ac.ucl.util.FenwickTree;
+import uk.ac.ucl.util.NeighbourGraph;
+import uk.ac.ucl.util.RandomStream;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Continuous-time Bass diffusion simulated event by event (the Gillespie algorithm).
+ * Each non-adopter adopts at rate {@code p + q * a / d}, where {@code d} is the number of people
+ * within the neighbourhood radius and {@code a} how many of them have adopted. Rates live in a
+ * {@link FenwickTree}, so drawing the next adopter costs O(log N), and an adoption only updates
+ * the rates of the adopter's neighbours. Work therefore scales with the number of adoptions rather
+ * than with population size times steps, and trajectories are exact in continuous time.
+ * A diffusion step advances the clock by one time unit and processes every event in that interval.
+ */
+public class EventDrivenDiffusionService extends AbstractDiffusionService {
+
+    // Neighbourhood size aimed for when the radius is chosen from the population density
+    private static final int DEFAULT_EXPECTED_NEIGHBOURS = 8;
+    private static final double MIN_DENSITY_RADIUS = 1e-9;
+    // Steps may pass without an event, so the curve cannot be sized from the non-adopter count
+    private static final int INITIAL_CURVE_CAPACITY = 64;
+
+    private final double neighbourhoodRadius;
+    private RandomStream initialAdoptersRandom;
+    private RandomStream eventRandom;
+
+    // Per-population event state, valid while the population's adoption version matches
+    private Population statePopulation;
+    private long stateVersion;
+    private NeighbourGraph graph;
+    private int[] adoptedNeighbours;
+    private double[] rates;
+    private FenwickTree rateTree;
+    private int activeCount;
+    private int updatesSinceRebuild;
+    private double ratesP = Double.NaN;
+    private double ratesQ = Double.NaN;
+
+    private final NonAdopterIndex nonAdopters = new NonAdopterIndex();
+    private double currentTime;
+
+    /**
+     * Creates an event-driven service whose neighbourhood radius is chosen from each population's
+     * density so that a typical person has about eight neighbours.
+     */
+    public EventDrivenDiffusionService() {
+        this(0.0);
+    }
+
+    /**
+     * Creates an event-driven service with a fixed neighbourhood radius.
+     *
+     * @param neighbourhoodRadius distance within which adopters influence a person, in coordinate
+     *                            units; zero or less chooses it from the population density
+     */
+    public EventDrivenDiffusionService(double neighbourhoodRadius) {
+        this.neighbourhoodRadius = neighbourhoodRadius;
+        seedStreams(RandomStream.fromEntropy());
+    }
+
+    @Override
+    public void initializeAdopters(Population population, int k) {
+        setCurrentPopulation(population);
+        currentTime = 0.0;
+        if (population.isEmpty()) return;
+
+        int size = population.size();
+        int actualK = Math.min(k, size);
+        population.resetAdoptionStates();
+
+        nonAdopters.rebuild(size, population::hasAdopted);
+        for (int i = 0; i < actualK; i++) {
+            int chosen = nonAdopters.draw(initialAdoptersRandom);
+            nonAdopters.remove(chosen);
+            population.setHasAdopted(chosen, true);
+        }
+    }
+
+    @Override
+    public SimulationResult performDiffusionStep(Population population, SimulationParameters params, int currentTimeStep) {
+        setCurrentPopulation(population);
+        if (population.isEmpty()) {
+            return new SimulationResult(currentTimeStep, 0, 0, 0, true);
+        }
+
+        int adoptedCount = population.countAdopters();
+        int totalPopulation = population.size();
+        if (adoptedCount == totalPopulation) {
+            return new SimulationResult(currentTimeStep, 0, adoptedCount, totalPopulation, true);
+        }
+
+        ensureState(population, params.getP(), params.getQ());
+        int newAdopters = fireEvents(population, currentTime + 1.0, Integer.MAX_VALUE, null);
+        int finalAdoptedCount = adoptedCount + newAdopters;
+
+        return new SimulationResult(currentTimeStep, newAdopters, finalAdoptedCount, totalPopulation,
+                finalAdoptedCount >= totalPopulation);
+    }
+
+    @Override
+    public int[] runToCompletion(Population population, SimulationParameters params, int maxSteps) {
+        if (maxSteps < 0) {
+            throw new IllegalArgumentException("Maximum steps must be non-negative");
+        }
+
+        initializeAdopters(population, params.getK());
+        int[] curve = new int[(int) Math.min((long) maxSteps + 1, INITIAL_CURVE_CAPACITY)];
+        curve[0] = population.countAdopters();
+        if (population.isEmpty()) return Arrays.copyOf(curve, 1);
+
+        ensureState(population, params.getP(), params.getQ());
+        int steps = 0;
+        // With no positive rate left, no further adoption can ever happen
+        while (steps < maxSteps && population.countNonAdopters() > 0 && activeCount > 0) {
+            fireEvents(population, currentTime + 1.0, Integer.MAX_VALUE, null);
+            if (++steps == curve.length) {
+                curve = Arrays.copyOf(curve, (int) Math.min((long) maxSteps + 1, 2L * steps));
+            }
+            curve[steps] = population.countAdopters();
+        }
+        return Arrays.copyOf(curve, steps + 1);
+    }
+
+    /**
+     * Initializes {@code k} adopters and records the exact continuous time at which each person adopts.
+     *
+     * @param population the population to simulate; its adoption states are reset first
+     * @param params simulation parameters (p, q, k)
+     * @param maxTime time at which to stop
+     * @return adoption time per person: 0 for initial adopters, and positive infinity for people
+     *         who had not adopted by {@code maxTime}
+     */
+    public double[] simulateAdoptionTimes(Population population, SimulationParameters params, double maxTime) {
+        initializeAdopters(population, params.getK());
+        double[] adoptionTimes = new double[population.size()];
+        for (int i = 0; i < adoptionTimes.length; i++) {
+            adoptionTimes[i] = population.hasAdopted(i) ? 0.0 : Double.POSITIVE_INFINITY;
+        }
+        if (population.isEmpty()) return adoptionTimes;
+
+        ensureState(population, params.getP(), params.getQ());
+        fireEvents(population, maxTime, Integer.MAX_VALUE, adoptionTimes);
+        return adoptionTimes;
+    }
+
+    /**
+     * Processes adoption events in time order until the clock would pass {@code endTime} or
+     * {@code maxEvents} people have adopted. Because waiting times are memoryless, discarding the
+     * event that overshoots {@code endTime} leaves the process exact.
+     *
+     * @param population the population being simulated, whose state is current
+     * @param endTime time at which to stop
+     * @param maxEvents maximum number of adoptions to process
+     * @param adoptionTimes if not null, receives each new adopter's adoption time
+     * @return number of people who adopted
+     */
+    private int fireEvents(Population population, double endTime, int maxEvents, double[] adoptionTimes) {
+        int adopted = 0;
+        while (adopted < maxEvents) {
+            if (activeCount == 0) {
+                if (endTime != Double.POSITIVE_INFINITY) currentTime = endTime;
+                break;
+            }
+
+            double total = rateTree.total();
+            double waitingTime = -Math.log(1.0 - eventRandom.nextDouble()) / total;
+            if (currentTime + waitingTime > endTime) {
+                currentTime = endTime;
+                break;
+            }
+            currentTime += waitingTime;
+
+            int next = rateTree.find(eventRandom.nextDouble() * total);
+            if (!(rates[next] > 0)) {
+                // Rounding drift in the tree landed on a zero rate; resum exactly and redraw
+                rateTree.build(rates);
+                updatesSinceRebuild = 0;
+                next = rateTree.find(eventRandom.nextDouble() * rateTree.total());
+            }
+
+            adopt(population, next);
+            if (adoptionTimes != null) {
+                adoptionTimes[next] = currentTime;
+            }
+            adopted++;
+        }
+        return adopted;
+    }
+
+    /**
+     * Marks a person as adopted and updates their neighbours' rates.
+     *
+     * @param population the population being simulated
+     * @param index the person who adopts
+     */
+    private void adopt(Population population, int index) {
+        population.setHasAdopted(index, true);
+        setRate(index, 0.0);
+
+        int[] neighbours = graph.getNeighbours();
+        for (int e = graph.start(index); e < graph.end(index); e++) {
+            int neighbour = neighbours[e];
+            adoptedNeighbours[neighbour]++;
+            if (!population.hasAdopted(neighbour)) {
+                setRate(neighbour, hazard(neighbour));
+            }
+        }
+        stateVersion = population.getAdoptionVersion();
+
+        // Incremental updates accumulate rounding error in the tree; resum it now and then
+        updatesSinceRebuild += 1 + graph.degree(index);
+        if (updatesSinceRebuild > rates.length) {
+            rateTree.build(rates);
+            updatesSinceRebuild = 0;
+        }
+    }
+
+    private void setRate(int index, double rate) {
+        double previous = rates[index];
+        if ((previous > 0) != (rate > 0)) {
+            activeCount += rate > 0 ? 1 : -1;
+        }
+        rateTree.add(index, rate - previous);
+        rates[index] = rate;
+    }
+
+    private double hazard(int index) {
+        int degree = graph.degree(index);
+        double influence = degree == 0 ? 0.0 : adoptedNeighbours[index] / (double) degree;
+        return ratesP + ratesQ * influence;
+    }
+
+    /**
+     * Brings the neighbour graph, adopted-neighbour counts and rates up to date for a population
+     * and parameters: the graph is rebuilt for a new population, counts after any outside change
+     * to adoption states, and rates whenever the counts or coefficients change.
+     *
+     * @param population the population being simulated
+     * @param p innovation coefficient
+     * @param q imitation coefficient
+     */
+    private void ensureState(Population population, double p, double q) {
+        boolean recount = population != statePopulation || population.getAdoptionVersion() != stateVersion;
+        if (population != statePopulation) {
+            graph = NeighbourGraph.withinRadius(population.getXPositions(), population.getYPositions(),
+                    neighbourhoodRadius > 0 ? neighbourhoodRadius : densityRadius(population));
+            int size = population.size();
+            adoptedNeighbours = new int[size];
+            rates = new double[size];
+            rateTree = new FenwickTree(size);
+            statePopulation = population;
+        }
+
+        if (recount) {
+            Arrays.fill(adoptedNeighbours, 0);
+            int[] neighbours = graph.getNeighbours();
+            for (int j = population.getAdoptionStates().nextSetBit(0); j >= 0;
+                 j = population.getAdoptionStates().nextSetBit(j + 1)) {
+                for (int e = graph.start(j); e < graph.end(j); e++) {
+                    adoptedNeighbours[neighbours[e]]++;
+                }
+            }
+            stateVersion = population.getAdoptionVersion();
+        }
+
+        if (recount || p != ratesP || q != ratesQ) {
+            ratesP = p;
+            ratesQ = q;
+            activeCount = 0;
+            for (int i = 0; i < rates.length; i++) {
+                rates[i] = population.hasAdopted(i) ? 0.0 : hazard(i);
+                if (rates[i] > 0) activeCount++;
+            }
+            rateTree.build(rates);
+            updatesSinceRebuild = 0;
+        }
+    }
+
+    /**
+     * Chooses a radius giving about {@link #DEFAULT_EXPECTED_NEIGHBOURS} neighbours per person if the
+     * population were spread evenly over its bounding box, or along its longer side when the box is
+     * flat or nearly so. The radius is always positive, so imitation never silently disappears.
+     */
+    private static double densityRadius(Population population) {
+        double minX = Double.MAX_VALUE, maxX = -Double.MAX_VALUE;
+        double minY = Double.MAX_VALUE, maxY = -Double.MAX_VALUE;
+        for (int i = 0; i < population.size(); i++) {
+            minX = Math.min(minX, population.getXPos(i));
+            maxX = Math.max(maxX, population.getXPos(i));
+            minY = Math.min(minY, population.getYPos(i));
+            maxY = Math.max(maxY, population.getYPos(i));
+        }
+        int size = population.size();
+        double areaRadius = Math.sqrt(DEFAULT_EXPECTED_NEIGHBOURS * (maxX - minX) * (maxY - minY) / (Math.PI * size));
+        // Collinear people have no area; spread them evenly along the line instead
+        double lineRadius = DEFAULT_EXPECTED_NEIGHBOURS * Math.max(maxX - minX, maxY - minY) / (2.0 * size);
+        double radius = Math.max(areaRadius, lineRadius);
+        // Every person at the same place: any positive radius links them all
+        return radius > 0 ? radius : MIN_DENSITY_RADIUS;
+    }
+
+    /**
+     * Adopts the given number of people by processing events under pure local influence
+     * ({@code p = 0, q = 1}), so people with the largest share of adopted neighbours are the
+     * most likely to be chosen.
+     *
+     * @param population the population to select from
+     * @param newAdopters number of new adopters to select
+     */
+    @Override
+    public void selectNewAdoptersByDistance(List<Person> population, int newAdopters) {
+        if (population.isEmpty()) return;
+
+        Population bound = bind(population);
+        ensureState(bound, 0.0, 1.0);
+        fireEvents(bound, Double.POSITIVE_INFINITY, newAdopters, null);
+        writeAdoptionStates(bound, population);
+    }
+
+    @Override
+    public void resetAdoptionStates(List<Person> population) {
+        super.resetAdoptionStates(population);
+        currentTime = 0.0;
+    }
+
+    @Override
+    public void resetAdoptionStates(Population population) {
+        super.resetAdoptionStates(population);
+        currentTime = 0.0;
+    }
+
+    @Override
+    public void setSeed(long seed) {
+        seedStreams(new RandomStream(seed));
+    }
+
+    private void seedStreams(RandomStream master) {
+        initialAdoptersRandom = master.derive(PhaseStreams.INITIAL_ADOPTERS);
+        // Innovation and imitation events are drawn from one stream, kept under the innovators' key
+        eventRandom = master.derive(PhaseStreams.INNOVATORS);
+    }
+
+    /** @return continuous simulation time since the adopters were initialized */
+    public double getCurrentTime() {
+        return currentTime;
+    }
+
+    /** @return the neighbour graph of the population most recently simulated, or null before the first step */
+    public NeighbourGraph getNeighbourGraph() {
+        return graph;
+    }
+}
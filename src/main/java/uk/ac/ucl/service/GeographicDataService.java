@@ -2,6 +2,7 @@ package uk.ac.ucl.service;
 
 import uk.ac.ucl.geo.GeoJsonData;
 import uk.ac.ucl.model.Person;
+import uk.ac.ucl.model.Population;
 import uk.ac.ucl.util.BoundingBox;
 
 import java.io.IOException;
@@ -40,6 +41,18 @@ public interface GeographicDataService {
      */
     List<Person> generateRandomPointsInCountry(GeoJsonData geoData, BoundingBox bounds, int count);
 
+    /**
+     * Generates random population points within country boundaries into an array-backed population.
+     * Draws the same points as {@link #generateRandomPointsInCountry} for the same random state,
+     * and the same points for a given seed regardless of how many threads take part.
+     *
+     * @param geoData the country's geographic data
+     * @param bounds the bounding box for the country
+     * @param count number of points to generate
+     * @return population positioned within the country, with no adopters
+     */
+    Population generatePopulationInCountry(GeoJsonData geoData, BoundingBox bounds, int count);
+
     /**
      * Tests whether a coordinate point lies within the country boundaries.
      *
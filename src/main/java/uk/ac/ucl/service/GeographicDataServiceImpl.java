@@ -3,14 +3,16 @@ package uk.ac.ucl.service;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import uk.ac.ucl.geo.GeoJsonData;
 import uk.ac.ucl.model.Person;
+import uk.ac.ucl.model.Population;
 import uk.ac.ucl.util.BoundingBox;
+import uk.ac.ucl.util.RandomStream;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
-import java.util.Random;
+import java.util.stream.IntStream;
 
 public class GeographicDataServiceImpl implements GeographicDataService {
 
@@ -21,8 +23,11 @@ public class GeographicDataServiceImpl implements GeographicDataService {
         "Australia", "/uk/ac/ucl/geo/australia_geo.json"
     );
 
+    // Points are sampled in fixed-size chunks, each from its own derived random stream
+    private static final int GENERATION_CHUNK_SIZE = 4096;
+
     private final ObjectMapper objectMapper = new ObjectMapper();
-    private final Random random = new Random();
+    private RandomStream random = RandomStream.fromEntropy();
 
     @Override
     public GeoJsonData loadCountryData(String countryName) throws IOException {
@@ -71,21 +76,68 @@ public class GeographicDataServiceImpl implements GeographicDataService {
 
     @Override
     public List<Person> generateRandomPointsInCountry(GeoJsonData geoData, BoundingBox bounds, int count) {
-        List<Person> people = new ArrayList<>();
+        return generatePopulationInCountry(geoData, bounds, count).toPeople();
+    }
+
+    @Override
+    public Population generatePopulationInCountry(GeoJsonData geoData, BoundingBox bounds, int count) {
+        double[] xs = new double[count];
+        double[] ys = new double[count];
+        int chunkCount = (count + GENERATION_CHUNK_SIZE - 1) / GENERATION_CHUNK_SIZE;
+        int[] chunkGenerated = new int[chunkCount];
+
+        // Chunks sample in parallel, but each draws from a stream fixed by the seed and the
+        // chunk number, so the points are the same however the chunks are scheduled
+        long generationSeed = random.nextLong();
+        IntStream.range(0, chunkCount).parallel().forEach(chunk -> {
+            int from = chunk * GENERATION_CHUNK_SIZE;
+            int to = Math.min(count, from + GENERATION_CHUNK_SIZE);
+            RandomStream chunkRandom = new RandomStream(RandomStream.deriveSeed(generationSeed, chunk));
+            chunkGenerated[chunk] = samplePointsInCountry(geoData, bounds, chunkRandom, xs, ys, from, to);
+        });
+
+        // Close any gaps left by chunks that ran out of attempts
+        int generated = 0;
+        for (int chunk = 0; chunk < chunkCount; chunk++) {
+            int from = chunk * GENERATION_CHUNK_SIZE;
+            if (generated != from) {
+                System.arraycopy(xs, from, xs, generated, chunkGenerated[chunk]);
+                System.arraycopy(ys, from, ys, generated, chunkGenerated[chunk]);
+            }
+            generated += chunkGenerated[chunk];
+        }
+
+        if (generated < count) {
+            return new Population(Arrays.copyOf(xs, generated), Arrays.copyOf(ys, generated));
+        }
+        return new Population(xs, ys);
+    }
+
+    /**
+     * Fills positions {@code [from, to)} with points inside the country by rejection sampling,
+     * giving up after ten attempts per point.
+     *
+     * @return number of points generated, stored from {@code from} onwards
+     */
+    private int samplePointsInCountry(GeoJsonData geoData, BoundingBox bounds, RandomStream chunkRandom,
+                                      double[] xs, double[] ys, int from, int to) {
+        int count = to - from;
+        int generated = 0;
         int attempts = 0;
         int maxAttempts = count * 10;
 
-        while (people.size() < count && attempts < maxAttempts) {
-            double randomLon = bounds.getMinLon() + random.nextDouble() * bounds.getLonRange();
-            double randomLat = bounds.getMinLat() + random.nextDouble() * bounds.getLatRange();
+        while (generated < count && attempts < maxAttempts) {
+            double randomLon = bounds.getMinLon() + chunkRandom.nextDouble() * bounds.getLonRange();
+            double randomLat = bounds.getMinLat() + chunkRandom.nextDouble() * bounds.getLatRange();
 
             if (isPointInCountry(randomLon, randomLat, geoData)) {
-                people.add(new Person(randomLon, randomLat));
+                xs[from + generated] = randomLon;
+                ys[from + generated] = randomLat;
+                generated++;
             }
             attempts++;
         }
-
-        return people;
+        return generated;
     }
 
     @Override
@@ -126,6 +178,6 @@ public class GeographicDataServiceImpl implements GeographicDataService {
     }
 
     public void setSeed(long seed) {
-        random.setSeed(seed);
+        random = new RandomStream(seed);
     }
 }
\ No newline at end of file
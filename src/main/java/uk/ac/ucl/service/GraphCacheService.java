@@ -0,0 +1,277 @@
+package uk.ac.ucl.service;
+
+import uk.ac.ucl.util.NeighbourGraph;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Supplier;
+
+/**
+ * Service for caching built neighbour graphs on disk between runs.
+ * A graph is keyed by the country, population size and generation seed that produced its
+ * population, plus a graph kind such as {@code "knn8"}. The header also records a
+ * {@link #coordinateChecksum checksum} of the coordinates the graph was built from, so a population
+ * regenerated differently under the same key misses and is rebuilt. Files hold the versioned header
+ * followed by the graph's compressed sparse row arrays. Files are read through memory-mapped
+ * {@link FileChannel} windows, so loading a large graph is a bulk copy rather than a parse, and
+ * written through the channel from a staging buffer, so no mapping of the temporary file outlives
+ * the write and blocks moving it into place. A missing, stale or damaged file is treated as a cache miss and rebuilt.
+ * A null country or graph kind is a key of its own, and is written to the file name as {@code unknown}.
+ */
+public class GraphCacheService {
+
+    private static final String DEFAULT_DIRECTORY = "cache";
+    private static final int MAGIC = 0x4D444E47; // "MDNG"
+    static final int FORMAT_VERSION = 2;
+
+    // Mapped regions are limited to 2 GB, so large arrays are read through windows of this many ints;
+    // writes are staged through a buffer of this many bytes
+    private static final int MAP_WINDOW_INTS = 1 << 28;
+    private static final int WRITE_BUFFER_BYTES = 1 << 20;
+
+    private final Path directory;
+
+    /**
+     * Creates a cache in the default {@code cache} directory.
+     */
+    public GraphCacheService() {
+        this(Paths.get(DEFAULT_DIRECTORY));
+    }
+
+    /**
+     * Creates a cache in the given directory, which is created on first write.
+     *
+     * @param directory directory holding the cache files
+     */
+    public GraphCacheService(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Returns the cached graph for a key, building and caching it on a miss.
+     * A failure to write the cache is reported but does not lose the built graph.
+     *
+     * @param country country the population was generated in
+     * @param populationSize number of people in the population
+     * @param generationSeed seed the population was generated with
+     * @param coordinateChecksum {@link #coordinateChecksum} of the population's coordinates
+     * @param graphKind description of how the graph was built, such as {@code "knn8"}
+     * @param builder builds the graph on a miss
+     * @return the cached or newly built graph
+     */
+    public NeighbourGraph loadOrBuild(String country, int populationSize, long generationSeed,
+                                      long coordinateChecksum, String graphKind, Supplier<NeighbourGraph> builder) {
+        try {
+            NeighbourGraph cached = load(country, populationSize, generationSeed, coordinateChecksum, graphKind);
+            if (cached != null) return cached;
+        } catch (IOException e) {
+            System.err.println("Error reading graph cache: " + e.getMessage());
+        }
+
+        NeighbourGraph graph = builder.get();
+        try {
+            store(country, populationSize, generationSeed, coordinateChecksum, graphKind, graph);
+        } catch (IOException e) {
+            System.err.println("Error writing graph cache: " + e.getMessage());
+        }
+        return graph;
+    }
+
+    /**
+     * Loads a cached graph.
+     *
+     * @param country country the population was generated in
+     * @param populationSize number of people in the population
+     * @param generationSeed seed the population was generated with
+     * @param coordinateChecksum {@link #coordinateChecksum} of the population's coordinates
+     * @param graphKind description of how the graph was built
+     * @return the cached graph, or null if there is no usable file for the key and coordinates
+     * @throws IOException if the file exists but cannot be read
+     */
+    public NeighbourGraph load(String country, int populationSize, long generationSeed, long coordinateChecksum,
+                               String graphKind) throws IOException {
+        Path file = cacheFile(country, populationSize, generationSeed, graphKind);
+        if (!Files.exists(file)) return null;
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            ByteBuffer expected = header(country, populationSize, generationSeed, coordinateChecksum, graphKind);
+            int headerSize = expected.remaining();
+            if (fileSize < headerSize + 2L * Integer.BYTES) return null;
+
+            // Keys are compared in full, so a sanitised file name shared by two keys is never confused
+            ByteBuffer actual = channel.map(FileChannel.MapMode.READ_ONLY, 0, headerSize + 2L * Integer.BYTES);
+            ByteBuffer actualHeader = actual.duplicate();
+            actualHeader.limit(headerSize);
+            if (!actualHeader.equals(expected)) return null;
+
+            actual.position(headerSize);
+            int nodes = actual.getInt();
+            int edges = actual.getInt();
+            long arraysStart = headerSize + 2L * Integer.BYTES;
+            if (nodes != populationSize || edges < 0
+                    || fileSize != arraysStart + ((long) nodes + 1 + edges) * Integer.BYTES) {
+                return null;
+            }
+
+            int[] offsets = new int[nodes + 1];
+            int[] neighbours = new int[edges];
+            readInts(channel, arraysStart, offsets);
+            readInts(channel, arraysStart + (long) offsets.length * Integer.BYTES, neighbours);
+            if (offsets[0] != 0 || offsets[nodes] != edges) return null;
+            return new NeighbourGraph(offsets, neighbours);
+        }
+    }
+
+    /**
+     * Writes a graph to the cache, replacing any existing file for the key. The file is written
+     * under a temporary name and moved into place, so a concurrent reader never sees it half written.
+     *
+     * @param country country the population was generated in
+     * @param populationSize number of people in the population
+     * @param generationSeed seed the population was generated with
+     * @param coordinateChecksum {@link #coordinateChecksum} of the coordinates the graph was built from
+     * @param graphKind description of how the graph was built
+     * @param graph the graph to cache
+     * @throws IllegalArgumentException if the graph does not have one list per person
+     * @throws IOException if the file cannot be written
+     */
+    public void store(String country, int populationSize, long generationSeed, long coordinateChecksum,
+                      String graphKind, NeighbourGraph graph) throws IOException {
+        if (graph.size() != populationSize) {
+            throw new IllegalArgumentException("Graph has " + graph.size() + " nodes for a population of "
+                    + populationSize);
+        }
+        Files.createDirectories(directory);
+        Path file = cacheFile(country, populationSize, generationSeed, graphKind);
+        Path temporary = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+
+        try {
+            ByteBuffer header = header(country, populationSize, generationSeed, coordinateChecksum, graphKind);
+            int[] offsets = graph.getOffsets();
+            int[] neighbours = graph.getNeighbours();
+            ByteBuffer prefix = ByteBuffer.allocate(header.remaining() + 2 * Integer.BYTES);
+            prefix.put(header).putInt(graph.size()).putInt(graph.edgeCount()).flip();
+            ByteBuffer writeBuffer = ByteBuffer.allocateDirect(WRITE_BUFFER_BYTES);
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                while (prefix.hasRemaining()) {
+                    channel.write(prefix);
+                }
+                writeInts(channel, writeBuffer, offsets);
+                writeInts(channel, writeBuffer, neighbours);
+                channel.force(false);
+            }
+            try {
+                Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    /**
+     * Resolves the cache file for a key.
+     *
+     * @param country country the population was generated in
+     * @param populationSize number of people in the population
+     * @param generationSeed seed the population was generated with
+     * @param graphKind description of how the graph was built
+     * @return path of the cache file, which may not exist
+     */
+    public Path cacheFile(String country, int populationSize, long generationSeed, String graphKind) {
+        String filename = String.format("graph_%s_%d_%d_%s.bin", sanitizeFilename(country), populationSize,
+                generationSeed, sanitizeFilename(graphKind));
+        return directory.resolve(filename);
+    }
+
+    /**
+     * Computes a checksum of a population's coordinates, identifying the positions a graph was built
+     * from. Any change to a coordinate, or to the order of the people, changes it with overwhelming
+     * likelihood.
+     *
+     * @param xs x-coordinates, one per person
+     * @param ys y-coordinates, one per person
+     * @return the checksum
+     */
+    public static long coordinateChecksum(double[] xs, double[] ys) {
+        long checksum = xs.length;
+        for (int i = 0; i < xs.length; i++) {
+            checksum = mix(checksum ^ Double.doubleToLongBits(xs[i]));
+            checksum = mix(checksum ^ Double.doubleToLongBits(ys[i]));
+        }
+        return checksum;
+    }
+
+    private static long mix(long value) {
+        value *= 0x9E3779B97F4A7C15L;
+        return value ^ (value >>> 32);
+    }
+
+    private static ByteBuffer header(String country, int populationSize, long generationSeed, long coordinateChecksum,
+                                     String graphKind) {
+        byte[] countryBytes = keyBytes(country);
+        byte[] kindBytes = keyBytes(graphKind);
+        ByteBuffer header = ByteBuffer.allocate(4 * Integer.BYTES + 2 * Long.BYTES + Integer.BYTES
+                + (countryBytes == null ? 0 : countryBytes.length) + (kindBytes == null ? 0 : kindBytes.length));
+        header.putInt(MAGIC).putInt(FORMAT_VERSION).putLong(generationSeed).putInt(populationSize)
+                .putLong(coordinateChecksum);
+        putKey(header, countryBytes);
+        putKey(header, kindBytes);
+        header.flip();
+        return header;
+    }
+
+    private static byte[] keyBytes(String key) {
+        return key == null ? null : key.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /** Writes a length-prefixed key part; a null key has length -1, so it never matches a real string. */
+    private static void putKey(ByteBuffer header, byte[] key) {
+        if (key == null) {
+            header.putInt(-1);
+        } else {
+            header.putInt(key.length).put(key);
+        }
+    }
+
+    private static void readInts(FileChannel channel, long position, int[] values) throws IOException {
+        for (int from = 0; from < values.length; from += MAP_WINDOW_INTS) {
+            int length = Math.min(MAP_WINDOW_INTS, values.length - from);
+            MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY,
+                    position + (long) from * Integer.BYTES, (long) length * Integer.BYTES);
+            window.asIntBuffer().get(values, from, length);
+        }
+    }
+
+    private static void writeInts(FileChannel channel, ByteBuffer writeBuffer, int[] values) throws IOException {
+        int perBuffer = WRITE_BUFFER_BYTES / Integer.BYTES;
+        for (int from = 0; from < values.length; from += perBuffer) {
+            int length = Math.min(perBuffer, values.length - from);
+            writeBuffer.clear();
+            writeBuffer.asIntBuffer().put(values, from, length);
+            writeBuffer.limit(length * Integer.BYTES);
+            while (writeBuffer.hasRemaining()) {
+                channel.write(writeBuffer);
+            }
+        }
+    }
+
+    private static String sanitizeFilename(String filename) {
+        if (filename == null) {
+            return "unknown";
+        }
+        return filename.replaceAll("[^a-zA-Z0-9._-]", "_").toLowerCase();
+    }
+}
@@ -0,0 +1,305 @@
+package uk.ac.ucl.service;
+
+import uk.ac.ucl.model.Person;
+import uk.ac.ucl.model.Population;
+import uk.ac.ucl.model.SimulationParameters;
+import uk.ac.ucl.model.SimulationResult;
+import uk.ac.ucl.util.InfluenceGrid;
+import uk.ac.ucl.util.PartialSelection;
+import uk.ac.ucl.util.RandomStream;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Bass diffusion with a gravity-style imitation kernel.
+ * Every adopter influences every non-adopter with weight {@code exp(-d / lambda)}. A non-adopter
+ * imitates with probability {@code q * S_A / S_M}, where {@code S_A} sums the kernel over adopters
+ * and {@code S_M} over the whole population, so this is the Bass imitation rate {@code q * A / M}
+ * with both counts weighted by distance; as {@code lambda} grows it becomes exactly {@code q * A / M}.
+ * Innovators are drawn as in the stepped engine, {@code ceil(p * N(t))} at random from the non-adopters.
+ * Kernel sums come from an {@link InfluenceGrid}, so a step costs {@code O(N + G log G)} for
+ * {@code G} grid cells rather than {@code O(N * A)}.
+ */
+public class GravityDiffusionService extends AbstractDiffusionService {
+
+    // Decay length, as a fraction of the population's bounding-box diagonal, when none is given
+    private static final double DEFAULT_DECAY_FRACTION = 0.05;
+    private static final int MAX_CELLS_PER_AXIS = 256;
+    // Relative slack on the cell width check, for rounding in the grid's cell arithmetic
+    private static final double CELL_WIDTH_TOLERANCE = 1e-9;
+
+    private final double decayLength;
+    private RandomStream initialAdoptersRandom;
+    private RandomStream innovatorsRandom;
+    private RandomStream imitatorsRandom;
+
+    // Grid and whole-population kernel sums for the population most recently simulated
+    private Population gridPopulation;
+    private InfluenceGrid grid;
+    private double[] populationInfluence = new double[0];
+
+    // Non-adopters, valid while the population's adoption version matches the one recorded here
+    private final NonAdopterIndex nonAdopters = new NonAdopterIndex();
+    private long nonAdopterIndexVersion;
+
+    // Imitators chosen before any of the step's adoptions are applied
+    private int[] pendingImitators = new int[0];
+
+    /**
+     * Creates a gravity service whose decay length is 5% of each population's bounding-box diagonal.
+     */
+    public GravityDiffusionService() {
+        this(0.0);
+    }
+
+    /**
+     * Creates a gravity service with a fixed decay length.
+     *
+     * @param decayLength kernel decay length {@code lambda}, in coordinate units; zero or less
+     *                    chooses it from the population's extent. Simulating a population fails
+     *                    with an {@link IllegalArgumentException} if its extent needs grid cells
+     *                    wider than {@code lambda / 2}, about {@code extent / 127} at most
+     */
+    public GravityDiffusionService(double decayLength) {
+        this.decayLength = decayLength;
+        seedStreams(RandomStream.fromEntropy());
+    }
+
+    @Override
+    public void initializeAdopters(Population population, int k) {
+        setCurrentPopulation(population);
+        if (population.isEmpty()) return;
+
+        population.resetAdoptionStates();
+        ensureState(population);
+
+        int actualK = Math.min(k, nonAdopters.size());
+        for (int i = 0; i < actualK; i++) {
+            adopt(population, nonAdopters.draw(initialAdoptersRandom));
+        }
+    }
+
+    @Override
+    public SimulationResult performDiffusionStep(Population population, SimulationParameters params, int currentTimeStep) {
+        setCurrentPopulation(population);
+        if (population.isEmpty()) {
+            return new SimulationResult(currentTimeStep, 0, 0, 0, true);
+        }
+
+        int adoptedCount = population.countAdopters();
+        int totalPopulation = population.size();
+        if (adoptedCount == totalPopulation) {
+            return new SimulationResult(currentTimeStep, 0, adoptedCount, totalPopulation, true);
+        }
+
+        int newAdopters = advance(population, params);
+        int finalAdoptedCount = adoptedCount + newAdopters;
+
+        return new SimulationResult(currentTimeStep, newAdopters, finalAdoptedCount, totalPopulation,
+                finalAdoptedCount >= totalPopulation);
+    }
+
+    @Override
+    public int[] runToCompletion(Population population, SimulationParameters params, int maxSteps) {
+        if (maxSteps < 0) {
+            throw new IllegalArgumentException("Maximum steps must be non-negative");
+        }
+
+        initializeAdopters(population, params.getK());
+        int[] curve = new int[Math.min(maxSteps, population.countNonAdopters()) + 1];
+        curve[0] = population.countAdopters();
+
+        // Imitation is random, so a step adopting nobody does not end the run; it ends once no
+        // innovators are due and there is nobody to imitate
+        int steps = 0;
+        while (steps < maxSteps && population.countNonAdopters() > 0
+                && (params.getP() > 0 || (params.getQ() > 0 && population.countAdopters() > 0))) {
+            advance(population, params);
+            if (++steps == curve.length) {
+                curve = Arrays.copyOf(curve, (int) Math.min((long) maxSteps + 1, 2L * steps));
+            }
+            curve[steps] = population.countAdopters();
+        }
+        return Arrays.copyOf(curve, steps + 1);
+    }
+
+    /**
+     * Performs one step: decides imitation for every non-adopter from the adopters at the start
+     * of the step, then draws innovators at random, then applies the imitators not already
+     * taken as innovators.
+     *
+     * @param population the population to advance; has at least one non-adopter
+     * @param params simulation parameters
+     * @return number of people who adopted
+     */
+    private int advance(Population population, SimulationParameters params) {
+        ensureState(population);
+        int nonAdoptedCount = nonAdopters.size();
+
+        int imitatorCount = 0;
+        if (params.getQ() > 0 && population.countAdopters() > 0) {
+            computeAdopterInfluence(population);
+            if (pendingImitators.length < nonAdoptedCount) {
+                pendingImitators = new int[nonAdoptedCount];
+            }
+            for (int n = 0; n < nonAdoptedCount; n++) {
+                int person = nonAdopters.get(n);
+                if (imitatorsRandom.nextDouble() < params.getQ() * influenceShare(population, person)) {
+                    pendingImitators[imitatorCount++] = person;
+                }
+            }
+        }
+
+        int innovators = Math.min((int) Math.ceil(params.getP() * nonAdoptedCount), nonAdoptedCount);
+        for (int i = 0; i < innovators; i++) {
+            adopt(population, nonAdopters.draw(innovatorsRandom));
+        }
+
+        for (int i = 0; i < imitatorCount; i++) {
+            if (!population.hasAdopted(pendingImitators[i])) {
+                adopt(population, pendingImitators[i]);
+            }
+        }
+        return nonAdoptedCount - nonAdopters.size();
+    }
+
+    /**
+     * Spreads the current adopters onto the grid and convolves them with the kernel.
+     */
+    private void computeAdopterInfluence(Population population) {
+        grid.clear();
+        for (int i = population.getAdoptionStates().nextSetBit(0); i >= 0;
+             i = population.getAdoptionStates().nextSetBit(i + 1)) {
+            grid.deposit(population.getXPos(i), population.getYPos(i), 1.0);
+        }
+        grid.convolve();
+    }
+
+    /**
+     * Returns a person's distance-weighted share of adopters, {@code S_A / S_M}, from the most
+     * recent {@link #computeAdopterInfluence}.
+     */
+    private double influenceShare(Population population, int person) {
+        double total = populationInfluence[person];
+        if (!(total > 0)) return 0.0;
+        return Math.min(1.0, grid.sample(population.getXPos(person), population.getYPos(person)) / total);
+    }
+
+    private void adopt(Population population, int index) {
+        population.setHasAdopted(index, true);
+
+        nonAdopters.remove(index);
+        nonAdopterIndexVersion = population.getAdoptionVersion();
+    }
+
+    /**
+     * Builds the grid and whole-population kernel sums for a new population, and rebuilds the
+     * non-adopter index after any outside change to adoption states.
+     *
+     * @param population the population being simulated
+     */
+    private void ensureState(Population population) {
+        boolean newPopulation = population != gridPopulation;
+        if (!newPopulation && population.getAdoptionVersion() == nonAdopterIndexVersion) return;
+
+        if (newPopulation) {
+            buildGrid(population);
+        }
+        nonAdopters.rebuild(population.size(), population::hasAdopted);
+        nonAdopterIndexVersion = population.getAdoptionVersion();
+    }
+
+    private void buildGrid(Population population) {
+        double minX = Double.MAX_VALUE, maxX = -Double.MAX_VALUE;
+        double minY = Double.MAX_VALUE, maxY = -Double.MAX_VALUE;
+        for (int i = 0; i < population.size(); i++) {
+            minX = Math.min(minX, population.getXPos(i));
+            maxX = Math.max(maxX, population.getXPos(i));
+            minY = Math.min(minY, population.getYPos(i));
+            maxY = Math.max(maxY, population.getYPos(i));
+        }
+        double lambda = decayLength;
+        if (!(lambda > 0)) {
+            lambda = DEFAULT_DECAY_FRACTION * Math.hypot(maxX - minX, maxY - minY);
+            if (!(lambda > 0)) lambda = 1.0;
+        }
+        InfluenceGrid candidate = new InfluenceGrid(minX, maxX, minY, maxY, lambda, MAX_CELLS_PER_AXIS);
+        // Cells wider than half the decay length blur the kernel, so a short decay over a wide
+        // region is refused rather than silently smoothed out
+        double cell = Math.max(candidate.getCellWidth(), candidate.getCellHeight());
+        if (cell > lambda / 2.0 * (1 + CELL_WIDTH_TOLERANCE)) {
+            throw new IllegalArgumentException("Decay length " + lambda + " is too short for the population's extent: "
+                    + "grid cells would be " + cell + " wide, more than half the decay length");
+        }
+        grid = candidate;
+
+        // Everyone's kernel sum over the whole population is fixed, so it is computed once
+        for (int i = 0; i < population.size(); i++) {
+            grid.deposit(population.getXPos(i), population.getYPos(i), 1.0);
+        }
+        grid.convolve();
+        if (populationInfluence.length < population.size()) {
+            populationInfluence = new double[population.size()];
+        }
+        for (int i = 0; i < population.size(); i++) {
+            populationInfluence[i] = grid.sample(population.getXPos(i), population.getYPos(i));
+        }
+        gridPopulation = population;
+    }
+
+    /**
+     * Adopts the non-adopters with the largest distance-weighted share of adopters, ties broken by index.
+     *
+     * @param population the population to select from
+     * @param newAdopters number of new adopters to select
+     */
+    @Override
+    public void selectNewAdoptersByDistance(List<Person> population, int newAdopters) {
+        if (population.isEmpty() || newAdopters <= 0) return;
+
+        Population bound = bind(population);
+        setCurrentPopulation(bound);
+        ensureState(bound);
+        if (bound.countAdopters() == 0) return;
+
+        computeAdopterInfluence(bound);
+        int count = nonAdopters.size();
+        int[] candidates = nonAdopters.toArray();
+        double[] keys = new double[count];
+        for (int c = 0; c < count; c++) {
+            keys[c] = -influenceShare(bound, candidates[c]);
+        }
+        int[] selected = new int[Math.min(newAdopters, count)];
+        int selectedCount = PartialSelection.selectSmallest(keys, candidates, count, selected.length, selected);
+        for (int i = 0; i < selectedCount; i++) {
+            adopt(bound, selected[i]);
+        }
+        writeAdoptionStates(bound, population);
+    }
+
+    @Override
+    public void setSeed(long seed) {
+        seedStreams(new RandomStream(seed));
+    }
+
+    private void seedStreams(RandomStream master) {
+        initialAdoptersRandom = master.derive(PhaseStreams.INITIAL_ADOPTERS);
+        innovatorsRandom = master.derive(PhaseStreams.INNOVATORS);
+        imitatorsRandom = master.derive(PhaseStreams.IMITATORS);
+    }
+
+    /**
+     * Returns a person's current distance-weighted share of adopters, the factor multiplying
+     * {@code q} in their imitation probability.
+     *
+     * @param population the population
+     * @param person index of the person
+     * @return share in {@code [0, 1]}
+     */
+    public double getInfluenceShare(Population population, int person) {
+        ensureState(population);
+        computeAdopterInfluence(population);
+        return influenceShare(population, person);
+    }
+}
@@ -0,0 +1,729 @@
+package uk.ac.ucl.service;
+
+import uk.ac.ucl.model.Person;
+import uk.ac.ucl.model.Population;
+import uk.ac.ucl.model.SimulationParameters;
+import uk.ac.ucl.model.SimulationResult;
+import uk.ac.ucl.util.BoundingBox;
+import uk.ac.ucl.util.FenwickTree;
+import uk.ac.ucl.util.PartialSelection;
+import uk.ac.ucl.util.RandomStream;
+import uk.ac.ucl.util.SpatialGrid;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Stepped Bass diffusion that resolves individuals only where the outcome is in doubt.
+ * The population's bounding box is covered by a grid of cells holding about 256 people each by
+ * default, and every cell keeps its adopter count. A cell is saturated when it and each occupied
+ * neighbour are at least 90% adopted, on the front when it has
+ * non-adopters and adopters in its 3x3 block without being saturated, and dormant otherwise.
+ * <p>
+ * Each step takes the innovator and imitator counts of {@link DiffusionSimulationServiceImpl} from
+ * the global counts, so the adoption curve is the same. Innovators are drawn at random from all
+ * non-adopters. Imitators are split between the saturated cells and the front in proportion to
+ * their mean-field Bass imitation rates, {@code N_c * A_b / M_b} summed over their cells, where
+ * {@code N_c} is the cell's non-adopters and {@code A_b / M_b} the adopted fraction of its 3x3
+ * block. Each saturated cell adopts its share of the saturated part at random. The front's part
+ * goes to the non-adopters closest to an adopter at the start of the step, found by searching
+ * outwards from the front a few cells at a time, so they are the people the agent engine would
+ * choose; anything the front cannot supply is taken from the saturated cells. Saturated interiors
+ * and dormant regions cost nothing per person, which is where large runs that spread from a few
+ * seeds spend most of their time.
+ * <p>
+ * Propensities weigh in as they do in the agent engine. Innovators are drawn in proportion to
+ * innovation propensity, and front imitators are ranked by distance divided by imitation
+ * propensity. In saturated cells, {@code N_c} becomes the sum of the non-adopters' imitation
+ * propensities, and a cell's share is drawn in proportion to them.
+ * <p>
+ * {@link #setAggregationMode} switches between this and the pure agent engine; the mode may be
+ * changed between any two steps of a run.
+ */
+public class HybridDiffusionService extends AbstractDiffusionService {
+
+    private static final int DEFAULT_PEOPLE_PER_CELL = 256;
+    private static final int MAX_CELLS_PER_AXIS = 1024;
+    private static final double SATURATION_THRESHOLD = 0.9;
+    // Relative slack on the front search's key bound, far above the rounding error of distance / propensity
+    private static final double KEY_BOUND_MARGIN = 1e-9;
+
+    // Cell states for the step in progress
+    private static final byte DORMANT = 0;
+    private static final byte FRONT = 1;
+    private static final byte SATURATED = 2;
+
+    private final int peoplePerCell;
+    private final DiffusionSimulationServiceImpl agentEngine = new DiffusionSimulationServiceImpl();
+    private AggregationMode aggregationMode = AggregationMode.HYBRID;
+    private RandomStream innovatorsRandom;
+    private RandomStream imitatorsRandom;
+
+    // Grid for the population most recently simulated
+    private Population gridPopulation;
+    private double minX;
+    private double minY;
+    private double cellWidth;
+    private double cellHeight;
+    private int cols;
+    private int rows;
+    private int[] cellOf = new int[0];
+
+    // People grouped by cell, each cell's non-adopters first, and each person's slot in the grouping
+    private int[] cellStart = new int[1];
+    private int[] cellMembers = new int[0];
+    private int[] memberSlot = new int[0];
+    private int[] cellNonAdopters = new int[0];
+
+    // Non-adopters, valid while the population's adoption version matches the one recorded here
+    private final NonAdopterIndex nonAdopters = new NonAdopterIndex();
+    private long indexVersion;
+
+    // Innovation propensities of the non-adopters (zero once adopted), valid with the index above
+    private float[] innovationWeightsSource;
+    private double[] innovationWeightValues = new double[0];
+    private FenwickTree innovationWeights = new FenwickTree(0);
+    private int innovationWeightUpdates;
+    private float[] imitationPropensitiesSource;
+    private double maxImitationPropensity;
+
+    // Per-step scratch
+    private byte[] cellState = new byte[0];
+    private boolean[] cellIndexed = new boolean[0];
+    private int[] adopterPrefix = new int[1];
+    private int[] candidatePrefix = new int[1];
+    private double[] cellWeight = new double[0];
+    private int[] cellShare = new int[0];
+    private int[] candidateIds = new int[0];
+    private double[] candidateKeys = new double[0];
+    private int[] selected = new int[0];
+    private SpatialGrid adopterGrid;
+    private int frontCellCount;
+    private int saturatedCellCount;
+    private double frontWeight;
+    private double saturatedWeight;
+
+    /**
+     * Creates a hybrid service with about 256 people per grid cell.
+     */
+    public HybridDiffusionService() {
+        this(DEFAULT_PEOPLE_PER_CELL);
+    }
+
+    /**
+     * Creates a hybrid service.
+     *
+     * @param peoplePerCell target number of people per grid cell; at least 1
+     * @throws IllegalArgumentException if peoplePerCell is less than 1
+     */
+    public HybridDiffusionService(int peoplePerCell) {
+        if (peoplePerCell < 1) {
+            throw new IllegalArgumentException("People per cell must be at least 1");
+        }
+        this.peoplePerCell = peoplePerCell;
+        seedStreams(RandomStream.fromEntropy());
+    }
+
+    @Override
+    public void initializeAdopters(List<Person> population, int k) {
+        agentEngine.initializeAdopters(population, k);
+    }
+
+    @Override
+    public void initializeAdopters(Population population, int k) {
+        setCurrentPopulation(population);
+        agentEngine.initializeAdopters(population, k);
+    }
+
+    @Override
+    public SimulationResult performDiffusionStep(Population population, SimulationParameters params, int currentTimeStep) {
+        setCurrentPopulation(population);
+        if (aggregationMode == AggregationMode.AGENTS) {
+            return agentEngine.performDiffusionStep(population, params, currentTimeStep);
+        }
+        if (population.isEmpty()) {
+            return new SimulationResult(currentTimeStep, 0, 0, 0, true);
+        }
+
+        int adoptedCount = population.countAdopters();
+        int totalPopulation = population.size();
+        if (adoptedCount == totalPopulation) {
+            return new SimulationResult(currentTimeStep, 0, adoptedCount, totalPopulation, true);
+        }
+
+        int newAdopters = advance(population, params);
+        int finalAdoptedCount = adoptedCount + newAdopters;
+
+        return new SimulationResult(currentTimeStep, newAdopters, finalAdoptedCount, totalPopulation,
+                finalAdoptedCount >= totalPopulation);
+    }
+
+    @Override
+    public int[] runToCompletion(Population population, SimulationParameters params, int maxSteps) {
+        setCurrentPopulation(population);
+        if (aggregationMode == AggregationMode.AGENTS) {
+            return agentEngine.runToCompletion(population, params, maxSteps);
+        }
+        if (maxSteps < 0) {
+            throw new IllegalArgumentException("Maximum steps must be non-negative");
+        }
+
+        initializeAdopters(population, params.getK());
+        int[] curve = new int[Math.min(maxSteps, population.countNonAdopters()) + 1];
+        curve[0] = population.countAdopters();
+
+        int steps = 0;
+        while (steps < maxSteps && population.countNonAdopters() > 0) {
+            // Step sizes depend only on the counts, so a step that adopts no one never will again
+            if (advance(population, params) == 0) break;
+            curve[++steps] = population.countAdopters();
+        }
+        return steps + 1 == curve.length ? curve : Arrays.copyOf(curve, steps + 1);
+    }
+
+    /**
+     * Performs one hybrid step on a population with at least one non-adopter.
+     *
+     * @return number of people who adopted in this step
+     */
+    private int advance(Population population, SimulationParameters params) {
+        ensureState(population);
+        int adoptedCount = population.countAdopters();
+        int nonAdoptedCount = nonAdopters.size();
+        int totalPopulation = population.size();
+
+        // The agent engine's step sizes, so the curve matches it
+        int innovators = (int) Math.ceil(params.getP() * nonAdoptedCount);
+        int imitators = (int) Math.ceil(params.getQ() * nonAdoptedCount * adoptedCount / (double) totalPopulation);
+        innovators = Math.min(innovators, nonAdoptedCount);
+        imitators = Math.min(imitators, nonAdoptedCount - innovators);
+
+        int newAdopters = selectInnovators(population, innovators);
+        if (imitators > 0) {
+            newAdopters += imitate(population, imitators);
+        }
+        return newAdopters;
+    }
+
+    /**
+     * Adopts {@code count} innovators at random, in proportion to innovation propensity when the
+     * population has propensities; people with zero propensity are never drawn, so fewer may be
+     * adopted than requested.
+     *
+     * @return number adopted
+     */
+    private int selectInnovators(Population population, int count) {
+        if (innovationWeightsSource == null) {
+            for (int i = 0; i < count; i++) {
+                adopt(population, nonAdopters.draw(innovatorsRandom));
+            }
+            return count;
+        }
+
+        int adopted = 0;
+        while (adopted < count && nonAdopters.size() > 0) {
+            double total = innovationWeights.total();
+            if (!(total > 0)) break;
+
+            int person = innovationWeights.find(innovatorsRandom.nextDouble() * total);
+            if (population.hasAdopted(person) || innovationWeightValues[person] == 0) {
+                // Rounding drift in the tree landed on a zero weight; resum exactly and redraw
+                rebuildInnovationWeights(population);
+                continue;
+            }
+            adopt(population, person);
+            adopted++;
+        }
+        return adopted;
+    }
+
+    /**
+     * Adopts {@code m} imitators, split between the front and the saturated cells by their
+     * mean-field rates. The front's part is the closest non-adopters elsewhere; the saturated
+     * cells supply the rest, by mean-field share.
+     *
+     * @return number adopted
+     */
+    private int imitate(Population population, int m) {
+        int saturatedNonAdopters = classifyCells();
+        double totalWeight = saturatedWeight + frontWeight;
+        int toSaturated = totalWeight > 0
+                ? Math.min(saturatedNonAdopters, (int) Math.round(m * saturatedWeight / totalWeight)) : 0;
+
+        // Closest people are chosen from the adopters at the start of the step, as in the agent
+        // engine, before anyone in a saturated cell adopts
+        int chosen = selectClosest(population, m - toSaturated);
+        for (int i = 0; i < chosen; i++) {
+            adopt(population, selected[i]);
+        }
+
+        toSaturated = Math.min(saturatedNonAdopters, m - chosen);
+        if (toSaturated > 0) {
+            apportionSaturated(toSaturated);
+            for (int c = 0; c < cellNonAdopters.length; c++) {
+                if (cellState[c] == SATURATED && cellShare[c] > 0) {
+                    adoptInCell(population, c, cellShare[c]);
+                }
+            }
+        }
+        return chosen + toSaturated;
+    }
+
+    /**
+     * Sets each cell's state and, for saturated and front cells, its mean-field imitation rate,
+     * and totals the rates of each kind.
+     *
+     * @return number of non-adopters in saturated cells
+     */
+    private int classifyCells() {
+        int saturatedNonAdopters = 0;
+        frontCellCount = 0;
+        saturatedCellCount = 0;
+        frontWeight = 0.0;
+        saturatedWeight = 0.0;
+        for (int row = 0; row < rows; row++) {
+            for (int col = 0; col < cols; col++) {
+                int c = row * cols + col;
+                cellState[c] = DORMANT;
+                if (cellNonAdopters[c] == 0) continue;
+
+                long blockAdopters = 0;
+                long blockSize = 0;
+                boolean saturated = true;
+                for (int r = Math.max(0, row - 1); r <= Math.min(rows - 1, row + 1); r++) {
+                    for (int k = Math.max(0, col - 1); k <= Math.min(cols - 1, col + 1); k++) {
+                        int n = r * cols + k;
+                        int size = cellStart[n + 1] - cellStart[n];
+                        if (size == 0) continue;
+                        int adopters = size - cellNonAdopters[n];
+                        blockAdopters += adopters;
+                        blockSize += size;
+                        if (adopters < SATURATION_THRESHOLD * size) saturated = false;
+                    }
+                }
+                if (saturated) {
+                    cellState[c] = SATURATED;
+                    cellWeight[c] = imitationMass(c) * blockAdopters / blockSize;
+                    saturatedWeight += cellWeight[c];
+                    saturatedNonAdopters += cellNonAdopters[c];
+                    saturatedCellCount++;
+                } else if (blockAdopters > 0) {
+                    cellState[c] = FRONT;
+                    cellWeight[c] = imitationMass(c) * blockAdopters / blockSize;
+                    frontWeight += cellWeight[c];
+                    frontCellCount++;
+                }
+            }
+        }
+        return saturatedNonAdopters;
+    }
+
+    /** @return the cell's non-adopters, or the sum of their imitation propensities if there are any */
+    private double imitationMass(int cell) {
+        if (imitationPropensitiesSource == null) return cellNonAdopters[cell];
+        double mass = 0.0;
+        for (int s = cellStart[cell], end = s + cellNonAdopters[cell]; s < end; s++) {
+            mass += imitationPropensitiesSource[cellMembers[s]];
+        }
+        return mass;
+    }
+
+    /**
+     * Splits {@code m} imitators over the saturated cells in proportion to their mean-field rates,
+     * by largest remainder, without giving any cell more than its non-adopters.
+     *
+     * @param m number of imitators, at most the saturated cells' non-adopters
+     */
+    private void apportionSaturated(int m) {
+        int cellCount = cellNonAdopters.length;
+        double totalWeight = 0.0;
+        for (int c = 0; c < cellCount; c++) {
+            if (cellState[c] == SATURATED) totalWeight += cellWeight[c];
+        }
+
+        int assigned = 0;
+        int candidates = 0;
+        ensureCandidateCapacity(cellCount);
+        for (int c = 0; c < cellCount; c++) {
+            cellShare[c] = 0;
+            if (cellState[c] != SATURATED) continue;
+            double exact = totalWeight > 0 ? m * cellWeight[c] / totalWeight : 0.0;
+            cellShare[c] = Math.min(cellNonAdopters[c], (int) exact);
+            assigned += cellShare[c];
+            if (cellShare[c] < cellNonAdopters[c]) {
+                candidateKeys[candidates] = -(exact - cellShare[c]);
+                candidateIds[candidates++] = c;
+            }
+        }
+
+        // Remainders go to the largest fractions; later rounds, only needed when shares were
+        // capped, go to the cells with the most non-adopters left
+        while (assigned < m) {
+            int chosen = PartialSelection.selectSmallest(candidateKeys, candidateIds, candidates, m - assigned, selected);
+            for (int i = 0; i < chosen; i++) {
+                cellShare[selected[i]]++;
+            }
+            assigned += chosen;
+            candidates = 0;
+            for (int c = 0; c < cellCount; c++) {
+                if (cellState[c] == SATURATED && cellShare[c] < cellNonAdopters[c]) {
+                    candidateKeys[candidates] = -(cellNonAdopters[c] - cellShare[c]);
+                    candidateIds[candidates++] = c;
+                }
+            }
+        }
+    }
+
+    /**
+     * Selects the {@code count} non-adopters outside saturated cells that are closest to an
+     * adopter, ties going to the lower index, into {@code selected}. With imitation propensities
+     * they are ranked by distance divided by propensity instead, as in the agent engine.
+     * Each candidate is compared with the adopters within {@code radius} cells of its own, which
+     * finds its true distance whenever that is at most {@code radius} cell sides, and any
+     * non-adopter without an adopter that near is further away than that. Only keys that no such
+     * non-adopter could beat are trusted, so the radius starts at one cell and doubles until
+     * enough are found.
+     *
+     * @param count number to select
+     * @return number selected
+     */
+    private int selectClosest(Population population, int count) {
+        if (count == 0) return 0;
+        int cellCount = cellNonAdopters.length;
+        fillPrefixSums(false);
+        for (int radius = 1; ; radius *= 2) {
+            boolean everything = radius >= Math.max(cols, rows);
+            double bound = everything ? Double.POSITIVE_INFINITY : radius * Math.min(cellWidth, cellHeight);
+            double keyBound = bound;
+            if (imitationPropensitiesSource != null && !everything) {
+                keyBound = maxImitationPropensity > 0
+                        ? bound / (maxImitationPropensity * (1 + KEY_BOUND_MARGIN)) : Double.NEGATIVE_INFINITY;
+            }
+
+            // Candidate cells have an adopter within the radius; their neighbourhoods are indexed
+            int candidates = 0;
+            for (int c = 0; c < cellCount; c++) {
+                cellIndexed[c] = cellNonAdopters[c] > 0 && cellState[c] != SATURATED
+                        && blockSum(adopterPrefix, c, radius) > 0;
+                if (cellIndexed[c]) candidates += cellNonAdopters[c];
+            }
+            if (candidates == 0) return 0;
+            fillPrefixSums(true);
+            int indexedAdopters = 0;
+            for (int c = 0; c < cellCount; c++) {
+                cellIndexed[c] = blockSum(candidatePrefix, c, radius) > 0;
+                if (cellIndexed[c]) indexedAdopters += cellStart[c + 1] - cellStart[c] - cellNonAdopters[c];
+            }
+
+            double maxX = minX + cols * cellWidth;
+            double maxY = minY + rows * cellHeight;
+            if (adopterGrid == null) {
+                adopterGrid = new SpatialGrid(new BoundingBox(minX, maxX, minY, maxY), indexedAdopters);
+            } else {
+                adopterGrid.reset(minX, maxX, minY, maxY, indexedAdopters);
+            }
+            for (int c = 0; c < cellCount; c++) {
+                if (!cellIndexed[c]) continue;
+                for (int s = cellStart[c] + cellNonAdopters[c]; s < cellStart[c + 1]; s++) {
+                    int person = cellMembers[s];
+                    adopterGrid.insert(population.getXPos(person), population.getYPos(person));
+                }
+            }
+
+            ensureCandidateCapacity(candidates);
+            int n = 0;
+            for (int c = 0; c < cellCount; c++) {
+                if (cellNonAdopters[c] == 0 || cellState[c] == SATURATED || blockSum(adopterPrefix, c, radius) == 0) {
+                    continue;
+                }
+                for (int s = cellStart[c], end = s + cellNonAdopters[c]; s < end; s++) {
+                    int person = cellMembers[s];
+                    double distance = adopterGrid.nearestDistance(population.getXPos(person), population.getYPos(person));
+                    double key = rankingKey(distance, person);
+                    if (key <= keyBound) {
+                        candidateIds[n] = person;
+                        candidateKeys[n++] = key;
+                    }
+                }
+            }
+            if (n >= count || everything) {
+                return PartialSelection.selectSmallest(candidateKeys, candidateIds, n, count, selected);
+            }
+        }
+    }
+
+    /**
+     * Fills 2D prefix sums over the grid of adopters per cell, or of cells marked in
+     * {@code cellIndexed}.
+     */
+    private void fillPrefixSums(boolean markedCells) {
+        int[] prefix = markedCells ? candidatePrefix : adopterPrefix;
+        for (int row = 0; row < rows; row++) {
+            int rowSum = 0;
+            for (int col = 0; col < cols; col++) {
+                int c = row * cols + col;
+                rowSum += markedCells ? (cellIndexed[c] ? 1 : 0) : cellStart[c + 1] - cellStart[c] - cellNonAdopters[c];
+                prefix[(row + 1) * (cols + 1) + col + 1] = prefix[row * (cols + 1) + col + 1] + rowSum;
+            }
+        }
+    }
+
+    /** @return the prefix-summed total over the cells within {@code radius} cells of a cell */
+    private int blockSum(int[] prefix, int cell, int radius) {
+        int row = cell / cols;
+        int col = cell % cols;
+        int r0 = Math.max(0, row - radius), r1 = Math.min(rows, row + radius + 1);
+        int c0 = Math.max(0, col - radius), c1 = Math.min(cols, col + radius + 1);
+        return prefix[r1 * (cols + 1) + c1] - prefix[r0 * (cols + 1) + c1]
+                - prefix[r1 * (cols + 1) + c0] + prefix[r0 * (cols + 1) + c0];
+    }
+
+    private double rankingKey(double distance, int person) {
+        if (imitationPropensitiesSource == null) return distance;
+        // A keener imitator ranks as if proportionally closer; zero propensity ranks last
+        float propensity = imitationPropensitiesSource[person];
+        return propensity > 0 ? distance / propensity : Double.MAX_VALUE;
+    }
+
+    /**
+     * Adopts {@code count} of a cell's non-adopters at random, in proportion to imitation
+     * propensity when the population has propensities. Weighted draws without replacement take
+     * the smallest of {@code E / w}, with {@code E} exponential, so people with zero propensity
+     * come last.
+     */
+    private void adoptInCell(Population population, int cell, int count) {
+        if (imitationPropensitiesSource == null) {
+            for (int i = 0; i < count; i++) {
+                adopt(population, cellMembers[cellStart[cell] + imitatorsRandom.nextInt(cellNonAdopters[cell])]);
+            }
+            return;
+        }
+
+        int members = cellNonAdopters[cell];
+        ensureCandidateCapacity(members);
+        for (int i = 0; i < members; i++) {
+            int person = cellMembers[cellStart[cell] + i];
+            float propensity = imitationPropensitiesSource[person];
+            candidateIds[i] = person;
+            candidateKeys[i] = propensity > 0 ? -Math.log(1.0 - imitatorsRandom.nextDouble()) / propensity
+                    : Double.MAX_VALUE;
+        }
+        int chosen = PartialSelection.selectSmallest(candidateKeys, candidateIds, members, count, selected);
+        for (int i = 0; i < chosen; i++) {
+            adopt(population, selected[i]);
+        }
+    }
+
+    private void adopt(Population population, int index) {
+        population.setHasAdopted(index, true);
+
+        nonAdopters.remove(index);
+
+        // Move the person from the cell's non-adopters to the front of its adopters
+        int cell = cellOf[index];
+        int slot = memberSlot[index];
+        int lastSlot = cellStart[cell] + --cellNonAdopters[cell];
+        int other = cellMembers[lastSlot];
+        cellMembers[slot] = other;
+        memberSlot[other] = slot;
+        cellMembers[lastSlot] = index;
+        memberSlot[index] = lastSlot;
+        indexVersion = population.getAdoptionVersion();
+
+        if (innovationWeightsSource != null) {
+            innovationWeights.add(index, -innovationWeightValues[index]);
+            innovationWeightValues[index] = 0.0;
+            // Incremental updates accumulate rounding error in the tree; resum it now and then
+            if (++innovationWeightUpdates > population.size()) {
+                rebuildInnovationWeights(population);
+            }
+        }
+    }
+
+    /**
+     * Builds the grid for a new population, and rebuilds the non-adopter index, cell groupings and
+     * innovation weights after any outside change to adoption states, such as steps run in agent
+     * mode, or to propensities.
+     */
+    private void ensureState(Population population) {
+        boolean newPopulation = population != gridPopulation;
+        if (!newPopulation && population.getAdoptionVersion() == indexVersion
+                && population.getInnovationPropensities() == innovationWeightsSource
+                && population.getImitationPropensities() == imitationPropensitiesSource) {
+            return;
+        }
+
+        int size = population.size();
+        if (newPopulation) {
+            buildGrid(population);
+        }
+
+        nonAdopters.rebuild(size, population::hasAdopted);
+        int cellCount = cellNonAdopters.length;
+        Arrays.fill(cellNonAdopters, 0);
+        for (int i = 0; i < size; i++) {
+            if (!population.hasAdopted(i)) cellNonAdopters[cellOf[i]]++;
+        }
+        // Fill each cell's non-adopters forwards from its start and adopters on from there
+        int[] nextNonAdopter = new int[cellCount];
+        int[] nextAdopter = new int[cellCount];
+        for (int c = 0; c < cellCount; c++) {
+            nextNonAdopter[c] = cellStart[c];
+            nextAdopter[c] = cellStart[c] + cellNonAdopters[c];
+        }
+        for (int i = 0; i < size; i++) {
+            int c = cellOf[i];
+            int slot = population.hasAdopted(i) ? nextAdopter[c]++ : nextNonAdopter[c]++;
+            cellMembers[slot] = i;
+            memberSlot[i] = slot;
+        }
+        indexVersion = population.getAdoptionVersion();
+
+        innovationWeightsSource = population.getInnovationPropensities();
+        if (innovationWeightsSource != null) {
+            rebuildInnovationWeights(population);
+        }
+        imitationPropensitiesSource = population.getImitationPropensities();
+        maxImitationPropensity = 0.0;
+        if (imitationPropensitiesSource != null) {
+            for (float propensity : imitationPropensitiesSource) {
+                maxImitationPropensity = Math.max(maxImitationPropensity, propensity);
+            }
+        }
+    }
+
+    private void rebuildInnovationWeights(Population population) {
+        int size = population.size();
+        if (innovationWeightValues.length != size) {
+            innovationWeightValues = new double[size];
+            innovationWeights = new FenwickTree(size);
+        }
+        for (int i = 0; i < size; i++) {
+            innovationWeightValues[i] = population.hasAdopted(i) ? 0.0 : innovationWeightsSource[i];
+        }
+        innovationWeights.build(innovationWeightValues);
+        innovationWeightUpdates = 0;
+    }
+
+    private void buildGrid(Population population) {
+        int size = population.size();
+        double maxX = -Double.MAX_VALUE, maxY = -Double.MAX_VALUE;
+        minX = Double.MAX_VALUE;
+        minY = Double.MAX_VALUE;
+        for (int i = 0; i < size; i++) {
+            minX = Math.min(minX, population.getXPos(i));
+            maxX = Math.max(maxX, population.getXPos(i));
+            minY = Math.min(minY, population.getYPos(i));
+            maxY = Math.max(maxY, population.getYPos(i));
+        }
+        double width = maxX - minX;
+        double height = maxY - minY;
+        int targetCells = Math.max(1, size / peoplePerCell);
+        if (width > 0 && height > 0) {
+            cols = (int) Math.round(Math.sqrt(targetCells * width / height));
+            rows = (int) Math.round(Math.sqrt(targetCells * height / width));
+        } else {
+            cols = width > 0 ? targetCells : 1;
+            rows = height > 0 ? targetCells : 1;
+        }
+        cols = Math.max(1, Math.min(MAX_CELLS_PER_AXIS, cols));
+        rows = Math.max(1, Math.min(MAX_CELLS_PER_AXIS, rows));
+        cellWidth = width > 0 ? width / cols : 1.0;
+        cellHeight = height > 0 ? height / rows : 1.0;
+
+        int cellCount = cols * rows;
+        cellStart = new int[cellCount + 1];
+        cellNonAdopters = new int[cellCount];
+        cellState = new byte[cellCount];
+        cellIndexed = new boolean[cellCount];
+        adopterPrefix = new int[(rows + 1) * (cols + 1)];
+        candidatePrefix = new int[(rows + 1) * (cols + 1)];
+        cellWeight = new double[cellCount];
+        cellShare = new int[cellCount];
+        if (cellOf.length < size) {
+            cellOf = new int[size];
+            cellMembers = new int[size];
+            memberSlot = new int[size];
+        }
+        for (int i = 0; i < size; i++) {
+            int col = Math.min(cols - 1, (int) ((population.getXPos(i) - minX) / cellWidth));
+            int row = Math.min(rows - 1, (int) ((population.getYPos(i) - minY) / cellHeight));
+            cellOf[i] = row * cols + col;
+            cellStart[cellOf[i] + 1]++;
+        }
+        for (int c = 0; c < cellCount; c++) {
+            cellStart[c + 1] += cellStart[c];
+        }
+        gridPopulation = population;
+    }
+
+    private void ensureCandidateCapacity(int size) {
+        if (candidateIds.length < size) {
+            candidateIds = new int[size];
+            candidateKeys = new double[size];
+            selected = new int[size];
+        }
+    }
+
+    @Override
+    public void selectNewAdoptersByDistance(List<Person> population, int newAdopters) {
+        agentEngine.selectNewAdoptersByDistance(population, newAdopters);
+    }
+
+    @Override
+    public int getAdoptedCount() {
+        // Initial adopters of a list are chosen by the agent engine, which then holds the counts
+        return getCurrentPopulation() == null ? agentEngine.getAdoptedCount() : super.getAdoptedCount();
+    }
+
+    @Override
+    public int getNonAdoptedCount() {
+        return getCurrentPopulation() == null ? agentEngine.getNonAdoptedCount() : super.getNonAdoptedCount();
+    }
+
+    /**
+     * Sets the random seed for reproducible results. In agent mode the results then match
+     * {@link DiffusionSimulationServiceImpl} with the same seed.
+     *
+     * @param seed the random seed value
+     */
+    @Override
+    public void setSeed(long seed) {
+        agentEngine.setSeed(seed);
+        seedStreams(new RandomStream(seed));
+    }
+
+    private void seedStreams(RandomStream master) {
+        innovatorsRandom = master.derive(PhaseStreams.INNOVATORS);
+        imitatorsRandom = master.derive(PhaseStreams.IMITATORS);
+    }
+
+    public AggregationMode getAggregationMode() {
+        return aggregationMode;
+    }
+
+    /**
+     * Switches between hybrid and pure agent steps. Adoption states always live in the population,
+     * so the mode can change between any two steps of a run.
+     *
+     * @param aggregationMode the mode for subsequent steps
+     */
+    public void setAggregationMode(AggregationMode aggregationMode) {
+        this.aggregationMode = aggregationMode;
+    }
+
+    /** @return number of grid cells over the population most recently stepped in hybrid mode */
+    public int getCellCount() {
+        return cellNonAdopters.length;
+    }
+
+    /** @return number of cells resolved person by person in the most recent hybrid imitation phase */
+    public int getFrontCellCount() {
+        return frontCellCount;
+    }
+
+    /** @return number of cells that adopted as aggregate counts in the most recent hybrid imitation phase */
+    public int getSaturatedCellCount() {
+        return saturatedCellCount;
+    }
+}
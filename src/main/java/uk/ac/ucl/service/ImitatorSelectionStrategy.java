@@ -0,0 +1,17 @@
+package uk.ac.ucl.service;
+
+/**
+ * How the diffusion engine picks the non-adopters closest to existing adopters.
+ * Both strategies select the same people; ties in distance go to the earlier person.
+ */
+public enum ImitatorSelectionStrategy {
+
+    /** Wraps every non-adopter with its distance and sorts the whole list: O(N log N) per step. */
+    FULL_SORT,
+
+    /**
+     * Keeps only the closest candidates in a bounded heap over primitive distance and index
+     * arrays: O(N log m) per step for m imitators, with no per-person allocation.
+     */
+    BOUNDED_HEAP
+}
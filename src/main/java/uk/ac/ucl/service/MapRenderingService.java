@@ -3,6 +3,7 @@ package uk.ac.ucl.service;
 import javafx.scene.canvas.GraphicsContext;
 import uk.ac.ucl.geo.GeoJsonData;
 import uk.ac.ucl.model.Person;
+import uk.ac.ucl.model.PopulationStore;
 import uk.ac.ucl.model.RenderingConfig;
 import uk.ac.ucl.util.BoundingBox;
 
@@ -53,6 +54,20 @@ public interface MapRenderingService {
     void renderPopulation(GraphicsContext gc, List<Person> people, BoundingBox bounds,
                          double canvasWidth, double canvasHeight, RenderingConfig config);
 
+    /**
+     * Renders an on-heap or off-heap population store on the canvas with adoption status
+     * visualization, reading positions in place.
+     *
+     * @param gc graphics context for drawing
+     * @param population population to render
+     * @param bounds bounding box for coordinate transformation
+     * @param canvasWidth width of the canvas
+     * @param canvasHeight height of the canvas
+     * @param config rendering configuration
+     */
+    void renderPopulation(GraphicsContext gc, PopulationStore population, BoundingBox bounds,
+                         double canvasWidth, double canvasHeight, RenderingConfig config);
+
     /**
      * Clears the canvas and applies background color.
      *
@@ -3,6 +3,7 @@ package uk.ac.ucl.service;
 import javafx.scene.canvas.GraphicsContext;
 import uk.ac.ucl.geo.GeoJsonData;
 import uk.ac.ucl.model.Person;
+import uk.ac.ucl.model.PopulationStore;
 import uk.ac.ucl.model.RenderingConfig;
 import uk.ac.ucl.util.BoundingBox;
 import uk.ac.ucl.util.CoordinateTransformation;
@@ -92,6 +93,30 @@ public class MapRenderingServiceImpl implements MapRenderingService {
         }
     }
 
+    @Override
+    public void renderPopulation(GraphicsContext gc, PopulationStore population, BoundingBox bounds,
+                                double canvasWidth, double canvasHeight, RenderingConfig config) {
+        if (gc == null || population == null || population.isEmpty() || bounds == null) return;
+
+        CoordinateTransformation transform = CoordinateTransformation.create(
+            bounds, canvasWidth, canvasHeight, config.getMapPadding());
+
+        double dotRadius = config.getPersonDotRadius();
+
+        for (int i = 0; i < population.size(); i++) {
+            double x = transform.transformX(population.getXPos(i));
+            double y = transform.transformY(population.getYPos(i));
+
+            if (population.hasAdopted(i)) {
+                gc.setFill(config.getAdoptedPersonColor());
+            } else {
+                gc.setFill(config.getNonAdoptedPersonColor());
+            }
+
+            gc.fillOval(x - dotRadius, y - dotRadius, dotRadius * 2, dotRadius * 2);
+        }
+    }
+
     @Override
     public void clearCanvas(GraphicsContext gc, double width, double height, RenderingConfig config) {
         if (gc == null || config == null) return;
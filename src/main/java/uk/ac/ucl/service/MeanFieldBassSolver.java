@@ -0,0 +1,106 @@
+package uk.ac.ucl.service;
+
+import uk.ac.ucl.model.SimulationParameters;
+
+import java.util.Arrays;
+
+/**
+ * Mean-field solutions of the Bass diffusion model, for screening parameters and checking agent runs.
+ * The closed form solves the continuous equation {@code dF/dt = (p + qF)(1 - F)}. The discrete
+ * recurrence applies the agent engine's own {@code ceil(p*N)} and {@code ceil(q*N*A/M)} step rules
+ * to counts alone; since space only decides who adopts and never how many, it reproduces the
+ * engine's cumulative adopter curve exactly, in time proportional to the number of steps.
+ */
+public final class MeanFieldBassSolver {
+
+    private MeanFieldBassSolver() {
+    }
+
+    /**
+     * Evaluates the continuous Bass solution.
+     *
+     * @param p innovation coefficient
+     * @param q imitation coefficient
+     * @param initialFraction fraction of the population adopted at time zero
+     * @param t time since the start
+     * @return fraction of the population adopted at time {@code t}
+     */
+    public static double adoptedFraction(double p, double q, double initialFraction, double t) {
+        if (p == 0) {
+            // Pure imitation is logistic growth, and stays at zero without initial adopters
+            if (initialFraction == 0 || q == 0) return initialFraction;
+            return 1.0 / (1.0 + (1.0 - initialFraction) / initialFraction * Math.exp(-q * t));
+        }
+
+        // Standard Bass solution shifted in time so that F(0) equals the initial fraction
+        double shifted = p * (1.0 - initialFraction) / (p + q * initialFraction) * Math.exp(-(p + q) * t);
+        return (p - p * shifted) / (p + q * shifted);
+    }
+
+    /**
+     * Returns the expected cumulative adopters from the continuous Bass solution, starting from
+     * {@code k} adopters, sampled at each whole step.
+     *
+     * @param params simulation parameters (p, q, k)
+     * @param totalPopulation population size
+     * @param steps number of steps to sample
+     * @return expected cumulative adopters at steps {@code 0..steps}
+     */
+    public static double[] closedFormCurve(SimulationParameters params, int totalPopulation, int steps) {
+        double[] curve = new double[steps + 1];
+        if (totalPopulation == 0) return curve;
+
+        double initialFraction = Math.min(params.getK(), totalPopulation) / (double) totalPopulation;
+        for (int t = 0; t <= steps; t++) {
+            curve[t] = totalPopulation * adoptedFraction(params.getP(), params.getQ(), initialFraction, t);
+        }
+        return curve;
+    }
+
+    /**
+     * Runs the engine's step rules on counts alone. Stops on the same conditions as
+     * {@link DiffusionSimulationService#runToCompletion}, so for any population of the given
+     * size and any seed the result equals that method's curve.
+     *
+     * @param params simulation parameters (p, q, k)
+     * @param totalPopulation population size
+     * @param maxSteps maximum number of steps to run
+     * @return cumulative adopters after initialization (index 0) and after each step run
+     * @throws IllegalArgumentException if maxSteps is negative
+     */
+    public static int[] discreteCurve(SimulationParameters params, int totalPopulation, int maxSteps) {
+        if (maxSteps < 0) {
+            throw new IllegalArgumentException("Maximum steps must be non-negative");
+        }
+
+        int adopted = Math.min(params.getK(), totalPopulation);
+        int[] curve = new int[Math.min(maxSteps, totalPopulation - adopted) + 1];
+        curve[0] = adopted;
+
+        int steps = 0;
+        while (steps < maxSteps && adopted < totalPopulation) {
+            int next = nextAdopted(params.getP(), params.getQ(), adopted, totalPopulation);
+            if (next == adopted) break;
+            adopted = next;
+            curve[++steps] = adopted;
+        }
+        return steps + 1 == curve.length ? curve : Arrays.copyOf(curve, steps + 1);
+    }
+
+    /**
+     * Applies one step of the engine's rules to an adopter count.
+     *
+     * @param p innovation coefficient
+     * @param q imitation coefficient
+     * @param adopted adopters before the step
+     * @param totalPopulation population size
+     * @return adopters after the step
+     */
+    static int nextAdopted(double p, double q, int adopted, int totalPopulation) {
+        int nonAdopted = totalPopulation - adopted;
+        int innovators = Math.min((int) Math.ceil(p * nonAdopted), nonAdopted);
+        int imitators = (int) Math.ceil(q * nonAdopted * adopted / (double) totalPopulation);
+        imitators = Math.min(imitators, nonAdopted - innovators);
+        return adopted + innovators + imitators;
+    }
+}
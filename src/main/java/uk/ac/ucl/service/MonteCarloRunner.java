@@ -0,0 +1,196 @@
+package uk.ac.ucl.service;
+
+import uk.ac.ucl.model.MonteCarloResult;
+import uk.ac.ucl.model.Population;
+import uk.ac.ucl.model.SimulationParameters;
+import uk.ac.ucl.util.RandomStream;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Runs independent replicates of a diffusion simulation to completion without the UI.
+ * Replicates use the engine's {@link DiffusionSimulationService#runToCompletion} batch path.
+ * Each replicate gets its own engine and its own adoption states over the shared, read-only
+ * coordinates, so replicates run concurrently on the supplied executor. A replicate's curve
+ * depends only on its seed, so results are reproducible whatever the thread count.
+ */
+public class MonteCarloRunner {
+
+    /** Quantile levels reported when the caller does not choose any. */
+    public static final double[] DEFAULT_QUANTILES = {0.05, 0.5, 0.95};
+
+    private final ExecutorService executor;
+    private final DistanceSearchMode distanceSearchMode;
+
+    /**
+     * Creates a runner using the default incremental distance search.
+     *
+     * @param executor executor the replicates are submitted to; owned by the caller
+     */
+    public MonteCarloRunner(ExecutorService executor) {
+        this(executor, DistanceSearchMode.INCREMENTAL);
+    }
+
+    /**
+     * Creates a runner with the given nearest-adopter search strategy.
+     *
+     * @param executor executor the replicates are submitted to; owned by the caller
+     * @param distanceSearchMode how each replicate's engine locates nearest adopters
+     */
+    public MonteCarloRunner(ExecutorService executor, DistanceSearchMode distanceSearchMode) {
+        this.executor = executor;
+        this.distanceSearchMode = distanceSearchMode;
+    }
+
+    /**
+     * Derives independent replicate seeds from a master seed. Replicate {@code r} always gets
+     * the same seed, so adding replicates extends a forecast without changing earlier ones.
+     *
+     * @param masterSeed seed of the whole experiment
+     * @param replicates number of seeds to derive
+     * @return one seed per replicate
+     */
+    public static long[] replicateSeeds(long masterSeed, int replicates) {
+        long[] seeds = new long[replicates];
+        for (int r = 0; r < replicates; r++) {
+            seeds[r] = RandomStream.deriveSeed(masterSeed, r);
+        }
+        return seeds;
+    }
+
+    /**
+     * Runs one replicate per seed and summarises them with {@link #DEFAULT_QUANTILES}.
+     *
+     * @param population population whose coordinates every replicate shares; its adoption states are not touched
+     * @param params simulation parameters
+     * @param seeds one random seed per replicate
+     * @param maxSteps maximum number of steps per replicate, for parameters that never complete
+     * @return mean and quantile adoption curves across replicates
+     */
+    public MonteCarloResult run(Population population, SimulationParameters params, long[] seeds, int maxSteps) {
+        return run(population, params, seeds, maxSteps, DEFAULT_QUANTILES);
+    }
+
+    /**
+     * Runs one replicate per seed in parallel and summarises their adoption curves.
+     *
+     * @param population population whose coordinates every replicate shares; its adoption states are not touched
+     * @param params simulation parameters
+     * @param seeds one random seed per replicate
+     * @param maxSteps maximum number of steps per replicate, for parameters that never complete
+     * @param quantileLevels quantile levels in {@code [0, 1]} to report
+     * @return mean and quantile adoption curves across replicates
+     * @throws IllegalArgumentException if there are no seeds, maxSteps is negative or a level is outside [0, 1]
+     * @throws IllegalStateException if a replicate fails or the calling thread is interrupted
+     */
+    public MonteCarloResult run(Population population, SimulationParameters params, long[] seeds,
+                                int maxSteps, double[] quantileLevels) {
+        if (seeds.length == 0) {
+            throw new IllegalArgumentException("At least one replicate seed is required");
+        }
+        if (maxSteps < 0) {
+            throw new IllegalArgumentException("Maximum steps must be non-negative");
+        }
+        for (double level : quantileLevels) {
+            if (level < 0 || level > 1) {
+                throw new IllegalArgumentException("Quantile levels must be between 0 and 1");
+            }
+        }
+
+        List<Future<int[]>> futures = new ArrayList<>(seeds.length);
+        for (long seed : seeds) {
+            futures.add(executor.submit(() -> runReplicate(population, params, seed, maxSteps, distanceSearchMode)));
+        }
+
+        int[][] curves = new int[seeds.length][];
+        try {
+            for (int r = 0; r < seeds.length; r++) {
+                curves[r] = futures.get(r).get();
+            }
+        } catch (InterruptedException e) {
+            futures.forEach(future -> future.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for replicates", e);
+        } catch (ExecutionException e) {
+            futures.forEach(future -> future.cancel(true));
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException("Replicate failed", e.getCause());
+        }
+
+        return summarise(params, population.size(), curves, quantileLevels);
+    }
+
+    /**
+     * Runs a single replicate on its own engine and adoption states.
+     *
+     * @param population population whose coordinates are shared
+     * @param params simulation parameters
+     * @param seed random seed for this replicate
+     * @param maxSteps maximum number of steps
+     * @param distanceSearchMode how the replicate's engine locates nearest adopters
+     * @return cumulative adopters after initialisation and after each step run
+     */
+    static int[] runReplicate(Population population, SimulationParameters params, long seed, int maxSteps,
+                              DistanceSearchMode distanceSearchMode) {
+        Population replicate = new Population(population.getXPositions(), population.getYPositions());
+        DiffusionSimulationServiceImpl engine = new DiffusionSimulationServiceImpl(distanceSearchMode);
+        engine.setSeed(seed);
+        return engine.runToCompletion(replicate, params, maxSteps);
+    }
+
+    /**
+     * Aligns replicate curves to a common length and computes their mean and quantiles.
+     * Quantiles interpolate linearly between order statistics.
+     *
+     * @param params the parameters the replicates were run with
+     * @param totalPopulation population size
+     * @param curves cumulative adopters per replicate; shorter curves are extended in place of their final value
+     * @param quantileLevels quantile levels in {@code [0, 1]}
+     * @return summary of the replicates
+     */
+    static MonteCarloResult summarise(SimulationParameters params, int totalPopulation, int[][] curves,
+                                      double[] quantileLevels) {
+        int length = 0;
+        for (int[] curve : curves) {
+            length = Math.max(length, curve.length);
+        }
+        for (int r = 0; r < curves.length; r++) {
+            int[] curve = curves[r];
+            if (curve.length < length) {
+                int[] extended = Arrays.copyOf(curve, length);
+                Arrays.fill(extended, curve.length, length, curve[curve.length - 1]);
+                curves[r] = extended;
+            }
+        }
+
+        int replicates = curves.length;
+        double[] mean = new double[length];
+        double[][] quantiles = new double[quantileLevels.length][length];
+        int[] column = new int[replicates];
+        for (int t = 0; t < length; t++) {
+            long sum = 0;
+            for (int r = 0; r < replicates; r++) {
+                column[r] = curves[r][t];
+                sum += column[r];
+            }
+            mean[t] = sum / (double) replicates;
+
+            Arrays.sort(column);
+            for (int q = 0; q < quantileLevels.length; q++) {
+                double rank = quantileLevels[q] * (replicates - 1);
+                int lower = (int) Math.floor(rank);
+                int upper = Math.min(lower + 1, replicates - 1);
+                quantiles[q][t] = column[lower] + (rank - lower) * (column[upper] - column[lower]);
+            }
+        }
+
+        return new MonteCarloResult(params, totalPopulation, curves, mean, quantileLevels.clone(), quantiles);
+    }
+}
@@ -0,0 +1,423 @@
+package uk.ac.ucl.service;
+
+import uk.ac.ucl.model.Population;
+import uk.ac.ucl.model.SimulationParameters;
+import uk.ac.ucl.model.SimulationResult;
+import uk.ac.ucl.util.BoundingBox;
+import uk.ac.ucl.util.PartialSelection;
+import uk.ac.ucl.util.RandomStream;
+import uk.ac.ucl.util.SpatialGrid;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Bass diffusion of several rival products through one population.
+ * Each person adopts at most one product, recorded in a per-person byte array (0 for none,
+ * otherwise the product number plus one). The population's own adoption flags mark anyone who
+ * has adopted some product, so the map and counters keep working unchanged.
+ * Every product follows the stepped engine's rules with its own coefficients, all measured
+ * against the shared pool of non-adopters: {@code ceil(p * N(t))} innovators drawn at random,
+ * then {@code ceil(q * N(t) * A(t) / M)} imitators chosen by proximity to that product's adopters,
+ * where {@code A(t)} counts the product's own adopters at the start of the step.
+ * Imitation uses a single pass over the non-adopters per step that measures the distance to
+ * every product's nearest adopter at once. A person claimed by several products goes to the one
+ * whose adopters are nearest, and a product that loses someone picks again from who is left.
+ */
+public class MultiProductDiffusionService {
+
+    public static final int MAX_PRODUCTS = Byte.MAX_VALUE;
+
+    private RandomStream initialAdoptersRandom;
+    private RandomStream innovatorsRandom;
+
+    // State of the population most recently initialized
+    private Population population;
+    private long stateVersion;
+    private byte[] productStates = new byte[0];
+    private int[] productAdopters = new int[0];
+    private double minX, maxX, minY, maxY;
+    private final NonAdopterIndex nonAdopters = new NonAdopterIndex();
+
+    // Per-product adopter grids, kept between steps and re-fitted rather than reallocated
+    private SpatialGrid[] adopterGrids = new SpatialGrid[0];
+
+    // Per-product step buffers, sized for the products at initialization
+    private int[] stepStart = new int[0];
+    private int[] innovators = new int[0];
+    private int[] imitators = new int[0];
+    private boolean[] active = new boolean[0];
+    private int[] listed = new int[0];
+    private int[] next = new int[0];
+
+    // Imitator selection buffers, grown as needed and reused between steps
+    private int[] candidates = new int[0];
+    private int[] granted = new int[0];
+    private double[][] candidateDistances = new double[0][];
+    private int[][] preferences = new int[0][];
+    private int[] proposalPosition = new int[0];
+    private int[] proposalProduct = new int[0];
+    private double[] proposalDistance = new double[0];
+    private int[] proposalRank = new int[0];
+    private int[] proposalOrder = new int[0];
+
+    /**
+     * Creates a multi-product service seeded from system entropy.
+     */
+    public MultiProductDiffusionService() {
+        seedStreams(RandomStream.fromEntropy());
+    }
+
+    /**
+     * Resets a population and seeds each product with its {@code k} initial adopters, drawn in turn
+     * so no product has first pick of the population.
+     *
+     * @param population the population to simulate
+     * @param products parameters of each product, in product order
+     * @throws IllegalArgumentException if there are no products or more than {@link #MAX_PRODUCTS}
+     */
+    public void initializeAdopters(Population population, List<SimulationParameters> products) {
+        if (products.isEmpty() || products.size() > MAX_PRODUCTS) {
+            throw new IllegalArgumentException("Between 1 and " + MAX_PRODUCTS + " products are supported");
+        }
+
+        int size = population.size();
+        population.resetAdoptionStates();
+        this.population = population;
+        if (productStates.length < size) {
+            productStates = new byte[size];
+        }
+        Arrays.fill(productStates, 0, size, (byte) 0);
+        int productCount = products.size();
+        if (productAdopters.length != productCount) {
+            productAdopters = new int[productCount];
+            stepStart = new int[productCount];
+            innovators = new int[productCount];
+            imitators = new int[productCount];
+            active = new boolean[productCount];
+            listed = new int[productCount];
+            next = new int[productCount];
+        } else {
+            Arrays.fill(productAdopters, 0);
+        }
+        nonAdopters.rebuild(size, population::hasAdopted);
+
+        minX = Double.MAX_VALUE;
+        maxX = -Double.MAX_VALUE;
+        minY = Double.MAX_VALUE;
+        maxY = -Double.MAX_VALUE;
+        for (int i = 0; i < size; i++) {
+            minX = Math.min(minX, population.getXPos(i));
+            maxX = Math.max(maxX, population.getXPos(i));
+            minY = Math.min(minY, population.getYPos(i));
+            maxY = Math.max(maxY, population.getYPos(i));
+        }
+
+        for (int j = 0; j < productCount; j++) {
+            innovators[j] = products.get(j).getK();
+        }
+        drawInTurn(innovators, initialAdoptersRandom);
+        stateVersion = population.getAdoptionVersion();
+    }
+
+    /**
+     * Performs one diffusion step for every product.
+     *
+     * @param population the population initialized by {@link #initializeAdopters}
+     * @param products parameters of each product, in the same order as at initialization
+     * @param currentTimeStep the current time step number
+     * @return one result per product; counts are the product's own, completion means nobody is left
+     * @throws IllegalStateException if the population was not initialized here or was changed since
+     */
+    public SimulationResult[] performDiffusionStep(Population population, List<SimulationParameters> products,
+                                                   int currentTimeStep) {
+        checkState(population, products);
+        System.arraycopy(productAdopters, 0, stepStart, 0, productAdopters.length);
+        if (nonAdopters.size() > 0) {
+            advance(products);
+        }
+
+        SimulationResult[] results = new SimulationResult[products.size()];
+        for (int j = 0; j < results.length; j++) {
+            results[j] = new SimulationResult(currentTimeStep, productAdopters[j] - stepStart[j], productAdopters[j],
+                    population.size(), nonAdopters.size() == 0);
+        }
+        return results;
+    }
+
+    /**
+     * Initializes the products and runs until everyone has adopted, a step adopts nobody, or the
+     * step limit is reached.
+     *
+     * @param population the population to simulate
+     * @param products parameters of each product, in product order
+     * @param maxSteps maximum number of steps to run
+     * @return cumulative adopters per product and time step, starting with the initial adopters
+     * @throws IllegalArgumentException if {@code maxSteps} is negative
+     */
+    public int[][] runToCompletion(Population population, List<SimulationParameters> products, int maxSteps) {
+        if (maxSteps < 0) {
+            throw new IllegalArgumentException("Maximum steps must be non-negative");
+        }
+
+        initializeAdopters(population, products);
+        int[][] curves = new int[products.size()][Math.min(maxSteps, nonAdopters.size()) + 1];
+        for (int j = 0; j < curves.length; j++) {
+            curves[j][0] = productAdopters[j];
+        }
+
+        int steps = 0;
+        while (steps < maxSteps && nonAdopters.size() > 0) {
+            if (advance(products) == 0) break;
+            steps++;
+            for (int j = 0; j < curves.length; j++) {
+                curves[j][steps] = productAdopters[j];
+            }
+        }
+
+        for (int j = 0; j < curves.length; j++) {
+            curves[j] = Arrays.copyOf(curves[j], steps + 1);
+        }
+        return curves;
+    }
+
+    /**
+     * Performs one step for every product.
+     *
+     * @param products parameters of each product
+     * @return number of people who adopted any product
+     */
+    private int advance(List<SimulationParameters> products) {
+        int productCount = products.size();
+        int nonAdoptedCount = nonAdopters.size();
+        int totalPopulation = population.size();
+
+        for (int j = 0; j < productCount; j++) {
+            SimulationParameters params = products.get(j);
+            innovators[j] = (int) Math.ceil(params.getP() * nonAdoptedCount);
+            imitators[j] = (int) Math.ceil(params.getQ() * nonAdoptedCount * productAdopters[j] / (double) totalPopulation);
+        }
+
+        drawInTurn(innovators, innovatorsRandom);
+        selectImitators(imitators);
+        stateVersion = population.getAdoptionVersion();
+        return nonAdoptedCount - nonAdopters.size();
+    }
+
+    /**
+     * Adopts random non-adopters for each product, one per product in turn.
+     *
+     * @param remaining how many each product still needs; consumed
+     */
+    private void drawInTurn(int[] remaining, RandomStream random) {
+        boolean drew = true;
+        while (drew && nonAdopters.size() > 0) {
+            drew = false;
+            for (int j = 0; j < remaining.length && nonAdopters.size() > 0; j++) {
+                if (remaining[j] > 0) {
+                    adopt(nonAdopters.draw(random), j);
+                    remaining[j]--;
+                    drew = true;
+                }
+            }
+        }
+    }
+
+    /**
+     * Chooses each product's imitators by proximity to its adopters, sharing one pass over the
+     * non-adopters between all products and resolving people claimed by more than one.
+     *
+     * @param quota number of imitators each product should gain; consumed
+     */
+    private void selectImitators(int[] quota) {
+        int productCount = quota.length;
+        int candidateCount = nonAdopters.size();
+        if (candidateCount == 0) return;
+
+        // Only products with both a quota and adopters to imitate take part
+        int activeCount = 0;
+        long totalQuota = 0;
+        for (int j = 0; j < productCount; j++) {
+            active[j] = quota[j] > 0 && productAdopters[j] > 0;
+            if (active[j]) {
+                activeCount++;
+                totalQuota += quota[j];
+            }
+        }
+        if (activeCount == 0) return;
+
+        fillAdopterGrids();
+
+        // The shared spatial pass: every candidate's distance to each active product's nearest adopter
+        if (candidates.length < candidateCount) {
+            candidates = new int[candidateCount];
+            granted = new int[candidateCount];
+        }
+        if (candidateDistances.length < productCount) {
+            candidateDistances = Arrays.copyOf(candidateDistances, productCount);
+            preferences = Arrays.copyOf(preferences, productCount);
+        }
+        for (int j = 0; j < productCount; j++) {
+            if (active[j] && (candidateDistances[j] == null || candidateDistances[j].length < candidateCount)) {
+                candidateDistances[j] = new double[candidateCount];
+            }
+        }
+        nonAdopters.copyTo(candidates);
+        for (int c = 0; c < candidateCount; c++) {
+            double x = population.getXPos(candidates[c]);
+            double y = population.getYPos(candidates[c]);
+            for (int j = 0; j < productCount; j++) {
+                if (active[j]) candidateDistances[j][c] = adopterGrids[j].nearestDistance(x, y);
+            }
+        }
+
+        // Each product's candidates, nearest first. Everyone a product passes over is either granted
+        // to it or taken by another product, and the step grants at most the total quota, so no
+        // product ever reaches further down its list than that
+        int listLength = (int) Math.min(candidateCount, totalQuota);
+        for (int j = 0; j < productCount; j++) {
+            if (!active[j]) continue;
+            if (preferences[j] == null || preferences[j].length < listLength) {
+                preferences[j] = new int[listLength];
+            }
+            listed[j] = PartialSelection.selectSmallestPositions(candidateDistances[j], candidates, 0, candidateCount,
+                    listLength, preferences[j], 0);
+            PartialSelection.sortSelectedPositions(candidateDistances[j], candidates, preferences[j], 0, listed[j]);
+        }
+
+        int proposalCapacity = (int) Math.min(totalQuota, (long) activeCount * listLength);
+        if (proposalPosition.length < proposalCapacity) {
+            proposalPosition = new int[proposalCapacity];
+            proposalProduct = new int[proposalCapacity];
+            proposalDistance = new double[proposalCapacity];
+            proposalRank = new int[proposalCapacity];
+            proposalOrder = new int[proposalCapacity];
+            for (int i = 0; i < proposalCapacity; i++) {
+                proposalRank[i] = i;
+            }
+        }
+
+        // Each round, every product short of its quota proposes its nearest untaken candidates and
+        // proposals are granted nearest first, ties in product order. The nearest proposal always
+        // succeeds, so rounds end, and every list entry is looked at in only one round. A grant only
+        // claims the person; adoption waits until every round is done
+        Arrays.fill(next, 0);
+        int grantedCount = 0;
+        while (true) {
+            int proposals = 0;
+            for (int j = 0; j < productCount; j++) {
+                if (!active[j]) continue;
+                int want = quota[j];
+                while (want > 0 && next[j] < listed[j]) {
+                    int position = preferences[j][next[j]++];
+                    if (productStates[candidates[position]] != 0) continue;
+                    proposalPosition[proposals] = position;
+                    proposalProduct[proposals] = j;
+                    proposalDistance[proposals++] = candidateDistances[j][position];
+                    want--;
+                }
+            }
+            if (proposals == 0) break;
+
+            int ordered = PartialSelection.selectSmallestPositions(proposalDistance, proposalRank, 0, proposals,
+                    proposals, proposalOrder, 0);
+            PartialSelection.sortSelectedPositions(proposalDistance, proposalRank, proposalOrder, 0, ordered);
+            for (int i = 0; i < ordered; i++) {
+                int proposal = proposalOrder[i];
+                int product = proposalProduct[proposal];
+                int person = candidates[proposalPosition[proposal]];
+                if (productStates[person] != 0 || quota[product] == 0) continue;
+                productStates[person] = (byte) (product + 1);
+                granted[grantedCount++] = person;
+                quota[product]--;
+            }
+        }
+
+        // Adopt in index order, as the single-product engine does, so the non-adopter index and
+        // with it later draws do not depend on the order proposals were granted in
+        Arrays.sort(granted, 0, grantedCount);
+        for (int i = 0; i < grantedCount; i++) {
+            int person = granted[i];
+            adopt(person, productStates[person] - 1);
+        }
+    }
+
+    /**
+     * Re-fits the grid of each active product to the population and inserts that product's adopters.
+     */
+    private void fillAdopterGrids() {
+        if (adopterGrids.length < active.length) {
+            adopterGrids = Arrays.copyOf(adopterGrids, active.length);
+        }
+        for (int j = 0; j < active.length; j++) {
+            if (!active[j]) continue;
+            if (adopterGrids[j] == null) {
+                adopterGrids[j] = new SpatialGrid(new BoundingBox(minX, maxX, minY, maxY),
+                        productAdopters[j]);
+            } else {
+                adopterGrids[j].reset(minX, maxX, minY, maxY, productAdopters[j]);
+            }
+        }
+        for (int i = 0; i < population.size(); i++) {
+            int product = productStates[i] - 1;
+            if (product >= 0 && active[product]) {
+                adopterGrids[product].insert(population.getXPos(i), population.getYPos(i));
+            }
+        }
+    }
+
+    private void adopt(int person, int product) {
+        population.setHasAdopted(person, true);
+        productStates[person] = (byte) (product + 1);
+        productAdopters[product]++;
+        nonAdopters.remove(person);
+    }
+
+    private void checkState(Population population, List<SimulationParameters> products) {
+        if (population != this.population || population.getAdoptionVersion() != stateVersion) {
+            throw new IllegalStateException("Population must be initialized by this service and not changed since");
+        }
+        if (products.size() != productAdopters.length) {
+            throw new IllegalArgumentException("Expected parameters for " + productAdopters.length + " products");
+        }
+    }
+
+    /**
+     * Returns which product a person has adopted.
+     *
+     * @param person index of the person
+     * @return product index, or -1 if the person has not adopted
+     */
+    public int getProduct(int person) {
+        return productStates[person] - 1;
+    }
+
+    /**
+     * Counts one product's adopters.
+     *
+     * @param product product index
+     * @return number of people who adopted the product
+     */
+    public int countAdopters(int product) {
+        return productAdopters[product];
+    }
+
+    /** @return number of people who have not adopted any product */
+    public int countNonAdopters() {
+        return nonAdopters.size();
+    }
+
+    /**
+     * Sets the random seed for reproducible simulations.
+     *
+     * @param seed the random seed
+     */
+    public void setSeed(long seed) {
+        seedStreams(new RandomStream(seed));
+    }
+
+    private void seedStreams(RandomStream master) {
+        initialAdoptersRandom = master.derive(PhaseStreams.INITIAL_ADOPTERS);
+        innovatorsRandom = master.derive(PhaseStreams.INNOVATORS);
+    }
+}
@@ -0,0 +1,353 @@
+package uk.ac.ucl.service;
+
+import uk.ac.ucl.model.Person;
+import uk.ac.ucl.model.Population;
+import uk.ac.ucl.model.SimulationParameters;
+import uk.ac.ucl.model.SimulationResult;
+import uk.ac.ucl.util.NeighbourGraph;
+import uk.ac.ucl.util.PartialSelection;
+import uk.ac.ucl.util.RandomStream;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Bass diffusion on a k-nearest-neighbour social network.
+ * Each person listens to their {@code k} nearest neighbours, and the network is built once per
+ * population and held in compressed sparse row arrays. Innovators are drawn as in the stepped
+ * engine, {@code ceil(p * N(t))} at random from the non-adopters. Imitation is local: each
+ * non-adopter adopts with probability {@code q * a / k}, where {@code a} is how many of their
+ * neighbours had adopted at the start of the step.
+ * Only non-adopters with at least one adopted neighbour can imitate, so the engine keeps that
+ * frontier as a dense list and updates it through the reversed graph when someone adopts.
+ * A step therefore costs time proportional to the frontier and the edges of its new adopters
+ * rather than to the population size.
+ */
+public class NetworkDiffusionService extends AbstractDiffusionService {
+
+    public static final int DEFAULT_NEIGHBOURS = 8;
+
+    private final int neighbours;
+    private RandomStream initialAdoptersRandom;
+    private RandomStream innovatorsRandom;
+    private RandomStream imitatorsRandom;
+
+    // Network of the population most recently simulated: who each person listens to, and who listens to them
+    private Population graphPopulation;
+    private NeighbourGraph graph;
+    private NeighbourGraph listeners;
+
+    // Per-person state, valid while the population's adoption version matches the one recorded here
+    private long stateVersion;
+    private int[] adoptedNeighbours = new int[0];
+    private final NonAdopterIndex nonAdopters = new NonAdopterIndex();
+    private int[] frontier = new int[0];
+    private int[] frontierPosition = new int[0];
+    private int frontierCount;
+
+    // Imitators chosen from the frontier snapshot before any of the step's adoptions are applied
+    private int[] pendingImitators = new int[0];
+
+    /**
+     * Creates a network service in which each person listens to their eight nearest neighbours.
+     */
+    public NetworkDiffusionService() {
+        this(DEFAULT_NEIGHBOURS);
+    }
+
+    /**
+     * Creates a network service with a given neighbourhood size.
+     *
+     * @param neighbours number of nearest neighbours each person listens to
+     * @throws IllegalArgumentException if {@code neighbours} is not positive
+     */
+    public NetworkDiffusionService(int neighbours) {
+        if (neighbours <= 0) {
+            throw new IllegalArgumentException("Neighbour count must be positive");
+        }
+        this.neighbours = neighbours;
+        seedStreams(RandomStream.fromEntropy());
+    }
+
+    @Override
+    public void initializeAdopters(Population population, int k) {
+        setCurrentPopulation(population);
+        if (population.isEmpty()) return;
+
+        population.resetAdoptionStates();
+        ensureState(population);
+
+        int actualK = Math.min(k, nonAdopters.size());
+        for (int i = 0; i < actualK; i++) {
+            adopt(population, nonAdopters.draw(initialAdoptersRandom));
+        }
+    }
+
+    @Override
+    public SimulationResult performDiffusionStep(Population population, SimulationParameters params, int currentTimeStep) {
+        setCurrentPopulation(population);
+        if (population.isEmpty()) {
+            return new SimulationResult(currentTimeStep, 0, 0, 0, true);
+        }
+
+        int adoptedCount = population.countAdopters();
+        int totalPopulation = population.size();
+        if (adoptedCount == totalPopulation) {
+            return new SimulationResult(currentTimeStep, 0, adoptedCount, totalPopulation, true);
+        }
+
+        int newAdopters = advance(population, params);
+        int finalAdoptedCount = adoptedCount + newAdopters;
+
+        return new SimulationResult(currentTimeStep, newAdopters, finalAdoptedCount, totalPopulation,
+                finalAdoptedCount >= totalPopulation);
+    }
+
+    @Override
+    public int[] runToCompletion(Population population, SimulationParameters params, int maxSteps) {
+        if (maxSteps < 0) {
+            throw new IllegalArgumentException("Maximum steps must be non-negative");
+        }
+
+        initializeAdopters(population, params.getK());
+        int[] curve = new int[Math.min(maxSteps, population.countNonAdopters()) + 1];
+        curve[0] = population.countAdopters();
+
+        // Imitation is random, so a step adopting nobody does not end the run; it ends once no
+        // innovators are due and nobody has an adopted neighbour
+        int steps = 0;
+        while (steps < maxSteps && population.countNonAdopters() > 0 && canAdopt(params)) {
+            advance(population, params);
+            if (++steps == curve.length) {
+                curve = Arrays.copyOf(curve, (int) Math.min((long) maxSteps + 1, 2L * steps));
+            }
+            curve[steps] = population.countAdopters();
+        }
+        return Arrays.copyOf(curve, steps + 1);
+    }
+
+    /**
+     * Performs one step: picks imitators from the frontier as it stands, then innovators at
+     * random, then applies the imitators not already taken as innovators.
+     *
+     * @param population the population to advance; has at least one non-adopter
+     * @param params simulation parameters
+     * @return number of people who adopted
+     */
+    private int advance(Population population, SimulationParameters params) {
+        ensureState(population);
+        int nonAdoptedCount = nonAdopters.size();
+
+        int imitatorCount = 0;
+        if (params.getQ() > 0) {
+            if (pendingImitators.length < frontierCount) {
+                pendingImitators = new int[frontierCount];
+            }
+            for (int f = 0; f < frontierCount; f++) {
+                int person = frontier[f];
+                double probability = params.getQ() * adoptedNeighbours[person] / graph.degree(person);
+                if (imitatorsRandom.nextDouble() < probability) {
+                    pendingImitators[imitatorCount++] = person;
+                }
+            }
+        }
+
+        int innovators = Math.min((int) Math.ceil(params.getP() * nonAdoptedCount), nonAdoptedCount);
+        for (int i = 0; i < innovators; i++) {
+            adopt(population, nonAdopters.draw(innovatorsRandom));
+        }
+
+        for (int i = 0; i < imitatorCount; i++) {
+            if (!population.hasAdopted(pendingImitators[i])) {
+                adopt(population, pendingImitators[i]);
+            }
+        }
+        return nonAdoptedCount - nonAdopters.size();
+    }
+
+    /**
+     * Checks whether any future step could still adopt someone.
+     */
+    private boolean canAdopt(SimulationParameters params) {
+        return params.getP() > 0 || (params.getQ() > 0 && frontierCount > 0);
+    }
+
+    /**
+     * Marks a person as adopted and moves their listeners' counts and frontier membership along.
+     *
+     * @param population the population being simulated
+     * @param index the person who adopts
+     */
+    private void adopt(Population population, int index) {
+        population.setHasAdopted(index, true);
+
+        nonAdopters.remove(index);
+        removeFromFrontier(index);
+
+        int[] listenerIndices = listeners.getNeighbours();
+        for (int e = listeners.start(index); e < listeners.end(index); e++) {
+            int listener = listenerIndices[e];
+            if (adoptedNeighbours[listener]++ == 0 && !population.hasAdopted(listener)) {
+                frontierPosition[listener] = frontierCount;
+                frontier[frontierCount++] = listener;
+            }
+        }
+        stateVersion = population.getAdoptionVersion();
+    }
+
+    private void removeFromFrontier(int index) {
+        int position = frontierPosition[index];
+        if (position < 0) return;
+        int last = frontier[--frontierCount];
+        frontier[position] = last;
+        frontierPosition[last] = position;
+        frontierPosition[index] = -1;
+    }
+
+    /**
+     * Builds the network for a new population, and rebuilds the adopted-neighbour counts,
+     * non-adopter list and frontier after any outside change to adoption states.
+     *
+     * @param population the population being simulated
+     */
+    private void ensureState(Population population) {
+        boolean newPopulation = population != graphPopulation;
+        if (!newPopulation && population.getAdoptionVersion() == stateVersion) return;
+
+        int size = population.size();
+        if (newPopulation) {
+            installGraph(population,
+                    NeighbourGraph.kNearest(population.getXPositions(), population.getYPositions(), neighbours));
+        }
+
+        Arrays.fill(adoptedNeighbours, 0, size, 0);
+        int[] listenerIndices = listeners.getNeighbours();
+        for (int i = 0; i < size; i++) {
+            if (!population.hasAdopted(i)) continue;
+            for (int e = listeners.start(i); e < listeners.end(i); e++) {
+                adoptedNeighbours[listenerIndices[e]]++;
+            }
+        }
+        nonAdopters.rebuild(size, population::hasAdopted);
+
+        frontierCount = 0;
+        for (int i = 0; i < size; i++) {
+            if (!population.hasAdopted(i) && adoptedNeighbours[i] > 0) {
+                frontier[frontierCount] = i;
+                frontierPosition[i] = frontierCount++;
+            } else {
+                frontierPosition[i] = -1;
+            }
+        }
+        stateVersion = population.getAdoptionVersion();
+    }
+
+    /**
+     * Uses a prebuilt network for a population instead of building one on first use, for example
+     * a graph loaded by {@link GraphCacheService}. Counts are rebuilt on the next operation.
+     *
+     * @param population the population the graph was built for
+     * @param graph who each person listens to, normally {@link NeighbourGraph#kNearest} with
+     *              {@link #getNeighbours()} neighbours
+     * @throws IllegalArgumentException if the graph does not have one list per person
+     */
+    public void setNeighbourGraph(Population population, NeighbourGraph graph) {
+        if (graph.size() != population.size()) {
+            throw new IllegalArgumentException("Graph has " + graph.size() + " nodes for a population of "
+                    + population.size());
+        }
+        installGraph(population, graph);
+        // Adoption versions never go negative, so this forces a recount
+        stateVersion = -1;
+    }
+
+    /**
+     * Uses the network cached for a population, building and caching it on a miss, so a second
+     * launch on the same generated population skips the k-nearest-neighbour search. The cache key
+     * is the population's country, size and generation seed plus {@link #getGraphKind()}; a cached
+     * graph built from other coordinates under the same key is rebuilt.
+     *
+     * @param population the population to simulate next
+     * @param cache the graph cache
+     * @param country country the population was generated in
+     * @param generationSeed seed the population was generated with
+     */
+    public void loadNeighbourGraph(Population population, GraphCacheService cache, String country,
+                                   long generationSeed) {
+        long checksum = GraphCacheService.coordinateChecksum(population.getXPositions(), population.getYPositions());
+        NeighbourGraph cached = cache.loadOrBuild(country, population.size(), generationSeed, checksum, getGraphKind(),
+                () -> NeighbourGraph.kNearest(population.getXPositions(), population.getYPositions(), neighbours));
+        setNeighbourGraph(population, cached);
+    }
+
+    private void installGraph(Population population, NeighbourGraph graph) {
+        this.graph = graph;
+        listeners = graph.reverse();
+        graphPopulation = population;
+        int size = population.size();
+        if (adoptedNeighbours.length < size) {
+            adoptedNeighbours = new int[size];
+            frontier = new int[size];
+            frontierPosition = new int[size];
+        }
+    }
+
+    /**
+     * Adopts the non-adopters with the largest share of adopted neighbours, ties broken by
+     * index, topping up at random once the frontier is exhausted.
+     *
+     * @param population the population to select from
+     * @param newAdopters number of new adopters to select
+     */
+    @Override
+    public void selectNewAdoptersByDistance(List<Person> population, int newAdopters) {
+        if (population.isEmpty() || newAdopters <= 0) return;
+
+        Population bound = bind(population);
+        setCurrentPopulation(bound);
+        ensureState(bound);
+
+        int count = frontierCount;
+        int[] candidates = Arrays.copyOf(frontier, count);
+        double[] keys = new double[count];
+        for (int c = 0; c < count; c++) {
+            // Every list has the same length, so ranking by count ranks by share
+            keys[c] = -adoptedNeighbours[candidates[c]];
+        }
+        int[] selected = new int[Math.min(newAdopters, count)];
+        int selectedCount = PartialSelection.selectSmallest(keys, candidates, count, selected.length, selected);
+        for (int i = 0; i < selectedCount; i++) {
+            adopt(bound, selected[i]);
+        }
+        for (int i = selectedCount; i < newAdopters && nonAdopters.size() > 0; i++) {
+            adopt(bound, nonAdopters.draw(innovatorsRandom));
+        }
+        writeAdoptionStates(bound, population);
+    }
+
+    @Override
+    public void setSeed(long seed) {
+        seedStreams(new RandomStream(seed));
+    }
+
+    private void seedStreams(RandomStream master) {
+        initialAdoptersRandom = master.derive(PhaseStreams.INITIAL_ADOPTERS);
+        innovatorsRandom = master.derive(PhaseStreams.INNOVATORS);
+        imitatorsRandom = master.derive(PhaseStreams.IMITATORS);
+    }
+
+    /** @return number of nearest neighbours each person listens to */
+    public int getNeighbours() {
+        return neighbours;
+    }
+
+    /** @return key describing this service's network for {@link GraphCacheService}, such as {@code "knn8"} */
+    public String getGraphKind() {
+        return "knn" + neighbours;
+    }
+
+    /** @return the network of the population most recently simulated, or null before the first use */
+    public NeighbourGraph getNeighbourGraph() {
+        return graph;
+    }
+}
@@ -0,0 +1,118 @@
+package uk.ac.ucl.service;
+
+import uk.ac.ucl.util.RandomStream;
+
+import java.util.Arrays;
+import java.util.function.IntPredicate;
+
+/**
+ * Dense list of the people who have not adopted and each person's position in it (-1 once
+ * adopted). Engines draw uniform non-adopters and walk the candidates from the list without
+ * scanning the whole population, and remove an adopter in constant time by moving the last
+ * entry into its place. The order therefore depends on the sequence of removals, which keeps
+ * seeded draws reproducible as long as every engine removes adopters through {@link #remove}.
+ */
+final class NonAdopterIndex {
+    private int[] order = new int[0];
+    private int[] position = new int[0];
+    private int count;
+
+    /**
+     * Lists the people of a population of the given size who have not adopted, in index order.
+     *
+     * @param size the population size
+     * @param hasAdopted whether a person has adopted
+     */
+    void rebuild(int size, IntPredicate hasAdopted) {
+        ensureCapacity(size);
+        count = 0;
+        for (int i = 0; i < size; i++) {
+            if (hasAdopted.test(i)) {
+                position[i] = -1;
+            } else {
+                order[count] = i;
+                position[i] = count++;
+            }
+        }
+    }
+
+    /**
+     * Restores a list saved with {@link #toArray}, so draws continue exactly where they left off.
+     *
+     * @param size the population size
+     * @param saved the saved non-adopter order
+     * @param hasAdopted whether a person has adopted
+     * @throws IllegalArgumentException if the order lists an adopter, a person twice or a person
+     *         outside the population
+     */
+    void restore(int size, int[] saved, IntPredicate hasAdopted) {
+        ensureCapacity(size);
+        Arrays.fill(position, 0, size, -1);
+        for (int p = 0; p < saved.length; p++) {
+            int person = saved[p];
+            if (person < 0 || person >= size || hasAdopted.test(person) || position[person] >= 0) {
+                throw new IllegalArgumentException("Non-adopter order does not match the adoption states");
+            }
+            order[p] = person;
+            position[person] = p;
+        }
+        count = saved.length;
+    }
+
+    /**
+     * Removes a person who has just adopted.
+     *
+     * @param person a listed non-adopter
+     */
+    void remove(int person) {
+        int at = position[person];
+        int last = order[--count];
+        order[at] = last;
+        position[last] = at;
+        position[person] = -1;
+    }
+
+    /**
+     * Draws a listed non-adopter uniformly. The list must not be empty.
+     *
+     * @param random the stream to draw from
+     * @return the person drawn
+     */
+    int draw(RandomStream random) {
+        return order[random.nextInt(count)];
+    }
+
+    /** @return the number of non-adopters listed */
+    int size() {
+        return count;
+    }
+
+    /**
+     * @param i a position in the list, below {@link #size()}
+     * @return the non-adopter at that position
+     */
+    int get(int i) {
+        return order[i];
+    }
+
+    /**
+     * Copies the listed non-adopters, in list order, to the start of an array.
+     *
+     * @param destination an array with room for {@link #size()} entries
+     */
+    void copyTo(int[] destination) {
+        System.arraycopy(order, 0, destination, 0, count);
+    }
+
+    /** @return the listed non-adopters in list order */
+    int[] toArray() {
+        return Arrays.copyOf(order, count);
+    }
+
+    private void ensureCapacity(int size) {
+        if (order.length < size) {
+            order = new int[size];
+            position = new int[size];
+        }
+    }
+}
@@ -0,0 +1,228 @@
+package uk.ac.ucl.service;
+
+import uk.ac.ucl.model.Population;
+import uk.ac.ucl.model.SimulationParameters;
+import uk.ac.ucl.model.SweepRunSummary;
+import uk.ac.ucl.util.RandomStream;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Consumer;
+
+/**
+ * Runs every combination of population, parameter set and replicate of a calibration sweep.
+ * Runs are split recursively on a fork/join pool, so idle workers steal the remaining halves
+ * of busy workers' ranges instead of waiting on a fixed partition. Populations are shared
+ * read-only across all runs, and each run's summary is handed to a sink as soon as it finishes.
+ */
+public class ParameterSweepRunner {
+
+    private static final String CSV_HEADER =
+            "Country,P,Q,K,Replicate,Seed,TotalPopulation,FinalAdopted,Steps,TimeTo50,TimeTo90,PeakNewAdopters,PeakStep";
+
+    private final ForkJoinPool forkJoinPool;
+    private final DistanceSearchMode distanceSearchMode;
+
+    /**
+     * Creates a sweep runner using the default incremental distance search.
+     *
+     * @param forkJoinPool pool the runs are scheduled on; owned by the caller
+     */
+    public ParameterSweepRunner(ForkJoinPool forkJoinPool) {
+        this(forkJoinPool, DistanceSearchMode.INCREMENTAL);
+    }
+
+    /**
+     * Creates a sweep runner with the given nearest-adopter search strategy.
+     *
+     * @param forkJoinPool pool the runs are scheduled on; owned by the caller
+     * @param distanceSearchMode how each run's engine locates nearest adopters
+     */
+    public ParameterSweepRunner(ForkJoinPool forkJoinPool, DistanceSearchMode distanceSearchMode) {
+        this.forkJoinPool = forkJoinPool;
+        this.distanceSearchMode = distanceSearchMode;
+    }
+
+    /**
+     * Expands a grid of coefficient values into every combination of parameters.
+     *
+     * @param pValues innovation coefficients
+     * @param qValues imitation coefficients
+     * @param kValues initial adopter counts
+     * @return parameter sets ordered by p, then q, then k
+     * @throws IllegalArgumentException if any combination is invalid
+     */
+    public static List<SimulationParameters> expandGrid(double[] pValues, double[] qValues, int[] kValues) {
+        List<SimulationParameters> grid = new ArrayList<>(pValues.length * qValues.length * kValues.length);
+        for (double p : pValues) {
+            for (double q : qValues) {
+                for (int k : kValues) {
+                    grid.add(new SimulationParameters(p, q, k));
+                }
+            }
+        }
+        return grid;
+    }
+
+    /**
+     * Returns the seed used for a replicate. Replicate {@code r} uses the same seed for every
+     * parameter set and country, so differences between parameter sets are not masked by noise.
+     *
+     * @param baseSeed seed of the sweep
+     * @param replicate replicate number
+     * @return seed for the replicate
+     */
+    public static long replicateSeed(long baseSeed, int replicate) {
+        return RandomStream.deriveSeed(baseSeed, replicate);
+    }
+
+    /**
+     * Runs the sweep and hands each run's summary to the sink as it completes. Summaries
+     * arrive in completion order; the sink is never called concurrently.
+     *
+     * @param populations populations to sweep over, keyed by country name; not modified
+     * @param parameterSets parameter sets to run
+     * @param replicates number of replicates per population and parameter set
+     * @param baseSeed seed from which replicate seeds are derived
+     * @param maxSteps maximum number of steps per run
+     * @param sink receiver of run summaries
+     * @throws IllegalArgumentException if replicates or maxSteps is negative
+     */
+    public void run(Map<String, Population> populations, List<SimulationParameters> parameterSets, int replicates,
+                    long baseSeed, int maxSteps, Consumer<SweepRunSummary> sink) {
+        if (replicates < 0) {
+            throw new IllegalArgumentException("Replicate count must be non-negative");
+        }
+        if (maxSteps < 0) {
+            throw new IllegalArgumentException("Maximum steps must be non-negative");
+        }
+
+        String[] countries = populations.keySet().toArray(new String[0]);
+        Population[] shared = new Population[countries.length];
+        for (int c = 0; c < countries.length; c++) {
+            shared[c] = populations.get(countries[c]);
+        }
+        SimulationParameters[] params = parameterSets.toArray(new SimulationParameters[0]);
+
+        long runCount = (long) countries.length * params.length * replicates;
+        if (runCount == 0) return;
+
+        SweepContext context = new SweepContext(countries, shared, params, replicates, baseSeed, maxSteps, sink);
+        forkJoinPool.invoke(new SweepTask(context, 0, runCount));
+    }
+
+    /**
+     * Runs the sweep and streams one CSV row per run to a file as runs complete.
+     *
+     * @param populations populations to sweep over, keyed by country name; not modified
+     * @param parameterSets parameter sets to run
+     * @param replicates number of replicates per population and parameter set
+     * @param baseSeed seed from which replicate seeds are derived
+     * @param maxSteps maximum number of steps per run
+     * @param output file to write, replaced if it exists
+     * @throws IOException if the file cannot be written
+     */
+    public void runToCsv(Map<String, Population> populations, List<SimulationParameters> parameterSets,
+                         int replicates, long baseSeed, int maxSteps, Path output) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(output)) {
+            writer.write(CSV_HEADER + System.lineSeparator());
+            run(populations, parameterSets, replicates, baseSeed, maxSteps, summary -> {
+                try {
+                    writer.write(formatCsvRow(summary) + System.lineSeparator());
+                    writer.flush(); // Make finished runs visible while the sweep continues
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    static String formatCsvRow(SweepRunSummary summary) {
+        SimulationParameters params = summary.getParameters();
+        return String.format(Locale.ROOT, "%s,%s,%s,%d,%d,%d,%d,%d,%d,%d,%d,%d,%d",
+                summary.getCountry().replace(',', '_'), params.getP(), params.getQ(), params.getK(),
+                summary.getReplicate(), summary.getSeed(), summary.getTotalPopulation(), summary.getFinalAdopted(),
+                summary.getSteps(), summary.getTimeTo50(), summary.getTimeTo90(),
+                summary.getPeakNewAdopters(), summary.getPeakStep());
+    }
+
+    /**
+     * Shared, read-only description of a sweep. Run {@code i} enumerates countries slowest,
+     * then parameter sets, then replicates.
+     */
+    private class SweepContext {
+        final String[] countries;
+        final Population[] populations;
+        final SimulationParameters[] params;
+        final int replicates;
+        final long baseSeed;
+        final int maxSteps;
+        final Consumer<SweepRunSummary> sink;
+
+        SweepContext(String[] countries, Population[] populations, SimulationParameters[] params, int replicates,
+                     long baseSeed, int maxSteps, Consumer<SweepRunSummary> sink) {
+            this.countries = countries;
+            this.populations = populations;
+            this.params = params;
+            this.replicates = replicates;
+            this.baseSeed = baseSeed;
+            this.maxSteps = maxSteps;
+            this.sink = sink;
+        }
+
+        void runOne(long run) {
+            int replicate = (int) (run % replicates);
+            long rest = run / replicates;
+            int paramIndex = (int) (rest % params.length);
+            int country = (int) (rest / params.length);
+
+            long seed = replicateSeed(baseSeed, replicate);
+            Population population = populations[country];
+            int[] curve = MonteCarloRunner.runReplicate(population, params[paramIndex], seed, maxSteps,
+                    distanceSearchMode);
+            SweepRunSummary summary = SweepRunSummary.fromCurve(countries[country], params[paramIndex],
+                    replicate, seed, population.size(), curve);
+            synchronized (this) {
+                sink.accept(summary);
+            }
+        }
+    }
+
+    /**
+     * Fork/join task covering a range of runs, split in halves down to single runs.
+     */
+    private static class SweepTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final SweepContext context;
+        private final long from;
+        private final long to;
+
+        SweepTask(SweepContext context, long from, long to) {
+            this.context = context;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 1) {
+                long mid = (from + to) >>> 1;
+                invokeAll(new SweepTask(context, from, mid), new SweepTask(context, mid, to));
+                return;
+            }
+            context.runOne(from);
+        }
+    }
+}
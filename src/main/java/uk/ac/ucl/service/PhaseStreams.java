@@ -0,0 +1,15 @@
+package uk.ac.ucl.service;
+
+/**
+ * Keys of the per-phase random streams the engines derive from their seed. Giving each phase its
+ * own stream keeps its draws independent of how many draws the other phases made, and sharing
+ * the keys keeps a seed's initial adopters the same across engines.
+ */
+final class PhaseStreams {
+    static final long INITIAL_ADOPTERS = 1;
+    static final long INNOVATORS = 2;
+    static final long IMITATORS = 3;
+
+    private PhaseStreams() {
+    }
+}
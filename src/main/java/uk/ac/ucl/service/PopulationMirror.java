@@ -0,0 +1,56 @@
+package uk.ac.ucl.service;
+
+import uk.ac.ucl.model.Person;
+import uk.ac.ucl.model.Population;
+
+import java.util.List;
+
+/**
+ * Adapts {@code List<Person>} callers onto the array-based engines. Keeps a population mirroring
+ * the most recent list, so repeated calls with the same people reuse it and the engine's cached
+ * per-population state.
+ */
+class PopulationMirror {
+    private Person[] boundPeople;
+    private Population boundPopulation;
+
+    /**
+     * Returns the population mirror for a list of people, rebuilding it if the list no longer
+     * holds the same people at the same positions, and otherwise copying in adoption states.
+     *
+     * @param people the caller's list
+     * @return population mirroring the list
+     */
+    Population bind(List<Person> people) {
+        int size = people.size();
+        boolean matches = boundPeople != null && boundPeople.length == size;
+        for (int i = 0; matches && i < size; i++) {
+            Person person = people.get(i);
+            matches = person == boundPeople[i]
+                    && person.getXPos() == boundPopulation.getXPos(i)
+                    && person.getYPos() == boundPopulation.getYPos(i);
+        }
+
+        if (!matches) {
+            boundPeople = people.toArray(new Person[0]);
+            boundPopulation = Population.fromPeople(people);
+        } else {
+            for (int i = 0; i < size; i++) {
+                boundPopulation.setHasAdopted(i, boundPeople[i].hasAdopted());
+            }
+        }
+        return boundPopulation;
+    }
+
+    /**
+     * Copies adoption states from a population back onto the people it mirrors.
+     *
+     * @param population the population holding the states
+     * @param people the caller's list
+     */
+    void writeAdoptionStates(Population population, List<Person> people) {
+        for (int i = 0; i < people.size(); i++) {
+            people.get(i).setHasAdopted(population.hasAdopted(i));
+        }
+    }
+}
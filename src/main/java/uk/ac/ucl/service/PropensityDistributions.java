@@ -0,0 +1,116 @@
+package uk.ac.ucl.service;
+
+import uk.ac.ucl.model.Population;
+import uk.ac.ucl.util.RandomStream;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Sources of per-person innovation and imitation propensities for {@link Population#setPropensities}.
+ * Propensities scale the global Bass coefficients, so the generated distributions have mean 1
+ * and leave the population's average p and q unchanged.
+ */
+public final class PropensityDistributions {
+
+    private PropensityDistributions() {
+    }
+
+    /**
+     * Draws log-normal propensities with mean 1.
+     *
+     * @param size number of people
+     * @param sigma standard deviation of the underlying normal; 0 gives everyone 1
+     * @param seed random seed
+     * @return propensity per person
+     * @throws IllegalArgumentException if sigma is negative
+     */
+    public static float[] logNormal(int size, double sigma, long seed) {
+        if (sigma < 0) {
+            throw new IllegalArgumentException("Sigma must be non-negative");
+        }
+        RandomStream random = new RandomStream(seed);
+        float[] propensities = new float[size];
+        for (int i = 0; i < size; i++) {
+            propensities[i] = (float) Math.exp(sigma * random.nextGaussian() - 0.5 * sigma * sigma);
+        }
+        return propensities;
+    }
+
+    /**
+     * Draws propensities uniformly from an interval.
+     *
+     * @param size number of people
+     * @param min lowest propensity, at least 0
+     * @param max highest propensity, at least {@code min}
+     * @param seed random seed
+     * @return propensity per person
+     * @throws IllegalArgumentException if the interval is empty or negative
+     */
+    public static float[] uniform(int size, double min, double max, long seed) {
+        if (min < 0 || max < min) {
+            throw new IllegalArgumentException("Interval must satisfy 0 <= min <= max");
+        }
+        RandomStream random = new RandomStream(seed);
+        float[] propensities = new float[size];
+        for (int i = 0; i < size; i++) {
+            propensities[i] = (float) (min + (max - min) * random.nextDouble());
+        }
+        return propensities;
+    }
+
+    /**
+     * Reads propensities from a CSV file with one row per person, in population order, and
+     * {@code InnovationPropensity} and {@code ImitationPropensity} columns. Either column may be
+     * absent, in which case that propensity is returned as null.
+     *
+     * @param file path to the CSV file
+     * @param size expected number of people
+     * @return two arrays: innovation then imitation propensities, either possibly null
+     * @throws IOException if the file cannot be read
+     * @throws IllegalArgumentException if neither column is present, a row is malformed, or the
+     *         row count differs from {@code size}
+     */
+    public static float[][] readCsv(Path file, int size) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(file)) {
+            String header = reader.readLine();
+            if (header == null) {
+                throw new IllegalArgumentException("CSV file is empty: " + file);
+            }
+            List<String> columns = Arrays.asList(header.trim().split(","));
+            int innovationColumn = columns.indexOf("InnovationPropensity");
+            int imitationColumn = columns.indexOf("ImitationPropensity");
+            if (innovationColumn < 0 && imitationColumn < 0) {
+                throw new IllegalArgumentException(
+                        "CSV file must have an InnovationPropensity or ImitationPropensity column: " + file);
+            }
+
+            float[] innovation = innovationColumn < 0 ? null : new float[size];
+            float[] imitation = imitationColumn < 0 ? null : new float[size];
+            int row = 0;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) continue;
+                if (row == size) {
+                    throw new IllegalArgumentException("CSV file has more than " + size + " rows: " + file);
+                }
+                String[] fields = line.split(",");
+                try {
+                    if (innovation != null) innovation[row] = Float.parseFloat(fields[innovationColumn].trim());
+                    if (imitation != null) imitation[row] = Float.parseFloat(fields[imitationColumn].trim());
+                } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+                    throw new IllegalArgumentException("Malformed row in " + file + ": " + line, e);
+                }
+                row++;
+            }
+            if (row != size) {
+                throw new IllegalArgumentException("CSV file has " + row + " rows for " + size + " people: " + file);
+            }
+            return new float[][]{innovation, imitation};
+        }
+    }
+}
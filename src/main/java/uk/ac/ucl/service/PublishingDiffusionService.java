@@ -0,0 +1,184 @@
+package uk.ac.ucl.service;
+
+import uk.ac.ucl.model.Person;
+import uk.ac.ucl.model.Population;
+import uk.ac.ucl.model.SimulationParameters;
+import uk.ac.ucl.model.SimulationResult;
+import uk.ac.ucl.util.BackpressurePublisher;
+
+import java.util.List;
+import java.util.concurrent.Flow;
+
+/**
+ * Wraps any diffusion engine and publishes the result of every step to a
+ * {@link BackpressurePublisher}, so the UI, loggers and exporters can consume steps as
+ * subscribers at their own pace rather than being called from the simulation loop.
+ * Initialization is published as step 0, with the initial adopters as its new adopters.
+ * Publishing never waits for a subscriber; each subscriber's policy decides what it misses if
+ * it falls behind. With no publisher set, calls pass straight through to the engine.
+ */
+public class PublishingDiffusionService implements DiffusionSimulationService {
+
+    private final DiffusionSimulationService delegate;
+    private volatile BackpressurePublisher<SimulationResult> publisher;
+
+    /**
+     * Creates a publishing wrapper with no publisher yet.
+     *
+     * @param delegate the engine that runs the simulation
+     */
+    public PublishingDiffusionService(DiffusionSimulationService delegate) {
+        this(delegate, null);
+    }
+
+    /**
+     * Creates a publishing wrapper.
+     *
+     * @param delegate the engine that runs the simulation
+     * @param publisher publisher for step results, or null to publish nothing
+     */
+    public PublishingDiffusionService(DiffusionSimulationService delegate,
+                                      BackpressurePublisher<SimulationResult> publisher) {
+        this.delegate = delegate;
+        this.publisher = publisher;
+    }
+
+    public DiffusionSimulationService getDelegate() {
+        return delegate;
+    }
+
+    /** @return the stream of step results, or null if no publisher is set */
+    public Flow.Publisher<SimulationResult> getResultPublisher() {
+        return publisher;
+    }
+
+    /**
+     * Replaces the publisher, for example with a fresh one for each run. The old publisher is
+     * not closed.
+     *
+     * @param publisher publisher for step results, or null to publish nothing
+     */
+    public void setResultPublisher(BackpressurePublisher<SimulationResult> publisher) {
+        this.publisher = publisher;
+    }
+
+    @Override
+    public void initializeAdopters(List<Person> population, int k) {
+        delegate.initializeAdopters(population, k);
+        publishInitialization(population.size());
+    }
+
+    @Override
+    public void initializeAdopters(Population population, int k) {
+        delegate.initializeAdopters(population, k);
+        publishInitialization(population.size());
+    }
+
+    @Override
+    public SimulationResult performDiffusionStep(List<Person> population, SimulationParameters params, int currentTimeStep) {
+        return publish(delegate.performDiffusionStep(population, params, currentTimeStep));
+    }
+
+    @Override
+    public SimulationResult performDiffusionStep(Population population, SimulationParameters params, int currentTimeStep) {
+        return publish(delegate.performDiffusionStep(population, params, currentTimeStep));
+    }
+
+    /**
+     * Runs the engine's batch loop, then publishes the curve as one result per step. The batch
+     * loop has no per-step hook, so subscribers receive the steps only once the run has finished.
+     */
+    @Override
+    public int[] runToCompletion(Population population, SimulationParameters params, int maxSteps) {
+        int[] curve = delegate.runToCompletion(population, params, maxSteps);
+        BackpressurePublisher<SimulationResult> target = publisher;
+        if (target != null) {
+            int total = population.size();
+            for (int t = 0; t < curve.length; t++) {
+                int newAdopters = t == 0 ? curve[0] : curve[t] - curve[t - 1];
+                target.publish(new SimulationResult(t, newAdopters, curve[t], total, curve[t] >= total));
+            }
+        }
+        return curve;
+    }
+
+    private void publishInitialization(int totalPopulation) {
+        BackpressurePublisher<SimulationResult> target = publisher;
+        if (target == null) return;
+        int adopted = totalPopulation == 0 ? 0 : delegate.getAdoptedCount();
+        target.publish(new SimulationResult(0, adopted, adopted, totalPopulation, adopted >= totalPopulation));
+    }
+
+    private SimulationResult publish(SimulationResult result) {
+        BackpressurePublisher<SimulationResult> target = publisher;
+        if (target != null) {
+            target.publish(result);
+        }
+        return result;
+    }
+
+    @Override
+    public void selectNewAdoptersByDistance(List<Person> population, int newAdopters) {
+        delegate.selectNewAdoptersByDistance(population, newAdopters);
+    }
+
+    @Override
+    public double calculateEuclideanDistance(Person p1, Person p2) {
+        return delegate.calculateEuclideanDistance(p1, p2);
+    }
+
+    @Override
+    public void resetAdoptionStates(List<Person> population) {
+        delegate.resetAdoptionStates(population);
+    }
+
+    @Override
+    public void resetAdoptionStates(Population population) {
+        delegate.resetAdoptionStates(population);
+    }
+
+    @Override
+    public int countAdopters(List<Person> population) {
+        return delegate.countAdopters(population);
+    }
+
+    @Override
+    public int countAdopters(Population population) {
+        return delegate.countAdopters(population);
+    }
+
+    @Override
+    public int countNonAdopters(List<Person> population) {
+        return delegate.countNonAdopters(population);
+    }
+
+    @Override
+    public int countNonAdopters(Population population) {
+        return delegate.countNonAdopters(population);
+    }
+
+    @Override
+    public boolean isSimulationComplete(List<Person> population) {
+        return delegate.isSimulationComplete(population);
+    }
+
+    @Override
+    public boolean isSimulationComplete(Population population) {
+        return delegate.isSimulationComplete(population);
+    }
+
+    @Override
+    public int getAdoptedCount() {
+        return delegate.getAdoptedCount();
+    }
+
+    @Override
+    public int getNonAdoptedCount() {
+        return delegate.getNonAdoptedCount();
+    }
+
+    @Override
+    public void setSeed(long seed) {
+        delegate.setSeed(seed);
+    }
+}
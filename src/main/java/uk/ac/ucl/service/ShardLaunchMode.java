@@ -0,0 +1,17 @@
+package uk.ac.ucl.service;
+
+/**
+ * Where the shards of a {@link ShardedDiffusionService} run. Both modes use the same request
+ * protocol, so they produce the same results for a seed.
+ */
+public enum ShardLaunchMode {
+
+    /** Each shard runs on a thread in this JVM and talks to the coordinator through pipes. */
+    THREADS,
+
+    /**
+     * Each shard runs in its own JVM, started from this one's class path, and talks to the
+     * coordinator over its standard input and output. Shards then have separate heaps.
+     */
+    PROCESSES
+}
@@ -0,0 +1,354 @@
+package uk.ac.ucl.service;
+
+import uk.ac.ucl.util.BoundingBox;
+import uk.ac.ucl.util.DistanceKernel;
+import uk.ac.ucl.util.PartialSelection;
+import uk.ac.ucl.util.RandomStream;
+import uk.ac.ucl.util.SpatialGrid;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * One shard of a {@link ShardedDiffusionService}: the people in one spatial tile, their adoption
+ * states and each non-adopter's distance to the nearest adopter it knows of. Adopters in other
+ * tiles become known when the coordinator forwards them as halo points.
+ * A worker answers one request at a time from an input stream, so the same code serves a worker
+ * thread and a separate worker process started through {@link #main}.
+ */
+public class ShardWorker {
+
+    // Request codes; each request gets exactly one reply, a bare acknowledgement where there is no data
+    static final byte INIT = 1;
+    static final byte INNOVATE = 2;
+    static final byte HALO = 3;
+    static final byte SELECT = 4;
+    static final byte ADOPT = 5;
+    static final byte BAND = 6;
+    static final byte ADOPTERS = 7;
+    static final byte SHUTDOWN = 8;
+
+    private static final byte ACK = 0;
+
+    // Above this many pending adopters, the distance field update indexes them in a grid
+    private static final int INDEXED_UPDATE_THRESHOLD = 32;
+
+    private int[] globalIndex = new int[0];
+    private double[] xs = new double[0];
+    private double[] ys = new double[0];
+    private boolean[] adopted = new boolean[0];
+    private int[] adoptionStep = new int[0];
+    private double[] nearestAdopterDistance = new double[0];
+    private RandomStream random;
+    private final NonAdopterIndex nonAdopters = new NonAdopterIndex();
+
+    // Adopters, local or forwarded, not yet folded into the distance field
+    private double[] pendingXs = new double[64];
+    private double[] pendingYs = new double[64];
+    private int pendingCount;
+    private SpatialGrid pendingGrid;
+
+    // Scratch buffers for selection
+    private int[] candidateIds = new int[0];
+    private double[] candidateDistance = new double[0];
+    private int[] selectedPositions = new int[0];
+
+    /**
+     * Runs a worker process that serves requests on standard input and replies on standard output.
+     * Anything else the process prints goes to standard error, so it cannot corrupt the replies.
+     *
+     * @param args unused
+     * @throws IOException if the coordinator's streams fail
+     */
+    public static void main(String[] args) throws IOException {
+        OutputStream replies = new FileOutputStream(FileDescriptor.out);
+        System.setOut(System.err);
+        new ShardWorker().serve(System.in, replies);
+    }
+
+    /**
+     * Serves requests until a shutdown request or the end of the input.
+     *
+     * @param input request stream
+     * @param output reply stream
+     * @throws IOException if either stream fails
+     */
+    void serve(InputStream input, OutputStream output) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(input, 1 << 16));
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(output, 1 << 16));
+        try {
+            while (true) {
+                byte request;
+                try {
+                    request = in.readByte();
+                } catch (EOFException e) {
+                    return;
+                }
+                if (request == SHUTDOWN) {
+                    out.writeByte(ACK);
+                    out.flush();
+                    return;
+                }
+                handle(request, in, out);
+                out.flush();
+            }
+        } finally {
+            out.flush();
+        }
+    }
+
+    private void handle(byte request, DataInputStream in, DataOutputStream out) throws IOException {
+        switch (request) {
+            case INIT:
+                init(in);
+                out.writeByte(ACK);
+                break;
+            case INNOVATE:
+                innovate(in.readInt(), in.readInt(), out);
+                break;
+            case HALO:
+                int count = in.readInt();
+                for (int i = 0; i < count; i++) {
+                    addPending(in.readDouble(), in.readDouble());
+                }
+                out.writeByte(ACK);
+                break;
+            case SELECT:
+                select(in.readInt(), out);
+                break;
+            case ADOPT:
+                adoptRequested(in, out);
+                break;
+            case BAND:
+                band(in, out);
+                break;
+            case ADOPTERS:
+                adopters(out);
+                break;
+            default:
+                throw new IOException("Unknown shard request " + request);
+        }
+    }
+
+    /**
+     * Reads the shard's seed and people: global index, coordinates and adoption state per person,
+     * in ascending global index. Existing adopters are queued for the distance field.
+     */
+    private void init(DataInputStream in) throws IOException {
+        random = new RandomStream(in.readLong());
+        int size = in.readInt();
+        globalIndex = new int[size];
+        xs = new double[size];
+        ys = new double[size];
+        adopted = new boolean[size];
+        adoptionStep = new int[size];
+        Arrays.fill(adoptionStep, -1);
+        nearestAdopterDistance = new double[size];
+        Arrays.fill(nearestAdopterDistance, Double.MAX_VALUE);
+        candidateIds = new int[size];
+        candidateDistance = new double[size];
+        selectedPositions = new int[size];
+        pendingCount = 0;
+
+        for (int i = 0; i < size; i++) {
+            globalIndex[i] = in.readInt();
+            xs[i] = in.readDouble();
+            ys[i] = in.readDouble();
+            adopted[i] = in.readBoolean();
+            if (adopted[i]) addPending(xs[i], ys[i]);
+        }
+        nonAdopters.rebuild(size, person -> adopted[person]);
+    }
+
+    /**
+     * Adopts {@code count} non-adopters drawn uniformly at time step {@code step} and replies with
+     * their coordinates.
+     */
+    private void innovate(int step, int count, DataOutputStream out) throws IOException {
+        int actual = Math.min(count, nonAdopters.size());
+        out.writeInt(actual);
+        for (int i = 0; i < actual; i++) {
+            int person = nonAdopters.draw(random);
+            adopt(person, step);
+            out.writeDouble(xs[person]);
+            out.writeDouble(ys[person]);
+        }
+    }
+
+    /**
+     * Folds pending adopters into the distance field and replies with the shard's {@code m}
+     * closest non-adopters as distance and global index pairs, ties going to the lower index.
+     */
+    private void select(int m, DataOutputStream out) throws IOException {
+        foldPending();
+        for (int c = 0; c < nonAdopters.size(); c++) {
+            int person = nonAdopters.get(c);
+            candidateIds[c] = globalIndex[person];
+            candidateDistance[c] = nearestAdopterDistance[person];
+        }
+        int selected = PartialSelection.selectSmallestPositions(candidateDistance, candidateIds, 0, nonAdopters.size(),
+                m, selectedPositions, 0);
+        out.writeInt(selected);
+        for (int i = 0; i < selected; i++) {
+            out.writeDouble(candidateDistance[selectedPositions[i]]);
+            out.writeInt(candidateIds[selectedPositions[i]]);
+        }
+    }
+
+    /**
+     * Adopts the listed people, given by global index, at the given time step and replies with
+     * their coordinates.
+     */
+    private void adoptRequested(DataInputStream in, DataOutputStream out) throws IOException {
+        int step = in.readInt();
+        int count = in.readInt();
+        int[] people = new int[count];
+        for (int i = 0; i < count; i++) {
+            int global = in.readInt();
+            // Global indices arrive in ascending order at init, so the local index is a search away
+            people[i] = Arrays.binarySearch(globalIndex, global);
+            if (people[i] < 0) {
+                throw new IOException("Person " + global + " is not in this shard");
+            }
+        }
+        out.writeInt(count);
+        for (int person : people) {
+            if (adopted[person]) {
+                throw new IOException("Person " + globalIndex[person] + " has already adopted");
+            }
+            adopt(person, step);
+            out.writeDouble(xs[person]);
+            out.writeDouble(ys[person]);
+        }
+    }
+
+    /**
+     * Reads an inner and outer radius and a list of tiles, and replies for each tile, in order,
+     * with the coordinates of this shard's adopters more than {@code inner} and at most
+     * {@code outer} from it.
+     */
+    private void band(DataInputStream in, DataOutputStream out) throws IOException {
+        double inner = in.readDouble();
+        double outer = in.readDouble();
+        int tiles = in.readInt();
+        double[] bounds = new double[4 * tiles];
+        for (int i = 0; i < bounds.length; i++) {
+            bounds[i] = in.readDouble();
+        }
+
+        int[] adopters = new int[adopted.length - nonAdopters.size()];
+        int adopterCount = 0;
+        for (int i = 0; i < adopted.length; i++) {
+            if (adopted[i]) adopters[adopterCount++] = i;
+        }
+        int[] counts = new int[tiles];
+        for (int a = 0; a < adopterCount; a++) {
+            for (int t = 0; t < tiles; t++) {
+                if (inBand(adopters[a], bounds, t, inner, outer)) counts[t]++;
+            }
+        }
+        for (int t = 0; t < tiles; t++) {
+            out.writeInt(counts[t]);
+            if (counts[t] == 0) continue;
+            for (int a = 0; a < adopterCount; a++) {
+                if (inBand(adopters[a], bounds, t, inner, outer)) {
+                    out.writeDouble(xs[adopters[a]]);
+                    out.writeDouble(ys[adopters[a]]);
+                }
+            }
+        }
+    }
+
+    private boolean inBand(int person, double[] bounds, int tile, double inner, double outer) {
+        int b = 4 * tile;
+        double distance = distanceToRectangle(xs[person], ys[person], bounds[b], bounds[b + 1], bounds[b + 2],
+                bounds[b + 3]);
+        return distance > inner && distance <= outer;
+    }
+
+    /**
+     * Replies with the global index and adoption step of each person in this shard who adopted
+     * since init; those who had already adopted are left out.
+     */
+    private void adopters(DataOutputStream out) throws IOException {
+        int count = 0;
+        for (int step : adoptionStep) {
+            if (step >= 0) count++;
+        }
+        out.writeInt(count);
+        for (int i = 0; i < adopted.length; i++) {
+            if (adoptionStep[i] >= 0) {
+                out.writeInt(globalIndex[i]);
+                out.writeInt(adoptionStep[i]);
+            }
+        }
+    }
+
+    private void adopt(int person, int step) {
+        adopted[person] = true;
+        adoptionStep[person] = step;
+        nonAdopters.remove(person);
+        addPending(xs[person], ys[person]);
+    }
+
+    private void addPending(double x, double y) {
+        if (pendingCount == pendingXs.length) {
+            pendingXs = Arrays.copyOf(pendingXs, pendingCount * 2);
+            pendingYs = Arrays.copyOf(pendingYs, pendingCount * 2);
+        }
+        pendingXs[pendingCount] = x;
+        pendingYs[pendingCount] = y;
+        pendingCount++;
+    }
+
+    /** Lowers each non-adopter's nearest-adopter distance with the pending adopters. */
+    private void foldPending() {
+        if (pendingCount == 0) return;
+        SpatialGrid grid = null;
+        if (pendingCount > INDEXED_UPDATE_THRESHOLD) {
+            double minX = Double.MAX_VALUE, maxX = -Double.MAX_VALUE;
+            double minY = Double.MAX_VALUE, maxY = -Double.MAX_VALUE;
+            for (int i = 0; i < pendingCount; i++) {
+                minX = Math.min(minX, pendingXs[i]);
+                maxX = Math.max(maxX, pendingXs[i]);
+                minY = Math.min(minY, pendingYs[i]);
+                maxY = Math.max(maxY, pendingYs[i]);
+            }
+            if (pendingGrid == null) {
+                pendingGrid = new SpatialGrid(new BoundingBox(minX, maxX, minY, maxY), pendingCount);
+            } else {
+                pendingGrid.reset(minX, maxX, minY, maxY, pendingCount);
+            }
+            grid = pendingGrid;
+            for (int i = 0; i < pendingCount; i++) {
+                grid.insert(pendingXs[i], pendingYs[i]);
+            }
+        }
+
+        for (int c = 0; c < nonAdopters.size(); c++) {
+            int person = nonAdopters.get(c);
+            double distance = grid != null
+                    ? grid.nearestDistance(xs[person], ys[person])
+                    : DistanceKernel.minDistance(xs[person], ys[person], pendingXs, pendingYs, 0, pendingCount);
+            if (distance < nearestAdopterDistance[person]) {
+                nearestAdopterDistance[person] = distance;
+            }
+        }
+        pendingCount = 0;
+    }
+
+    static double distanceToRectangle(double x, double y, double minX, double maxX, double minY, double maxY) {
+        double dx = Math.max(0.0, Math.max(minX - x, x - maxX));
+        double dy = Math.max(0.0, Math.max(minY - y, y - maxY));
+        return Math.sqrt(dx * dx + dy * dy);
+    }
+}
@@ -0,0 +1,772 @@
+package uk.ac.ucl.service;
+
+import uk.ac.ucl.model.PopulationStore;
+import uk.ac.ucl.model.SimulationParameters;
+import uk.ac.ucl.util.PartialSelection;
+import uk.ac.ucl.util.RandomStream;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.Pipe;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the stepped distance-based Bass engine with the population split across shards, so a
+ * run is no longer limited to one JVM's heap and the distance phase runs on every shard at once.
+ * The population's bounding box is cut into one tile per shard, with strips along the wider axis
+ * cut again along the other so every tile holds about the same number of people.
+ * <p>
+ * This service coordinates the shards. Each step it works out the Bass innovator and imitator
+ * counts from the global adopter count, as the single-process engine does. Innovators are then
+ * drawn uniformly from the non-adopters of all shards. Imitators are the globally closest
+ * non-adopters: every shard proposes its closest candidates and the coordinator keeps the
+ * nearest. A shard knows only its own adopters plus halo adopters forwarded from other tiles
+ * within a halo radius. A proposal is exact whenever it is within that radius, so the halo is
+ * widened, and the selection repeated, until the chosen distances fit inside it.
+ * <p>
+ * Step counts depend only on {@code p}, {@code q} and the global counts, so the adoption curve
+ * matches {@link DiffusionSimulationServiceImpl} for the same parameters. With the same adopters,
+ * imitators are the same people too. Only the random innovator draws differ. Propensities are
+ * not supported.
+ * <p>
+ * The coordinator keeps no per-person arrays: tiles are cut from a sample of positions, a
+ * person's shard follows from their position, and people are streamed to the shards straight from
+ * the {@link PopulationStore}. While stepping it holds only buffers sized by a step's adopters.
+ * Each shard, though, copies its tile's positions and adoption states into arrays on its own heap,
+ * next to its working state, at about 60 bytes per person. With {@link ShardLaunchMode#PROCESSES}
+ * a mapped {@link uk.ac.ucl.model.OffHeapPopulation} of 100 million people therefore needs room on
+ * the worker JVMs' heaps but not on the coordinator's; with {@link ShardLaunchMode#THREADS} the
+ * shards' arrays share this JVM's heap. A store that keeps adoption steps also receives the step
+ * at which each person adopted.
+ */
+public class ShardedDiffusionService {
+
+    // Keys of the streams derived from the seed: shard allocation of random draws, and worker seeds
+    private static final long ALLOCATION_STREAM = 1;
+    private static final long WORKER_SEED_STREAM = 2;
+
+    // Starting halo radius as a fraction of a tile's diagonal; it grows as selections require
+    private static final double INITIAL_HALO_FRACTION = 0.125;
+
+    // Tiles are cut at quantiles of at most this many evenly spaced people
+    private static final int PARTITION_SAMPLE_SIZE = 1 << 20;
+
+    // How long a shard has to acknowledge shutdown and exit before it is stopped forcibly
+    private static final long SHUTDOWN_TIMEOUT_MILLIS = 10_000;
+
+    private final int shardCount;
+    private final ShardLaunchMode launchMode;
+    private final List<String> workerJvmOptions;
+    private RandomStream allocationRandom;
+    private RandomStream workerSeedRandom;
+
+    // State of the run in progress
+    private Shard[] shards;
+    private PopulationStore population;
+    private int currentStep;
+    private int totalPopulation;
+    private int adoptedCount;
+    private double haloRadius;
+    private double diagonal;
+
+    // Tile cuts: strips along the wider axis, then cuts along the other axis within each strip
+    private boolean stripsAlongX;
+    private double[] stripCuts = new double[0];
+    private double[][] tileCuts = new double[][]{new double[0]};
+    private int[] firstShard = new int[]{0, 1};
+
+    // Adopters since the last halo exchange and the shard each belongs to
+    private double[] pendingXs = new double[64];
+    private double[] pendingYs = new double[64];
+    private int[] pendingShard = new int[64];
+    private int pendingCount;
+
+    // Merged shard proposals for imitator selection
+    private double[] mergeDistance = new double[0];
+    private int[] mergeIndex = new int[0];
+    private int[] mergePosition = new int[0];
+
+    /**
+     * Creates a sharded service whose shards run on threads in this JVM.
+     *
+     * @param shardCount number of shards; at least 1
+     */
+    public ShardedDiffusionService(int shardCount) {
+        this(shardCount, ShardLaunchMode.THREADS, List.of());
+    }
+
+    /**
+     * Creates a sharded service.
+     *
+     * @param shardCount number of shards; at least 1
+     * @param launchMode whether shards run on threads or in worker processes
+     * @param workerJvmOptions extra options for worker JVMs, such as {@code -Xmx8g}; ignored for threads
+     * @throws IllegalArgumentException if the shard count is less than 1
+     */
+    public ShardedDiffusionService(int shardCount, ShardLaunchMode launchMode, List<String> workerJvmOptions) {
+        if (shardCount < 1) {
+            throw new IllegalArgumentException("Shard count must be at least 1");
+        }
+        this.shardCount = shardCount;
+        this.launchMode = launchMode;
+        this.workerJvmOptions = List.copyOf(workerJvmOptions);
+        seedStreams(RandomStream.fromEntropy());
+    }
+
+    /**
+     * Initializes {@code k} adopters and runs until everyone has adopted, {@code maxSteps} steps
+     * have run, or a step adopts no one. The final adoption states, and adoption steps for stores
+     * that keep them, are copied into the population.
+     *
+     * @param population the population to simulate; its adoption states are reset first
+     * @param params simulation parameters (p, q, k)
+     * @param maxSteps maximum number of steps to run
+     * @return cumulative adopters after initialization (index 0) and after each step run
+     * @throws IllegalArgumentException if maxSteps is negative
+     * @throws IOException if a shard fails or cannot be started
+     */
+    public int[] runToCompletion(PopulationStore population, SimulationParameters params, int maxSteps)
+            throws IOException {
+        checkMaxSteps(maxSteps);
+        population.resetAdoptionStates();
+        return run(population, params, maxSteps, params.getK());
+    }
+
+    /**
+     * Runs on from the population's current adoption states, without drawing initial adopters,
+     * as {@link #runToCompletion} does otherwise. Adoption steps count from 1 for the first step
+     * of this run, and existing adopters keep theirs.
+     *
+     * @param population the population to simulate
+     * @param params simulation parameters (p, q, k); k is not used
+     * @param maxSteps maximum number of steps to run
+     * @return cumulative adopters at the start (index 0) and after each step run
+     * @throws IllegalArgumentException if maxSteps is negative
+     * @throws IOException if a shard fails or cannot be started
+     */
+    public int[] continueRun(PopulationStore population, SimulationParameters params, int maxSteps)
+            throws IOException {
+        checkMaxSteps(maxSteps);
+        return run(population, params, maxSteps, 0);
+    }
+
+    private static void checkMaxSteps(int maxSteps) {
+        if (maxSteps < 0) {
+            throw new IllegalArgumentException("Maximum steps must be non-negative");
+        }
+    }
+
+    private int[] run(PopulationStore population, SimulationParameters params, int maxSteps, int initialAdopters)
+            throws IOException {
+        if (population.isEmpty()) {
+            return new int[]{0};
+        }
+
+        startShards(population);
+        try {
+            currentStep = 0;
+            if (initialAdopters > 0) {
+                innovate(Math.min(initialAdopters, totalPopulation));
+            }
+            int[] curve = new int[Math.min(maxSteps, totalPopulation - adoptedCount) + 1];
+            curve[0] = adoptedCount;
+
+            int steps = 0;
+            while (steps < maxSteps && adoptedCount < totalPopulation) {
+                // As in the single-process engine, a step that adopts no one never will again
+                currentStep = steps + 1;
+                if (advance(params) == 0) break;
+                curve[++steps] = adoptedCount;
+            }
+
+            collectAdoptionStates();
+            return steps + 1 == curve.length ? curve : Arrays.copyOf(curve, steps + 1);
+        } finally {
+            stopShards();
+            this.population = null;
+        }
+    }
+
+    /**
+     * Performs one step with the Bass counts of the single-process engine.
+     *
+     * @return number of people who adopted in this step
+     */
+    private int advance(SimulationParameters params) throws IOException {
+        int nonAdoptedCount = totalPopulation - adoptedCount;
+        int innovators = (int) Math.ceil(params.getP() * nonAdoptedCount);
+        int imitators = (int) Math.ceil(params.getQ() * nonAdoptedCount * adoptedCount / (double) totalPopulation);
+        innovators = Math.min(innovators, nonAdoptedCount);
+        imitators = Math.min(imitators, nonAdoptedCount - innovators);
+
+        int newAdopters = 0;
+        if (innovators > 0) {
+            newAdopters += innovate(innovators);
+        }
+        if (imitators > 0 && adoptedCount > 0) {
+            newAdopters += imitate(imitators);
+        }
+        return newAdopters;
+    }
+
+    /**
+     * Adopts people drawn uniformly without replacement from all non-adopters. Each draw picks a
+     * shard in proportion to its remaining non-adopters, and the shards then draw their share.
+     *
+     * @param count number of people to adopt, at most the number of non-adopters
+     * @return number adopted
+     */
+    private int innovate(int count) throws IOException {
+        int[] shareOf = new int[shards.length];
+        int[] remaining = new int[shards.length];
+        int remainingTotal = 0;
+        for (int s = 0; s < shards.length; s++) {
+            remaining[s] = shards[s].nonAdopterCount;
+            remainingTotal += remaining[s];
+        }
+        for (int i = 0; i < count; i++) {
+            int draw = allocationRandom.nextInt(remainingTotal);
+            int s = 0;
+            while (draw >= remaining[s]) {
+                draw -= remaining[s++];
+            }
+            shareOf[s]++;
+            remaining[s]--;
+            remainingTotal--;
+        }
+
+        for (int s = 0; s < shards.length; s++) {
+            if (shareOf[s] == 0) continue;
+            shards[s].out.writeByte(ShardWorker.INNOVATE);
+            shards[s].out.writeInt(currentStep);
+            shards[s].out.writeInt(shareOf[s]);
+            shards[s].out.flush();
+        }
+        int adopted = 0;
+        for (int s = 0; s < shards.length; s++) {
+            if (shareOf[s] > 0) adopted += readAdopted(s);
+        }
+        return adopted;
+    }
+
+    /**
+     * Adopts the {@code m} non-adopters closest to an adopter, ties going to the lower index,
+     * widening the halo until every chosen distance is within it.
+     *
+     * @param m number of imitators, at most the number of non-adopters
+     * @return number adopted
+     */
+    private int imitate(int m) throws IOException {
+        int selected;
+        while (true) {
+            exchangeHalo();
+            int merged = 0;
+            for (Shard shard : shards) {
+                shard.out.writeByte(ShardWorker.SELECT);
+                shard.out.writeInt(m);
+                shard.out.flush();
+            }
+            for (Shard shard : shards) {
+                int count = shard.in.readInt();
+                ensureMergeCapacity(merged + count);
+                for (int i = 0; i < count; i++) {
+                    mergeDistance[merged] = shard.in.readDouble();
+                    mergeIndex[merged] = shard.in.readInt();
+                    merged++;
+                }
+            }
+            selected = PartialSelection.selectSmallestPositions(mergeDistance, mergeIndex, 0, merged, m,
+                    mergePosition, 0);
+
+            double furthest = 0.0;
+            for (int i = 0; i < selected; i++) {
+                furthest = Math.max(furthest, mergeDistance[mergePosition[i]]);
+            }
+            // Every adopter within the halo radius of a tile is known to it, so proposals up to
+            // that distance are exact and anything they beat is at least as far in truth
+            if (furthest <= haloRadius || haloRadius >= diagonal) break;
+            widenHalo(Math.min(Math.max(furthest, 2 * haloRadius), diagonal));
+        }
+
+        int[] picks = new int[selected];
+        for (int i = 0; i < selected; i++) {
+            picks[i] = mergeIndex[mergePosition[i]];
+        }
+        Arrays.sort(picks);
+        int[] pickShard = new int[selected];
+        int[] perShard = new int[shards.length];
+        for (int i = 0; i < selected; i++) {
+            pickShard[i] = shardFor(population.getXPos(picks[i]), population.getYPos(picks[i]));
+            perShard[pickShard[i]]++;
+        }
+        for (int s = 0; s < shards.length; s++) {
+            if (perShard[s] == 0) continue;
+            DataOutputStream out = shards[s].out;
+            out.writeByte(ShardWorker.ADOPT);
+            out.writeInt(currentStep);
+            out.writeInt(perShard[s]);
+            for (int i = 0; i < selected; i++) {
+                if (pickShard[i] == s) out.writeInt(picks[i]);
+            }
+            out.flush();
+        }
+        int adopted = 0;
+        for (int s = 0; s < shards.length; s++) {
+            if (perShard[s] > 0) adopted += readAdopted(s);
+        }
+        return adopted;
+    }
+
+    /** Reads an adoption reply from a shard and queues the new adopters for the halo exchange. */
+    private int readAdopted(int s) throws IOException {
+        DataInputStream in = shards[s].in;
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            queuePending(in.readDouble(), in.readDouble(), s);
+        }
+        shards[s].nonAdopterCount -= count;
+        adoptedCount += count;
+        return count;
+    }
+
+    private void queuePending(double x, double y, int shard) {
+        if (pendingCount == pendingXs.length) {
+            pendingXs = Arrays.copyOf(pendingXs, pendingCount * 2);
+            pendingYs = Arrays.copyOf(pendingYs, pendingCount * 2);
+            pendingShard = Arrays.copyOf(pendingShard, pendingCount * 2);
+        }
+        pendingXs[pendingCount] = x;
+        pendingYs[pendingCount] = y;
+        pendingShard[pendingCount] = shard;
+        pendingCount++;
+    }
+
+    /** Forwards each queued adopter to the other tiles within the halo radius of it. */
+    private void exchangeHalo() throws IOException {
+        if (pendingCount == 0) return;
+        for (int t = 0; t < shards.length; t++) {
+            Shard target = shards[t];
+            int count = 0;
+            for (int i = 0; i < pendingCount; i++) {
+                if (pendingShard[i] != t && target.distanceTo(pendingXs[i], pendingYs[i]) <= haloRadius) count++;
+            }
+            target.out.writeByte(ShardWorker.HALO);
+            target.out.writeInt(count);
+            for (int i = 0; i < pendingCount; i++) {
+                if (pendingShard[i] != t && target.distanceTo(pendingXs[i], pendingYs[i]) <= haloRadius) {
+                    target.out.writeDouble(pendingXs[i]);
+                    target.out.writeDouble(pendingYs[i]);
+                }
+            }
+            target.out.flush();
+        }
+        for (Shard shard : shards) {
+            shard.in.readByte();
+        }
+        pendingCount = 0;
+    }
+
+    /**
+     * Widens the halo: each tile receives the other shards' adopters that are beyond the current
+     * radius from it but within the new one. Every shard is sent all tiles in one request and
+     * answers for all of them, so a widening costs two round trips with every shard at once.
+     */
+    private void widenHalo(double newRadius) throws IOException {
+        for (Shard shard : shards) {
+            DataOutputStream out = shard.out;
+            out.writeByte(ShardWorker.BAND);
+            out.writeDouble(haloRadius);
+            out.writeDouble(newRadius);
+            out.writeInt(shards.length);
+            for (Shard tile : shards) {
+                out.writeDouble(tile.minX);
+                out.writeDouble(tile.maxX);
+                out.writeDouble(tile.minY);
+                out.writeDouble(tile.maxY);
+            }
+            out.flush();
+        }
+
+        // A shard's own adopters all lie in its tile, so it never sends any to itself
+        double[][] bandXs = new double[shards.length][16];
+        double[][] bandYs = new double[shards.length][16];
+        int[] counts = new int[shards.length];
+        for (Shard source : shards) {
+            for (int t = 0; t < shards.length; t++) {
+                int received = source.in.readInt();
+                int count = counts[t];
+                if (count + received > bandXs[t].length) {
+                    bandXs[t] = Arrays.copyOf(bandXs[t], Math.max(bandXs[t].length * 2, count + received));
+                    bandYs[t] = Arrays.copyOf(bandYs[t], bandXs[t].length);
+                }
+                for (int i = 0; i < received; i++) {
+                    bandXs[t][count] = source.in.readDouble();
+                    bandYs[t][count] = source.in.readDouble();
+                    count++;
+                }
+                counts[t] = count;
+            }
+        }
+
+        for (int t = 0; t < shards.length; t++) {
+            DataOutputStream out = shards[t].out;
+            out.writeByte(ShardWorker.HALO);
+            out.writeInt(counts[t]);
+            for (int i = 0; i < counts[t]; i++) {
+                out.writeDouble(bandXs[t][i]);
+                out.writeDouble(bandYs[t][i]);
+            }
+            out.flush();
+        }
+        for (Shard shard : shards) {
+            shard.in.readByte();
+        }
+        haloRadius = newRadius;
+    }
+
+    /** Copies the people who adopted during the run, and their adoption steps, into the population. */
+    private void collectAdoptionStates() throws IOException {
+        for (Shard shard : shards) {
+            shard.out.writeByte(ShardWorker.ADOPTERS);
+            shard.out.flush();
+        }
+        for (Shard shard : shards) {
+            int count = shard.in.readInt();
+            for (int i = 0; i < count; i++) {
+                int person = shard.in.readInt();
+                population.setHasAdopted(person, true);
+                population.setAdoptionStep(person, shard.in.readInt());
+            }
+        }
+    }
+
+    /**
+     * Splits the population into tiles, starts a shard per tile and streams each its people in
+     * one pass over the population.
+     */
+    private void startShards(PopulationStore population) throws IOException {
+        this.population = population;
+        totalPopulation = population.size();
+        adoptedCount = population.countAdopters();
+        pendingCount = 0;
+        partition();
+
+        shards = new Shard[shardCount];
+        // A first pass sizes each tile and finds its bounding rectangle
+        int[] sizes = new int[shardCount];
+        double[] tileMinX = new double[shardCount], tileMaxX = new double[shardCount];
+        double[] tileMinY = new double[shardCount], tileMaxY = new double[shardCount];
+        Arrays.fill(tileMinX, Double.MAX_VALUE);
+        Arrays.fill(tileMaxX, -Double.MAX_VALUE);
+        Arrays.fill(tileMinY, Double.MAX_VALUE);
+        Arrays.fill(tileMaxY, -Double.MAX_VALUE);
+        double minX = Double.MAX_VALUE, maxX = -Double.MAX_VALUE;
+        double minY = Double.MAX_VALUE, maxY = -Double.MAX_VALUE;
+        for (int i = 0; i < totalPopulation; i++) {
+            double x = population.getXPos(i);
+            double y = population.getYPos(i);
+            int s = shardFor(x, y);
+            sizes[s]++;
+            tileMinX[s] = Math.min(tileMinX[s], x);
+            tileMaxX[s] = Math.max(tileMaxX[s], x);
+            tileMinY[s] = Math.min(tileMinY[s], y);
+            tileMaxY[s] = Math.max(tileMaxY[s], y);
+            minX = Math.min(minX, x);
+            maxX = Math.max(maxX, x);
+            minY = Math.min(minY, y);
+            maxY = Math.max(maxY, y);
+        }
+        diagonal = Math.hypot(maxX - minX, maxY - minY);
+        haloRadius = INITIAL_HALO_FRACTION * diagonal / Math.sqrt(shardCount);
+
+        try {
+            for (int s = 0; s < shardCount; s++) {
+                shards[s] = launch();
+                shards[s].setBounds(tileMinX[s], tileMaxX[s], tileMinY[s], tileMaxY[s]);
+                shards[s].out.writeByte(ShardWorker.INIT);
+                shards[s].out.writeLong(workerSeedRandom.nextLong());
+                shards[s].out.writeInt(sizes[s]);
+            }
+            // Shards read while people are written, so writing to all of them at once cannot block
+            for (int i = 0; i < totalPopulation; i++) {
+                double x = population.getXPos(i);
+                double y = population.getYPos(i);
+                boolean adopted = population.hasAdopted(i);
+                int s = shardFor(x, y);
+                DataOutputStream out = shards[s].out;
+                out.writeInt(i);
+                out.writeDouble(x);
+                out.writeDouble(y);
+                out.writeBoolean(adopted);
+                if (adopted) {
+                    // Existing adopters reach the other tiles with the first halo exchange
+                    queuePending(x, y, s);
+                } else {
+                    shards[s].nonAdopterCount++;
+                }
+            }
+            for (Shard shard : shards) {
+                shard.out.flush();
+            }
+            for (Shard shard : shards) {
+                shard.in.readByte();
+            }
+        } catch (IOException | RuntimeException e) {
+            stopShards();
+            throw e;
+        }
+    }
+
+    /**
+     * Cuts the tiles. The wider axis is cut into strips at coordinate quantiles, and each strip is
+     * cut along the other axis, so tiles hold near-equal numbers of people. Quantiles are taken
+     * from evenly spaced people, so only the sample is held on the heap.
+     */
+    private void partition() {
+        stripCuts = new double[0];
+        tileCuts = new double[][]{new double[0]};
+        firstShard = new int[]{0, 1};
+        if (shardCount == 1) return;
+
+        int samples = Math.min(totalPopulation, PARTITION_SAMPLE_SIZE);
+        double[] sampleXs = new double[samples];
+        double[] sampleYs = new double[samples];
+        double minX = Double.MAX_VALUE, maxX = -Double.MAX_VALUE;
+        double minY = Double.MAX_VALUE, maxY = -Double.MAX_VALUE;
+        for (int j = 0; j < samples; j++) {
+            int person = (int) ((long) j * totalPopulation / samples);
+            sampleXs[j] = population.getXPos(person);
+            sampleYs[j] = population.getYPos(person);
+            minX = Math.min(minX, sampleXs[j]);
+            maxX = Math.max(maxX, sampleXs[j]);
+            minY = Math.min(minY, sampleYs[j]);
+            maxY = Math.max(maxY, sampleYs[j]);
+        }
+
+        double width = maxX - minX;
+        double height = maxY - minY;
+        stripsAlongX = width >= height;
+        double[] primary = stripsAlongX ? sampleXs : sampleYs;
+        double[] secondary = stripsAlongX ? sampleYs : sampleXs;
+        double aspect = stripsAlongX ? (height > 0 ? width / height : shardCount) : (width > 0 ? height / width : shardCount);
+        int strips = (int) Math.max(1, Math.min(shardCount, Math.round(Math.sqrt(shardCount * aspect))));
+
+        // Shards per strip, spreading any remainder over the first strips
+        int[] stripShards = new int[strips];
+        firstShard = new int[strips + 1];
+        for (int k = 0; k < strips; k++) {
+            stripShards[k] = shardCount / strips + (k < shardCount % strips ? 1 : 0);
+            firstShard[k + 1] = firstShard[k] + stripShards[k];
+        }
+
+        double[] sorted = primary.clone();
+        Arrays.sort(sorted);
+        stripCuts = new double[strips - 1];
+        for (int k = 1; k < strips; k++) {
+            stripCuts[k - 1] = sorted[(int) ((long) firstShard[k] * samples / shardCount)];
+        }
+        int[] strip = new int[samples];
+        int[] stripSize = new int[strips];
+        for (int j = 0; j < samples; j++) {
+            strip[j] = cutIndex(stripCuts, primary[j]);
+            stripSize[strip[j]]++;
+        }
+
+        tileCuts = new double[strips][];
+        for (int k = 0; k < strips; k++) {
+            double[] stripValues = new double[stripSize[k]];
+            int n = 0;
+            for (int j = 0; j < samples; j++) {
+                if (strip[j] == k) stripValues[n++] = secondary[j];
+            }
+            Arrays.sort(stripValues);
+            tileCuts[k] = new double[n == 0 ? 0 : stripShards[k] - 1];
+            for (int t = 1; t <= tileCuts[k].length; t++) {
+                tileCuts[k][t - 1] = stripValues[(int) ((long) t * n / stripShards[k])];
+            }
+        }
+    }
+
+    /** @return the shard whose tile holds the position */
+    private int shardFor(double x, double y) {
+        int k = cutIndex(stripCuts, stripsAlongX ? x : y);
+        return firstShard[k] + cutIndex(tileCuts[k], stripsAlongX ? y : x);
+    }
+
+    private static int cutIndex(double[] cuts, double value) {
+        int k = 0;
+        while (k < cuts.length && value >= cuts[k]) k++;
+        return k;
+    }
+
+    private Shard launch() throws IOException {
+        if (launchMode == ShardLaunchMode.THREADS) {
+            Pipe requests = Pipe.open();
+            Pipe replies = Pipe.open();
+            InputStream workerInput = Channels.newInputStream(requests.source());
+            OutputStream workerOutput = Channels.newOutputStream(replies.sink());
+            Thread thread = new Thread(() -> {
+                try {
+                    new ShardWorker().serve(workerInput, workerOutput);
+                } catch (IOException e) {
+                    System.err.println("Shard worker failed: " + e.getMessage());
+                } finally {
+                    try {
+                        workerOutput.close();
+                    } catch (IOException e) {
+                        System.err.println("Error closing shard worker output: " + e.getMessage());
+                    }
+                }
+            }, "shard-worker");
+            thread.setDaemon(true);
+            thread.start();
+            return new Shard(Channels.newInputStream(replies.source()), Channels.newOutputStream(requests.sink()),
+                    null, thread);
+        }
+
+        List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        command.addAll(workerJvmOptions);
+        // Workers start from the same class or module path as this JVM
+        String classPath = System.getProperty("java.class.path");
+        if (classPath != null && !classPath.isEmpty()) {
+            command.add("-cp");
+            command.add(classPath);
+        }
+        Module module = ShardWorker.class.getModule();
+        String modulePath = System.getProperty("jdk.module.path");
+        if (module.isNamed() && modulePath != null) {
+            command.add("--module-path");
+            command.add(modulePath);
+            command.add("-m");
+            command.add(module.getName() + "/" + ShardWorker.class.getName());
+        } else {
+            command.add(ShardWorker.class.getName());
+        }
+        Process process = new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+        return new Shard(process.getInputStream(), process.getOutputStream(), process, null);
+    }
+
+    private void stopShards() {
+        if (shards == null) return;
+        for (Shard shard : shards) {
+            if (shard != null) shard.close();
+        }
+        shards = null;
+    }
+
+    private void ensureMergeCapacity(int size) {
+        if (mergeDistance.length < size) {
+            int capacity = Math.max(size, mergeDistance.length * 2);
+            mergeDistance = Arrays.copyOf(mergeDistance, capacity);
+            mergeIndex = Arrays.copyOf(mergeIndex, capacity);
+            mergePosition = new int[capacity];
+        }
+    }
+
+    public int getShardCount() {
+        return shardCount;
+    }
+
+    public ShardLaunchMode getLaunchMode() {
+        return launchMode;
+    }
+
+    /**
+     * Sets the random seed for reproducible results. Runs with the same seed, shard count and
+     * population give the same adopters in either launch mode.
+     *
+     * @param seed the random seed value
+     */
+    public void setSeed(long seed) {
+        seedStreams(new RandomStream(seed));
+    }
+
+    private void seedStreams(RandomStream master) {
+        allocationRandom = master.derive(ALLOCATION_STREAM);
+        workerSeedRandom = master.derive(WORKER_SEED_STREAM);
+    }
+
+    /**
+     * Connection to one shard, with the bounding rectangle of its people. The shard runs either in
+     * a worker process or on a worker thread; the other is null.
+     */
+    private static class Shard {
+        final DataInputStream in;
+        final DataOutputStream out;
+        final Process process;
+        final Thread thread;
+        double minX = Double.MAX_VALUE, maxX = -Double.MAX_VALUE;
+        double minY = Double.MAX_VALUE, maxY = -Double.MAX_VALUE;
+        int nonAdopterCount;
+
+        Shard(InputStream input, OutputStream output, Process process, Thread thread) {
+            this.in = new DataInputStream(new BufferedInputStream(input, 1 << 16));
+            this.out = new DataOutputStream(new BufferedOutputStream(output, 1 << 16));
+            this.process = process;
+            this.thread = thread;
+        }
+
+        void setBounds(double minX, double maxX, double minY, double maxY) {
+            this.minX = minX;
+            this.maxX = maxX;
+            this.minY = minY;
+            this.maxY = maxY;
+        }
+
+        double distanceTo(double x, double y) {
+            return ShardWorker.distanceToRectangle(x, y, minX, maxX, minY, maxY);
+        }
+
+        /**
+         * Asks the worker to shut down and waits a bounded time for it to finish, rather than for
+         * its acknowledgement, which a hung or busy worker might never send. A process that
+         * outlives the wait is destroyed forcibly and a thread is interrupted.
+         */
+        void close() {
+            try {
+                out.writeByte(ShardWorker.SHUTDOWN);
+                out.flush();
+            } catch (IOException e) {
+                // Already gone; the worker is stopped below
+            }
+            boolean exited = awaitExit();
+            try {
+                out.close();
+                in.close();
+            } catch (IOException e) {
+                System.err.println("Error closing shard connection: " + e.getMessage());
+            }
+            if (!exited) {
+                if (process != null) {
+                    process.destroyForcibly();
+                } else {
+                    thread.interrupt();
+                }
+            }
+        }
+
+        private boolean awaitExit() {
+            try {
+                if (process != null) {
+                    return process.waitFor(SHUTDOWN_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+                }
+                thread.join(SHUTDOWN_TIMEOUT_MILLIS);
+                return !thread.isAlive();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package uk.ac.ucl.util;
+
+/**
+ * What a {@link BackpressurePublisher} does with a new item when a subscriber's buffer is full.
+ * The publisher never waits for a subscriber, so one of these decides which items a slow
+ * subscriber misses.
+ */
+public enum BackpressurePolicy {
+
+    /** Discards the new item, so the subscriber sees the oldest undelivered items. */
+    DROP,
+
+    /**
+     * Evicts the oldest buffered item to make room, so the subscriber sees the most recent items.
+     * With a capacity of one it always receives the latest item published.
+     */
+    LATEST,
+
+    /** Grows the buffer past its capacity, so the subscriber sees every item at the cost of memory. */
+    BUFFER
+}
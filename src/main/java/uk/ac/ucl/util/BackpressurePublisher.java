@@ -0,0 +1,319 @@
+package uk.ac.ucl.util;
+
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * A {@link Flow.Publisher} that never blocks the thread publishing to it.
+ * Each subscriber gets a bounded buffer and its own {@link BackpressurePolicy} for when the buffer
+ * is full, and is called on an {@link Executor}, one signal at a time and in publication order.
+ * A slow subscriber therefore only ever costs the publisher a buffer insertion; what it misses
+ * is decided by its policy. Items are delivered as the subscriber requests them.
+ *
+ * @param <T> the published item type
+ */
+public class BackpressurePublisher<T> implements Flow.Publisher<T>, AutoCloseable {
+
+    private final Executor executor;
+    private final int bufferCapacity;
+    private final BackpressurePolicy defaultPolicy;
+    private final List<BufferedSubscription> subscriptions = new CopyOnWriteArrayList<>();
+    private final AtomicLong droppedCount = new AtomicLong();
+
+    private volatile boolean closed;
+    private Throwable closedException;
+
+    /**
+     * Creates a publisher that delivers on the common fork/join pool, buffers
+     * {@link Flow#defaultBufferSize()} items per subscriber and keeps the latest items by default.
+     */
+    public BackpressurePublisher() {
+        this(ForkJoinPool.commonPool(), Flow.defaultBufferSize(), BackpressurePolicy.LATEST);
+    }
+
+    /**
+     * Creates a publisher.
+     *
+     * @param executor runs subscriber signals; each subscriber is called from one task at a time
+     * @param bufferCapacity items buffered per subscriber before its policy applies; at least 1
+     * @param defaultPolicy policy for subscribers that do not choose one
+     * @throws IllegalArgumentException if the capacity is less than 1
+     */
+    public BackpressurePublisher(Executor executor, int bufferCapacity, BackpressurePolicy defaultPolicy) {
+        if (bufferCapacity < 1) {
+            throw new IllegalArgumentException("Buffer capacity must be at least 1");
+        }
+        this.executor = executor;
+        this.bufferCapacity = bufferCapacity;
+        this.defaultPolicy = defaultPolicy;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super T> subscriber) {
+        subscribe(subscriber, defaultPolicy);
+    }
+
+    /**
+     * Adds a subscriber with its own policy for a full buffer. A subscriber added after
+     * {@link #close} is completed straight after {@code onSubscribe}.
+     *
+     * @param subscriber the subscriber
+     * @param policy what to do when the subscriber's buffer is full
+     * @throws NullPointerException if the subscriber is null
+     */
+    public void subscribe(Flow.Subscriber<? super T> subscriber, BackpressurePolicy policy) {
+        if (subscriber == null) {
+            throw new NullPointerException("Subscriber must not be null");
+        }
+        BufferedSubscription subscription = new BufferedSubscription(subscriber, policy);
+        synchronized (this) {
+            if (closed) {
+                subscription.terminate(closedException);
+            } else {
+                subscriptions.add(subscription);
+            }
+        }
+        subscription.schedule();
+    }
+
+    /**
+     * Offers an item to every current subscriber without waiting for any of them.
+     *
+     * @param item the item to publish
+     * @return number of subscribers that lost an item to their policy, this one or an older one
+     * @throws NullPointerException if the item is null
+     * @throws IllegalStateException if the publisher has been closed
+     */
+    public int publish(T item) {
+        if (item == null) {
+            throw new NullPointerException("Item must not be null");
+        }
+        if (closed) {
+            throw new IllegalStateException("Publisher is closed");
+        }
+        int dropped = 0;
+        for (BufferedSubscription subscription : subscriptions) {
+            if (!subscription.offer(item)) dropped++;
+        }
+        return dropped;
+    }
+
+    /**
+     * Stops accepting items. Each subscriber still receives its buffered items as it requests
+     * them, followed by {@code onComplete}.
+     */
+    @Override
+    public void close() {
+        closeWith(null);
+    }
+
+    /**
+     * Stops accepting items and signals {@code onError} to every subscriber, discarding whatever
+     * they have not yet received.
+     *
+     * @param error the error to signal
+     */
+    public void closeExceptionally(Throwable error) {
+        if (error == null) {
+            throw new NullPointerException("Error must not be null");
+        }
+        closeWith(error);
+    }
+
+    private void closeWith(Throwable error) {
+        synchronized (this) {
+            if (closed) return;
+            closedException = error;
+            closed = true;
+        }
+        for (BufferedSubscription subscription : subscriptions) {
+            subscription.terminate(error);
+            subscription.schedule();
+        }
+    }
+
+    public boolean isClosed() { return closed; }
+    public int getSubscriberCount() { return subscriptions.size(); }
+
+    /** @return items discarded by subscriber policies since the publisher was created */
+    public long getDroppedCount() { return droppedCount.get(); }
+
+    /**
+     * Creates a subscriber that requests everything and hands each item to a consumer.
+     * It still receives items on the publisher's executor, so its policy decides what it misses
+     * when the consumer falls behind.
+     *
+     * @param onNext called with each item
+     * @param onComplete called once the publisher is closed and every item delivered; may be null
+     * @param <T> the item type
+     * @return the subscriber
+     */
+    public static <T> Flow.Subscriber<T> subscriber(Consumer<? super T> onNext, Runnable onComplete) {
+        return new Flow.Subscriber<T>() {
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                subscription.request(Long.MAX_VALUE);
+            }
+
+            @Override
+            public void onNext(T item) {
+                onNext.accept(item);
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                System.err.println("Subscriber terminated with an error: " + throwable.getMessage());
+                if (onComplete != null) onComplete.run();
+            }
+
+            @Override
+            public void onComplete() {
+                if (onComplete != null) onComplete.run();
+            }
+        };
+    }
+
+    /**
+     * One subscriber's buffer and demand. Signals are sent by a drain task on the executor;
+     * the work counter makes sure at most one drain runs at a time and none is missed.
+     */
+    private class BufferedSubscription implements Flow.Subscription, Runnable {
+        private final Flow.Subscriber<? super T> subscriber;
+        private final BackpressurePolicy policy;
+        private final AtomicInteger work = new AtomicInteger();
+
+        // Guarded by this
+        private final ArrayDeque<T> buffer = new ArrayDeque<>();
+        private long demand;
+        private boolean completing;
+        private Throwable error;
+
+        private volatile boolean cancelled;
+        private boolean subscribed;
+
+        BufferedSubscription(Flow.Subscriber<? super T> subscriber, BackpressurePolicy policy) {
+            this.subscriber = subscriber;
+            this.policy = policy;
+        }
+
+        /** @return false if the policy discarded an item to make room */
+        synchronized boolean offer(T item) {
+            if (cancelled || completing) return true;
+            boolean kept = true;
+            if (buffer.size() >= bufferCapacity) {
+                if (policy == BackpressurePolicy.DROP) {
+                    droppedCount.incrementAndGet();
+                    return false;
+                } else if (policy == BackpressurePolicy.LATEST) {
+                    buffer.pollFirst();
+                    droppedCount.incrementAndGet();
+                    kept = false;
+                }
+            }
+            buffer.addLast(item);
+            schedule();
+            return kept;
+        }
+
+        synchronized void terminate(Throwable error) {
+            if (completing) return;
+            completing = true;
+            if (error != null) {
+                this.error = error;
+                buffer.clear();
+            }
+        }
+
+        @Override
+        public void request(long n) {
+            synchronized (this) {
+                if (n <= 0) {
+                    // Rule 3.9 of the reactive streams specification
+                    error = new IllegalArgumentException("Requested " + n + " items; must be positive");
+                    completing = true;
+                    buffer.clear();
+                } else {
+                    demand = demand + n < 0 ? Long.MAX_VALUE : demand + n;
+                }
+            }
+            schedule();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            synchronized (this) {
+                buffer.clear();
+            }
+            subscriptions.remove(this);
+        }
+
+        void schedule() {
+            if (work.getAndIncrement() == 0) {
+                try {
+                    executor.execute(this);
+                } catch (RejectedExecutionException e) {
+                    cancel();
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+            int missed = 1;
+            do {
+                drain();
+                missed = work.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        private void drain() {
+            if (!subscribed) {
+                subscribed = true;
+                try {
+                    subscriber.onSubscribe(this);
+                } catch (Throwable t) {
+                    cancel();
+                }
+            }
+            while (!cancelled) {
+                T item = null;
+                boolean finished;
+                Throwable failure;
+                synchronized (this) {
+                    if (demand > 0 && !buffer.isEmpty()) {
+                        item = buffer.pollFirst();
+                        if (demand != Long.MAX_VALUE) demand--;
+                    }
+                    failure = error;
+                    finished = completing && buffer.isEmpty();
+                }
+
+                if (item != null) {
+                    try {
+                        subscriber.onNext(item);
+                    } catch (Throwable t) {
+                        cancel();
+                    }
+                } else if (finished) {
+                    cancel();
+                    if (failure != null) {
+                        subscriber.onError(failure);
+                    } else {
+                        subscriber.onComplete();
+                    }
+                } else {
+                    return;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package uk.ac.ucl.util;
+
+/**
+ * Minimum-distance kernel over packed coordinate arrays.
+ * Works on squared distances with four independent accumulators and a single square root,
+ * keeping the inner loop branch-free over contiguous memory so the JIT can unroll and
+ * vectorise it. Because the square root is monotonic, the result is exactly the minimum of
+ * {@code sqrt(dx * dx + dy * dy)} over the points.
+ */
+public final class DistanceKernel {
+
+    private DistanceKernel() {
+    }
+
+    /**
+     * Finds the smallest squared distance from a query location to a range of points.
+     *
+     * @param x the query x-coordinate
+     * @param y the query y-coordinate
+     * @param xs packed point x-coordinates
+     * @param ys packed point y-coordinates
+     * @param from first point, inclusive
+     * @param to last point, exclusive
+     * @return smallest squared distance, or {@link Double#MAX_VALUE} if the range is empty
+     */
+    public static double minSquaredDistance(double x, double y, double[] xs, double[] ys, int from, int to) {
+        double best0 = Double.MAX_VALUE;
+        double best1 = Double.MAX_VALUE;
+        double best2 = Double.MAX_VALUE;
+        double best3 = Double.MAX_VALUE;
+
+        int i = from;
+        for (int end = to - 3; i < end; i += 4) {
+            double dx0 = x - xs[i];
+            double dy0 = y - ys[i];
+            double dx1 = x - xs[i + 1];
+            double dy1 = y - ys[i + 1];
+            double dx2 = x - xs[i + 2];
+            double dy2 = y - ys[i + 2];
+            double dx3 = x - xs[i + 3];
+            double dy3 = y - ys[i + 3];
+            best0 = Math.min(best0, dx0 * dx0 + dy0 * dy0);
+            best1 = Math.min(best1, dx1 * dx1 + dy1 * dy1);
+            best2 = Math.min(best2, dx2 * dx2 + dy2 * dy2);
+            best3 = Math.min(best3, dx3 * dx3 + dy3 * dy3);
+        }
+        for (; i < to; i++) {
+            double dx = x - xs[i];
+            double dy = y - ys[i];
+            best0 = Math.min(best0, dx * dx + dy * dy);
+        }
+
+        return Math.min(Math.min(best0, best1), Math.min(best2, best3));
+    }
+
+    /**
+     * Finds the Euclidean distance from a query location to the nearest of a range of points.
+     *
+     * @param x the query x-coordinate
+     * @param y the query y-coordinate
+     * @param xs packed point x-coordinates
+     * @param ys packed point y-coordinates
+     * @param from first point, inclusive
+     * @param to last point, exclusive
+     * @return distance to the nearest point, or {@link Double#MAX_VALUE} if the range is empty
+     */
+    public static double minDistance(double x, double y, double[] xs, double[] ys, int from, int to) {
+        if (from >= to) return Double.MAX_VALUE;
+        return Math.sqrt(minSquaredDistance(x, y, xs, ys, from, to));
+    }
+}
@@ -0,0 +1,132 @@
+package uk.ac.ucl.util;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-place radix-2 fast Fourier transforms over split real and imaginary arrays.
+ * Lengths must be powers of two. The inverse transform is scaled by {@code 1 / n}, so a forward
+ * transform followed by an inverse one returns the input up to rounding.
+ */
+public final class FastFourierTransform {
+
+    // Twiddle factors by transform length: cos and sin of -2 pi k / n for k below n / 2, shared by
+    // every stage since a stage of length L uses every (n / L)-th factor
+    private static final Map<Integer, double[][]> TWIDDLES = new ConcurrentHashMap<>();
+
+    private FastFourierTransform() {
+    }
+
+    /**
+     * Transforms a sequence in place.
+     *
+     * @param re real parts
+     * @param im imaginary parts, same length as {@code re}
+     * @param inverse true for the inverse transform
+     * @throws IllegalArgumentException if the length is not a power of two
+     */
+    public static void transform(double[] re, double[] im, boolean inverse) {
+        checkLength(re.length);
+        transform(re, im, 0, 1, re.length, twiddles(re.length), inverse);
+    }
+
+    /**
+     * Transforms a row-major two-dimensional array in place, rows first and then columns.
+     *
+     * @param re real parts, {@code width * height} entries
+     * @param im imaginary parts, same length as {@code re}
+     * @param width number of columns; a power of two
+     * @param height number of rows; a power of two
+     * @param inverse true for the inverse transform
+     * @throws IllegalArgumentException if either dimension is not a power of two
+     */
+    public static void transform2D(double[] re, double[] im, int width, int height, boolean inverse) {
+        checkLength(width);
+        checkLength(height);
+        double[][] rowTwiddles = twiddles(width);
+        double[][] colTwiddles = twiddles(height);
+        for (int row = 0; row < height; row++) {
+            transform(re, im, row * width, 1, width, rowTwiddles, inverse);
+        }
+        for (int col = 0; col < width; col++) {
+            transform(re, im, col, width, height, colTwiddles, inverse);
+        }
+    }
+
+    /**
+     * Transforms the {@code n} elements at {@code offset, offset + stride, ...} in place, using
+     * the twiddle factors from {@link #twiddles} for length {@code n}.
+     */
+    private static void transform(double[] re, double[] im, int offset, int stride, int n, double[][] twiddles,
+                                  boolean inverse) {
+
+        // Bit-reversal permutation
+        for (int i = 1, j = 0; i < n; i++) {
+            int bit = n >> 1;
+            for (; (j & bit) != 0; bit >>= 1) {
+                j ^= bit;
+            }
+            j ^= bit;
+            if (i < j) {
+                int a = offset + i * stride;
+                int b = offset + j * stride;
+                double t = re[a];
+                re[a] = re[b];
+                re[b] = t;
+                t = im[a];
+                im[a] = im[b];
+                im[b] = t;
+            }
+        }
+
+        double[] cos = twiddles[0];
+        double[] sin = twiddles[1];
+        double sign = inverse ? -1.0 : 1.0;
+        for (int length = 2; length <= n; length <<= 1) {
+            int half = length >> 1;
+            int step = n / length;
+            for (int k = 0; k < half; k++) {
+                double wRe = cos[k * step];
+                double wIm = sign * sin[k * step];
+                for (int start = 0; start < n; start += length) {
+                    int a = offset + (start + k) * stride;
+                    int b = a + half * stride;
+                    double tRe = re[b] * wRe - im[b] * wIm;
+                    double tIm = re[b] * wIm + im[b] * wRe;
+                    re[b] = re[a] - tRe;
+                    im[b] = im[a] - tIm;
+                    re[a] += tRe;
+                    im[a] += tIm;
+                }
+            }
+        }
+
+        if (inverse) {
+            double scale = 1.0 / n;
+            for (int i = 0; i < n; i++) {
+                re[offset + i * stride] *= scale;
+                im[offset + i * stride] *= scale;
+            }
+        }
+    }
+
+    private static void checkLength(int n) {
+        if (Integer.bitCount(n) != 1) {
+            throw new IllegalArgumentException("Transform length must be a power of two: " + n);
+        }
+    }
+
+    private static double[][] twiddles(int n) {
+        return TWIDDLES.computeIfAbsent(n, length -> {
+            int half = length >> 1;
+            double[] cos = new double[half];
+            double[] sin = new double[half];
+            for (int k = 0; k < half; k++) {
+                double angle = -2.0 * Math.PI * k / length;
+                cos[k] = Math.cos(angle);
+                sin[k] = Math.sin(angle);
+            }
+            return new double[][] {cos, sin};
+        });
+    }
+}
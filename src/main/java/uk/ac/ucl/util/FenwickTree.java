@@ -0,0 +1,119 @@
+package uk.ac.ucl.util;
+
+import java.util.Arrays;
+
+/**
+ * Binary indexed tree over non-negative weights, for sampling an index with probability
+ * proportional to its weight. Updating one weight and sampling both cost O(log n), so a
+ * simulation can keep per-agent rates live as they change instead of re-summing them.
+ */
+public class FenwickTree {
+    private final double[] tree;
+    private final int size;
+    private final int topBit;
+
+    /**
+     * Creates a tree of the given size with every weight zero.
+     *
+     * @param size number of weights
+     */
+    public FenwickTree(int size) {
+        this.size = size;
+        this.tree = new double[size + 1];
+        this.topBit = size == 0 ? 0 : Integer.highestOneBit(size);
+    }
+
+    /**
+     * Replaces all weights in O(n). Also clears rounding error accumulated by many updates.
+     *
+     * @param weights weight per index; at least {@link #size()} entries
+     */
+    public void build(double[] weights) {
+        for (int i = 1; i <= size; i++) {
+            tree[i] = weights[i - 1];
+        }
+        for (int i = 1; i <= size; i++) {
+            int parent = i + (i & -i);
+            if (parent <= size) {
+                tree[parent] += tree[i];
+            }
+        }
+    }
+
+    /**
+     * Adds to one weight.
+     *
+     * @param index the weight to change
+     * @param delta amount to add
+     */
+    public void add(int index, double delta) {
+        for (int i = index + 1; i <= size; i += i & -i) {
+            tree[i] += delta;
+        }
+    }
+
+    /**
+     * Returns the sum of the weights before an index.
+     *
+     * @param end exclusive end index
+     * @return sum of weights {@code [0, end)}
+     */
+    public double prefixSum(int end) {
+        double sum = 0.0;
+        for (int i = end; i > 0; i -= i & -i) {
+            sum += tree[i];
+        }
+        return sum;
+    }
+
+    /** @return sum of all weights */
+    public double total() {
+        return prefixSum(size);
+    }
+
+    /**
+     * Finds the index whose cumulative weight range contains the target, that is the smallest
+     * {@code i} with {@code prefixSum(i + 1) > target}. With a target drawn uniformly from
+     * {@code [0, total())} this samples index {@code i} with probability weight / total.
+     *
+     * @param target value in {@code [0, total())}
+     * @return the selected index, clamped to the last index if rounding pushes the target past the end
+     */
+    public int find(double target) {
+        int position = 0;
+        for (int step = topBit; step > 0; step >>= 1) {
+            int next = position + step;
+            if (next <= size && tree[next] <= target) {
+                position = next;
+                target -= tree[next];
+            }
+        }
+        return Math.min(position, size - 1);
+    }
+
+    /**
+     * Returns the tree's partial sums, including any rounding error accumulated by updates, so a
+     * tree restored from them with {@link #setState} samples exactly as this one does.
+     *
+     * @return a copy of the partial sums, {@link #size()} entries
+     */
+    public double[] getState() {
+        return Arrays.copyOfRange(tree, 1, size + 1);
+    }
+
+    /**
+     * Replaces the partial sums with ones returned by {@link #getState}.
+     *
+     * @param state partial sums from a tree of the same size
+     * @throws IllegalArgumentException if the state is for a tree of another size
+     */
+    public void setState(double[] state) {
+        if (state.length != size) {
+            throw new IllegalArgumentException("State has " + state.length + " sums, expected " + size);
+        }
+        System.arraycopy(state, 0, tree, 1, size);
+    }
+
+    /** @return number of weights */
+    public int size() { return size; }
+}
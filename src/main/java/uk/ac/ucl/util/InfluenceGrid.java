@@ -0,0 +1,176 @@
+package uk.ac.ucl.util;
+
+import java.util.Arrays;
+
+/**
+ * Approximates sums of an exponential distance-decay kernel {@code exp(-d / lambda)} over many
+ * sources at many query points.
+ * Sources are spread onto a regular grid with bilinear (cloud-in-cell) weights, the grid is
+ * convolved with the kernel by FFT, and queries read the result back with the same bilinear
+ * weights. With {@code G} cells, {@code S} sources and {@code Q} queries this costs
+ * {@code O(S + G log G + Q)} instead of {@code O(S * Q)}. The error shrinks with the cell size
+ * relative to {@code lambda}; the grid is padded so the convolution does not wrap around.
+ */
+public class InfluenceGrid {
+    private final double minX;
+    private final double minY;
+    private final double cellWidth;
+    private final double cellHeight;
+    private final int cols;
+    private final int rows;
+    private final int paddedCols;
+    private final int paddedRows;
+
+    private final double[] mass;
+    private final double[] field;
+    private final double[] kernelRe;
+    private final double[] kernelIm;
+    private final double[] workRe;
+    private final double[] workIm;
+
+    /**
+     * Creates a grid over a region with cells no larger than half the decay length where the
+     * cell limit allows, plus one margin cell on each side.
+     *
+     * @param minX minimum x-coordinate of the region
+     * @param maxX maximum x-coordinate of the region
+     * @param minY minimum y-coordinate of the region
+     * @param maxY maximum y-coordinate of the region
+     * @param decayLength kernel decay length {@code lambda}; must be positive
+     * @param maxCellsPerAxis upper bound on cells along each axis, including the margins; at least 3
+     * @throws IllegalArgumentException if the decay length is not positive
+     */
+    public InfluenceGrid(double minX, double maxX, double minY, double maxY, double decayLength, int maxCellsPerAxis) {
+        if (!(decayLength > 0)) {
+            throw new IllegalArgumentException("Decay length must be positive");
+        }
+        double width = Math.max(maxX - minX, 0.0);
+        double height = Math.max(maxY - minY, 0.0);
+        double targetCell = decayLength / 2.0;
+        int innerCols = Math.max(1, Math.min(maxCellsPerAxis - 2, (int) Math.ceil(width / targetCell)));
+        int innerRows = Math.max(1, Math.min(maxCellsPerAxis - 2, (int) Math.ceil(height / targetCell)));
+        this.cellWidth = width > 0 ? width / innerCols : targetCell;
+        this.cellHeight = height > 0 ? height / innerRows : targetCell;
+
+        // A margin cell on every side keeps interpolation near the edge from being clamped, which
+        // would shift sources and queries by up to half a cell
+        this.cols = innerCols + 2;
+        this.rows = innerRows + 2;
+        this.minX = minX - cellWidth;
+        this.minY = minY - cellHeight;
+
+        // Linear convolution of two n-cell axes needs 2n - 1 cells to avoid wrap-around
+        this.paddedCols = Integer.highestOneBit(Math.max(1, 2 * cols - 1) * 2 - 1);
+        this.paddedRows = Integer.highestOneBit(Math.max(1, 2 * rows - 1) * 2 - 1);
+        int paddedSize = paddedCols * paddedRows;
+
+        this.mass = new double[cols * rows];
+        this.field = new double[cols * rows];
+        this.workRe = new double[paddedSize];
+        this.workIm = new double[paddedSize];
+
+        // Kernel by cell offset, stored with negative offsets wrapped to the far end, then transformed once
+        this.kernelRe = new double[paddedSize];
+        this.kernelIm = new double[paddedSize];
+        for (int dy = -(rows - 1); dy <= rows - 1; dy++) {
+            for (int dx = -(cols - 1); dx <= cols - 1; dx++) {
+                double distX = dx * cellWidth;
+                double distY = dy * cellHeight;
+                int index = Math.floorMod(dy, paddedRows) * paddedCols + Math.floorMod(dx, paddedCols);
+                kernelRe[index] = Math.exp(-Math.sqrt(distX * distX + distY * distY) / decayLength);
+            }
+        }
+        FastFourierTransform.transform2D(kernelRe, kernelIm, paddedCols, paddedRows, false);
+    }
+
+    /**
+     * Removes all sources.
+     */
+    public void clear() {
+        Arrays.fill(mass, 0.0);
+    }
+
+    /**
+     * Adds a source, split between the four cell centres around it. Points outside the region are
+     * clamped onto its edge.
+     *
+     * @param x the source x-coordinate
+     * @param y the source y-coordinate
+     * @param weight the source weight
+     */
+    public void deposit(double x, double y, double weight) {
+        double gx = clampCoordinate((x - minX) / cellWidth - 0.5, cols);
+        double gy = clampCoordinate((y - minY) / cellHeight - 0.5, rows);
+        int c0 = (int) gx;
+        int r0 = (int) gy;
+        int c1 = Math.min(c0 + 1, cols - 1);
+        int r1 = Math.min(r0 + 1, rows - 1);
+        double fx = gx - c0;
+        double fy = gy - r0;
+
+        mass[r0 * cols + c0] += weight * (1 - fx) * (1 - fy);
+        mass[r0 * cols + c1] += weight * fx * (1 - fy);
+        mass[r1 * cols + c0] += weight * (1 - fx) * fy;
+        mass[r1 * cols + c1] += weight * fx * fy;
+    }
+
+    /**
+     * Convolves the deposited sources with the kernel, making the result available to {@link #sample}.
+     */
+    public void convolve() {
+        Arrays.fill(workRe, 0.0);
+        Arrays.fill(workIm, 0.0);
+        for (int r = 0; r < rows; r++) {
+            System.arraycopy(mass, r * cols, workRe, r * paddedCols, cols);
+        }
+
+        FastFourierTransform.transform2D(workRe, workIm, paddedCols, paddedRows, false);
+        for (int i = 0; i < workRe.length; i++) {
+            double re = workRe[i] * kernelRe[i] - workIm[i] * kernelIm[i];
+            double im = workRe[i] * kernelIm[i] + workIm[i] * kernelRe[i];
+            workRe[i] = re;
+            workIm[i] = im;
+        }
+        FastFourierTransform.transform2D(workRe, workIm, paddedCols, paddedRows, true);
+
+        for (int r = 0; r < rows; r++) {
+            for (int c = 0; c < cols; c++) {
+                // Rounding can leave tiny negatives where the true sum is near zero
+                field[r * cols + c] = Math.max(0.0, workRe[r * paddedCols + c]);
+            }
+        }
+    }
+
+    /**
+     * Reads the convolved kernel sum at a point by bilinear interpolation between cell centres.
+     *
+     * @param x the query x-coordinate
+     * @param y the query y-coordinate
+     * @return approximate sum of {@code weight * exp(-d / lambda)} over the sources
+     */
+    public double sample(double x, double y) {
+        double gx = clampCoordinate((x - minX) / cellWidth - 0.5, cols);
+        double gy = clampCoordinate((y - minY) / cellHeight - 0.5, rows);
+        int c0 = (int) gx;
+        int r0 = (int) gy;
+        int c1 = Math.min(c0 + 1, cols - 1);
+        int r1 = Math.min(r0 + 1, rows - 1);
+        double fx = gx - c0;
+        double fy = gy - r0;
+
+        return field[r0 * cols + c0] * (1 - fx) * (1 - fy)
+                + field[r0 * cols + c1] * fx * (1 - fy)
+                + field[r1 * cols + c0] * (1 - fx) * fy
+                + field[r1 * cols + c1] * fx * fy;
+    }
+
+    public int getCols() { return cols; }
+    public int getRows() { return rows; }
+    public double getCellWidth() { return cellWidth; }
+    public double getCellHeight() { return cellHeight; }
+
+    /** Clamps a fractional cell-centre coordinate to {@code [0, cells - 1]}. */
+    private static double clampCoordinate(double value, int cells) {
+        return value < 0 ? 0 : (value > cells - 1 ? cells - 1 : value);
+    }
+}
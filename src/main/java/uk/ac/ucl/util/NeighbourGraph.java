@@ -0,0 +1,344 @@
+package uk.ac.ucl.util;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * Immutable neighbour lists for a set of points in compressed sparse row form.
+ * The neighbours of point {@code i} are {@code neighbours[offsets[i] .. offsets[i + 1])}, so the
+ * whole graph is two primitive arrays regardless of how many points it covers.
+ */
+public class NeighbourGraph {
+    private static final int KNN_MAX_CELLS_PER_AXIS = 4096;
+    private static final int KNN_CHUNK_SIZE = 2048;
+
+    private final int[] offsets;
+    private final int[] neighbours;
+
+    /**
+     * Creates a graph from compressed sparse row arrays. The arrays are used directly rather than copied.
+     *
+     * @param offsets start of each point's neighbours in {@code neighbours}, with a final entry holding the total
+     * @param neighbours neighbour indices of every point, grouped by point
+     */
+    public NeighbourGraph(int[] offsets, int[] neighbours) {
+        this.offsets = offsets;
+        this.neighbours = neighbours;
+    }
+
+    /**
+     * Connects every pair of points no further apart than a radius. Points are bucketed into
+     * cells at least one radius wide, so each point only compares against its own and the
+     * eight surrounding cells.
+     *
+     * @param xs x-coordinate of each point
+     * @param ys y-coordinate of each point
+     * @param radius connection distance; zero or less gives a graph with no edges
+     * @return symmetric neighbour graph, each list in ascending index order
+     * @throws IllegalArgumentException if the graph would have more than {@code Integer.MAX_VALUE} edges
+     */
+    public static NeighbourGraph withinRadius(double[] xs, double[] ys, double radius) {
+        int n = xs.length;
+        int[] offsets = new int[n + 1];
+        if (n == 0 || !(radius > 0)) {
+            return new NeighbourGraph(offsets, new int[0]);
+        }
+
+        double minX = Double.MAX_VALUE, maxX = -Double.MAX_VALUE;
+        double minY = Double.MAX_VALUE, maxY = -Double.MAX_VALUE;
+        for (int i = 0; i < n; i++) {
+            minX = Math.min(minX, xs[i]);
+            maxX = Math.max(maxX, xs[i]);
+            minY = Math.min(minY, ys[i]);
+            maxY = Math.max(maxY, ys[i]);
+        }
+
+        // Cells must be at least a radius wide; widen them if needed to keep about one cell per point
+        double cellSize = radius;
+        long cellCount;
+        int cols;
+        int rows;
+        do {
+            cols = (int) Math.min(Integer.MAX_VALUE, (long) ((maxX - minX) / cellSize) + 1);
+            rows = (int) Math.min(Integer.MAX_VALUE, (long) ((maxY - minY) / cellSize) + 1);
+            cellCount = (long) cols * rows;
+            if (cellCount > 4L * n) cellSize *= 2;
+        } while (cellCount > 4L * n);
+
+        // Counting sort of points by cell
+        int[] cellOf = new int[n];
+        int[] cellStart = new int[(int) cellCount + 1];
+        for (int i = 0; i < n; i++) {
+            int col = (int) ((xs[i] - minX) / cellSize);
+            int row = (int) ((ys[i] - minY) / cellSize);
+            cellOf[i] = row * cols + col;
+            cellStart[cellOf[i] + 1]++;
+        }
+        for (int c = 0; c < cellCount; c++) {
+            cellStart[c + 1] += cellStart[c];
+        }
+        int[] cellPoints = new int[n];
+        int[] fill = new int[(int) cellCount];
+        for (int i = 0; i < n; i++) {
+            cellPoints[cellStart[cellOf[i]] + fill[cellOf[i]]++] = i;
+        }
+
+        double radiusSq = radius * radius;
+        long edges = 0;
+        for (int i = 0; i < n; i++) {
+            edges += scanCells(i, xs, ys, radiusSq, cellOf[i], cols, rows, cellStart, cellPoints, null, 0);
+            offsets[i + 1] = (int) Math.min(Integer.MAX_VALUE, edges);
+        }
+        if (edges > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Radius " + radius + " gives too many neighbours");
+        }
+
+        int[] neighbours = new int[(int) edges];
+        for (int i = 0; i < n; i++) {
+            scanCells(i, xs, ys, radiusSq, cellOf[i], cols, rows, cellStart, cellPoints, neighbours, offsets[i]);
+            Arrays.sort(neighbours, offsets[i], offsets[i + 1]);
+        }
+        return new NeighbourGraph(offsets, neighbours);
+    }
+
+    /**
+     * Connects every point to its {@code k} nearest other points, ties broken by lower index.
+     * Points are counting-sorted into a grid of about two points per cell and each query searches
+     * rings of cells outward until no unsearched cell can hold a closer point. Queries run in
+     * parallel on the common fork/join pool; each writes only its own fixed-size slice of the
+     * neighbour array, so the result does not depend on the thread count.
+     * The graph is directed: {@code j} being among {@code i}'s nearest does not make {@code i}
+     * one of {@code j}'s. Use {@link #reverse()} for the people each point is a neighbour of.
+     *
+     * @param xs x-coordinate of each point
+     * @param ys y-coordinate of each point
+     * @param k neighbours per point; capped at one fewer than the number of points
+     * @return neighbour graph, each list in ascending distance order
+     * @throws IllegalArgumentException if k is negative or the graph would have more than
+     *         {@code Integer.MAX_VALUE} edges
+     */
+    public static NeighbourGraph kNearest(double[] xs, double[] ys, int k) {
+        if (k < 0) {
+            throw new IllegalArgumentException("Neighbour count must be non-negative");
+        }
+        int n = xs.length;
+        int degree = Math.min(k, Math.max(0, n - 1));
+        if ((long) n * degree > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException(k + " neighbours of " + n + " points is too many edges");
+        }
+        int[] offsets = new int[n + 1];
+        for (int i = 0; i <= n; i++) {
+            offsets[i] = i * degree;
+        }
+        int[] neighbours = new int[n * degree];
+        if (degree == 0) {
+            return new NeighbourGraph(offsets, neighbours);
+        }
+
+        double minX = Double.MAX_VALUE, maxX = -Double.MAX_VALUE;
+        double minY = Double.MAX_VALUE, maxY = -Double.MAX_VALUE;
+        for (int i = 0; i < n; i++) {
+            minX = Math.min(minX, xs[i]);
+            maxX = Math.max(maxX, xs[i]);
+            minY = Math.min(minY, ys[i]);
+            maxY = Math.max(maxY, ys[i]);
+        }
+
+        // Square cells holding about two points each if the points were spread evenly
+        double width = maxX - minX;
+        double height = maxY - minY;
+        double area = width * height;
+        double cellSize = area > 0 ? Math.sqrt(2.0 * area / n) : Math.max(width, height) * 2.0 / n;
+        if (!(cellSize > 0)) cellSize = 1.0;
+        int cols = (int) Math.min(KNN_MAX_CELLS_PER_AXIS, (long) (width / cellSize) + 1);
+        int rows = (int) Math.min(KNN_MAX_CELLS_PER_AXIS, (long) (height / cellSize) + 1);
+        double cellWidth = Math.max(width / cols, Double.MIN_NORMAL);
+        double cellHeight = Math.max(height / rows, Double.MIN_NORMAL);
+        // An axis with a single cell never separates the query from anything, so only the other bounds the search
+        double minCellSize = Math.min(cols > 1 ? cellWidth : Double.MAX_VALUE, rows > 1 ? cellHeight : Double.MAX_VALUE);
+
+        int cellCount = cols * rows;
+        int[] cellStart = new int[cellCount + 1];
+        int[] cellOf = new int[n];
+        for (int i = 0; i < n; i++) {
+            int col = Math.min(cols - 1, (int) ((xs[i] - minX) / cellWidth));
+            int row = Math.min(rows - 1, (int) ((ys[i] - minY) / cellHeight));
+            cellOf[i] = row * cols + col;
+            cellStart[cellOf[i] + 1]++;
+        }
+        for (int c = 0; c < cellCount; c++) {
+            cellStart[c + 1] += cellStart[c];
+        }
+        int[] cellPoints = new int[n];
+        int[] fill = new int[cellCount];
+        for (int i = 0; i < n; i++) {
+            cellPoints[cellStart[cellOf[i]] + fill[cellOf[i]]++] = i;
+        }
+
+        int chunks = (n + KNN_CHUNK_SIZE - 1) / KNN_CHUNK_SIZE;
+        final int finalCols = cols;
+        final int finalRows = rows;
+        IntStream.range(0, chunks).parallel().forEach(chunk -> {
+            // Per-chunk scratch: a bounded max-heap of the best candidates found so far
+            double[] heapDistance = new double[degree];
+            int[] heapIndex = new int[degree];
+            int from = chunk * KNN_CHUNK_SIZE;
+            int to = Math.min(n, from + KNN_CHUNK_SIZE);
+            for (int i = from; i < to; i++) {
+                int col = cellOf[i] % finalCols;
+                int row = cellOf[i] / finalCols;
+                int maxRing = Math.max(Math.max(col, finalCols - 1 - col), Math.max(row, finalRows - 1 - row));
+                int heapSize = 0;
+                for (int ring = 0; ring <= maxRing; ring++) {
+                    for (int r = Math.max(0, row - ring); r <= Math.min(finalRows - 1, row + ring); r++) {
+                        boolean edgeRow = r == row - ring || r == row + ring;
+                        int step = edgeRow ? 1 : Math.max(1, 2 * ring);
+                        for (int c = col - ring; c <= col + ring; c += step) {
+                            if (c < 0 || c >= finalCols) continue;
+                            int cell = r * finalCols + c;
+                            for (int p = cellStart[cell]; p < cellStart[cell + 1]; p++) {
+                                int j = cellPoints[p];
+                                if (j == i) continue;
+                                double dx = xs[i] - xs[j];
+                                double dy = ys[i] - ys[j];
+                                double distSq = dx * dx + dy * dy;
+                                if (heapSize < degree) {
+                                    heapSize = siftUp(heapDistance, heapIndex, heapSize, distSq, j);
+                                } else if (before(distSq, j, heapDistance[0], heapIndex[0])) {
+                                    siftDown(heapDistance, heapIndex, degree, distSq, j);
+                                }
+                            }
+                        }
+                    }
+                    // Every cell beyond this ring is at least `ring` whole cells from the query
+                    double bound = ring * minCellSize;
+                    if (heapSize == degree && heapDistance[0] < bound * bound) break;
+                }
+
+                // Drain the max-heap from the back so the list runs nearest first
+                int base = offsets[i];
+                for (int size = degree; size > 0; size--) {
+                    neighbours[base + size - 1] = heapIndex[0];
+                    siftDown(heapDistance, heapIndex, size - 1, heapDistance[size - 1], heapIndex[size - 1]);
+                }
+            }
+        });
+        return new NeighbourGraph(offsets, neighbours);
+    }
+
+    /**
+     * Builds the transpose of this graph, listing for each point the points that have it as a
+     * neighbour. A radius graph is its own transpose; for a k-nearest graph this is what an
+     * adoption must update, since the adopter influences everyone who counts it as a neighbour.
+     *
+     * @return the reversed graph, each list in ascending index order
+     */
+    public NeighbourGraph reverse() {
+        int n = size();
+        int[] reverseOffsets = new int[n + 1];
+        for (int e = 0; e < neighbours.length; e++) {
+            reverseOffsets[neighbours[e] + 1]++;
+        }
+        for (int i = 0; i < n; i++) {
+            reverseOffsets[i + 1] += reverseOffsets[i];
+        }
+        int[] reverseNeighbours = new int[neighbours.length];
+        int[] fill = new int[n];
+        // Sources are visited in ascending order, so each reversed list comes out sorted
+        for (int i = 0; i < n; i++) {
+            for (int e = offsets[i]; e < offsets[i + 1]; e++) {
+                int target = neighbours[e];
+                reverseNeighbours[reverseOffsets[target] + fill[target]++] = i;
+            }
+        }
+        return new NeighbourGraph(reverseOffsets, reverseNeighbours);
+    }
+
+    private static boolean before(double distSq, int index, double otherDistSq, int otherIndex) {
+        return distSq < otherDistSq || (distSq == otherDistSq && index < otherIndex);
+    }
+
+    /** Appends a candidate to a max-heap ordered by distance then index, returning the new size. */
+    private static int siftUp(double[] heapDistance, int[] heapIndex, int size, double distSq, int index) {
+        int position = size;
+        while (position > 0) {
+            int parent = (position - 1) >>> 1;
+            if (!before(heapDistance[parent], heapIndex[parent], distSq, index)) break;
+            heapDistance[position] = heapDistance[parent];
+            heapIndex[position] = heapIndex[parent];
+            position = parent;
+        }
+        heapDistance[position] = distSq;
+        heapIndex[position] = index;
+        return size + 1;
+    }
+
+    /** Replaces the root of a max-heap of the given size with a candidate and restores the heap. */
+    private static void siftDown(double[] heapDistance, int[] heapIndex, int size, double distSq, int index) {
+        int position = 0;
+        while (true) {
+            int child = 2 * position + 1;
+            if (child >= size) break;
+            if (child + 1 < size && before(heapDistance[child], heapIndex[child],
+                    heapDistance[child + 1], heapIndex[child + 1])) {
+                child++;
+            }
+            if (!before(distSq, index, heapDistance[child], heapIndex[child])) break;
+            heapDistance[position] = heapDistance[child];
+            heapIndex[position] = heapIndex[child];
+            position = child;
+        }
+        if (size > 0) {
+            heapDistance[position] = distSq;
+            heapIndex[position] = index;
+        }
+    }
+
+    /**
+     * Counts, and optionally records, the points within the radius of point {@code i} in the
+     * 3x3 block of cells around its own.
+     */
+    private static int scanCells(int i, double[] xs, double[] ys, double radiusSq, int cell, int cols, int rows,
+                                 int[] cellStart, int[] cellPoints, int[] out, int outOffset) {
+        int col = cell % cols;
+        int row = cell / cols;
+        int found = 0;
+        for (int r = Math.max(0, row - 1); r <= Math.min(rows - 1, row + 1); r++) {
+            for (int c = Math.max(0, col - 1); c <= Math.min(cols - 1, col + 1); c++) {
+                int target = r * cols + c;
+                for (int k = cellStart[target]; k < cellStart[target + 1]; k++) {
+                    int j = cellPoints[k];
+                    if (j == i) continue;
+                    double dx = xs[i] - xs[j];
+                    double dy = ys[i] - ys[j];
+                    if (dx * dx + dy * dy <= radiusSq) {
+                        if (out != null) out[outOffset + found] = j;
+                        found++;
+                    }
+                }
+            }
+        }
+        return found;
+    }
+
+    /** @return number of points in the graph */
+    public int size() { return offsets.length - 1; }
+
+    /** @return total number of neighbour entries across all points */
+    public int edgeCount() { return offsets[offsets.length - 1]; }
+
+    /** @return number of neighbours of point {@code i} */
+    public int degree(int i) { return offsets[i + 1] - offsets[i]; }
+
+    /** @return index of point {@code i}'s first neighbour in {@link #getNeighbours()} */
+    public int start(int i) { return offsets[i]; }
+
+    /** @return index just past point {@code i}'s last neighbour in {@link #getNeighbours()} */
+    public int end(int i) { return offsets[i + 1]; }
+
+    /** @return the backing offsets array; callers must not modify it */
+    public int[] getOffsets() { return offsets; }
+
+    /** @return the backing neighbour array; callers must not modify it */
+    public int[] getNeighbours() { return neighbours; }
+}
@@ -0,0 +1,116 @@
+package uk.ac.ucl.util;
+
+/**
+ * Partial selection over primitive key arrays.
+ * Finds the smallest few entries of a large array with a bounded max-heap,
+ * costing O(n log k) time and no allocation beyond a caller-supplied buffer.
+ */
+public final class PartialSelection {
+
+    private PartialSelection() {
+    }
+
+    /**
+     * Selects the {@code k} candidates with the smallest keys. Equal keys are ordered by
+     * ascending id, so the selection matches the first {@code k} entries of a stable sort
+     * of candidates listed in id order.
+     *
+     * @param keys sort key per candidate
+     * @param ids identifier per candidate, used for tie-breaking and returned in {@code out}
+     * @param count number of candidates in {@code keys} and {@code ids}
+     * @param k number of candidates to select
+     * @param out buffer receiving the selected ids, in no particular order; length at least {@code min(k, count)}
+     * @return number of ids written to {@code out}
+     */
+    public static int selectSmallest(double[] keys, int[] ids, int count, int k, int[] out) {
+        int selected = selectSmallestPositions(keys, ids, 0, count, k, out, 0);
+        for (int i = 0; i < selected; i++) {
+            out[i] = ids[out[i]];
+        }
+        return selected;
+    }
+
+    /**
+     * Selects the {@code k} candidates with the smallest keys within {@code [from, to)} and
+     * reports their positions in the key array. Lets callers select over independent slices,
+     * for example one per worker thread, and merge the results.
+     *
+     * @param keys sort key per candidate
+     * @param ids identifier per candidate, used for tie-breaking
+     * @param from first candidate position, inclusive
+     * @param to last candidate position, exclusive
+     * @param k number of candidates to select
+     * @param out buffer receiving the selected positions, in no particular order
+     * @param outOffset index in {@code out} at which to write the first position
+     * @return number of positions written to {@code out}
+     */
+    public static int selectSmallestPositions(double[] keys, int[] ids, int from, int to, int k,
+                                              int[] out, int outOffset) {
+        int selected = Math.min(k, to - from);
+        if (selected <= 0) return 0;
+
+        for (int i = 0; i < selected; i++) {
+            out[outOffset + i] = from + i;
+            siftUp(keys, ids, out, outOffset, i);
+        }
+        for (int i = from + selected; i < to; i++) {
+            if (isBefore(keys, ids, i, out[outOffset])) {
+                out[outOffset] = i;
+                siftDown(keys, ids, out, outOffset, selected);
+            }
+        }
+        return selected;
+    }
+
+    /**
+     * Orders positions selected by {@link #selectSmallestPositions} from smallest key to largest,
+     * ties by ascending id, by draining the selection heap in place in {@code O(k log k)} time.
+     *
+     * @param keys the keys the selection was made with
+     * @param ids the ids the selection was made with
+     * @param out the buffer the selection was written to
+     * @param outOffset index in {@code out} of the first selected position
+     * @param selected number of positions selected
+     */
+    public static void sortSelectedPositions(double[] keys, int[] ids, int[] out, int outOffset, int selected) {
+        for (int size = selected - 1; size > 0; size--) {
+            int largest = out[outOffset];
+            out[outOffset] = out[outOffset + size];
+            out[outOffset + size] = largest;
+            siftDown(keys, ids, out, outOffset, size);
+        }
+    }
+
+    private static boolean isBefore(double[] keys, int[] ids, int a, int b) {
+        if (keys[a] != keys[b]) return keys[a] < keys[b];
+        return ids[a] < ids[b];
+    }
+
+    private static void siftUp(double[] keys, int[] ids, int[] heap, int base, int position) {
+        int item = heap[base + position];
+        while (position > 0) {
+            int parent = (position - 1) >>> 1;
+            if (!isBefore(keys, ids, heap[base + parent], item)) break;
+            heap[base + position] = heap[base + parent];
+            position = parent;
+        }
+        heap[base + position] = item;
+    }
+
+    private static void siftDown(double[] keys, int[] ids, int[] heap, int base, int size) {
+        int item = heap[base];
+        int position = 0;
+        int half = size >>> 1;
+        while (position < half) {
+            int child = 2 * position + 1;
+            int right = child + 1;
+            if (right < size && isBefore(keys, ids, heap[base + child], heap[base + right])) {
+                child = right;
+            }
+            if (!isBefore(keys, ids, item, heap[base + child])) break;
+            heap[base + position] = heap[base + child];
+            position = child;
+        }
+        heap[base + position] = item;
+    }
+}
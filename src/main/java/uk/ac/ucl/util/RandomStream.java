@@ -0,0 +1,124 @@
+package uk.ac.ucl.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Deterministic pseudo-random stream with keyed derivation of independent child streams.
+ * Uses the SplitMix64 generator behind {@link java.util.SplittableRandom}, reimplemented so the
+ * state can be read and restored. A child stream depends only on its parent's seed and a key,
+ * never on how much of the parent has been consumed, so a master seed fixes the streams for every
+ * replicate, chunk or phase however the work is scheduled across threads.
+ * Instances are not thread-safe; give each thread its own derived stream.
+ */
+public final class RandomStream {
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+    private static final AtomicLong ENTROPY = new AtomicLong(mix64(System.nanoTime() ^ System.currentTimeMillis()));
+
+    private final long seed;
+    private long state;
+
+    /**
+     * Creates a stream from a seed. Streams created from the same seed produce the same values.
+     *
+     * @param seed the seed
+     */
+    public RandomStream(long seed) {
+        this.seed = seed;
+        this.state = seed;
+    }
+
+    /**
+     * Creates a stream with an unpredictable seed, for runs that need not be reproducible.
+     *
+     * @return a new stream
+     */
+    public static RandomStream fromEntropy() {
+        return new RandomStream(mix64(ENTROPY.getAndAdd(2 * GOLDEN_GAMMA)));
+    }
+
+    /**
+     * Returns the seed of the child stream with the given key, without creating it.
+     *
+     * @param seed the parent seed
+     * @param key identifies the child, for example a replicate or chunk number
+     * @return the child seed
+     */
+    public static long deriveSeed(long seed, long key) {
+        return mix64(seed ^ mix64((key + 1) * GOLDEN_GAMMA));
+    }
+
+    /**
+     * Creates the child stream with the given key. Does not advance this stream.
+     *
+     * @param key identifies the child, for example a replicate or chunk number
+     * @return an independent stream determined by this stream's seed and the key
+     */
+    public RandomStream derive(long key) {
+        return new RandomStream(deriveSeed(seed, key));
+    }
+
+    /** @return the next uniformly distributed long */
+    public long nextLong() {
+        return mix64(state += GOLDEN_GAMMA);
+    }
+
+    /**
+     * Returns a uniformly distributed int in {@code [0, bound)}.
+     *
+     * @param bound exclusive upper bound, must be positive
+     * @return the next bounded value
+     * @throws IllegalArgumentException if bound is not positive
+     */
+    public int nextInt(int bound) {
+        if (bound <= 0) {
+            throw new IllegalArgumentException("Bound must be positive");
+        }
+        int r = (int) (nextLong() >>> 33);
+        int m = bound - 1;
+        if ((bound & m) == 0) {
+            return (int) ((bound * (long) r) >> 31);
+        }
+        // Reject the top partial block of 31-bit values so every residue is equally likely
+        int u = r;
+        while (u - (r = u % bound) + m < 0) {
+            u = (int) (nextLong() >>> 33);
+        }
+        return r;
+    }
+
+    /** @return the next uniformly distributed double in {@code [0, 1)} */
+    public double nextDouble() {
+        return (nextLong() >>> 11) * 0x1.0p-53;
+    }
+
+    /**
+     * Returns a standard normal value by the Box-Muller transform. Each call consumes two
+     * uniform draws and keeps no cached second value, so the state alone describes the stream.
+     *
+     * @return the next normally distributed double with mean 0 and standard deviation 1
+     */
+    public double nextGaussian() {
+        double u = 1.0 - nextDouble();
+        double v = nextDouble();
+        return Math.sqrt(-2.0 * Math.log(u)) * Math.cos(2.0 * Math.PI * v);
+    }
+
+    /** @return the seed this stream was created from, which determines its children */
+    public long getSeed() { return seed; }
+
+    /** @return the current generator state, for checkpointing */
+    public long getState() { return state; }
+
+    /**
+     * Restores a state previously returned by {@link #getState()}.
+     *
+     * @param state the generator state
+     */
+    public void setState(long state) { this.state = state; }
+
+    private static long mix64(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
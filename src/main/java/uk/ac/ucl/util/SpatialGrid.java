@@ -0,0 +1,195 @@
+package uk.ac.ucl.util;
+
+import java.util.Arrays;
+
+/**
+ * Uniform grid spatial index over a bounding box for nearest-point queries.
+ * Points are bucketed into cells of roughly equal occupancy and searched in
+ * expanding rings, so a query touches only the cells around the query point.
+ * Points outside the bounds are clamped into the edge cells and remain searchable.
+ */
+public class SpatialGrid {
+    private static final int POINTS_PER_CELL = 2;
+    private static final int MAX_CELLS_PER_AXIS = 4096;
+
+    private double minX;
+    private double minY;
+    private double cellWidth;
+    private double cellHeight;
+    private int cols;
+    private int rows;
+    private int[] cellHead = new int[0];
+
+    private double[] xs = new double[0];
+    private double[] ys = new double[0];
+    private int[] next = new int[0];
+    private int size;
+
+    /**
+     * Creates an empty grid sized for the expected number of points.
+     *
+     * @param bounds the region covered by the grid
+     * @param expectedPoints expected number of points, used to choose the cell resolution
+     */
+    public SpatialGrid(BoundingBox bounds, int expectedPoints) {
+        reset(bounds.getMinLon(), bounds.getMaxLon(), bounds.getMinLat(), bounds.getMaxLat(), expectedPoints);
+    }
+
+    /**
+     * Removes all points and re-fits the grid to a new region, reusing the allocated storage
+     * where it is large enough. Lets a caller rebuild an index every step without allocating.
+     *
+     * @param minX minimum x-coordinate of the region
+     * @param maxX maximum x-coordinate of the region
+     * @param minY minimum y-coordinate of the region
+     * @param maxY maximum y-coordinate of the region
+     * @param expectedPoints expected number of points, used to choose the cell resolution
+     */
+    public void reset(double minX, double maxX, double minY, double maxY, int expectedPoints) {
+        double width = maxX - minX;
+        double height = maxY - minY;
+        int targetCells = Math.max(1, expectedPoints / POINTS_PER_CELL);
+
+        int colCount;
+        int rowCount;
+        if (width > 0 && height > 0) {
+            colCount = (int) Math.round(Math.sqrt(targetCells * width / height));
+            rowCount = (int) Math.round(Math.sqrt(targetCells * height / width));
+        } else if (width > 0) {
+            colCount = targetCells;
+            rowCount = 1;
+        } else if (height > 0) {
+            colCount = 1;
+            rowCount = targetCells;
+        } else {
+            colCount = 1;
+            rowCount = 1;
+        }
+
+        this.cols = clampCells(colCount);
+        this.rows = clampCells(rowCount);
+        this.minX = minX;
+        this.minY = minY;
+        this.cellWidth = width > 0 ? width / cols : 1.0;
+        this.cellHeight = height > 0 ? height / rows : 1.0;
+        if (cellHead.length < cols * rows) {
+            cellHead = new int[cols * rows];
+        }
+        Arrays.fill(cellHead, 0, cols * rows, -1);
+        size = 0;
+
+        int capacity = Math.max(16, expectedPoints);
+        if (xs.length < capacity) {
+            xs = new double[capacity];
+            ys = new double[capacity];
+            next = new int[capacity];
+        }
+    }
+
+    /**
+     * Adds a point to the grid.
+     *
+     * @param x the x-coordinate
+     * @param y the y-coordinate
+     */
+    public void insert(double x, double y) {
+        if (size == xs.length) {
+            int capacity = size * 2;
+            xs = Arrays.copyOf(xs, capacity);
+            ys = Arrays.copyOf(ys, capacity);
+            next = Arrays.copyOf(next, capacity);
+        }
+        int cell = cellRow(y) * cols + cellCol(x);
+        xs[size] = x;
+        ys[size] = y;
+        next[size] = cellHead[cell];
+        cellHead[cell] = size;
+        size++;
+    }
+
+    /**
+     * Finds the Euclidean distance from a query location to the nearest point in the grid.
+     * The result is exactly the minimum of {@code sqrt(dx * dx + dy * dy)} over all points.
+     *
+     * @param x the query x-coordinate
+     * @param y the query y-coordinate
+     * @return distance to the nearest point, or {@link Double#MAX_VALUE} if the grid is empty
+     */
+    public double nearestDistance(double x, double y) {
+        return nearestDistance(x, y, Double.MAX_VALUE);
+    }
+
+    /**
+     * Finds the distance from a query location to the nearest point, searching only as far as
+     * {@code maxDistance}. Rings wholly beyond that distance are skipped, so a tight bound keeps
+     * queries far from every point cheap.
+     *
+     * @param x the query x-coordinate
+     * @param y the query y-coordinate
+     * @param maxDistance distance beyond which points need not be found
+     * @return the exact nearest distance if it is at most {@code maxDistance}; otherwise some
+     *         value greater than {@code maxDistance}, {@link Double#MAX_VALUE} if no point was examined
+     */
+    public double nearestDistance(double x, double y, double maxDistance) {
+        if (size == 0) return Double.MAX_VALUE;
+
+        int col = cellCol(x);
+        int row = cellRow(y);
+        double minCellSize = Math.min(cellWidth, cellHeight);
+        int maxRing = Math.max(Math.max(col, cols - 1 - col), Math.max(row, rows - 1 - row));
+
+        double bestSq = Double.MAX_VALUE;
+        for (int ring = 0; ring <= maxRing; ring++) {
+            int rowStart = Math.max(0, row - ring);
+            int rowEnd = Math.min(rows - 1, row + ring);
+            for (int r = rowStart; r <= rowEnd; r++) {
+                boolean edgeRow = r == row - ring || r == row + ring;
+                int step = edgeRow ? 1 : 2 * ring;
+                for (int c = col - ring; c <= col + ring; c += Math.max(1, step)) {
+                    if (c < 0 || c >= cols) continue;
+                    for (int i = cellHead[r * cols + c]; i != -1; i = next[i]) {
+                        double dx = x - xs[i];
+                        double dy = y - ys[i];
+                        double distSq = dx * dx + dy * dy;
+                        if (distSq < bestSq) {
+                            bestSq = distSq;
+                        }
+                    }
+                }
+            }
+
+            // Every cell beyond this ring is separated from the query by at least `ring` whole cells
+            double bound = ring * minCellSize;
+            if (bestSq <= bound * bound || bound > maxDistance) break;
+        }
+        return bestSq == Double.MAX_VALUE ? Double.MAX_VALUE : Math.sqrt(bestSq);
+    }
+
+    /**
+     * Removes all points while keeping the allocated storage.
+     */
+    public void clear() {
+        Arrays.fill(cellHead, 0, cols * rows, -1);
+        size = 0;
+    }
+
+    /** @return number of points in the grid */
+    public int size() { return size; }
+
+    public int getCols() { return cols; }
+    public int getRows() { return rows; }
+
+    private int cellCol(double x) {
+        int c = (int) ((x - minX) / cellWidth);
+        return c < 0 ? 0 : (c >= cols ? cols - 1 : c);
+    }
+
+    private int cellRow(double y) {
+        int r = (int) ((y - minY) / cellHeight);
+        return r < 0 ? 0 : (r >= rows ? rows - 1 : r);
+    }
+
+    private static int clampCells(int count) {
+        return Math.max(1, Math.min(MAX_CELLS_PER_AXIS, count));
+    }
+}
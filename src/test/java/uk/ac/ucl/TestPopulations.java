@@ -0,0 +1,61 @@
+package uk.ac.ucl;
+
+import uk.ac.ucl.model.Person;
+import uk.ac.ucl.model.Population;
+
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Shared fixtures for tests that need a population of randomly placed people.
+ */
+public final class TestPopulations {
+
+    private TestPopulations() {
+    }
+
+    /**
+     * Creates people spread uniformly over the square {@code [0, 10) x [0, 10)}.
+     *
+     * @param size number of people
+     * @param seed seed for the positions
+     * @return a population with no adopters
+     */
+    public static Population createRandomPopulation(int size, long seed) {
+        return createRandomPopulation(size, seed, 0.0, 10.0);
+    }
+
+    /**
+     * Creates people spread uniformly over {@code [0, 10) x [minY, minY + height)}.
+     *
+     * @param size number of people
+     * @param seed seed for the positions
+     * @param minY lowest y-coordinate
+     * @param height extent of the y-coordinates
+     * @return a population with no adopters
+     */
+    public static Population createRandomPopulation(int size, long seed, double minY, double height) {
+        Random random = new Random(seed);
+        double[] xs = new double[size];
+        double[] ys = new double[size];
+        for (int i = 0; i < size; i++) {
+            xs[i] = random.nextDouble() * 10.0;
+            ys[i] = minY + random.nextDouble() * height;
+        }
+        return new Population(xs, ys);
+    }
+
+    /**
+     * Creates the people of {@link #createRandomPopulation(int, long, double, double)} as a list,
+     * for the list-based service methods.
+     *
+     * @param size number of people
+     * @param seed seed for the positions
+     * @param minY lowest y-coordinate
+     * @param height extent of the y-coordinates
+     * @return a new mutable list of people, none of whom has adopted
+     */
+    public static List<Person> createRandomPeople(int size, long seed, double minY, double height) {
+        return createRandomPopulation(size, seed, minY, height).toPeople();
+    }
+}
@@ -0,0 +1,96 @@
+package uk.ac.ucl.model;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ReadOnlyBufferException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OffHeapPopulationTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testAllocatedStoreTracksAdoption() {
+        OffHeapPopulation population = OffHeapPopulation.allocate(130);
+        population.setPosition(129, 1.5, -2.5);
+
+        assertEquals(130, population.size());
+        assertEquals(1.5, population.getXPos(129));
+        assertEquals(-2.5, population.getYPos(129));
+        assertEquals(-1, population.getAdoptionStep(0), "No adoption step should be recorded yet");
+
+        population.setHasAdopted(64, true);
+        population.setHasAdopted(64, true);
+        population.setAdoptionStep(64, 3);
+        assertTrue(population.hasAdopted(64));
+        assertFalse(population.hasAdopted(63));
+        assertEquals(1, population.countAdopters(), "Repeated updates should not change the count");
+        assertEquals(3, population.getAdoptionStep(64));
+
+        population.resetAdoptionStates();
+        assertEquals(0, population.countAdopters());
+        assertEquals(-1, population.getAdoptionStep(64), "Reset should clear adoption steps");
+        assertThrows(IndexOutOfBoundsException.class, () -> population.getXPos(130));
+    }
+
+    @Test
+    void testNextAdopterSkipsToSetFlags() {
+        OffHeapPopulation population = OffHeapPopulation.allocate(300);
+        assertEquals(-1, population.nextAdopter(0));
+
+        population.setHasAdopted(3, true);
+        population.setHasAdopted(64, true);
+        population.setHasAdopted(299, true);
+        assertEquals(3, population.nextAdopter(0));
+        assertEquals(3, population.nextAdopter(3));
+        assertEquals(64, population.nextAdopter(4), "The search should carry on into the next word");
+        assertEquals(299, population.nextAdopter(65));
+        assertEquals(-1, population.nextAdopter(300));
+        assertThrows(IndexOutOfBoundsException.class, () -> population.nextAdopter(-1));
+    }
+
+    @Test
+    void testPreparedFileReopensWithStates() throws IOException {
+        Path file = tempDir.resolve("population.bin");
+        OffHeapPopulation prepared = OffHeapPopulation.create(file, 1000);
+        for (int i = 0; i < 1000; i++) {
+            prepared.setPosition(i, i * 0.5, 50.0 - i);
+        }
+        prepared.setHasAdopted(7, true);
+        prepared.setAdoptionStep(7, 2);
+        prepared.force();
+        assertTrue(prepared.isFileBacked());
+
+        OffHeapPopulation reopened = OffHeapPopulation.open(file, false);
+        assertEquals(1000, reopened.size());
+        assertEquals(499.5, reopened.getXPos(999));
+        assertEquals(-949.0, reopened.getYPos(999));
+        assertEquals(1, reopened.countAdopters(), "The adopter count should be rebuilt from the flags");
+        assertTrue(reopened.hasAdopted(7));
+        assertEquals(2, reopened.getAdoptionStep(7));
+        assertThrows(ReadOnlyBufferException.class, () -> reopened.setHasAdopted(8, true));
+    }
+
+    @Test
+    void testRejectsDamagedFiles() throws IOException {
+        Path notPopulation = tempDir.resolve("other.bin");
+        Files.write(notPopulation, new byte[64]);
+        assertThrows(IOException.class, () -> OffHeapPopulation.open(notPopulation, false));
+
+        Path truncated = tempDir.resolve("truncated.bin");
+        OffHeapPopulation.create(truncated, 100).force();
+        try (FileChannel channel = FileChannel.open(truncated, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 4);
+        }
+        assertThrows(IOException.class, () -> OffHeapPopulation.open(truncated, true),
+                "A file shorter than its header says should be rejected");
+    }
+}
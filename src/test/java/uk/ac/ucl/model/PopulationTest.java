@@ -0,0 +1,93 @@
+package uk.ac.ucl.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PopulationTest {
+
+    @Test
+    void testConstructor_MismatchedArrays() {
+        assertThrows(IllegalArgumentException.class, () -> {
+            new Population(new double[2], new double[3]);
+        }, "Coordinate arrays of different lengths should throw IllegalArgumentException");
+    }
+
+    @Test
+    void testNewPopulationHasNoAdopters() {
+        Population population = new Population(new double[]{0.0, 1.0}, new double[]{0.0, 1.0});
+
+        assertEquals(2, population.size(), "Size should match the coordinate arrays");
+        assertEquals(0, population.countAdopters(), "New population should have no adopters");
+    }
+
+    @Test
+    void testSetHasAdoptedAndReset() {
+        Population population = new Population(new double[3], new double[3]);
+
+        population.setHasAdopted(1, true);
+        assertTrue(population.hasAdopted(1), "Person 1 should be adopted");
+        assertEquals(1, population.countAdopters(), "Should count exactly 1 adopter");
+
+        population.resetAdoptionStates();
+        assertEquals(0, population.countAdopters(), "Reset should clear all adoption states");
+    }
+
+    @Test
+    void testCountersIgnoreRepeatedUpdates() {
+        Population population = new Population(new double[4], new double[4]);
+
+        population.setHasAdopted(2, true);
+        population.setHasAdopted(2, true);
+        population.setHasAdopted(3, false);
+
+        assertEquals(1, population.countAdopters(), "Setting the same state twice should count once");
+        assertEquals(3, population.countNonAdopters(), "Non-adopters should be the remainder");
+
+        population.setHasAdopted(2, false);
+        assertEquals(0, population.countAdopters(), "Un-adopting should decrement the count");
+    }
+
+    @Test
+    void testFromPeopleRoundTrip() {
+        List<Person> people = new ArrayList<>();
+        people.add(new Person(1.5, 2.5, false));
+        people.add(new Person(-3.0, 4.0, true));
+
+        Population population = Population.fromPeople(people);
+        List<Person> copy = population.toPeople();
+
+        assertEquals(2, population.size(), "Population should have one entry per person");
+        assertEquals(1, population.countAdopters(), "Adoption states should be copied");
+        for (int i = 0; i < people.size(); i++) {
+            assertEquals(people.get(i).getXPos(), copy.get(i).getXPos(), "X coordinate should round-trip");
+            assertEquals(people.get(i).getYPos(), copy.get(i).getYPos(), "Y coordinate should round-trip");
+            assertEquals(people.get(i).hasAdopted(), copy.get(i).hasAdopted(), "Adoption should round-trip");
+        }
+    }
+
+    @Test
+    void testSetPropensities() {
+        Population population = new Population(new double[3], new double[3]);
+        float[] innovation = {1.0f, 0.0f, 2.5f};
+
+        population.setPropensities(innovation, null);
+
+        assertSame(innovation, population.getInnovationPropensities());
+        assertNull(population.getImitationPropensities());
+    }
+
+    @Test
+    void testSetPropensities_RejectsInvalidValues() {
+        Population population = new Population(new double[3], new double[3]);
+
+        assertThrows(IllegalArgumentException.class, () -> population.setPropensities(new float[2], null));
+        assertThrows(IllegalArgumentException.class,
+                () -> population.setPropensities(null, new float[]{1.0f, -0.5f, 1.0f}));
+        assertThrows(IllegalArgumentException.class,
+                () -> population.setPropensities(new float[]{1.0f, Float.NaN, 1.0f}, null));
+    }
+}
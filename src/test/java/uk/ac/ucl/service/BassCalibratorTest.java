@@ -0,0 +1,90 @@
+package uk.ac.ucl.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import uk.ac.ucl.model.CalibrationResult;
+import uk.ac.ucl.model.ObservedCurve;
+import uk.ac.ucl.model.SimulationParameters;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BassCalibratorTest {
+
+    private ExecutorService executor;
+    private BassCalibrator calibrator;
+
+    @BeforeEach
+    void setUp() {
+        executor = Executors.newFixedThreadPool(4);
+        calibrator = new BassCalibrator(executor);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    private ObservedCurve simulatedCurve(String name, double p, double q, int k, int population) {
+        int[] curve = MeanFieldBassSolver.discreteCurve(new SimulationParameters(p, q, k), population, 200);
+        return new ObservedCurve(name, population, curve);
+    }
+
+    @Test
+    void testFit_RecoversGeneratingParameters() {
+        ObservedCurve curve = simulatedCurve("product", 0.03, 0.38, 5, 100000);
+
+        CalibrationResult result = calibrator.fit(curve);
+
+        assertTrue(result.getRootMeanSquaredError() < 5.0, "Curve from the model itself should be fitted almost exactly");
+        assertEquals(0.03, result.getParameters().getP(), 0.002, "Should recover p");
+        assertEquals(0.38, result.getParameters().getQ(), 0.02, "Should recover q");
+        assertEquals(5, result.getParameters().getK(), "k should be the observed starting count");
+    }
+
+    @Test
+    void testFit_NoisyCurveFitsClosely() {
+        ObservedCurve exact = simulatedCurve("exact", 0.01, 0.5, 0, 50000);
+        int[] noisy = exact.getCumulativeAdopters().clone();
+        for (int t = 1; t < noisy.length; t++) {
+            noisy[t] = Math.max(noisy[t - 1], Math.min(50000, noisy[t] + (t % 2 == 0 ? 40 : -40)));
+        }
+
+        CalibrationResult result = calibrator.fit(new ObservedCurve("noisy", 50000, noisy));
+
+        assertEquals(0.01, result.getParameters().getP(), 0.003);
+        assertEquals(0.5, result.getParameters().getQ(), 0.05);
+        assertTrue(result.getRootMeanSquaredError() < 100, "Fit should be within the noise level");
+    }
+
+    @Test
+    void testFitAll_MatchesSingleFitsInOrder() {
+        List<ObservedCurve> curves = new ArrayList<>();
+        for (int i = 0; i < 12; i++) {
+            curves.add(simulatedCurve("curve" + i, 0.005 + 0.004 * i, 0.2 + 0.03 * i, i, 20000));
+        }
+
+        List<CalibrationResult> results = calibrator.fitAll(curves, 4);
+
+        assertEquals(curves.size(), results.size());
+        for (int i = 0; i < curves.size(); i++) {
+            CalibrationResult single = calibrator.fit(curves.get(i));
+            assertEquals("curve" + i, results.get(i).getCurveName(), "Results should keep the input order");
+            assertEquals(single.getParameters(), results.get(i).getParameters(), "Batch fits should match single fits");
+        }
+    }
+
+    @Test
+    void testSquaredError_HoldsFinalValueAfterCompletion() {
+        int[] observed = {10, 10, 10};
+
+        assertEquals(0.0, BassCalibrator.squaredError(0.0, 0.0, observed, 10), "Complete curve should not move");
+        assertEquals(2.0, BassCalibrator.squaredError(0.0, 0.0, new int[]{5, 6, 6}, 10), 1e-12,
+                "Stalled model should keep its starting value");
+    }
+}
@@ -0,0 +1,127 @@
+package uk.ac.ucl.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import uk.ac.ucl.model.Population;
+import uk.ac.ucl.model.SimulationCheckpoint;
+import uk.ac.ucl.model.SimulationParameters;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static uk.ac.ucl.TestPopulations.createRandomPopulation;
+
+class CheckpointServiceTest {
+
+    @TempDir
+    Path directory;
+
+    private SimulationCheckpoint runAndCheckpoint(DiffusionSimulationServiceImpl service, Population population,
+                                                  SimulationParameters params, int steps) {
+        service.initializeAdopters(population, params.getK());
+        for (int t = 1; t <= steps; t++) {
+            service.performDiffusionStep(population, params, t);
+        }
+        return service.createCheckpoint(population, steps);
+    }
+
+    @Test
+    void testWriteAndRead_RoundTrips() throws IOException {
+        Population population = createRandomPopulation(1000, 1L, 50.0, 8.0);
+        population.setPropensities(PropensityDistributions.uniform(1000, 0.5, 1.5, 2L), null);
+        DiffusionSimulationServiceImpl service = new DiffusionSimulationServiceImpl();
+        service.setSeed(3L);
+        SimulationCheckpoint checkpoint = runAndCheckpoint(service, population,
+                new SimulationParameters(0.01, 0.4, 5), 6);
+
+        Path file = directory.resolve("run.ckpt");
+        CheckpointService checkpointService = new CheckpointService();
+        checkpointService.write(file, checkpoint);
+        SimulationCheckpoint loaded = checkpointService.read(file);
+
+        assertEquals(6, loaded.getTimeStep());
+        Population restored = loaded.getPopulation();
+        assertArrayEquals(population.getXPositions(), restored.getXPositions());
+        assertArrayEquals(population.getYPositions(), restored.getYPositions());
+        assertEquals(population.getAdoptionStates(), restored.getAdoptionStates());
+        assertEquals(population.countAdopters(), restored.countAdopters(), "Counters should be rebuilt");
+        assertArrayEquals(population.getInnovationPropensities(), restored.getInnovationPropensities());
+        assertNull(restored.getImitationPropensities());
+        assertArrayEquals(checkpoint.getAdoptionSteps(), loaded.getAdoptionSteps());
+        assertArrayEquals(checkpoint.getNonAdopterOrder(), loaded.getNonAdopterOrder());
+        assertArrayEquals(checkpoint.getRandomSeeds(), loaded.getRandomSeeds());
+        assertArrayEquals(checkpoint.getRandomStates(), loaded.getRandomStates());
+        assertNotNull(checkpoint.getInnovationWeightState(), "Weighted innovators keep a live tree");
+        assertArrayEquals(checkpoint.getInnovationWeightState(), loaded.getInnovationWeightState());
+        assertEquals(checkpoint.getInnovationWeightUpdates(), loaded.getInnovationWeightUpdates());
+    }
+
+    @Test
+    void testResumeFromFile_MatchesUninterruptedRun() throws IOException {
+        SimulationParameters params = new SimulationParameters(0.005, 0.5, 3);
+        Population population = createRandomPopulation(2500, 4L, 50.0, 8.0);
+        DiffusionSimulationServiceImpl service = new DiffusionSimulationServiceImpl();
+        service.setSeed(5L);
+        Path file = directory.resolve("run.ckpt");
+        new CheckpointService().write(file, runAndCheckpoint(service, population, params, 5));
+
+        // A fresh service and engine, as after a restart
+        DiffusionSimulationServiceImpl resumedService = new DiffusionSimulationServiceImpl();
+        SimulationCheckpoint loaded = new CheckpointService().read(file);
+        Population resumed = resumedService.restoreCheckpoint(loaded);
+
+        for (int t = loaded.getTimeStep() + 1; !service.isSimulationComplete(population); t++) {
+            service.performDiffusionStep(population, params, t);
+            resumedService.performDiffusionStep(resumed, params, t);
+            assertEquals(population.getAdoptionStates(), resumed.getAdoptionStates(),
+                    "Step " + t + " should adopt the same people");
+        }
+        assertArrayEquals(service.getAdoptionSteps(population), resumedService.getAdoptionSteps(resumed));
+    }
+
+    @Test
+    void testWrite_ReplacesExistingFile() throws IOException {
+        Path file = directory.resolve("nested").resolve("run.ckpt");
+        CheckpointService checkpointService = new CheckpointService();
+        DiffusionSimulationServiceImpl service = new DiffusionSimulationServiceImpl();
+        Population population = createRandomPopulation(200, 6L, 50.0, 8.0);
+        SimulationParameters params = new SimulationParameters(0.05, 0.3, 2);
+
+        checkpointService.write(file, runAndCheckpoint(service, population, params, 1));
+        service.performDiffusionStep(population, params, 2);
+        checkpointService.write(file, service.createCheckpoint(population, 2));
+
+        assertEquals(2, checkpointService.read(file).getTimeStep());
+        assertEquals(population.countAdopters(), checkpointService.read(file).getPopulation().countAdopters());
+        try (var files = Files.list(file.getParent())) {
+            assertEquals(1, files.count(), "Temporary files should not be left behind");
+        }
+    }
+
+    @Test
+    void testRead_RejectsDamagedFiles() throws IOException {
+        Path file = directory.resolve("run.ckpt");
+        CheckpointService checkpointService = new CheckpointService();
+        DiffusionSimulationServiceImpl service = new DiffusionSimulationServiceImpl();
+        checkpointService.write(file, runAndCheckpoint(service, createRandomPopulation(300, 7L, 50.0, 8.0),
+                new SimulationParameters(0.05, 0.3, 2), 2));
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 4);
+        }
+        assertThrows(IOException.class, () -> checkpointService.read(file), "Truncated file");
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(4), 0);
+        }
+        assertThrows(IOException.class, () -> checkpointService.read(file), "Wrong magic number");
+
+        Files.write(file, new byte[3]);
+        assertThrows(IOException.class, () -> checkpointService.read(file), "Shorter than a header");
+    }
+}
@@ -0,0 +1,39 @@
+package uk.ac.ucl.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import uk.ac.ucl.model.ObservedCurve;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CsvLoggingServiceTest {
+
+    @Test
+    void testReadAdoptionCurve_LoggedFormat(@TempDir Path tempDir) throws IOException {
+        Path file = tempDir.resolve("diffusion_uk.csv");
+        Files.write(file, List.of(
+                "TimeStep,NewAdopters,TotalAdopted,TotalPopulation,AdoptionPercentage,SimulationTime",
+                "0,3,3,100,3.0,2024-01-01 00:00:00.000",
+                "1,5,8,100,8.0,2024-01-01 00:00:00.100",
+                "2,12,20,100,20.0,2024-01-01 00:00:00.200"));
+
+        ObservedCurve curve = CsvLoggingService.readAdoptionCurve(file);
+
+        assertEquals("diffusion_uk", curve.getName());
+        assertEquals(100, curve.getTotalPopulation());
+        assertArrayEquals(new int[]{3, 8, 20}, curve.getCumulativeAdopters());
+    }
+
+    @Test
+    void testReadAdoptionCurve_MissingColumn(@TempDir Path tempDir) throws IOException {
+        Path file = tempDir.resolve("sales.csv");
+        Files.write(file, List.of("Week,Units", "1,10"));
+
+        assertThrows(IllegalArgumentException.class, () -> CsvLoggingService.readAdoptionCurve(file));
+    }
+}
@@ -2,14 +2,21 @@ package uk.ac.ucl.service;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import uk.ac.ucl.model.OffHeapPopulation;
 import uk.ac.ucl.model.Person;
+import uk.ac.ucl.model.Population;
+import uk.ac.ucl.model.SimulationCheckpoint;
 import uk.ac.ucl.model.SimulationParameters;
 import uk.ac.ucl.model.SimulationResult;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static uk.ac.ucl.TestPopulations.createRandomPeople;
+import static uk.ac.ucl.TestPopulations.createRandomPopulation;
 
 class DiffusionSimulationServiceImplTest {
 
@@ -257,6 +264,266 @@ class DiffusionSimulationServiceImplTest {
                    "Farthest person should not be selected first");
     }
 
+    @Test
+    void testSpatialIndexMatchesBruteForce() {
+        assertSameAdoptersAsBruteForce(DistanceSearchMode.SPATIAL_INDEX);
+    }
+
+    @Test
+    void testIncrementalDistanceFieldMatchesBruteForce() {
+        assertSameAdoptersAsBruteForce(DistanceSearchMode.INCREMENTAL);
+    }
+
+    @Test
+    void testIncrementalDistanceFieldAfterReset() {
+        DiffusionSimulationServiceImpl incremental = new DiffusionSimulationServiceImpl(DistanceSearchMode.INCREMENTAL);
+        testPopulation.get(9).setHasAdopted(true);
+        incremental.selectNewAdoptersByDistance(testPopulation, 1);
+
+        incremental.resetAdoptionStates(testPopulation);
+        testPopulation.get(0).setHasAdopted(true);
+        incremental.selectNewAdoptersByDistance(testPopulation, 1);
+
+        assertTrue(testPopulation.get(1).hasAdopted(),
+                  "Distance field should be rebuilt after adoption states are reset");
+        assertEquals(2, incremental.countAdopters(testPopulation), "Only one imitator should be added");
+    }
+
+    @Test
+    void testBoundedHeapSelectionMatchesFullSort() {
+        List<Person> heapPopulation = createRandomPeople(2000, 5L, 50.0, 8.0);
+        List<Person> sortPopulation = createRandomPeople(2000, 5L, 50.0, 8.0);
+        DiffusionSimulationServiceImpl heap = new DiffusionSimulationServiceImpl();
+        DiffusionSimulationServiceImpl sort = new DiffusionSimulationServiceImpl();
+        sort.setImitatorSelectionStrategy(ImitatorSelectionStrategy.FULL_SORT);
+        SimulationParameters params = new SimulationParameters(0.02, 0.4, 3);
+
+        heap.setSeed(11L);
+        sort.setSeed(11L);
+        heap.initializeAdopters(heapPopulation, 3);
+        sort.initializeAdopters(sortPopulation, 3);
+
+        for (int step = 1; step <= 10; step++) {
+            heap.performDiffusionStep(heapPopulation, params, step);
+            sort.performDiffusionStep(sortPopulation, params, step);
+        }
+
+        for (int i = 0; i < heapPopulation.size(); i++) {
+            assertEquals(sortPopulation.get(i).hasAdopted(), heapPopulation.get(i).hasAdopted(),
+                        "Bounded heap should select exactly the same adopters as a full sort");
+        }
+    }
+
+    @Test
+    void testPopulationOverloadMatchesPersonList() {
+        List<Person> people = createRandomPeople(1000, 21L, 50.0, 8.0);
+        Population population = Population.fromPeople(people);
+        DiffusionSimulationServiceImpl listService = new DiffusionSimulationServiceImpl();
+        DiffusionSimulationServiceImpl populationService = new DiffusionSimulationServiceImpl();
+        SimulationParameters params = new SimulationParameters(0.02, 0.3, 4);
+
+        listService.setSeed(3L);
+        populationService.setSeed(3L);
+        listService.initializeAdopters(people, 4);
+        populationService.initializeAdopters(population, 4);
+
+        for (int step = 1; step <= 8; step++) {
+            SimulationResult listResult = listService.performDiffusionStep(people, params, step);
+            SimulationResult populationResult = populationService.performDiffusionStep(population, params, step);
+            assertEquals(listResult.getNewAdopters(), populationResult.getNewAdopters(),
+                        "Both overloads should adopt the same number of people");
+        }
+
+        for (int i = 0; i < people.size(); i++) {
+            assertEquals(people.get(i).hasAdopted(), population.hasAdopted(i),
+                        "Population overload should select exactly the same adopters");
+        }
+    }
+
+    @Test
+    void testPopulationCounts() {
+        Population population = Population.fromPeople(testPopulation);
+        population.setHasAdopted(0, true);
+        population.setHasAdopted(5, true);
+
+        assertEquals(2, service.countAdopters(population), "Should count exactly 2 adopters");
+        assertEquals(8, service.countNonAdopters(population), "Should count exactly 8 non-adopters");
+        assertFalse(service.isSimulationComplete(population), "Should not be complete with partial adoption");
+
+        service.resetAdoptionStates(population);
+        assertEquals(0, service.countAdopters(population), "All adoption states should be reset");
+    }
+
+    @Test
+    void testAdopterCountersTrackSteps() {
+        Population population = createRandomPopulation(500, 8L, 50.0, 8.0);
+        SimulationParameters params = new SimulationParameters(0.05, 0.2, 3);
+
+        assertEquals(0, service.getAdoptedCount(), "No population simulated yet");
+
+        service.initializeAdopters(population, 3);
+        assertEquals(3, service.getAdoptedCount(), "Counter should reflect initial adopters");
+        assertEquals(497, service.getNonAdoptedCount(), "Counter should reflect initial non-adopters");
+
+        for (int step = 1; step <= 5; step++) {
+            SimulationResult result = service.performDiffusionStep(population, params, step);
+            assertEquals(result.getTotalAdopted(), service.getAdoptedCount(),
+                        "Counter should match the step result");
+            assertEquals(population.getAdoptionStates().cardinality(), service.getAdoptedCount(),
+                        "Counter should match the adoption bitset");
+        }
+
+        service.resetAdoptionStates(population);
+        assertEquals(0, service.getAdoptedCount(), "Counter should be cleared by reset");
+        assertEquals(500, service.getNonAdoptedCount(), "Everyone should be a non-adopter after reset");
+    }
+
+    @Test
+    void testInnovatorSamplingAfterOutsideModification() {
+        Population population = createRandomPopulation(200, 4L, 50.0, 8.0);
+        SimulationParameters innovatorsOnly = new SimulationParameters(0.1, 0.0, 0);
+        service.initializeAdopters(population, 0);
+
+        service.performDiffusionStep(population, innovatorsOnly, 1);
+        population.setHasAdopted(population.getAdoptionStates().nextClearBit(0), true);
+        int adoptedBefore = population.countAdopters();
+
+        SimulationResult result = service.performDiffusionStep(population, innovatorsOnly, 2);
+
+        assertEquals((int) Math.ceil(0.1 * (200 - adoptedBefore)), result.getNewAdopters(),
+                    "Innovators should follow the Bass p * N(t) rule");
+        assertEquals(adoptedBefore + result.getNewAdopters(), population.countAdopters(),
+                    "Innovators should only be drawn from people who had not yet adopted");
+    }
+
+    @Test
+    void testParallelEngineMatchesSequential() {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            for (DistanceSearchMode mode : new DistanceSearchMode[]{DistanceSearchMode.INCREMENTAL, DistanceSearchMode.SPATIAL_INDEX}) {
+                Population sequentialPopulation = createRandomPopulation(40000, 13L, 50.0, 8.0);
+                Population parallelPopulation = createRandomPopulation(40000, 13L, 50.0, 8.0);
+                DiffusionSimulationServiceImpl sequential = new DiffusionSimulationServiceImpl(mode);
+                DiffusionSimulationServiceImpl parallel = new DiffusionSimulationServiceImpl(mode, pool);
+                SimulationParameters params = new SimulationParameters(0.01, 0.4, 10);
+
+                sequential.setSeed(17L);
+                parallel.setSeed(17L);
+                sequential.initializeAdopters(sequentialPopulation, 10);
+                parallel.initializeAdopters(parallelPopulation, 10);
+
+                for (int step = 1; step <= 6; step++) {
+                    sequential.performDiffusionStep(sequentialPopulation, params, step);
+                    parallel.performDiffusionStep(parallelPopulation, params, step);
+                }
+
+                assertEquals(sequentialPopulation.getAdoptionStates(), parallelPopulation.getAdoptionStates(),
+                            mode + " parallel engine should select exactly the same adopters as sequential");
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private void assertSameAdoptersAsBruteForce(DistanceSearchMode mode) {
+        List<Person> candidatePopulation = createRandomPeople(2000, 99L, 50.0, 8.0);
+        List<Person> bruteForcePopulation = createRandomPeople(2000, 99L, 50.0, 8.0);
+        DiffusionSimulationServiceImpl candidate = new DiffusionSimulationServiceImpl(mode);
+        DiffusionSimulationServiceImpl bruteForce = new DiffusionSimulationServiceImpl(DistanceSearchMode.BRUTE_FORCE);
+        SimulationParameters params = new SimulationParameters(0.01, 0.3, 5);
+
+        candidate.setSeed(7L);
+        bruteForce.setSeed(7L);
+        candidate.initializeAdopters(candidatePopulation, 5);
+        bruteForce.initializeAdopters(bruteForcePopulation, 5);
+
+        for (int step = 1; step <= 10; step++) {
+            SimulationResult candidateResult = candidate.performDiffusionStep(candidatePopulation, params, step);
+            SimulationResult bruteForceResult = bruteForce.performDiffusionStep(bruteForcePopulation, params, step);
+            assertEquals(bruteForceResult.getTotalAdopted(), candidateResult.getTotalAdopted(),
+                        mode + " should adopt the same number of people as brute force");
+        }
+
+        for (int i = 0; i < candidatePopulation.size(); i++) {
+            assertEquals(bruteForcePopulation.get(i).hasAdopted(), candidatePopulation.get(i).hasAdopted(),
+                        mode + " should select exactly the same adopters as brute force");
+        }
+    }
+
+    @Test
+    void testRunToCompletion_MatchesStepByStep() {
+        List<Person> people = createRandomPeople(2000, 31L, 50.0, 8.0);
+        Population stepped = Population.fromPeople(people);
+        Population batched = Population.fromPeople(people);
+        SimulationParameters params = new SimulationParameters(0.01, 0.5, 4);
+
+        DiffusionSimulationServiceImpl stepService = new DiffusionSimulationServiceImpl();
+        stepService.setSeed(17L);
+        stepService.initializeAdopters(stepped, params.getK());
+        service.setSeed(17L);
+        int[] curve = service.runToCompletion(batched, params, 1000);
+
+        assertEquals(stepped.countAdopters(), curve[0], "Curve should start at the initial adopters");
+        for (int t = 1; t < curve.length; t++) {
+            assertEquals(stepService.performDiffusionStep(stepped, params, t).getTotalAdopted(), curve[t],
+                    "Batch run should match step " + t);
+        }
+        assertEquals(2000, curve[curve.length - 1], "Run should complete");
+        assertEquals(stepped.getAdoptionStates(), batched.getAdoptionStates(), "Same people should adopt");
+        assertArrayEquals(stepService.getAdoptionSteps(stepped), service.getAdoptionSteps(batched),
+                "Everyone should adopt at the same step");
+    }
+
+    @Test
+    void testRunToCompletion_WithPropensities_MatchesStepByStep() {
+        List<Person> people = createRandomPeople(3000, 39L, 50.0, 8.0);
+        Population stepped = Population.fromPeople(people);
+        Population batched = Population.fromPeople(people);
+        Random random = new Random(40L);
+        float[] innovation = new float[3000];
+        float[] imitation = new float[3000];
+        for (int i = 0; i < 3000; i++) {
+            innovation[i] = random.nextFloat();
+            // Some people never imitate, and some are keener than average
+            imitation[i] = i % 17 == 0 ? 0.0f : 2.0f * random.nextFloat();
+        }
+        stepped.setPropensities(innovation, imitation);
+        batched.setPropensities(innovation.clone(), imitation.clone());
+        SimulationParameters params = new SimulationParameters(0.005, 0.3, 3);
+
+        DiffusionSimulationServiceImpl stepService = new DiffusionSimulationServiceImpl();
+        stepService.setSeed(23L);
+        stepService.initializeAdopters(stepped, params.getK());
+        service.setSeed(23L);
+        int[] curve = service.runToCompletion(batched, params, 1000);
+
+        for (int t = 1; t < curve.length; t++) {
+            assertEquals(stepService.performDiffusionStep(stepped, params, t).getTotalAdopted(), curve[t],
+                    "Batch run should match step " + t);
+        }
+        assertArrayEquals(stepService.getAdoptionSteps(stepped), service.getAdoptionSteps(batched),
+                "Threshold pruning should not change who adopts when");
+    }
+
+    @Test
+    void testRunToCompletion_StopsAtMaxSteps() {
+        Population population = createRandomPopulation(500, 32L, 50.0, 8.0);
+        int[] curve = service.runToCompletion(population, new SimulationParameters(0.001, 0.0, 0), 10);
+
+        assertEquals(11, curve.length, "Curve should hold the initial state and 10 steps");
+        assertEquals(10, curve[10], "One innovator should adopt per step");
+    }
+
+    @Test
+    void testRunToCompletion_StopsWhenStalled() {
+        Population population = createRandomPopulation(100, 33L, 50.0, 8.0);
+        int[] curve = service.runToCompletion(population, new SimulationParameters(0.0, 0.5, 0), 50);
+
+        assertArrayEquals(new int[]{0}, curve, "Without adopters or innovation nothing can change");
+        assertThrows(IllegalArgumentException.class,
+                () -> service.runToCompletion(population, new SimulationParameters(0.1, 0.5, 1), -1));
+    }
+
     private List<Person> createTestPopulation() {
         List<Person> population = new ArrayList<>();
         for (int i = 0; i < 10; i++) {
@@ -264,4 +531,220 @@ class DiffusionSimulationServiceImplTest {
         }
         return population;
     }
-}
\ No newline at end of file
+
+    @Test
+    void testInnovationPropensities_WeightInnovatorDraws() {
+        Population population = createRandomPopulation(4000, 34L, 50.0, 8.0);
+        float[] innovation = new float[4000];
+        for (int i = 0; i < 4000; i++) {
+            // Even people are three times as innovative; a tenth of odd people never innovate
+            innovation[i] = i % 2 == 0 ? 3.0f : (i % 20 == 1 ? 0.0f : 1.0f);
+        }
+        population.setPropensities(innovation, null);
+        service.initializeAdopters(population, 0);
+
+        service.performDiffusionStep(population, new SimulationParameters(0.1, 0.0, 0), 1);
+
+        int even = 0;
+        for (int i = population.getAdoptionStates().nextSetBit(0); i >= 0;
+             i = population.getAdoptionStates().nextSetBit(i + 1)) {
+            assertNotEquals(0.0f, innovation[i], "People with zero propensity should never innovate");
+            if (i % 2 == 0) even++;
+        }
+        assertEquals(400, population.countAdopters(), "Innovator count should still be ceil(p * N(t))");
+        assertEquals(400 * 3.0 / 3.9, even, 40, "Draws should follow propensity, without replacement");
+    }
+
+    @Test
+    void testInnovationPropensities_ZeroWeightsLimitInnovators() {
+        Population population = createRandomPopulation(100, 35L, 50.0, 8.0);
+        float[] innovation = new float[100];
+        for (int i = 0; i < 10; i++) {
+            innovation[i] = 1.0f;
+        }
+        population.setPropensities(innovation, null);
+        service.initializeAdopters(population, 0);
+
+        SimulationResult result = service.performDiffusionStep(population, new SimulationParameters(0.5, 0.0, 0), 1);
+        assertEquals(10, result.getNewAdopters(), "Only people with positive propensity can innovate");
+
+        // An outside reset must rebuild the weights rather than reuse the drained tree
+        population.resetAdoptionStates();
+        result = service.performDiffusionStep(population, new SimulationParameters(0.5, 0.0, 0), 2);
+        assertEquals(10, result.getNewAdopters());
+    }
+
+    @Test
+    void testImitationPropensities_RankByDistanceOverPropensity() {
+        // One adopter at the origin; a near person who never imitates and a farther keen one
+        Population population = new Population(new double[]{0.0, 1.0, 2.0, 3.0}, new double[4]);
+        population.setPropensities(null, new float[]{1.0f, 0.0f, 4.0f, 1.0f});
+        population.setHasAdopted(0, true);
+
+        service.performDiffusionStep(population, new SimulationParameters(0.0, 1.0, 1), 1);
+
+        assertTrue(population.hasAdopted(2), "2 / 4 ranks ahead of 1 / 0 and 3 / 1");
+        assertEquals(2, population.countAdopters());
+    }
+
+    @Test
+    void testUniformPropensities_KeepTheStepCounts() {
+        Population population = createRandomPopulation(1500, 36L, 50.0, 8.0);
+        SimulationParameters params = new SimulationParameters(0.02, 0.4, 5);
+        int[] expected = service.runToCompletion(population, params, 300);
+
+        float[] ones = new float[1500];
+        java.util.Arrays.fill(ones, 1.0f);
+        population.setPropensities(ones, ones);
+
+        assertArrayEquals(expected, service.runToCompletion(population, params, 300),
+                "Counts depend only on p, q and the adopter count");
+    }
+
+    @Test
+    void testAdoptionSteps_RecordWhenEachPersonAdopted() {
+        Population population = createRandomPopulation(800, 37L, 50.0, 8.0);
+        SimulationParameters params = new SimulationParameters(0.01, 0.5, 3);
+        int[] curve = service.runToCompletion(population, params, 200);
+
+        int[] steps = service.getAdoptionSteps(population);
+        int[] adoptedBy = new int[curve.length];
+        for (int step : steps) {
+            assertTrue(step >= 0 && step < curve.length, "Everyone adopted during the run");
+            adoptedBy[step]++;
+        }
+        for (int t = 1; t < curve.length; t++) {
+            adoptedBy[t] += adoptedBy[t - 1];
+        }
+        assertArrayEquals(curve, adoptedBy, "Cumulative adoption steps should reproduce the curve");
+
+        population.setHasAdopted(0, false);
+        assertEquals(-1, service.getAdoptionSteps(population)[0], "Non-adopters have no step");
+    }
+
+    @Test
+    void testCheckpoint_ResumesIdentically() {
+        Population population = createRandomPopulation(3000, 38L, 50.0, 8.0);
+        population.setPropensities(PropensityDistributions.logNormal(3000, 0.5, 1L),
+                PropensityDistributions.logNormal(3000, 0.5, 2L));
+        SimulationParameters params = new SimulationParameters(0.01, 0.4, 5);
+        service.initializeAdopters(population, params.getK());
+        for (int t = 1; t <= 8; t++) {
+            service.performDiffusionStep(population, params, t);
+        }
+
+        SimulationCheckpoint checkpoint = service.createCheckpoint(population, 8);
+        DiffusionSimulationServiceImpl resumedService = new DiffusionSimulationServiceImpl();
+        Population resumed = resumedService.restoreCheckpoint(checkpoint);
+
+        for (int t = 9; !service.isSimulationComplete(population); t++) {
+            SimulationResult expected = service.performDiffusionStep(population, params, t);
+            SimulationResult actual = resumedService.performDiffusionStep(resumed, params, t);
+            assertEquals(expected.getTotalAdopted(), actual.getTotalAdopted(), "Step " + t + " should match");
+            assertEquals(population.getAdoptionStates(), resumed.getAdoptionStates(),
+                    "Step " + t + " should adopt the same people");
+        }
+        assertArrayEquals(service.getAdoptionSteps(population), resumedService.getAdoptionSteps(resumed));
+    }
+
+    @Test
+    void testCheckpoint_LeavesRunUnchanged() {
+        SimulationParameters params = new SimulationParameters(0.02, 0.4, 5);
+        Population reference = createPropensityPopulation();
+        DiffusionSimulationServiceImpl referenceService = new DiffusionSimulationServiceImpl();
+        Population checkpointed = createPropensityPopulation();
+        DiffusionSimulationServiceImpl checkpointedService = new DiffusionSimulationServiceImpl();
+        stepThrough(referenceService, reference, params, 1, 8);
+        stepThrough(checkpointedService, checkpointed, params, 1, 4);
+        SimulationCheckpoint early = checkpointedService.createCheckpoint(checkpointed, 4);
+        stepThrough(checkpointedService, checkpointed, params, 5, 8);
+
+        // Innovator draws search the weight tree, so it must carry on exactly, rounding included
+        assertArrayEquals(referenceService.createCheckpoint(reference, 8).getInnovationWeightState(),
+                checkpointedService.createCheckpoint(checkpointed, 8).getInnovationWeightState(),
+                "Taking a checkpoint should not disturb the weight tree");
+
+        DiffusionSimulationServiceImpl resumedService = new DiffusionSimulationServiceImpl();
+        Population resumed = resumedService.restoreCheckpoint(early);
+        stepThrough(resumedService, resumed, params, 5, Integer.MAX_VALUE);
+        stepThrough(referenceService, reference, params, 9, Integer.MAX_VALUE);
+        stepThrough(checkpointedService, checkpointed, params, 9, Integer.MAX_VALUE);
+        assertArrayEquals(referenceService.getAdoptionSteps(reference),
+                checkpointedService.getAdoptionSteps(checkpointed), "Taking a checkpoint should not change the run");
+        assertArrayEquals(referenceService.getAdoptionSteps(reference), resumedService.getAdoptionSteps(resumed),
+                "A resumed run should match one that was never checkpointed");
+    }
+
+    @Test
+    void testOffHeapStoreRunsInPlaceLikePopulation() {
+        Population population = createRandomPopulation(3000, 41L, 50.0, 8.0);
+        OffHeapPopulation store = OffHeapPopulation.allocate(3000);
+        for (int i = 0; i < 3000; i++) {
+            store.setPosition(i, population.getXPos(i), population.getYPos(i));
+        }
+        SimulationParameters params = new SimulationParameters(0.01, 0.4, 5);
+
+        DiffusionSimulationServiceImpl onHeap = new DiffusionSimulationServiceImpl();
+        onHeap.setSeed(42L);
+        int[] expected = onHeap.runToCompletion(population, params, 500);
+        DiffusionSimulationServiceImpl offHeap = new DiffusionSimulationServiceImpl();
+        offHeap.setSeed(42L);
+
+        assertArrayEquals(expected, offHeap.runToCompletion(store, params, 500));
+        int[] steps = onHeap.getAdoptionSteps(population);
+        for (int i = 0; i < 3000; i++) {
+            assertEquals(population.hasAdopted(i), store.hasAdopted(i));
+            assertEquals(steps[i], store.getAdoptionStep(i), "The store should record each adoption step");
+        }
+    }
+
+    @Test
+    void testOffHeapStoreStepsMatchAfterOutsideChanges() {
+        Population population = createRandomPopulation(2000, 43L, 50.0, 8.0);
+        OffHeapPopulation store = OffHeapPopulation.allocate(2000);
+        for (int i = 0; i < 2000; i++) {
+            store.setPosition(i, population.getXPos(i), population.getYPos(i));
+        }
+        SimulationParameters params = new SimulationParameters(0.005, 0.4, 3);
+        // Brute force searches every adopter each step, so it checks the incremental field kept for the store
+        DiffusionSimulationServiceImpl onHeap = new DiffusionSimulationServiceImpl(DistanceSearchMode.BRUTE_FORCE);
+        DiffusionSimulationServiceImpl offHeap = new DiffusionSimulationServiceImpl(DistanceSearchMode.INCREMENTAL);
+        onHeap.setSeed(44L);
+        offHeap.setSeed(44L);
+        onHeap.initializeAdopters(population, params.getK());
+        offHeap.initializeAdopters(store, params.getK());
+
+        for (int t = 1; t <= 12; t++) {
+            if (t == 6) {
+                // Adopters added and removed outside the engine must reach its distance field
+                for (int i = 0; i < 2000; i += 97) {
+                    population.setHasAdopted(i, !population.hasAdopted(i));
+                    store.setHasAdopted(i, !store.hasAdopted(i));
+                }
+            }
+            onHeap.performDiffusionStep(population, params, t);
+            offHeap.performDiffusionStep(store, params, t);
+            for (int i = 0; i < 2000; i++) {
+                assertEquals(population.hasAdopted(i), store.hasAdopted(i), "Step " + t + ", person " + i);
+            }
+        }
+    }
+
+    private Population createPropensityPopulation() {
+        Population population = createRandomPopulation(3000, 39L, 50.0, 8.0);
+        population.setPropensities(PropensityDistributions.logNormal(3000, 0.8, 3L), null);
+        return population;
+    }
+
+    /** Seeds on the first step, then steps from {@code first} to {@code last} or completion. */
+    private void stepThrough(DiffusionSimulationServiceImpl run, Population population,
+                             SimulationParameters params, int first, int last) {
+        if (first == 1) {
+            run.setSeed(40L);
+            run.initializeAdopters(population, params.getK());
+        }
+        for (int t = first; t <= last && !run.isSimulationComplete(population); t++) {
+            run.performDiffusionStep(population, params, t);
+        }
+    }
+}
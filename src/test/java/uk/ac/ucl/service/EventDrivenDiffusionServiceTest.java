@@ -0,0 +1,152 @@
+package uk.ac.ucl.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import uk.ac.ucl.model.Person;
+import uk.ac.ucl.model.Population;
+import uk.ac.ucl.model.SimulationParameters;
+import uk.ac.ucl.model.SimulationResult;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static uk.ac.ucl.TestPopulations.createRandomPopulation;
+
+class EventDrivenDiffusionServiceTest {
+
+    private EventDrivenDiffusionService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new EventDrivenDiffusionService();
+        service.setSeed(12345L);
+    }
+
+    @Test
+    void testInitializeAdopters() {
+        Population population = createRandomPopulation(100, 1L);
+        service.initializeAdopters(population, 7);
+
+        assertEquals(7, population.countAdopters(), "Should initialize exactly k adopters");
+        assertEquals(0.0, service.getCurrentTime());
+    }
+
+    @Test
+    void testPerformDiffusionStep_AdvancesOneTimeUnit() {
+        Population population = createRandomPopulation(1000, 2L);
+        SimulationParameters params = new SimulationParameters(0.05, 0.4, 5);
+        service.initializeAdopters(population, params.getK());
+
+        int previous = population.countAdopters();
+        for (int step = 1; step <= 5; step++) {
+            SimulationResult result = service.performDiffusionStep(population, params, step);
+            assertEquals(step, service.getCurrentTime(), 1e-12, "Each step should cover one time unit");
+            assertEquals(previous + result.getNewAdopters(), result.getTotalAdopted());
+            assertEquals(population.countAdopters(), result.getTotalAdopted());
+            previous = result.getTotalAdopted();
+        }
+    }
+
+    @Test
+    void testPureInnovationMatchesExponentialAdoption() {
+        Population population = createRandomPopulation(20000, 3L);
+        SimulationParameters params = new SimulationParameters(0.1, 0.0, 0);
+        service.initializeAdopters(population, 0);
+
+        for (int step = 1; step <= 5; step++) {
+            service.performDiffusionStep(population, params, step);
+        }
+
+        double expected = 1.0 - Math.exp(-0.5);
+        assertEquals(expected, population.countAdopters() / 20000.0, 0.015,
+                "Without imitation each person adopts at rate p");
+    }
+
+    @Test
+    void testImitationSpreadsFromAdopters() {
+        Population population = createRandomPopulation(2000, 4L);
+        int[] curve = service.runToCompletion(population, new SimulationParameters(0.0, 0.8, 20), 500);
+
+        assertTrue(curve[curve.length - 1] > 1000, "Local imitation alone should reach most of a connected population");
+        for (int t = 1; t < curve.length; t++) {
+            assertTrue(curve[t] >= curve[t - 1], "Cumulative adopters should not decrease");
+        }
+    }
+
+    @Test
+    void testDensityRadius_CollinearPopulationStillImitates() {
+        double[] xs = new double[500];
+        double[] ys = new double[500];
+        for (int i = 0; i < xs.length; i++) {
+            xs[i] = i * 0.01;
+            ys[i] = 52.0;
+        }
+        int[] curve = service.runToCompletion(new Population(xs, ys), new SimulationParameters(0.0, 0.8, 5), 500);
+
+        assertTrue(curve[curve.length - 1] > 5, "People on a line should still have neighbours to imitate");
+    }
+
+    @Test
+    void testDensityRadius_CoincidentPopulationStillImitates() {
+        Population population = new Population(new double[50], new double[50]);
+        int[] curve = service.runToCompletion(population, new SimulationParameters(0.0, 0.8, 2), 500);
+
+        assertTrue(curve[curve.length - 1] > 2, "People at one place should all be neighbours");
+    }
+
+    @Test
+    void testRunToCompletion_StopsWhenStalled() {
+        Population population = createRandomPopulation(100, 5L);
+        int[] curve = service.runToCompletion(population, new SimulationParameters(0.0, 0.5, 0), 50);
+
+        assertArrayEquals(new int[]{0}, curve, "Without adopters or innovation no event can occur");
+    }
+
+    @Test
+    void testSeedReproducibility() {
+        Population population = createRandomPopulation(1500, 6L);
+        SimulationParameters params = new SimulationParameters(0.02, 0.5, 3);
+
+        service.setSeed(99L);
+        int[] first = service.runToCompletion(population, params, 200);
+        service.setSeed(99L);
+        int[] second = service.runToCompletion(population, params, 200);
+
+        assertArrayEquals(first, second, "Same seed should give the same trajectory");
+    }
+
+    @Test
+    void testSimulateAdoptionTimes() {
+        Population population = createRandomPopulation(500, 7L);
+        double[] times = service.simulateAdoptionTimes(population, new SimulationParameters(0.05, 0.3, 4), 10.0);
+
+        int initial = 0;
+        int adopted = 0;
+        for (double time : times) {
+            if (time == 0.0) initial++;
+            if (time <= 10.0) {
+                adopted++;
+                assertTrue(time >= 0.0);
+            } else {
+                assertEquals(Double.POSITIVE_INFINITY, time, "People who have not adopted have no time");
+            }
+        }
+        assertEquals(4, initial, "Initial adopters adopt at time zero");
+        assertEquals(population.countAdopters(), adopted);
+    }
+
+    @Test
+    void testListPopulation() {
+        List<Person> people = createRandomPopulation(300, 8L).toPeople();
+        SimulationParameters params = new SimulationParameters(0.1, 0.4, 3);
+        service.initializeAdopters(people, 3);
+
+        SimulationResult result = service.performDiffusionStep(people, params, 1);
+
+        assertEquals(result.getTotalAdopted(), service.countAdopters(people), "List should reflect adoptions");
+        assertEquals(result.getTotalAdopted(), service.getAdoptedCount());
+
+        service.selectNewAdoptersByDistance(people, 5);
+        assertEquals(result.getTotalAdopted() + 5, service.countAdopters(people));
+    }
+}
@@ -4,10 +4,12 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import uk.ac.ucl.geo.GeoJsonData;
 import uk.ac.ucl.model.Person;
+import uk.ac.ucl.model.Population;
 import uk.ac.ucl.util.BoundingBox;
 
 import java.io.IOException;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -176,4 +178,45 @@ class GeographicDataServiceImplTest {
                 "Same seed should produce identical Y coordinates");
         }
     }
-}
\ No newline at end of file
+
+    @Test
+    void testGeneratePopulationInCountry_MatchesPersonList() throws IOException {
+        GeoJsonData geoData = service.loadCountryData("UK");
+        BoundingBox bounds = service.calculateBoundingBox(geoData);
+
+        service.setSeed(12345L);
+        List<Person> people = service.generateRandomPointsInCountry(geoData, bounds, 50);
+
+        service.setSeed(12345L);
+        Population population = service.generatePopulationInCountry(geoData, bounds, 50);
+
+        assertEquals(people.size(), population.size(), "Both generators should produce the same number of people");
+        assertEquals(0, population.countAdopters(), "Generated population should have no adopters");
+        for (int i = 0; i < people.size(); i++) {
+            assertEquals(people.get(i).getXPos(), population.getXPos(i), "X coordinates should match");
+            assertEquals(people.get(i).getYPos(), population.getYPos(i), "Y coordinates should match");
+        }
+    }
+
+    @Test
+    void testGeneratePopulationInCountry_IndependentOfThreadCount() throws Exception {
+        GeoJsonData geoData = service.loadCountryData("UK");
+        BoundingBox bounds = service.calculateBoundingBox(geoData);
+        ForkJoinPool single = new ForkJoinPool(1);
+        ForkJoinPool multiple = new ForkJoinPool(4);
+
+        try {
+            // Spans several generation chunks so the chunks really are spread across threads
+            service.setSeed(99L);
+            Population sequential = single.submit(() -> service.generatePopulationInCountry(geoData, bounds, 5000)).get();
+            service.setSeed(99L);
+            Population parallel = multiple.submit(() -> service.generatePopulationInCountry(geoData, bounds, 5000)).get();
+
+            assertArrayEquals(sequential.getXPositions(), parallel.getXPositions(), "X coordinates should not depend on threads");
+            assertArrayEquals(sequential.getYPositions(), parallel.getYPositions(), "Y coordinates should not depend on threads");
+        } finally {
+            single.shutdown();
+            multiple.shutdown();
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package uk.ac.ucl.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import uk.ac.ucl.model.Population;
+import uk.ac.ucl.model.SimulationParameters;
+import uk.ac.ucl.util.NeighbourGraph;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static uk.ac.ucl.TestPopulations.createRandomPopulation;
+
+class GraphCacheServiceTest {
+
+    @TempDir
+    Path cacheDirectory;
+
+    @Test
+    void testStoreAndLoad_RoundTrips() throws IOException {
+        GraphCacheService cache = new GraphCacheService(cacheDirectory);
+        Population population = createRandomPopulation(2000, 1L);
+        NeighbourGraph graph = NeighbourGraph.kNearest(population.getXPositions(), population.getYPositions(), 8);
+
+        long checksum = GraphCacheService.coordinateChecksum(population.getXPositions(), population.getYPositions());
+        cache.store("United Kingdom", 2000, 42L, checksum, "knn8", graph);
+        NeighbourGraph loaded = cache.load("United Kingdom", 2000, 42L, checksum, "knn8");
+
+        assertNotNull(loaded);
+        assertArrayEquals(graph.getOffsets(), loaded.getOffsets());
+        assertArrayEquals(graph.getNeighbours(), loaded.getNeighbours());
+    }
+
+    @Test
+    void testLoadOrBuild_SecondCallSkipsConstruction() {
+        AtomicInteger builds = new AtomicInteger();
+        Population population = createRandomPopulation(500, 2L);
+        long checksum = GraphCacheService.coordinateChecksum(population.getXPositions(), population.getYPositions());
+
+        for (int run = 0; run < 2; run++) {
+            // A fresh service per run, as on a second launch
+            GraphCacheService cache = new GraphCacheService(cacheDirectory);
+            NeighbourGraph graph = cache.loadOrBuild("France", 500, 7L, checksum, "knn4", () -> {
+                builds.incrementAndGet();
+                return NeighbourGraph.kNearest(population.getXPositions(), population.getYPositions(), 4);
+            });
+            assertEquals(2000, graph.edgeCount());
+        }
+
+        assertEquals(1, builds.get(), "The second run should load the graph instead of building it");
+    }
+
+    @Test
+    void testLoad_MissesOnDifferentKey() throws IOException {
+        GraphCacheService cache = new GraphCacheService(cacheDirectory);
+        cache.store("Spain", 3, 1L, 0L, "knn1", new NeighbourGraph(new int[]{0, 1, 2, 3}, new int[]{1, 0, 1}));
+
+        assertNull(cache.load("Spain", 3, 2L, 0L, "knn1"), "A different seed is a different key");
+        assertNull(cache.load("Spain", 3, 1L, 0L, "knn2"), "A different graph kind is a different key");
+        assertNull(cache.load("Spain", 3, 1L, 1L, "knn1"), "A graph built from other coordinates is a miss");
+        assertNull(cache.load("Italy", 3, 1L, 0L, "knn1"));
+        assertNotNull(cache.load("Spain", 3, 1L, 0L, "knn1"));
+    }
+
+    @Test
+    void testLoad_RejectsDamagedFile() throws IOException {
+        GraphCacheService cache = new GraphCacheService(cacheDirectory);
+        cache.store("Spain", 3, 1L, 0L, "knn1", new NeighbourGraph(new int[]{0, 1, 2, 3}, new int[]{1, 0, 1}));
+        Path file = cache.cacheFile("Spain", 3, 1L, "knn1");
+
+        byte[] bytes = Files.readAllBytes(file);
+        Files.write(file, java.util.Arrays.copyOf(bytes, bytes.length - 2));
+        assertNull(cache.load("Spain", 3, 1L, 0L, "knn1"), "A truncated file should be a miss");
+
+        bytes[7] ^= 0x7F; // format version
+        Files.write(file, bytes);
+        assertNull(cache.load("Spain", 3, 1L, 0L, "knn1"), "A file from another format version should be a miss");
+    }
+
+    @Test
+    void testStore_RejectsWrongSize() {
+        GraphCacheService cache = new GraphCacheService(cacheDirectory);
+
+        assertThrows(IllegalArgumentException.class,
+                () -> cache.store("Spain", 4, 1L, 0L, "knn1", new NeighbourGraph(new int[]{0, 0}, new int[0])));
+    }
+
+    @Test
+    void testCachedGraphDrivesNetworkService() {
+        Population population = createRandomPopulation(1000, 3L);
+        SimulationParameters params = new SimulationParameters(0.01, 0.5, 3);
+
+        NetworkDiffusionService built = new NetworkDiffusionService(6);
+        built.setSeed(5L);
+        int[] expected = built.runToCompletion(population, params, 300);
+
+        NetworkDiffusionService cached = new NetworkDiffusionService(6);
+        cached.loadNeighbourGraph(population, new GraphCacheService(cacheDirectory), "Test", 3L);
+        cached.setSeed(5L);
+
+        assertArrayEquals(expected, cached.runToCompletion(population, params, 300));
+    }
+
+    @Test
+    void testLoadNeighbourGraph_SecondLaunchUsesCachedGraph() throws IOException {
+        Population population = createRandomPopulation(400, 4L);
+        NetworkDiffusionService first = new NetworkDiffusionService(4);
+        first.loadNeighbourGraph(population, new GraphCacheService(cacheDirectory), "Test", 4L);
+        assertTrue(Files.exists(new GraphCacheService(cacheDirectory).cacheFile("Test", 400, 4L, "knn4")),
+                "The first launch should store the built graph");
+
+        // Replace the cached graph with a recognisable one: a second launch must load rather than rebuild
+        int[] offsets = new int[401];
+        int[] neighbours = new int[400];
+        for (int i = 0; i < 400; i++) {
+            offsets[i + 1] = i + 1;
+            neighbours[i] = (i + 1) % 400;
+        }
+        long checksum = GraphCacheService.coordinateChecksum(population.getXPositions(), population.getYPositions());
+        new GraphCacheService(cacheDirectory).store("Test", 400, 4L, checksum, "knn4",
+                new NeighbourGraph(offsets, neighbours));
+
+        NetworkDiffusionService second = new NetworkDiffusionService(4);
+        second.loadNeighbourGraph(population, new GraphCacheService(cacheDirectory), "Test", 4L);
+        assertArrayEquals(neighbours, second.getNeighbourGraph().getNeighbours());
+    }
+
+    @Test
+    void testLoadNeighbourGraph_RebuildsForMovedCoordinates() throws IOException {
+        Population original = createRandomPopulation(400, 5L);
+        NetworkDiffusionService first = new NetworkDiffusionService(4);
+        first.loadNeighbourGraph(original, new GraphCacheService(cacheDirectory), "Test", 5L);
+
+        // Same country, size and seed, but the people were generated elsewhere
+        Population moved = createRandomPopulation(400, 6L);
+        NetworkDiffusionService second = new NetworkDiffusionService(4);
+        second.loadNeighbourGraph(moved, new GraphCacheService(cacheDirectory), "Test", 5L);
+
+        NeighbourGraph expected = NeighbourGraph.kNearest(moved.getXPositions(), moved.getYPositions(), 4);
+        assertArrayEquals(expected.getNeighbours(), second.getNeighbourGraph().getNeighbours());
+        long checksum = GraphCacheService.coordinateChecksum(moved.getXPositions(), moved.getYPositions());
+        assertNotNull(new GraphCacheService(cacheDirectory).load("Test", 400, 5L, checksum, "knn4"),
+                "The rebuilt graph should replace the stale file");
+    }
+
+    @Test
+    void testNullKeys_AreHandledLikeFileNames() throws IOException {
+        GraphCacheService cache = new GraphCacheService(cacheDirectory);
+        NeighbourGraph graph = new NeighbourGraph(new int[]{0, 1, 2}, new int[]{1, 0});
+
+        cache.store(null, 2, 1L, 0L, null, graph);
+
+        assertTrue(cache.cacheFile(null, 2, 1L, null).getFileName().toString().contains("unknown"));
+        assertNotNull(cache.load(null, 2, 1L, 0L, null));
+        assertNull(cache.load("unknown", 2, 1L, 0L, "unknown"), "A null key is not the string \"unknown\"");
+    }
+}
@@ -0,0 +1,136 @@
+package uk.ac.ucl.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import uk.ac.ucl.model.Person;
+import uk.ac.ucl.model.Population;
+import uk.ac.ucl.model.SimulationParameters;
+import uk.ac.ucl.model.SimulationResult;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static uk.ac.ucl.TestPopulations.createRandomPopulation;
+
+class GravityDiffusionServiceTest {
+
+    private GravityDiffusionService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new GravityDiffusionService();
+        service.setSeed(12345L);
+    }
+
+    @Test
+    void testInitializeAdopters() {
+        Population population = createRandomPopulation(200, 1L);
+        service.initializeAdopters(population, 9);
+
+        assertEquals(9, population.countAdopters(), "Should initialize exactly k adopters");
+    }
+
+    @Test
+    void testPureInnovationMatchesStepRule() {
+        Population population = createRandomPopulation(1000, 2L);
+        service.initializeAdopters(population, 0);
+
+        SimulationResult result = service.performDiffusionStep(population, new SimulationParameters(0.1, 0.0, 0), 1);
+
+        assertEquals(100, result.getNewAdopters(), "Innovators should be ceil(p * N(t))");
+    }
+
+    @Test
+    void testLongDecayRecoversBassImitation() {
+        GravityDiffusionService global = new GravityDiffusionService(1e6);
+        global.setSeed(3L);
+        Population population = createRandomPopulation(20000, 3L);
+        global.initializeAdopters(population, 2000);
+
+        SimulationResult result = global.performDiffusionStep(population, new SimulationParameters(0.0, 0.5, 0), 1);
+
+        // q * N(t) * A / M = 0.5 * 18000 * 0.1
+        assertEquals(900, result.getNewAdopters(), 90, "A flat kernel should give the Bass imitation rate");
+    }
+
+    @Test
+    void testInfluenceFallsWithDistance() {
+        GravityDiffusionService local = new GravityDiffusionService(0.5);
+        Random random = new Random(4L);
+        double[] xs = new double[2001];
+        double[] ys = new double[2001];
+        for (int i = 0; i < 2000; i++) {
+            xs[i] = random.nextDouble() * 10.0;
+            ys[i] = random.nextDouble() * 10.0;
+        }
+        xs[2000] = 1.0;
+        ys[2000] = 1.0;
+        Population population = new Population(xs, ys);
+        population.setHasAdopted(2000, true);
+
+        int near = -1;
+        int far = -1;
+        for (int i = 0; i < 2000; i++) {
+            double distance = Math.hypot(xs[i] - 1.0, ys[i] - 1.0);
+            if (near < 0 && distance < 0.3) near = i;
+            if (far < 0 && distance > 8.0) far = i;
+        }
+
+        assertTrue(local.getInfluenceShare(population, near) > 100 * local.getInfluenceShare(population, far),
+                "People near the adopter should feel far more influence");
+    }
+
+    @Test
+    void testDecayTooShortForGridIsRejected() {
+        // A 10-unit square needs cells of at most 0.005 for this decay, beyond the grid's cell limit
+        GravityDiffusionService local = new GravityDiffusionService(0.01);
+        Population population = createRandomPopulation(100, 6L);
+
+        assertThrows(IllegalArgumentException.class, () -> local.initializeAdopters(population, 1));
+    }
+
+    @Test
+    void testRunToCompletion_SpreadsAndIsMonotone() {
+        Population population = createRandomPopulation(3000, 5L);
+        int[] curve = service.runToCompletion(population, new SimulationParameters(0.01, 0.6, 5), 2000);
+
+        assertEquals(3000, curve[curve.length - 1], "Innovation plus imitation should reach everyone");
+        for (int t = 1; t < curve.length; t++) {
+            assertTrue(curve[t] >= curve[t - 1], "Cumulative adopters should not decrease");
+        }
+    }
+
+    @Test
+    void testRunToCompletion_StopsWhenStalled() {
+        Population population = createRandomPopulation(100, 6L);
+        int[] curve = service.runToCompletion(population, new SimulationParameters(0.0, 0.5, 0), 50);
+
+        assertArrayEquals(new int[]{0}, curve, "Without adopters or innovation nobody can adopt");
+    }
+
+    @Test
+    void testSeedReproducibility() {
+        Population population = createRandomPopulation(2000, 7L);
+        SimulationParameters params = new SimulationParameters(0.02, 0.5, 3);
+
+        service.setSeed(99L);
+        int[] first = service.runToCompletion(population, params, 200);
+        service.setSeed(99L);
+        int[] second = service.runToCompletion(population, params, 200);
+
+        assertArrayEquals(first, second, "Same seed should give the same trajectory");
+    }
+
+    @Test
+    void testListPopulation() {
+        List<Person> people = createRandomPopulation(300, 8L).toPeople();
+        service.initializeAdopters(people, 3);
+
+        SimulationResult result = service.performDiffusionStep(people, new SimulationParameters(0.1, 0.4, 3), 1);
+
+        assertEquals(result.getTotalAdopted(), service.countAdopters(people), "List should reflect adoptions");
+        service.selectNewAdoptersByDistance(people, 5);
+        assertEquals(result.getTotalAdopted() + 5, service.countAdopters(people));
+    }
+}
@@ -0,0 +1,242 @@
+package uk.ac.ucl.service;
+
+import org.junit.jupiter.api.Test;
+import uk.ac.ucl.model.Population;
+import uk.ac.ucl.model.SimulationParameters;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static uk.ac.ucl.TestPopulations.createRandomPopulation;
+
+class HybridDiffusionServiceTest {
+
+    /** Adopted fraction in each cell of a coarse regions-by-regions grid over the population. */
+    private double[] regionalFractions(Population population, int regions) {
+        double[] adopted = new double[regions * regions];
+        double[] total = new double[regions * regions];
+        for (int i = 0; i < population.size(); i++) {
+            int col = Math.min(regions - 1, (int) (population.getXPos(i) / 10.0 * regions));
+            int row = Math.min(regions - 1, (int) ((population.getYPos(i) - 50.0) / 8.0 * regions));
+            total[row * regions + col]++;
+            if (population.hasAdopted(i)) adopted[row * regions + col]++;
+        }
+        for (int r = 0; r < adopted.length; r++) {
+            adopted[r] /= total[r];
+        }
+        return adopted;
+    }
+
+    @Test
+    void testAdopterDistributionTracksAgentEngine() {
+        // Step counts match by construction, so compare where the adopters are: the hybrid map
+        // should be far closer to the agent engine's than an even spread of as many adopters
+        SimulationParameters params = new SimulationParameters(0.0, 0.3, 0);
+        Population agents = createRandomPopulation(20000, 1L, 50.0, 8.0);
+        Population hybrid = createRandomPopulation(20000, 1L, 50.0, 8.0);
+        for (int i = 0; i < agents.size(); i++) {
+            // Two patchy clusters, so their interiors have non-adopters to fill as aggregates
+            double x = agents.getXPos(i);
+            double y = agents.getYPos(i);
+            boolean clustered = Math.hypot(x - 2.5, y - 52.0) < 1.5 || Math.hypot(x - 7.5, y - 56.0) < 1.0;
+            if (clustered && i % 20 != 0) {
+                agents.setHasAdopted(i, true);
+                hybrid.setHasAdopted(i, true);
+            }
+        }
+        DiffusionSimulationServiceImpl engine = new DiffusionSimulationServiceImpl();
+        HybridDiffusionService service = new HybridDiffusionService(16);
+
+        int maxSaturated = 0;
+        for (int t = 1; agents.countAdopters() < 0.4 * agents.size(); t++) {
+            engine.performDiffusionStep(agents, params, t);
+            service.performDiffusionStep(hybrid, params, t);
+            maxSaturated = Math.max(maxSaturated, service.getSaturatedCellCount());
+        }
+
+        double[] agentMap = regionalFractions(agents, 8);
+        double[] hybridMap = regionalFractions(hybrid, 8);
+        double evenFraction = agents.countAdopters() / (double) agents.size();
+        double hybridError = 0.0;
+        double evenError = 0.0;
+        for (int r = 0; r < agentMap.length; r++) {
+            hybridError += (hybridMap[r] - agentMap[r]) * (hybridMap[r] - agentMap[r]);
+            evenError += (evenFraction - agentMap[r]) * (evenFraction - agentMap[r]);
+        }
+        assertTrue(evenError > 0.05 * agentMap.length, "Adopters should cluster around the seeds");
+        assertTrue(hybridError < 0.1 * evenError,
+                "Hybrid squared error " + hybridError + " against an even spread's " + evenError);
+        assertTrue(maxSaturated > 0, "Some cells should have adopted as aggregates");
+    }
+
+    @Test
+    void testFrontMatchesAgentEngineExactly() {
+        // Pure imitation spreading from one corner leaves no holes, so every imitator is resolved
+        // on the front, where the hybrid engine finds the same closest people
+        SimulationParameters params = new SimulationParameters(0.0, 0.6, 0);
+        Population agents = createRandomPopulation(20000, 2L, 50.0, 8.0);
+        Population hybrid = createRandomPopulation(20000, 2L, 50.0, 8.0);
+        for (int i = 0; i < agents.size(); i++) {
+            if (agents.getXPos(i) < 1.0 && agents.getYPos(i) < 51.0) {
+                agents.setHasAdopted(i, true);
+                hybrid.setHasAdopted(i, true);
+            }
+        }
+
+        DiffusionSimulationServiceImpl engine = new DiffusionSimulationServiceImpl();
+        HybridDiffusionService service = new HybridDiffusionService(16);
+        for (int t = 1; t <= 8; t++) {
+            engine.performDiffusionStep(agents, params, t);
+            service.performDiffusionStep(hybrid, params, t);
+            assertTrue(service.getFrontCellCount() < service.getCellCount() / 4,
+                    "Only cells near adopters should be resolved per person");
+        }
+        assertEquals(agents.getAdoptionStates(), hybrid.getAdoptionStates());
+    }
+
+    @Test
+    void testAdoptionMapWithinToleranceOfAgentEngine() {
+        SimulationParameters params = new SimulationParameters(0.02, 0.6, 20);
+        Population agents = createRandomPopulation(20000, 2L, 50.0, 8.0);
+        Population hybrid = createRandomPopulation(20000, 2L, 50.0, 8.0);
+        DiffusionSimulationServiceImpl engine = new DiffusionSimulationServiceImpl();
+        engine.setSeed(3L);
+        engine.initializeAdopters(agents, params.getK());
+        HybridDiffusionService service = new HybridDiffusionService(16);
+        service.setSeed(3L);
+        service.initializeAdopters(hybrid, params.getK());
+
+        int maxSaturated = 0;
+        for (int t = 1; t <= 20; t++) {
+            int expected = engine.performDiffusionStep(agents, params, t).getTotalAdopted();
+            assertEquals(expected, service.performDiffusionStep(hybrid, params, t).getTotalAdopted(),
+                    "Curves should agree step by step");
+            maxSaturated = Math.max(maxSaturated, service.getSaturatedCellCount());
+
+            // Innovators differ between the engines, so regional shares agree only within tolerance
+            double[] agentMap = regionalFractions(agents, 4);
+            double[] hybridMap = regionalFractions(hybrid, 4);
+            for (int r = 0; r < agentMap.length; r++) {
+                assertEquals(agentMap[r], hybridMap[r], 0.15, "Region " + r + " at step " + t);
+            }
+        }
+        assertTrue(maxSaturated > 0, "Some cells should have adopted as aggregates");
+    }
+
+    @Test
+    void testImitationSplitBetweenFrontAndSaturatedCells() {
+        // The left half is 96% adopted, leaving more saturated non-adopters than imitators, but
+        // the right half's edge is still on the front and takes its share of the imitators
+        SimulationParameters params = new SimulationParameters(0.0, 0.05, 0);
+        Population population = createRandomPopulation(20000, 6L, 50.0, 8.0);
+        int leftNonAdopters = 0;
+        for (int i = 0; i < population.size(); i++) {
+            if (population.getXPos(i) >= 5.0) continue;
+            if (i % 25 != 0) {
+                population.setHasAdopted(i, true);
+            } else {
+                leftNonAdopters++;
+            }
+        }
+        int before = population.countAdopters();
+
+        HybridDiffusionService service = new HybridDiffusionService(64);
+        service.setSeed(6L);
+        int adopted = service.performDiffusionStep(population, params, 1).getNewAdopters();
+
+        int right = 0;
+        for (int i = 0; i < population.size(); i++) {
+            if (population.hasAdopted(i) && population.getXPos(i) >= 5.0) right++;
+        }
+        assertEquals(population.countAdopters() - before, adopted);
+        assertTrue(adopted < 0.75 * leftNonAdopters, "Saturated cells alone could supply every imitator");
+        assertTrue(service.getSaturatedCellCount() > 0 && service.getFrontCellCount() > 0);
+        assertTrue(right > 0 && right < adopted, "Front and saturated cells should both imitate, right " + right);
+    }
+
+    @Test
+    void testPropensitiesWeighHybridSteps() {
+        Population population = createRandomPopulation(20000, 7L, 50.0, 8.0);
+        float[] innovation = new float[population.size()];
+        for (int i = 0; i < population.size(); i++) {
+            innovation[i] = population.getXPos(i) < 5.0 ? 0.0f : 1.0f;
+        }
+        population.setPropensities(innovation, null);
+        HybridDiffusionService service = new HybridDiffusionService(16);
+        service.setSeed(7L);
+        for (int t = 1; t <= 5; t++) {
+            service.performDiffusionStep(population, new SimulationParameters(0.05, 0.0, 0), t);
+        }
+        assertTrue(population.countAdopters() > 0);
+        for (int i = 0; i < population.size(); i++) {
+            assertFalse(population.hasAdopted(i) && innovation[i] == 0, "Zero innovation propensity never innovates");
+        }
+
+        // Keen imitators on the right, reluctant ones on the left, spreading up from a patchy strip
+        // whose interior adopts as aggregates
+        SimulationParameters params = new SimulationParameters(0.0, 0.3, 0);
+        Population agents = createRandomPopulation(20000, 8L, 50.0, 8.0);
+        Population hybrid = createRandomPopulation(20000, 8L, 50.0, 8.0);
+        float[] imitation = new float[agents.size()];
+        for (int i = 0; i < agents.size(); i++) {
+            imitation[i] = agents.getXPos(i) < 5.0 ? 0.25f : 4.0f;
+            if (agents.getYPos(i) < 52.0 && i % 20 != 0) {
+                agents.setHasAdopted(i, true);
+                hybrid.setHasAdopted(i, true);
+            }
+        }
+        agents.setPropensities(null, imitation);
+        hybrid.setPropensities(null, imitation.clone());
+        DiffusionSimulationServiceImpl engine = new DiffusionSimulationServiceImpl();
+        service = new HybridDiffusionService(16);
+        service.setSeed(8L);
+        int maxSaturated = 0;
+        for (int t = 1; t <= 4; t++) {
+            engine.performDiffusionStep(agents, params, t);
+            service.performDiffusionStep(hybrid, params, t);
+            maxSaturated = Math.max(maxSaturated, service.getSaturatedCellCount());
+        }
+
+        double[] agentQuadrants = regionalFractions(agents, 2);
+        double[] hybridQuadrants = regionalFractions(hybrid, 2);
+        for (int r = 0; r < 4; r++) {
+            assertEquals(agentQuadrants[r], hybridQuadrants[r], 0.1, "Quadrant " + r);
+        }
+        assertTrue(hybridQuadrants[1] > hybridQuadrants[0] + 0.3 && hybridQuadrants[3] > hybridQuadrants[2] + 0.3,
+                "Keen imitators should adopt first");
+        assertTrue(maxSaturated > 0, "Some cells should have adopted as aggregates");
+    }
+
+    @Test
+    void testSwitchingModesDuringRun() {
+        SimulationParameters params = new SimulationParameters(0.005, 0.5, 10);
+        int[] expected = MeanFieldBassSolver.discreteCurve(params, 3000, 12);
+
+        HybridDiffusionService service = new HybridDiffusionService();
+        service.setSeed(4L);
+        Population population = createRandomPopulation(3000, 4L, 50.0, 8.0);
+        service.initializeAdopters(population, params.getK());
+        for (int t = 1; t <= 12; t++) {
+            service.setAggregationMode(t % 4 < 2 ? AggregationMode.HYBRID : AggregationMode.AGENTS);
+            assertEquals(expected[t], service.performDiffusionStep(population, params, t).getTotalAdopted(),
+                    "Step " + t + " in " + service.getAggregationMode() + " mode");
+        }
+        assertEquals(expected[12], service.getAdoptedCount());
+    }
+
+    @Test
+    void testAgentModeMatchesAgentEngine() {
+        SimulationParameters params = new SimulationParameters(0.02, 0.3, 3);
+        DiffusionSimulationServiceImpl engine = new DiffusionSimulationServiceImpl();
+        engine.setSeed(5L);
+        Population expected = createRandomPopulation(1000, 5L, 50.0, 8.0);
+        engine.runToCompletion(expected, params, 6);
+
+        HybridDiffusionService service = new HybridDiffusionService();
+        service.setAggregationMode(AggregationMode.AGENTS);
+        service.setSeed(5L);
+        Population population = createRandomPopulation(1000, 5L, 50.0, 8.0);
+        service.runToCompletion(population, params, 6);
+
+        assertEquals(expected.getAdoptionStates(), population.getAdoptionStates());
+        assertThrows(IllegalArgumentException.class, () -> new HybridDiffusionService(0));
+    }
+}
@@ -4,6 +4,7 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import uk.ac.ucl.geo.GeoJsonData;
 import uk.ac.ucl.model.Person;
+import uk.ac.ucl.model.Population;
 import uk.ac.ucl.model.RenderingConfig;
 import uk.ac.ucl.util.BoundingBox;
 
@@ -88,6 +89,19 @@ class MapRenderingServiceImplTest {
         }, "Should handle null bounds gracefully");
     }
 
+    @Test
+    void testRenderPopulation_WithArrayBackedPopulation() {
+        Population population = Population.fromPeople(testPeople);
+
+        assertDoesNotThrow(() -> {
+            service.renderPopulation(null, population, bounds, 800, 600, config);
+        }, "Should handle array-backed population gracefully");
+
+        assertDoesNotThrow(() -> {
+            service.renderPopulation(null, (Population) null, bounds, 800, 600, config);
+        }, "Should handle null population gracefully");
+    }
+
     @Test
     void testClearCanvas() {
         // This test verifies the method can be called without throwing exceptions
@@ -0,0 +1,77 @@
+package uk.ac.ucl.service;
+
+import org.junit.jupiter.api.Test;
+import uk.ac.ucl.model.Population;
+import uk.ac.ucl.model.SimulationParameters;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MeanFieldBassSolverTest {
+
+    @Test
+    void testDiscreteCurve_MatchesAgentEngineExactly() {
+        Random random = new Random(4L);
+        double[] xs = new double[3000];
+        double[] ys = new double[3000];
+        for (int i = 0; i < xs.length; i++) {
+            xs[i] = random.nextDouble() * 10.0;
+            ys[i] = random.nextDouble() * 10.0;
+        }
+        Population population = new Population(xs, ys);
+        DiffusionSimulationServiceImpl engine = new DiffusionSimulationServiceImpl();
+
+        SimulationParameters[] cases = {
+            new SimulationParameters(0.03, 0.38, 5),
+            new SimulationParameters(0.0, 0.5, 1),
+            new SimulationParameters(0.001, 0.0, 0),
+            new SimulationParameters(0.0, 0.0, 10)
+        };
+        for (SimulationParameters params : cases) {
+            engine.setSeed(8L);
+            int[] agentCurve = engine.runToCompletion(population, params, 200);
+            assertArrayEquals(agentCurve, MeanFieldBassSolver.discreteCurve(params, 3000, 200),
+                    "Discrete recurrence should reproduce the engine's counts for " + params);
+        }
+    }
+
+    @Test
+    void testAdoptedFraction_MatchesNumericalIntegration() {
+        double p = 0.03;
+        double q = 0.38;
+        double f = 0.01;
+        double dt = 1e-4;
+        for (int i = 0; i < 100000; i++) {
+            f += dt * (p + q * f) * (1 - f);
+        }
+
+        assertEquals(f, MeanFieldBassSolver.adoptedFraction(p, q, 0.01, 10.0), 1e-4,
+                "Closed form should solve the Bass equation");
+    }
+
+    @Test
+    void testAdoptedFraction_PureImitationIsLogistic() {
+        assertEquals(0.5, MeanFieldBassSolver.adoptedFraction(0.0, 0.4, 0.5, 0.0), 1e-12);
+        assertEquals(1.0 / (1.0 + Math.exp(-0.4 * 3.0)), MeanFieldBassSolver.adoptedFraction(0.0, 0.4, 0.5, 3.0), 1e-12);
+        assertEquals(0.0, MeanFieldBassSolver.adoptedFraction(0.0, 0.4, 0.0, 5.0), "No adopters and no innovation stays at zero");
+    }
+
+    @Test
+    void testClosedFormCurve_StartsAtKAndApproachesPopulation() {
+        double[] curve = MeanFieldBassSolver.closedFormCurve(new SimulationParameters(0.03, 0.38, 10), 1000, 100);
+
+        assertEquals(101, curve.length);
+        assertEquals(10.0, curve[0], 1e-9, "Curve should start at the initial adopters");
+        for (int t = 1; t < curve.length; t++) {
+            assertTrue(curve[t] >= curve[t - 1], "Curve should not decrease");
+        }
+        assertEquals(1000.0, curve[100], 0.01, "Curve should approach full adoption");
+    }
+
+    @Test
+    void testDiscreteCurve_InvalidMaxSteps() {
+        assertThrows(IllegalArgumentException.class,
+                () -> MeanFieldBassSolver.discreteCurve(new SimulationParameters(0.1, 0.1, 1), 10, -1));
+    }
+}
@@ -0,0 +1,133 @@
+package uk.ac.ucl.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import uk.ac.ucl.model.MonteCarloResult;
+import uk.ac.ucl.model.Population;
+import uk.ac.ucl.model.SimulationParameters;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static uk.ac.ucl.TestPopulations.createRandomPopulation;
+
+class MonteCarloRunnerTest {
+
+    private ExecutorService executor;
+    private Population population;
+    private final SimulationParameters params = new SimulationParameters(0.02, 0.4, 3);
+    private final long[] seeds = {1L, 2L, 3L, 4L, 5L, 6L, 7L, 8L};
+
+    @BeforeEach
+    void setUp() {
+        executor = Executors.newFixedThreadPool(4);
+        population = createRandomPopulation(500, 9L);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void testRun_ReplicatesMatchSequentialEngine() {
+        MonteCarloResult result = new MonteCarloRunner(executor).run(population, params, seeds, 500);
+
+        for (int r = 0; r < seeds.length; r++) {
+            Population replicate = new Population(population.getXPositions(), population.getYPositions());
+            DiffusionSimulationServiceImpl engine = new DiffusionSimulationServiceImpl();
+            engine.setSeed(seeds[r]);
+            engine.initializeAdopters(replicate, params.getK());
+
+            int[] curve = result.getReplicateCurve(r);
+            assertEquals(replicate.countAdopters(), curve[0], "Curve should start at the initial adopters");
+            for (int t = 1; t < curve.length && replicate.countNonAdopters() > 0; t++) {
+                assertEquals(engine.performDiffusionStep(replicate, params, t).getTotalAdopted(), curve[t],
+                        "Replicate " + r + " should match a sequential run at step " + t);
+            }
+        }
+    }
+
+    @Test
+    void testRun_IndependentOfThreadCount() {
+        MonteCarloResult parallel = new MonteCarloRunner(executor).run(population, params, seeds, 500);
+        ExecutorService single = Executors.newSingleThreadExecutor();
+        try {
+            MonteCarloResult sequential = new MonteCarloRunner(single).run(population, params, seeds, 500);
+            assertArrayEquals(sequential.getMeanCurve(), parallel.getMeanCurve(), "Mean curve should not depend on threads");
+        } finally {
+            single.shutdownNow();
+        }
+    }
+
+    @Test
+    void testRun_CurvesCompleteAndQuantilesOrdered() {
+        MonteCarloResult result = new MonteCarloRunner(executor).run(population, params, seeds, 500);
+
+        assertEquals(seeds.length, result.getReplicateCount());
+        int last = result.getCurveLength() - 1;
+        assertEquals(500.0, result.getMeanCurve()[last], "Every replicate should reach full adoption");
+        for (int t = 0; t <= last; t++) {
+            assertTrue(result.getQuantileCurve(0)[t] <= result.getQuantileCurve(1)[t]);
+            assertTrue(result.getQuantileCurve(1)[t] <= result.getQuantileCurve(2)[t]);
+            if (t > 0) {
+                assertTrue(result.getMeanCurve()[t] >= result.getMeanCurve()[t - 1], "Mean curve should not decrease");
+            }
+        }
+        assertEquals(population.size(), result.getTotalPopulation());
+        assertEquals(0, population.countAdopters(), "Shared population should not be modified");
+    }
+
+    @Test
+    void testRun_StopsAtMaxSteps() {
+        // One innovator per step, so 500 people are far from complete after 20 steps
+        SimulationParameters slow = new SimulationParameters(0.001, 0.0, 0);
+        MonteCarloResult result = new MonteCarloRunner(executor).run(population, slow, seeds, 20);
+
+        assertEquals(21, result.getCurveLength(), "Curve should hold the initial state and 20 steps");
+        assertEquals(20.0, result.getMeanCurve()[20]);
+    }
+
+    @Test
+    void testRun_StalledRunStopsEarly() {
+        SimulationParameters stalled = new SimulationParameters(0.0, 0.0, 0);
+        MonteCarloResult result = new MonteCarloRunner(executor).run(population, stalled, seeds, 20);
+
+        assertEquals(1, result.getCurveLength(), "A run that cannot progress should stop after initialisation");
+        assertEquals(0.0, result.getMeanCurve()[0]);
+    }
+
+    @Test
+    void testRun_InvalidArguments() {
+        MonteCarloRunner runner = new MonteCarloRunner(executor);
+
+        assertThrows(IllegalArgumentException.class, () -> runner.run(population, params, new long[0], 10));
+        assertThrows(IllegalArgumentException.class, () -> runner.run(population, params, seeds, -1));
+        assertThrows(IllegalArgumentException.class,
+                () -> runner.run(population, params, seeds, 10, new double[]{1.5}));
+    }
+
+    @Test
+    void testReplicateSeeds_StableAndDistinct() {
+        long[] five = MonteCarloRunner.replicateSeeds(42L, 5);
+        long[] three = MonteCarloRunner.replicateSeeds(42L, 3);
+
+        assertArrayEquals(three, java.util.Arrays.copyOf(five, 3), "Adding replicates should not change earlier seeds");
+        assertEquals(5, java.util.Arrays.stream(five).distinct().count(), "Replicate seeds should differ");
+    }
+
+    @Test
+    void testSummarise_QuantilesInterpolate() {
+        int[][] curves = {{0, 10}, {0, 20}, {0, 30, 40}};
+        MonteCarloResult result = MonteCarloRunner.summarise(params, 40, curves, new double[]{0.0, 0.25, 1.0});
+
+        assertEquals(3, result.getCurveLength());
+        assertArrayEquals(new int[]{0, 10, 10}, result.getReplicateCurve(0), "Short curves hold their final value");
+        assertEquals(20.0, result.getMeanCurve()[1], 0.0001);
+        assertEquals(10.0, result.getQuantileCurve(0)[2], 0.0001);
+        assertEquals(15.0, result.getQuantileCurve(1)[2], 0.0001);
+        assertEquals(40.0, result.getQuantileCurve(2)[2], 0.0001);
+    }
+}
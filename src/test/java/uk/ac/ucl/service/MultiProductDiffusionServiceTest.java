@@ -0,0 +1,150 @@
+package uk.ac.ucl.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import uk.ac.ucl.model.Population;
+import uk.ac.ucl.model.SimulationParameters;
+import uk.ac.ucl.model.SimulationResult;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static uk.ac.ucl.TestPopulations.createRandomPopulation;
+
+class MultiProductDiffusionServiceTest {
+
+    private MultiProductDiffusionService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new MultiProductDiffusionService();
+        service.setSeed(12345L);
+    }
+
+    @Test
+    void testInitializeAdopters_PerProduct() {
+        Population population = createRandomPopulation(500, 1L);
+        service.initializeAdopters(population, Arrays.asList(
+                new SimulationParameters(0.01, 0.3, 4), new SimulationParameters(0.02, 0.4, 7)));
+
+        assertEquals(4, service.countAdopters(0));
+        assertEquals(7, service.countAdopters(1));
+        assertEquals(11, population.countAdopters(), "Population flags should mark adopters of any product");
+        assertEquals(489, service.countNonAdopters());
+    }
+
+    @Test
+    void testInitializeAdopters_RejectsProductCounts() {
+        Population population = createRandomPopulation(10, 1L);
+
+        assertThrows(IllegalArgumentException.class,
+                () -> service.initializeAdopters(population, Collections.emptyList()));
+        assertThrows(IllegalArgumentException.class, () -> service.initializeAdopters(population,
+                Collections.nCopies(MultiProductDiffusionService.MAX_PRODUCTS + 1, new SimulationParameters(0, 0, 0))));
+    }
+
+    @Test
+    void testSingleProductMatchesStepEngine() {
+        Population population = createRandomPopulation(2000, 2L);
+        Population stepped = createRandomPopulation(2000, 2L);
+        SimulationParameters params = new SimulationParameters(0.01, 0.4, 5);
+        List<SimulationParameters> products = Collections.singletonList(params);
+
+        DiffusionSimulationServiceImpl engine = new DiffusionSimulationServiceImpl();
+        engine.setSeed(7L);
+        engine.initializeAdopters(stepped, params.getK());
+        service.setSeed(7L);
+        service.initializeAdopters(population, products);
+        assertEquals(stepped.getAdoptionStates(), population.getAdoptionStates());
+
+        for (int step = 1; stepped.countNonAdopters() > 0; step++) {
+            engine.performDiffusionStep(stepped, params, step);
+            service.performDiffusionStep(population, products, step);
+            assertEquals(stepped.getAdoptionStates(), population.getAdoptionStates(),
+                    "One product should adopt the same people as the stepped engine at step " + step);
+        }
+    }
+
+    @Test
+    void testProductsShareOnePoolOfNonAdopters() {
+        Population population = createRandomPopulation(3000, 3L);
+        List<SimulationParameters> products = Arrays.asList(
+                new SimulationParameters(0.005, 0.5, 5),
+                new SimulationParameters(0.01, 0.3, 5),
+                new SimulationParameters(0.0, 0.6, 2));
+        service.initializeAdopters(population, products);
+
+        for (int step = 1; step <= 30; step++) {
+            SimulationResult[] results = service.performDiffusionStep(population, products, step);
+            int total = 0;
+            for (int j = 0; j < results.length; j++) {
+                assertEquals(service.countAdopters(j), results[j].getTotalAdopted());
+                total += results[j].getTotalAdopted();
+            }
+            assertEquals(population.countAdopters(), total, "Each person should adopt at most one product");
+            assertEquals(3000, total + service.countNonAdopters());
+        }
+
+        int[] counted = new int[3];
+        for (int i = 0; i < 3000; i++) {
+            if (service.getProduct(i) >= 0) counted[service.getProduct(i)]++;
+        }
+        assertArrayEquals(new int[]{service.countAdopters(0), service.countAdopters(1), service.countAdopters(2)},
+                counted);
+    }
+
+    @Test
+    void testContestedImitatorsAreReassigned() {
+        // Identical products compete for the same nearest people; both should still fill their quota
+        Population population = createRandomPopulation(2000, 4L);
+        SimulationParameters params = new SimulationParameters(0.0, 0.5, 10);
+        List<SimulationParameters> products = Arrays.asList(params, params);
+        service.initializeAdopters(population, products);
+
+        SimulationResult[] results = service.performDiffusionStep(population, products, 1);
+
+        // ceil(0.5 * 1980 * 10 / 2000) = 5 each
+        assertEquals(5, results[0].getNewAdopters());
+        assertEquals(5, results[1].getNewAdopters());
+    }
+
+    @Test
+    void testRunToCompletion_InactiveProductStaysAtSeed() {
+        Population population = createRandomPopulation(1000, 5L);
+        int[][] curves = service.runToCompletion(population, Arrays.asList(
+                new SimulationParameters(0.02, 0.5, 5), new SimulationParameters(0.0, 0.0, 3)), 1000);
+
+        int last = curves[0].length - 1;
+        assertEquals(1000, curves[0][last] + curves[1][last], "The active product should take everyone else");
+        for (int value : curves[1]) {
+            assertEquals(3, value);
+        }
+    }
+
+    @Test
+    void testSeedReproducibility() {
+        Population population = createRandomPopulation(1500, 6L);
+        List<SimulationParameters> products = Arrays.asList(
+                new SimulationParameters(0.01, 0.4, 3), new SimulationParameters(0.02, 0.2, 3));
+
+        service.setSeed(99L);
+        int[][] first = service.runToCompletion(population, products, 300);
+        service.setSeed(99L);
+        int[][] second = service.runToCompletion(population, products, 300);
+
+        assertArrayEquals(first, second, "Same seed should give the same trajectories");
+    }
+
+    @Test
+    void testPerformDiffusionStep_RejectsOutsideChanges() {
+        Population population = createRandomPopulation(100, 7L);
+        List<SimulationParameters> products = Collections.singletonList(new SimulationParameters(0.1, 0.3, 2));
+        service.initializeAdopters(population, products);
+
+        population.setHasAdopted(population.getAdoptionStates().nextClearBit(0), true);
+
+        assertThrows(IllegalStateException.class, () -> service.performDiffusionStep(population, products, 1));
+    }
+}
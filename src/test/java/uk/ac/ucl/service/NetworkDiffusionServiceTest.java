@@ -0,0 +1,134 @@
+package uk.ac.ucl.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import uk.ac.ucl.model.Person;
+import uk.ac.ucl.model.Population;
+import uk.ac.ucl.model.SimulationParameters;
+import uk.ac.ucl.model.SimulationResult;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static uk.ac.ucl.TestPopulations.createRandomPopulation;
+
+class NetworkDiffusionServiceTest {
+
+    private NetworkDiffusionService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new NetworkDiffusionService(6);
+        service.setSeed(12345L);
+    }
+
+    @Test
+    void testConstructor_RejectsNonPositiveNeighbours() {
+        assertThrows(IllegalArgumentException.class, () -> new NetworkDiffusionService(0));
+    }
+
+    @Test
+    void testInitializeAdopters() {
+        Population population = createRandomPopulation(200, 1L);
+        service.initializeAdopters(population, 9);
+
+        assertEquals(9, population.countAdopters(), "Should initialize exactly k adopters");
+        assertEquals(6, service.getNeighbourGraph().degree(0));
+    }
+
+    @Test
+    void testPureInnovationMatchesStepRule() {
+        Population population = createRandomPopulation(1000, 2L);
+        SimulationParameters params = new SimulationParameters(0.1, 0.0, 0);
+        service.initializeAdopters(population, 0);
+
+        SimulationResult result = service.performDiffusionStep(population, params, 1);
+
+        assertEquals(100, result.getNewAdopters(), "Innovators should be ceil(p * N(t))");
+        assertEquals(100, population.countAdopters());
+    }
+
+    @Test
+    void testImitationOnlyReachesNeighbours() {
+        Population population = createRandomPopulation(1000, 3L);
+        service.initializeAdopters(population, 1);
+        int seed = population.getAdoptionStates().nextSetBit(0);
+
+        // q = 1 and one adopted neighbour out of six: only people listening to the seed can adopt
+        service.performDiffusionStep(population, new SimulationParameters(0.0, 1.0, 1), 1);
+
+        for (int i = population.getAdoptionStates().nextSetBit(0); i >= 0;
+             i = population.getAdoptionStates().nextSetBit(i + 1)) {
+            if (i == seed) continue;
+            boolean listensToSeed = false;
+            for (int e = service.getNeighbourGraph().start(i); e < service.getNeighbourGraph().end(i); e++) {
+                listensToSeed |= service.getNeighbourGraph().getNeighbours()[e] == seed;
+            }
+            assertTrue(listensToSeed, "Person " + i + " adopted without an adopted neighbour");
+        }
+    }
+
+    @Test
+    void testRunToCompletion_SpreadsAndIsMonotone() {
+        Population population = createRandomPopulation(3000, 4L);
+        int[] curve = service.runToCompletion(population, new SimulationParameters(0.01, 0.6, 5), 1000);
+
+        assertEquals(3000, curve[curve.length - 1], "Innovation plus imitation should reach everyone");
+        for (int t = 1; t < curve.length; t++) {
+            assertTrue(curve[t] >= curve[t - 1], "Cumulative adopters should not decrease");
+        }
+    }
+
+    @Test
+    void testRunToCompletion_StopsWhenStalled() {
+        Population population = createRandomPopulation(100, 5L);
+        int[] curve = service.runToCompletion(population, new SimulationParameters(0.0, 0.5, 0), 50);
+
+        assertArrayEquals(new int[]{0}, curve, "Without adopters or innovation nobody can adopt");
+    }
+
+    @Test
+    void testRunToCompletion_RespectsMaxSteps() {
+        Population population = createRandomPopulation(500, 6L);
+        int[] curve = service.runToCompletion(population, new SimulationParameters(0.0, 0.05, 1), 3);
+
+        assertEquals(4, curve.length);
+    }
+
+    @Test
+    void testSeedReproducibility() {
+        Population population = createRandomPopulation(2000, 7L);
+        SimulationParameters params = new SimulationParameters(0.02, 0.5, 3);
+
+        service.setSeed(99L);
+        int[] first = service.runToCompletion(population, params, 200);
+        service.setSeed(99L);
+        int[] second = service.runToCompletion(population, params, 200);
+
+        assertArrayEquals(first, second, "Same seed should give the same trajectory");
+    }
+
+    @Test
+    void testOutsideStateChangeIsPickedUp() {
+        Population population = createRandomPopulation(300, 8L);
+        service.initializeAdopters(population, 2);
+        service.performDiffusionStep(population, new SimulationParameters(0.0, 0.5, 2), 1);
+
+        population.resetAdoptionStates();
+        SimulationResult result = service.performDiffusionStep(population, new SimulationParameters(0.0, 1.0, 0), 2);
+
+        assertEquals(0, result.getNewAdopters(), "Counts should be rebuilt after adoption states are reset");
+    }
+
+    @Test
+    void testListPopulation() {
+        List<Person> people = createRandomPopulation(300, 9L).toPeople();
+        service.initializeAdopters(people, 3);
+
+        SimulationResult result = service.performDiffusionStep(people, new SimulationParameters(0.1, 0.4, 3), 1);
+
+        assertEquals(result.getTotalAdopted(), service.countAdopters(people), "List should reflect adoptions");
+        service.selectNewAdoptersByDistance(people, 5);
+        assertEquals(result.getTotalAdopted() + 5, service.countAdopters(people));
+    }
+}
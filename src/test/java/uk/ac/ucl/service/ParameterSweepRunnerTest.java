@@ -0,0 +1,112 @@
+package uk.ac.ucl.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import uk.ac.ucl.model.Population;
+import uk.ac.ucl.model.SimulationParameters;
+import uk.ac.ucl.model.SweepRunSummary;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static uk.ac.ucl.TestPopulations.createRandomPopulation;
+
+class ParameterSweepRunnerTest {
+
+    private ForkJoinPool pool;
+    private Map<String, Population> populations;
+
+    @BeforeEach
+    void setUp() {
+        pool = new ForkJoinPool(4);
+        populations = new LinkedHashMap<>();
+        populations.put("Alpha", createRandomPopulation(300, 1L));
+        populations.put("Beta", createRandomPopulation(200, 2L));
+    }
+
+    @AfterEach
+    void tearDown() {
+        pool.shutdownNow();
+    }
+
+    @Test
+    void testExpandGrid_AllCombinations() {
+        List<SimulationParameters> grid = ParameterSweepRunner.expandGrid(
+                new double[]{0.01, 0.02}, new double[]{0.3, 0.4, 0.5}, new int[]{1, 5});
+
+        assertEquals(12, grid.size(), "Grid should contain every combination");
+        assertEquals(new SimulationParameters(0.01, 0.3, 1), grid.get(0));
+        assertEquals(new SimulationParameters(0.02, 0.5, 5), grid.get(11));
+    }
+
+    @Test
+    void testRun_EveryRunSummarisedOnce() {
+        List<SimulationParameters> grid = ParameterSweepRunner.expandGrid(
+                new double[]{0.01, 0.03}, new double[]{0.3, 0.5}, new int[]{2});
+        List<SweepRunSummary> summaries = new ArrayList<>();
+
+        new ParameterSweepRunner(pool).run(populations, grid, 3, 100L, 1000, summaries::add);
+
+        assertEquals(2 * 4 * 3, summaries.size(), "Should produce one summary per country, parameter set and replicate");
+        Set<String> keys = new HashSet<>();
+        for (SweepRunSummary summary : summaries) {
+            keys.add(summary.getCountry() + summary.getParameters() + summary.getReplicate());
+            assertEquals(summary.getTotalPopulation(), summary.getFinalAdopted(), "Every run should complete");
+            assertTrue(summary.getTimeTo50() > 0 && summary.getTimeTo50() <= summary.getTimeTo90());
+            assertTrue(summary.getPeakNewAdopters() > 0);
+        }
+        assertEquals(summaries.size(), keys.size(), "No run should be repeated");
+        assertEquals(0, populations.get("Alpha").countAdopters(), "Shared populations should not be modified");
+    }
+
+    @Test
+    void testRun_MatchesMonteCarloReplicate() {
+        SimulationParameters params = new SimulationParameters(0.02, 0.4, 3);
+        List<SweepRunSummary> summaries = new ArrayList<>();
+        new ParameterSweepRunner(pool).run(populations, List.of(params), 2, 7L, 1000, summaries::add);
+
+        for (SweepRunSummary summary : summaries) {
+            int[] curve = MonteCarloRunner.runReplicate(populations.get(summary.getCountry()), params,
+                    summary.getSeed(), 1000, DistanceSearchMode.INCREMENTAL);
+            assertEquals(curve.length - 1, summary.getSteps(), "Sweep runs should be reproducible from their seed");
+        }
+    }
+
+    @Test
+    void testFromCurve_Metrics() {
+        int[] curve = {2, 5, 20, 60, 90, 100};
+        SweepRunSummary summary = SweepRunSummary.fromCurve("Test", new SimulationParameters(0.1, 0.3, 2),
+                0, 1L, 100, curve);
+
+        assertEquals(3, summary.getTimeTo50());
+        assertEquals(4, summary.getTimeTo90());
+        assertEquals(40, summary.getPeakNewAdopters());
+        assertEquals(3, summary.getPeakStep());
+        assertEquals(5, summary.getSteps());
+    }
+
+    @Test
+    void testRunToCsv_WritesHeaderAndRows(@TempDir Path tempDir) throws IOException {
+        Path output = tempDir.resolve("sweep.csv");
+        List<SimulationParameters> grid = ParameterSweepRunner.expandGrid(
+                new double[]{0.02}, new double[]{0.3, 0.4}, new int[]{1});
+
+        new ParameterSweepRunner(pool).runToCsv(populations, grid, 2, 1L, 1000, output);
+
+        List<String> lines = Files.readAllLines(output);
+        assertEquals(1 + 2 * 2 * 2, lines.size(), "Should write a header and one row per run");
+        assertTrue(lines.get(0).startsWith("Country,P,Q,K"));
+        assertEquals(13, lines.get(1).split(",").length);
+    }
+}
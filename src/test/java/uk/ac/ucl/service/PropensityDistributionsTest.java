@@ -0,0 +1,70 @@
+package uk.ac.ucl.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PropensityDistributionsTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testLogNormal_HasMeanOne() {
+        float[] propensities = PropensityDistributions.logNormal(200000, 0.5, 1L);
+
+        double sum = 0.0;
+        for (float propensity : propensities) {
+            assertTrue(propensity > 0);
+            sum += propensity;
+        }
+        assertEquals(1.0, sum / propensities.length, 0.01);
+        assertArrayEquals(propensities, PropensityDistributions.logNormal(200000, 0.5, 1L), "Same seed, same draws");
+    }
+
+    @Test
+    void testUniform_StaysInInterval() {
+        float[] propensities = PropensityDistributions.uniform(1000, 0.5, 1.5, 2L);
+
+        for (float propensity : propensities) {
+            assertTrue(propensity >= 0.5f && propensity <= 1.5f);
+        }
+        assertThrows(IllegalArgumentException.class, () -> PropensityDistributions.uniform(10, 2.0, 1.0, 2L));
+    }
+
+    @Test
+    void testReadCsv() throws IOException {
+        Path file = tempDir.resolve("propensities.csv");
+        Files.write(file, java.util.Arrays.asList("Id,ImitationPropensity,InnovationPropensity", "0,1.5,0.2", "1,0.5,2.0", ""));
+
+        float[][] propensities = PropensityDistributions.readCsv(file, 2);
+
+        assertArrayEquals(new float[]{0.2f, 2.0f}, propensities[0]);
+        assertArrayEquals(new float[]{1.5f, 0.5f}, propensities[1]);
+    }
+
+    @Test
+    void testReadCsv_MissingColumnIsNull() throws IOException {
+        Path file = tempDir.resolve("innovation.csv");
+        Files.write(file, java.util.Arrays.asList("InnovationPropensity", "1.0", "3.0"));
+
+        float[][] propensities = PropensityDistributions.readCsv(file, 2);
+
+        assertArrayEquals(new float[]{1.0f, 3.0f}, propensities[0]);
+        assertNull(propensities[1]);
+    }
+
+    @Test
+    void testReadCsv_RejectsWrongRowCount() throws IOException {
+        Path file = tempDir.resolve("short.csv");
+        Files.write(file, java.util.Arrays.asList("InnovationPropensity", "1.0"));
+
+        assertThrows(IllegalArgumentException.class, () -> PropensityDistributions.readCsv(file, 2));
+        assertThrows(IllegalArgumentException.class, () -> PropensityDistributions.readCsv(file, 0));
+    }
+}
@@ -0,0 +1,69 @@
+package uk.ac.ucl.service;
+
+import org.junit.jupiter.api.Test;
+import uk.ac.ucl.model.Population;
+import uk.ac.ucl.model.SimulationParameters;
+import uk.ac.ucl.model.SimulationResult;
+import uk.ac.ucl.util.BackpressurePolicy;
+import uk.ac.ucl.util.BackpressurePublisher;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static uk.ac.ucl.TestPopulations.createRandomPopulation;
+
+class PublishingDiffusionServiceTest {
+
+    @Test
+    void testPublishesInitializationAndEachStep() {
+        // Running subscribers on the publishing thread makes delivery immediate
+        BackpressurePublisher<SimulationResult> publisher =
+                new BackpressurePublisher<>(Runnable::run, 16, BackpressurePolicy.BUFFER);
+        List<SimulationResult> received = new ArrayList<>();
+        publisher.subscribe(BackpressurePublisher.subscriber(received::add, null));
+
+        DiffusionSimulationServiceImpl engine = new DiffusionSimulationServiceImpl();
+        engine.setSeed(1L);
+        PublishingDiffusionService service = new PublishingDiffusionService(engine, publisher);
+        Population population = createRandomPopulation(500, 2L);
+        SimulationParameters params = new SimulationParameters(0.02, 0.4, 3);
+
+        service.initializeAdopters(population, params.getK());
+        List<SimulationResult> returned = new ArrayList<>();
+        for (int t = 1; !service.isSimulationComplete(population); t++) {
+            returned.add(service.performDiffusionStep(population, params, t));
+        }
+
+        assertEquals(returned.size() + 1, received.size());
+        assertEquals(0, received.get(0).getTimeStep());
+        assertEquals(3, received.get(0).getNewAdopters(), "Initial adopters are step 0's new adopters");
+        for (int i = 0; i < returned.size(); i++) {
+            assertSame(returned.get(i), received.get(i + 1), "Step results are published as returned");
+        }
+    }
+
+    @Test
+    void testRunToCompletionPublishesTheCurve() {
+        BackpressurePublisher<SimulationResult> publisher =
+                new BackpressurePublisher<>(Runnable::run, 1024, BackpressurePolicy.BUFFER);
+        List<SimulationResult> received = new ArrayList<>();
+        publisher.subscribe(BackpressurePublisher.subscriber(received::add, null));
+        PublishingDiffusionService service = new PublishingDiffusionService(new DiffusionSimulationServiceImpl());
+        Population population = createRandomPopulation(300, 3L);
+
+        service.runToCompletion(population, new SimulationParameters(0.05, 0.3, 2), 100);
+        assertTrue(received.isEmpty(), "Nothing is published without a publisher");
+
+        service.setResultPublisher(publisher);
+        int[] curve = service.runToCompletion(population, new SimulationParameters(0.05, 0.3, 2), 100);
+        assertEquals(curve.length, received.size());
+        int total = 0;
+        for (int t = 0; t < curve.length; t++) {
+            total += received.get(t).getNewAdopters();
+            assertEquals(curve[t], received.get(t).getTotalAdopted());
+            assertEquals(curve[t], total, "New adopters should add up to the curve");
+        }
+        assertTrue(received.get(curve.length - 1).isComplete());
+    }
+}
@@ -0,0 +1,73 @@
+package uk.ac.ucl.service;
+
+import uk.ac.ucl.model.Person;
+import uk.ac.ucl.model.Population;
+import uk.ac.ucl.model.SimulationParameters;
+
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Benchmark comparing a full run through the step-by-step APIs against {@code runToCompletion},
+ * whose threshold-pruned distance search should make it clearly the fastest of the three.
+ * Not run by the test suite; run with
+ * {@code java -cp target/classes:target/test-classes uk.ac.ucl.service.RunToCompletionBenchmark}.
+ */
+public class RunToCompletionBenchmark {
+
+    private static final int POPULATION_SIZE = 50000;
+    private static final int ROUNDS = 12;
+
+    public static void main(String[] args) {
+        Random random = new Random(1L);
+        double[] xs = new double[POPULATION_SIZE];
+        double[] ys = new double[POPULATION_SIZE];
+        for (int i = 0; i < POPULATION_SIZE; i++) {
+            xs[i] = -5.0 + random.nextDouble() * 10.0;
+            ys[i] = 50.0 + random.nextDouble() * 8.0;
+        }
+        Population population = new Population(xs, ys);
+        List<Person> people = population.toPeople();
+        SimulationParameters params = new SimulationParameters(0.01, 0.4, 10);
+        DiffusionSimulationServiceImpl service = new DiffusionSimulationServiceImpl();
+
+        long checksum = 0;
+        long bestList = Long.MAX_VALUE;
+        long bestStepped = Long.MAX_VALUE;
+        long bestBatch = Long.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; round++) {
+            service.setSeed(round);
+            long start = System.nanoTime();
+            service.initializeAdopters(people, params.getK());
+            int step = 0;
+            while (!service.performDiffusionStep(people, params, ++step).isComplete()) {
+                checksum += step;
+            }
+            long listTime = System.nanoTime() - start;
+
+            service.setSeed(round);
+            start = System.nanoTime();
+            service.initializeAdopters(population, params.getK());
+            step = 0;
+            while (!service.performDiffusionStep(population, params, ++step).isComplete()) {
+                checksum += step;
+            }
+            long steppedTime = System.nanoTime() - start;
+
+            service.setSeed(round);
+            start = System.nanoTime();
+            int[] curve = service.runToCompletion(population, params, Integer.MAX_VALUE);
+            long batchTime = System.nanoTime() - start;
+            checksum += curve.length;
+            bestList = Math.min(bestList, listTime);
+            bestStepped = Math.min(bestStepped, steppedTime);
+            bestBatch = Math.min(bestBatch, batchTime);
+
+            System.out.printf("Round %d: List steps %.1f ms, Population steps %.1f ms, runToCompletion %.1f ms (%d steps)%n",
+                    round, listTime / 1e6, steppedTime / 1e6, batchTime / 1e6, curve.length - 1);
+        }
+        System.out.printf("Best: List steps %.1f ms, Population steps %.1f ms, runToCompletion %.1f ms (%.2fx)%n",
+                bestList / 1e6, bestStepped / 1e6, bestBatch / 1e6, (double) bestStepped / bestBatch);
+        System.out.println("Checksum: " + checksum);
+    }
+}
@@ -0,0 +1,163 @@
+package uk.ac.ucl.service;
+
+import uk.ac.ucl.model.OffHeapPopulation;
+import uk.ac.ucl.model.Population;
+import uk.ac.ucl.model.PopulationStore;
+import uk.ac.ucl.model.SimulationParameters;
+import uk.ac.ucl.util.RandomStream;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+
+import static uk.ac.ucl.TestPopulations.createRandomPopulation;
+
+/**
+ * Scaling benchmark for {@link ShardedDiffusionService}: one full run per shard count, timed
+ * against the single-process engine on the same population. Speed-up beyond one shard needs as
+ * many free cores as shards. Not run by the test suite; run with
+ * {@code java -cp target/classes:target/test-classes uk.ac.ucl.service.ShardedDiffusionBenchmark [processes|heap]},
+ * where {@code processes} starts each shard in its own JVM instead of on a thread. {@code heap} instead
+ * steps a two-million-person {@link OffHeapPopulation} on two worker processes and reports how far
+ * the coordinator's used heap grows, which should stay well below the 16 bytes per person a heap
+ * copy of the coordinates would take.
+ */
+public class ShardedDiffusionBenchmark {
+
+    private static final int POPULATION_SIZE = 200000;
+    private static final int[] SHARD_COUNTS = {1, 2, 4, 8};
+    private static final int ROUNDS = 3;
+
+    private static final int HEAP_POPULATION_SIZE = 2_000_000;
+    private static final int HEAP_SAMPLE_INTERVAL = 4000;
+
+    public static void main(String[] args) throws IOException {
+        if (args.length > 0 && args[0].equals("heap")) {
+            measureCoordinatorHeap();
+            return;
+        }
+        ShardLaunchMode mode = args.length > 0 && args[0].equals("processes")
+                ? ShardLaunchMode.PROCESSES : ShardLaunchMode.THREADS;
+        Population population = createRandomPopulation(POPULATION_SIZE, 1L, 50.0, 8.0);
+        SimulationParameters params = new SimulationParameters(0.01, 0.4, 10);
+        System.out.printf("%d people, %d available processors, shards on %s%n",
+                POPULATION_SIZE, Runtime.getRuntime().availableProcessors(), mode);
+
+        DiffusionSimulationServiceImpl engine = new DiffusionSimulationServiceImpl();
+        long checksum = 0;
+        long bestEngine = Long.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; round++) {
+            engine.setSeed(round);
+            long start = System.nanoTime();
+            checksum += engine.runToCompletion(population, params, Integer.MAX_VALUE).length;
+            bestEngine = Math.min(bestEngine, System.nanoTime() - start);
+        }
+        System.out.printf("Single-process engine: %.1f ms%n", bestEngine / 1e6);
+
+        long bestOneShard = 0;
+        for (int shardCount : SHARD_COUNTS) {
+            ShardedDiffusionService sharded = new ShardedDiffusionService(shardCount, mode, List.of());
+            long best = Long.MAX_VALUE;
+            for (int round = 0; round < ROUNDS; round++) {
+                sharded.setSeed(round);
+                long start = System.nanoTime();
+                checksum += sharded.runToCompletion(population, params, Integer.MAX_VALUE).length;
+                best = Math.min(best, System.nanoTime() - start);
+            }
+            if (shardCount == 1) bestOneShard = best;
+            System.out.printf("%d shards: %.1f ms (%.2fx one shard, %.2fx single-process engine)%n",
+                    shardCount, best / 1e6, (double) bestOneShard / best, (double) bestEngine / best);
+        }
+        System.out.println("Checksum: " + checksum);
+    }
+
+    private static void measureCoordinatorHeap() throws IOException {
+        OffHeapPopulation population = OffHeapPopulation.allocate(HEAP_POPULATION_SIZE);
+        RandomStream random = new RandomStream(9L);
+        for (int i = 0; i < HEAP_POPULATION_SIZE; i++) {
+            population.setPosition(i, random.nextDouble() * 100.0, random.nextDouble() * 100.0);
+        }
+        HeapSamplingStore store = new HeapSamplingStore(population, HEAP_SAMPLE_INTERVAL);
+        ShardedDiffusionService service = new ShardedDiffusionService(2, ShardLaunchMode.PROCESSES,
+                List.of("-Xmx256m"));
+        service.setSeed(10L);
+
+        store.baseline = usedHeapAfterGc();
+        int[] curve = service.runToCompletion(store, new SimulationParameters(0.001, 0.1, 100), 12);
+        System.out.printf("%d people, %d steps, %d adopters%n", HEAP_POPULATION_SIZE, curve.length - 1,
+                population.countAdopters());
+        System.out.printf("Coordinator heap growth: %d bytes at most over %d samples (%.2f bytes per person)%n",
+                store.maxGrowth, store.samples, (double) store.maxGrowth / HEAP_POPULATION_SIZE);
+    }
+
+    private static long usedHeapAfterGc() {
+        System.gc();
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    /**
+     * Delegates to a store and samples the used heap every {@code interval} position reads made
+     * after the people have been streamed to the shards, when the coordinator only reads the
+     * positions of the imitators it picks.
+     */
+    private static final class HeapSamplingStore implements PopulationStore {
+        private final PopulationStore store;
+        private final int interval;
+        private int adoptionReads;
+        private int positionReads;
+        long baseline;
+        long maxGrowth;
+        int samples;
+
+        HeapSamplingStore(PopulationStore store, int interval) {
+            this.store = store;
+            this.interval = interval;
+        }
+
+        @Override
+        public int size() { return store.size(); }
+
+        @Override
+        public boolean isEmpty() { return store.isEmpty(); }
+
+        @Override
+        public double getXPos(int index) {
+            // Adoption states are read once per person, only while the people are streamed
+            if (adoptionReads >= store.size() && positionReads++ % interval == 0) {
+                maxGrowth = Math.max(maxGrowth, usedHeapAfterGc() - baseline);
+                samples++;
+            }
+            return store.getXPos(index);
+        }
+
+        @Override
+        public double getYPos(int index) { return store.getYPos(index); }
+
+        @Override
+        public boolean hasAdopted(int index) {
+            adoptionReads++;
+            return store.hasAdopted(index);
+        }
+
+        @Override
+        public void setHasAdopted(int index, boolean hasAdopted) { store.setHasAdopted(index, hasAdopted); }
+
+        @Override
+        public void resetAdoptionStates() { store.resetAdoptionStates(); }
+
+        @Override
+        public int countAdopters() { return store.countAdopters(); }
+
+        @Override
+        public int countNonAdopters() { return store.countNonAdopters(); }
+
+        @Override
+        public int nextAdopter(int fromIndex) { return store.nextAdopter(fromIndex); }
+
+        @Override
+        public long getAdoptionVersion() { return store.getAdoptionVersion(); }
+
+        @Override
+        public void setAdoptionStep(int index, int step) { store.setAdoptionStep(index, step); }
+    }
+}
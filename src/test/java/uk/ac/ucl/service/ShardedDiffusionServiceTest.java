@@ -0,0 +1,125 @@
+package uk.ac.ucl.service;
+
+import org.junit.jupiter.api.Test;
+import uk.ac.ucl.model.OffHeapPopulation;
+import uk.ac.ucl.model.Population;
+import uk.ac.ucl.model.SimulationParameters;
+
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static uk.ac.ucl.TestPopulations.createRandomPopulation;
+
+class ShardedDiffusionServiceTest {
+
+    @Test
+    void testCurveMatchesSingleProcessEngine() throws IOException {
+        SimulationParameters params = new SimulationParameters(0.01, 0.4, 5);
+        DiffusionSimulationServiceImpl engine = new DiffusionSimulationServiceImpl();
+        engine.setSeed(1L);
+        int[] expected = engine.runToCompletion(createRandomPopulation(3000, 1L, 50.0, 8.0), params, 500);
+
+        ShardedDiffusionService sharded = new ShardedDiffusionService(4);
+        sharded.setSeed(2L);
+        Population population = createRandomPopulation(3000, 1L, 50.0, 8.0);
+        int[] curve = sharded.runToCompletion(population, params, 500);
+
+        assertArrayEquals(expected, curve, "Step counts depend only on p, q and the global counts");
+        assertEquals(3000, population.countAdopters(), "Final states are copied back");
+    }
+
+    @Test
+    void testImitatorsMatchSingleProcessEngine() throws IOException {
+        // Without innovators both engines choose the globally closest non-adopters each step
+        SimulationParameters params = new SimulationParameters(0.0, 0.5, 0);
+        Population single = createRandomPopulation(4000, 3L, 50.0, 8.0);
+        Population sharded = createRandomPopulation(4000, 3L, 50.0, 8.0);
+        for (int person : new int[]{17, 1200, 2500, 3999}) {
+            single.setHasAdopted(person, true);
+            sharded.setHasAdopted(person, true);
+        }
+
+        DiffusionSimulationServiceImpl engine = new DiffusionSimulationServiceImpl();
+        for (int t = 1; t <= 12; t++) {
+            engine.performDiffusionStep(single, params, t);
+        }
+        int[] curve = new ShardedDiffusionService(6).continueRun(sharded, params, 12);
+
+        assertEquals(13, curve.length);
+        assertEquals(single.countAdopters(), curve[12]);
+        assertEquals(single.getAdoptionStates(), sharded.getAdoptionStates(),
+                "Halo exchange should find every imitator's true nearest adopter");
+    }
+
+    @Test
+    void testWorkerProcessesMatchThreads() throws IOException {
+        SimulationParameters params = new SimulationParameters(0.02, 0.3, 3);
+        Population threaded = createRandomPopulation(600, 4L, 50.0, 8.0);
+        Population processes = createRandomPopulation(600, 4L, 50.0, 8.0);
+
+        ShardedDiffusionService threadService = new ShardedDiffusionService(2);
+        threadService.setSeed(5L);
+        ShardedDiffusionService processService = new ShardedDiffusionService(2, ShardLaunchMode.PROCESSES, List.of("-Xmx64m"));
+        processService.setSeed(5L);
+
+        assertArrayEquals(threadService.runToCompletion(threaded, params, 200),
+                processService.runToCompletion(processes, params, 200));
+        assertEquals(threaded.getAdoptionStates(), processes.getAdoptionStates(),
+                "Launch mode should not change the result for a seed");
+    }
+
+    @Test
+    void testOffHeapPopulationMatchesHeapPopulation() throws IOException {
+        SimulationParameters params = new SimulationParameters(0.01, 0.4, 5);
+        Population heap = createRandomPopulation(2000, 7L, 50.0, 8.0);
+        OffHeapPopulation offHeap = OffHeapPopulation.allocate(2000);
+        for (int i = 0; i < 2000; i++) {
+            offHeap.setPosition(i, heap.getXPos(i), heap.getYPos(i));
+        }
+
+        ShardedDiffusionService first = new ShardedDiffusionService(3);
+        first.setSeed(8L);
+        ShardedDiffusionService second = new ShardedDiffusionService(3);
+        second.setSeed(8L);
+        int[] curve = first.runToCompletion(heap, params, 300);
+
+        assertArrayEquals(curve, second.runToCompletion(offHeap, params, 300));
+        int lastStep = curve.length - 1;
+        for (int i = 0; i < 2000; i++) {
+            assertEquals(heap.hasAdopted(i), offHeap.hasAdopted(i), "Stores should not change the adopters");
+            int step = offHeap.getAdoptionStep(i);
+            assertTrue(step >= 0 && step <= lastStep, "Every adopter should have its adoption step recorded");
+        }
+        assertEquals(5, countAdoptedAt(offHeap, 0), "Initial adopters adopt at step 0");
+        for (int t = 1; t <= lastStep; t++) {
+            assertEquals(curve[t] - curve[t - 1], countAdoptedAt(offHeap, t));
+        }
+    }
+
+    private int countAdoptedAt(OffHeapPopulation population, int step) {
+        int count = 0;
+        for (int i = 0; i < population.size(); i++) {
+            if (population.getAdoptionStep(i) == step) count++;
+        }
+        return count;
+    }
+
+    @Test
+    void testSingleShardAndLimits() throws IOException {
+        assertThrows(IllegalArgumentException.class, () -> new ShardedDiffusionService(0));
+
+        ShardedDiffusionService sharded = new ShardedDiffusionService(1);
+        Population population = createRandomPopulation(200, 6L, 50.0, 8.0);
+        int[] curve = sharded.runToCompletion(population, new SimulationParameters(0.001, 0.0, 0), 10);
+        assertEquals(11, curve.length, "Curve should hold the initial state and 10 steps");
+        assertEquals(10, curve[10], "One innovator should adopt per step");
+
+        assertArrayEquals(new int[]{0}, sharded.runToCompletion(population, new SimulationParameters(0.0, 0.5, 0), 5),
+                "Without adopters or innovation nothing can change");
+        population.setHasAdopted(3, true);
+        assertThrows(IllegalArgumentException.class,
+                () -> sharded.runToCompletion(population, new SimulationParameters(0.1, 0.5, 1), -1));
+        assertTrue(population.hasAdopted(3), "A rejected run should leave the population untouched");
+    }
+}
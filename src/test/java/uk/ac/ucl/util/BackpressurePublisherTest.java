@@ -0,0 +1,199 @@
+package uk.ac.ucl.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BackpressurePublisherTest {
+
+    /** Runs queued tasks only when asked, so a test decides when subscribers catch up. */
+    private static class ManualExecutor implements Executor {
+        private final ArrayDeque<Runnable> tasks = new ArrayDeque<>();
+
+        @Override
+        public void execute(Runnable task) {
+            tasks.add(task);
+        }
+
+        void runAll() {
+            while (!tasks.isEmpty()) {
+                tasks.poll().run();
+            }
+        }
+    }
+
+    /** Records every signal and requests a fixed number of items on subscription. */
+    private static class RecordingSubscriber implements Flow.Subscriber<Integer> {
+        final List<Integer> items = new ArrayList<>();
+        final long initialRequest;
+        Flow.Subscription subscription;
+        boolean completed;
+        Throwable error;
+
+        RecordingSubscriber(long initialRequest) {
+            this.initialRequest = initialRequest;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            if (initialRequest > 0) subscription.request(initialRequest);
+        }
+
+        @Override
+        public void onNext(Integer item) {
+            items.add(item);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            error = throwable;
+        }
+
+        @Override
+        public void onComplete() {
+            completed = true;
+        }
+    }
+
+    @Test
+    void testDeliversInOrderAndCompletesAfterBacklog() {
+        ManualExecutor executor = new ManualExecutor();
+        BackpressurePublisher<Integer> publisher = new BackpressurePublisher<>(executor, 4, BackpressurePolicy.BUFFER);
+        RecordingSubscriber subscriber = new RecordingSubscriber(Long.MAX_VALUE);
+        publisher.subscribe(subscriber);
+
+        for (int i = 0; i < 10; i++) {
+            assertEquals(0, publisher.publish(i), "BUFFER never discards");
+        }
+        publisher.close();
+        assertFalse(subscriber.completed, "Nothing is delivered until the executor runs");
+
+        executor.runAll();
+        assertEquals(List.of(0, 1, 2, 3, 4, 5, 6, 7, 8, 9), subscriber.items);
+        assertTrue(subscriber.completed);
+        assertEquals(0, publisher.getSubscriberCount(), "Completed subscribers are removed");
+        assertThrows(IllegalStateException.class, () -> publisher.publish(10));
+    }
+
+    @Test
+    void testDropKeepsOldestAndLatestKeepsNewest() {
+        ManualExecutor executor = new ManualExecutor();
+        BackpressurePublisher<Integer> publisher = new BackpressurePublisher<>(executor, 3, BackpressurePolicy.DROP);
+        RecordingSubscriber dropping = new RecordingSubscriber(Long.MAX_VALUE);
+        RecordingSubscriber latest = new RecordingSubscriber(Long.MAX_VALUE);
+        publisher.subscribe(dropping);
+        publisher.subscribe(latest, BackpressurePolicy.LATEST);
+        executor.runAll();
+
+        for (int i = 0; i < 8; i++) {
+            publisher.publish(i);
+        }
+        executor.runAll();
+
+        assertEquals(List.of(0, 1, 2), dropping.items);
+        assertEquals(List.of(5, 6, 7), latest.items);
+        assertEquals(10, publisher.getDroppedCount());
+    }
+
+    @Test
+    void testDeliversOnlyWhatIsRequested() {
+        ManualExecutor executor = new ManualExecutor();
+        BackpressurePublisher<Integer> publisher = new BackpressurePublisher<>(executor, 16, BackpressurePolicy.BUFFER);
+        RecordingSubscriber subscriber = new RecordingSubscriber(2);
+        publisher.subscribe(subscriber);
+        for (int i = 0; i < 5; i++) {
+            publisher.publish(i);
+        }
+        publisher.close();
+        executor.runAll();
+        assertEquals(List.of(0, 1), subscriber.items);
+        assertFalse(subscriber.completed, "Completion waits for the buffered items");
+
+        subscriber.subscription.request(3);
+        executor.runAll();
+        assertEquals(List.of(0, 1, 2, 3, 4), subscriber.items);
+        assertTrue(subscriber.completed);
+    }
+
+    @Test
+    void testInvalidRequestAndCancel() {
+        ManualExecutor executor = new ManualExecutor();
+        BackpressurePublisher<Integer> publisher = new BackpressurePublisher<>(executor, 4, BackpressurePolicy.BUFFER);
+        RecordingSubscriber invalid = new RecordingSubscriber(0);
+        RecordingSubscriber cancelling = new RecordingSubscriber(Long.MAX_VALUE);
+        publisher.subscribe(invalid);
+        publisher.subscribe(cancelling);
+        executor.runAll();
+
+        invalid.subscription.request(0);
+        cancelling.subscription.cancel();
+        publisher.publish(1);
+        executor.runAll();
+
+        assertTrue(invalid.error instanceof IllegalArgumentException, "Non-positive requests are errors");
+        assertTrue(cancelling.items.isEmpty(), "Cancelled subscribers receive nothing");
+        assertFalse(cancelling.completed);
+        assertEquals(0, publisher.getSubscriberCount());
+    }
+
+    @Test
+    void testCloseExceptionallyAndLateSubscribers() {
+        ManualExecutor executor = new ManualExecutor();
+        BackpressurePublisher<Integer> publisher = new BackpressurePublisher<>(executor, 4, BackpressurePolicy.BUFFER);
+        RecordingSubscriber subscriber = new RecordingSubscriber(Long.MAX_VALUE);
+        publisher.subscribe(subscriber);
+        publisher.publish(1);
+        publisher.closeExceptionally(new IllegalStateException("failed"));
+        executor.runAll();
+        assertTrue(subscriber.items.isEmpty(), "An error discards undelivered items");
+        assertEquals("failed", subscriber.error.getMessage());
+
+        RecordingSubscriber late = new RecordingSubscriber(1);
+        publisher.subscribe(late);
+        executor.runAll();
+        assertNotNull(late.subscription, "Late subscribers are still subscribed");
+        assertEquals("failed", late.error.getMessage());
+    }
+
+    @Test
+    void testSlowSubscriberDoesNotBlockPublisher() throws InterruptedException {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            BackpressurePublisher<Integer> publisher = new BackpressurePublisher<>(executor, 1, BackpressurePolicy.LATEST);
+            CountDownLatch release = new CountDownLatch(1);
+            CountDownLatch finished = new CountDownLatch(1);
+            List<Integer> received = new ArrayList<>();
+            publisher.subscribe(BackpressurePublisher.<Integer>subscriber(item -> {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                received.add(item);
+            }, finished::countDown));
+
+            // The subscriber is stuck on its first item while the publisher runs on
+            for (int i = 0; i < 1000; i++) {
+                publisher.publish(i);
+            }
+            publisher.close();
+            release.countDown();
+            assertTrue(finished.await(10, TimeUnit.SECONDS));
+            assertEquals(999, (int) received.get(received.size() - 1), "The latest item is always delivered");
+            assertTrue(received.size() <= 2, "Items in between are dropped, not queued");
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
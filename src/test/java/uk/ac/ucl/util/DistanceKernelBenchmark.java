@@ -0,0 +1,77 @@
+package uk.ac.ucl.util;
+
+import uk.ac.ucl.model.Person;
+import uk.ac.ucl.service.DiffusionSimulationServiceImpl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Micro-benchmark comparing nearest-adopter distance loops. Not run by the test suite;
+ * run with {@code java -cp target/classes:target/test-classes uk.ac.ucl.util.DistanceKernelBenchmark}.
+ */
+public class DistanceKernelBenchmark {
+
+    private static final int QUERIES = 2000;
+    private static final int ADOPTERS = 5000;
+    private static final int ROUNDS = 10;
+
+    public static void main(String[] args) {
+        Random random = new Random(1L);
+        double[] xs = new double[ADOPTERS];
+        double[] ys = new double[ADOPTERS];
+        int[] indices = new int[ADOPTERS];
+        List<Person> adopters = new ArrayList<>();
+        for (int i = 0; i < ADOPTERS; i++) {
+            xs[i] = random.nextDouble() * 10.0;
+            ys[i] = 50.0 + random.nextDouble() * 8.0;
+            indices[i] = i;
+            adopters.add(new Person(xs[i], ys[i], true));
+        }
+        List<Person> queries = new ArrayList<>();
+        for (int q = 0; q < QUERIES; q++) {
+            queries.add(new Person(random.nextDouble() * 10.0, 50.0 + random.nextDouble() * 8.0));
+        }
+
+        DiffusionSimulationServiceImpl service = new DiffusionSimulationServiceImpl();
+        double sink = 0.0;
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            for (Person query : queries) {
+                double minDistance = Double.MAX_VALUE;
+                for (Person adopter : adopters) {
+                    minDistance = Math.min(minDistance, service.calculateEuclideanDistance(query, adopter));
+                }
+                sink += minDistance;
+            }
+            long personLoop = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (Person query : queries) {
+                double x = query.getXPos();
+                double y = query.getYPos();
+                double minDistance = Double.MAX_VALUE;
+                for (int t = 0; t < ADOPTERS; t++) {
+                    int j = indices[t];
+                    double dx = x - xs[j];
+                    double dy = y - ys[j];
+                    minDistance = Math.min(minDistance, Math.sqrt(dx * dx + dy * dy));
+                }
+                sink += minDistance;
+            }
+            long scalarLoop = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (Person query : queries) {
+                sink += DistanceKernel.minDistance(query.getXPos(), query.getYPos(), xs, ys, 0, ADOPTERS);
+            }
+            long kernelLoop = System.nanoTime() - start;
+
+            double pairs = (double) QUERIES * ADOPTERS;
+            System.out.printf("Round %d: Person loop %.2f ns/pair, indexed scalar %.2f ns/pair, kernel %.2f ns/pair%n",
+                    round, personLoop / pairs, scalarLoop / pairs, kernelLoop / pairs);
+        }
+        System.out.println("Checksum: " + sink);
+    }
+}
@@ -0,0 +1,57 @@
+package uk.ac.ucl.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DistanceKernelTest {
+
+    @Test
+    void testMinDistance_EmptyRange() {
+        assertEquals(Double.MAX_VALUE, DistanceKernel.minDistance(0.0, 0.0, new double[0], new double[0], 0, 0),
+            "Empty range should report no nearest point");
+    }
+
+    @Test
+    void testMinDistance_SinglePoint() {
+        double distance = DistanceKernel.minDistance(0.0, 0.0, new double[]{3.0}, new double[]{4.0}, 0, 1);
+
+        assertEquals(5.0, distance, 0.0001, "3-4-5 triangle should have distance 5");
+    }
+
+    @Test
+    void testMinDistance_MatchesScalarLoopExactly() {
+        Random random = new Random(8L);
+        for (int count = 1; count <= 37; count++) {
+            double[] xs = new double[count];
+            double[] ys = new double[count];
+            for (int i = 0; i < count; i++) {
+                xs[i] = random.nextDouble() * 100.0;
+                ys[i] = random.nextDouble() * 100.0;
+            }
+            double x = random.nextDouble() * 100.0;
+            double y = random.nextDouble() * 100.0;
+
+            double expected = Double.MAX_VALUE;
+            for (int i = 0; i < count; i++) {
+                double dx = x - xs[i];
+                double dy = y - ys[i];
+                expected = Math.min(expected, Math.sqrt(dx * dx + dy * dy));
+            }
+
+            assertEquals(expected, DistanceKernel.minDistance(x, y, xs, ys, 0, count),
+                "Kernel should match a per-pair square root loop for " + count + " points");
+        }
+    }
+
+    @Test
+    void testMinSquaredDistance_SubRange() {
+        double[] xs = {0.0, 10.0, 20.0, 1.0};
+        double[] ys = {0.0, 0.0, 0.0, 0.0};
+
+        assertEquals(100.0, DistanceKernel.minSquaredDistance(0.0, 0.0, xs, ys, 1, 3),
+            "Only points inside the range should be considered");
+    }
+}
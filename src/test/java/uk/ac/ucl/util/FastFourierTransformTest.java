@@ -0,0 +1,59 @@
+package uk.ac.ucl.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FastFourierTransformTest {
+
+    @Test
+    void testTransformMatchesDirectDft() {
+        Random random = new Random(1L);
+        int n = 16;
+        double[] re = new double[n];
+        double[] im = new double[n];
+        for (int i = 0; i < n; i++) {
+            re[i] = random.nextDouble();
+            im[i] = random.nextDouble();
+        }
+        double[] expectedRe = new double[n];
+        double[] expectedIm = new double[n];
+        for (int k = 0; k < n; k++) {
+            for (int t = 0; t < n; t++) {
+                double angle = -2.0 * Math.PI * k * t / n;
+                expectedRe[k] += re[t] * Math.cos(angle) - im[t] * Math.sin(angle);
+                expectedIm[k] += re[t] * Math.sin(angle) + im[t] * Math.cos(angle);
+            }
+        }
+
+        FastFourierTransform.transform(re, im, false);
+
+        assertArrayEquals(expectedRe, re, 1e-9);
+        assertArrayEquals(expectedIm, im, 1e-9);
+    }
+
+    @Test
+    void testTransform2D_InverseRestoresInput() {
+        Random random = new Random(2L);
+        double[] re = new double[8 * 4];
+        double[] im = new double[8 * 4];
+        for (int i = 0; i < re.length; i++) {
+            re[i] = random.nextGaussian();
+        }
+        double[] original = re.clone();
+
+        FastFourierTransform.transform2D(re, im, 8, 4, false);
+        FastFourierTransform.transform2D(re, im, 8, 4, true);
+
+        assertArrayEquals(original, re, 1e-12);
+        assertArrayEquals(new double[re.length], im, 1e-12);
+    }
+
+    @Test
+    void testTransform_RejectsNonPowerOfTwo() {
+        assertThrows(IllegalArgumentException.class,
+                () -> FastFourierTransform.transform(new double[6], new double[6], false));
+    }
+}
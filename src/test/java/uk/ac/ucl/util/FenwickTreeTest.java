@@ -0,0 +1,64 @@
+package uk.ac.ucl.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FenwickTreeTest {
+
+    @Test
+    void testBuildAndPrefixSums() {
+        FenwickTree tree = new FenwickTree(5);
+        tree.build(new double[]{1.0, 2.0, 0.0, 4.0, 3.0});
+
+        assertEquals(0.0, tree.prefixSum(0));
+        assertEquals(3.0, tree.prefixSum(2));
+        assertEquals(7.0, tree.prefixSum(4));
+        assertEquals(10.0, tree.total());
+    }
+
+    @Test
+    void testAddUpdatesSums() {
+        FenwickTree tree = new FenwickTree(4);
+        tree.add(2, 5.0);
+        tree.add(0, 1.0);
+        tree.add(2, -2.0);
+
+        assertEquals(1.0, tree.prefixSum(1));
+        assertEquals(4.0, tree.total());
+    }
+
+    @Test
+    void testFindSelectsByCumulativeWeight() {
+        FenwickTree tree = new FenwickTree(5);
+        tree.build(new double[]{1.0, 2.0, 0.0, 4.0, 3.0});
+
+        assertEquals(0, tree.find(0.0));
+        assertEquals(0, tree.find(0.999));
+        assertEquals(1, tree.find(1.0));
+        assertEquals(3, tree.find(3.0), "Zero-weight entries should never be selected");
+        assertEquals(4, tree.find(9.5));
+        assertEquals(4, tree.find(10.5), "Targets past the total should clamp to the last index");
+    }
+
+    @Test
+    void testFindMatchesLinearScan() {
+        java.util.Random random = new java.util.Random(3L);
+        double[] weights = new double[37];
+        FenwickTree tree = new FenwickTree(weights.length);
+        for (int i = 0; i < weights.length; i++) {
+            weights[i] = random.nextInt(3) == 0 ? 0.0 : random.nextDouble();
+            tree.add(i, weights[i]);
+        }
+
+        for (int trial = 0; trial < 500; trial++) {
+            double target = random.nextDouble() * tree.total();
+            int expected = 0;
+            double cumulative = weights[0];
+            while (cumulative <= target && expected < weights.length - 1) {
+                cumulative += weights[++expected];
+            }
+            assertEquals(expected, tree.find(target), "Tree search should match a linear scan");
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package uk.ac.ucl.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InfluenceGridTest {
+
+    @Test
+    void testSampleMatchesBruteForceKernelSum() {
+        Random random = new Random(4L);
+        double lambda = 1.0;
+        int sources = 400;
+        double[] sx = new double[sources];
+        double[] sy = new double[sources];
+        InfluenceGrid grid = new InfluenceGrid(0.0, 20.0, 0.0, 10.0, lambda, 256);
+        for (int i = 0; i < sources; i++) {
+            sx[i] = random.nextDouble() * 20.0;
+            sy[i] = random.nextDouble() * 10.0;
+            grid.deposit(sx[i], sy[i], 1.0);
+        }
+        grid.convolve();
+
+        double worst = 0.0;
+        double mean = 0.0;
+        for (int q = 0; q < 200; q++) {
+            double x = random.nextDouble() * 20.0;
+            double y = random.nextDouble() * 10.0;
+            double expected = 0.0;
+            for (int i = 0; i < sources; i++) {
+                expected += Math.exp(-Math.hypot(x - sx[i], y - sy[i]) / lambda);
+            }
+            double error = Math.abs(grid.sample(x, y) - expected) / expected;
+            worst = Math.max(worst, error);
+            mean += error / 200;
+        }
+        assertTrue(mean < 0.02, "Mean relative error of the grid sum was " + mean);
+        assertTrue(worst < 0.1, "Worst relative error of the grid sum was " + worst);
+    }
+
+    @Test
+    void testConvolutionDoesNotWrapAround() {
+        InfluenceGrid grid = new InfluenceGrid(0.0, 10.0, 0.0, 10.0, 0.5, 64);
+        grid.deposit(0.1, 0.1, 1.0);
+        grid.convolve();
+
+        assertTrue(grid.sample(0.1, 0.1) > 0.5);
+        assertTrue(grid.sample(9.9, 9.9) < 1e-9, "A far corner should feel no influence from across the padding");
+    }
+
+    @Test
+    void testCellLimitAndDecayLength() {
+        InfluenceGrid grid = new InfluenceGrid(0.0, 1000.0, 0.0, 1.0, 0.1, 128);
+
+        assertEquals(128, grid.getCols(), "The limit includes the margin cells");
+        assertEquals(22, grid.getRows(), "Half-lambda cells plus a margin cell on each side");
+        assertThrows(IllegalArgumentException.class, () -> new InfluenceGrid(0, 1, 0, 1, 0.0, 16));
+    }
+}
@@ -0,0 +1,131 @@
+package uk.ac.ucl.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NeighbourGraphTest {
+
+    @Test
+    void testWithinRadius_MatchesBruteForce() {
+        Random random = new Random(6L);
+        int n = 800;
+        double[] xs = new double[n];
+        double[] ys = new double[n];
+        for (int i = 0; i < n; i++) {
+            xs[i] = random.nextDouble() * 10.0;
+            ys[i] = random.nextDouble() * 4.0;
+        }
+        double radius = 0.3;
+
+        NeighbourGraph graph = NeighbourGraph.withinRadius(xs, ys, radius);
+
+        assertEquals(n, graph.size());
+        for (int i = 0; i < n; i++) {
+            List<Integer> expected = new ArrayList<>();
+            for (int j = 0; j < n; j++) {
+                double dx = xs[i] - xs[j];
+                double dy = ys[i] - ys[j];
+                if (j != i && dx * dx + dy * dy <= radius * radius) expected.add(j);
+            }
+            List<Integer> actual = new ArrayList<>();
+            for (int e = graph.start(i); e < graph.end(i); e++) {
+                actual.add(graph.getNeighbours()[e]);
+            }
+            assertEquals(expected, actual, "Neighbours of " + i + " should match a brute-force search");
+        }
+    }
+
+    @Test
+    void testWithinRadius_LargeRadiusWidensCells() {
+        double[] xs = {0.0, 1.0, 2.0, 100.0};
+        double[] ys = {0.0, 0.0, 0.0, 0.0};
+
+        NeighbourGraph graph = NeighbourGraph.withinRadius(xs, ys, 1.5);
+
+        assertEquals(1, graph.degree(0));
+        assertEquals(2, graph.degree(1));
+        assertEquals(0, graph.degree(3));
+        assertEquals(4, graph.edgeCount(), "Edges are stored in both directions");
+    }
+
+    @Test
+    void testWithinRadius_NoRadiusNoEdges() {
+        NeighbourGraph graph = NeighbourGraph.withinRadius(new double[]{0.0, 0.0}, new double[]{0.0, 0.0}, 0.0);
+
+        assertEquals(2, graph.size());
+        assertEquals(0, graph.edgeCount());
+    }
+
+    @Test
+    void testKNearest_MatchesBruteForce() {
+        Random random = new Random(9L);
+        int n = 5000;
+        double[] xs = new double[n];
+        double[] ys = new double[n];
+        for (int i = 0; i < n; i++) {
+            // Clustered points so some queries have to search several rings
+            double centre = random.nextInt(3) * 20.0;
+            xs[i] = centre + random.nextGaussian();
+            ys[i] = random.nextGaussian() * 3.0;
+        }
+        // A few exact duplicates exercise the index tie-break
+        xs[10] = xs[11];
+        ys[10] = ys[11];
+
+        NeighbourGraph graph = NeighbourGraph.kNearest(xs, ys, 6);
+
+        assertEquals(n * 6, graph.edgeCount());
+        for (int i = 0; i < n; i += 7) {
+            Integer[] order = new Integer[n];
+            for (int j = 0; j < n; j++) order[j] = j;
+            final int query = i;
+            java.util.Arrays.sort(order, (a, b) -> {
+                double da = squaredDistance(xs, ys, query, a);
+                double db = squaredDistance(xs, ys, query, b);
+                return da != db ? Double.compare(da, db) : Integer.compare(a, b);
+            });
+            List<Integer> expected = new ArrayList<>();
+            for (int j = 0; expected.size() < 6; j++) {
+                if (order[j] != i) expected.add(order[j]);
+            }
+            List<Integer> actual = new ArrayList<>();
+            for (int e = graph.start(i); e < graph.end(i); e++) {
+                actual.add(graph.getNeighbours()[e]);
+            }
+            assertEquals(expected, actual, "Neighbours of " + i + " should be the nearest in distance order");
+        }
+    }
+
+    @Test
+    void testKNearest_CapsAtOtherPoints() {
+        NeighbourGraph graph = NeighbourGraph.kNearest(new double[]{0.0, 1.0, 5.0}, new double[]{0.0, 0.0, 0.0}, 10);
+
+        assertEquals(2, graph.degree(0));
+        assertArrayEquals(new int[]{1, 2, 0, 2, 1, 0}, graph.getNeighbours());
+        assertEquals(0, NeighbourGraph.kNearest(new double[]{1.0}, new double[]{1.0}, 3).edgeCount());
+        assertThrows(IllegalArgumentException.class,
+                () -> NeighbourGraph.kNearest(new double[0], new double[0], -1));
+    }
+
+    @Test
+    void testReverse_ListsIncomingEdges() {
+        // 0 -> {1, 2}, 1 -> {2}, 2 -> {}
+        NeighbourGraph graph = new NeighbourGraph(new int[]{0, 2, 3, 3}, new int[]{1, 2, 2});
+
+        NeighbourGraph reversed = graph.reverse();
+
+        assertArrayEquals(new int[]{0, 0, 1, 3}, reversed.getOffsets());
+        assertArrayEquals(new int[]{0, 0, 1}, reversed.getNeighbours());
+    }
+
+    private static double squaredDistance(double[] xs, double[] ys, int i, int j) {
+        double dx = xs[i] - xs[j];
+        double dy = ys[i] - ys[j];
+        return dx * dx + dy * dy;
+    }
+}
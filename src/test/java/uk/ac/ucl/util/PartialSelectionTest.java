@@ -0,0 +1,115 @@
+package uk.ac.ucl.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PartialSelectionTest {
+
+    @Test
+    void testSelectSmallest_Basic() {
+        double[] keys = {5.0, 1.0, 4.0, 2.0, 3.0};
+        int[] ids = {0, 1, 2, 3, 4};
+        int[] out = new int[5];
+
+        int selected = PartialSelection.selectSmallest(keys, ids, keys.length, 2, out);
+
+        assertEquals(2, selected, "Should select the requested number of candidates");
+        int[] picked = Arrays.copyOf(out, selected);
+        Arrays.sort(picked);
+        assertArrayEquals(new int[]{1, 3}, picked, "Should select the two smallest keys");
+    }
+
+    @Test
+    void testSelectSmallest_TiesPreferLowerId() {
+        double[] keys = {1.0, 0.5, 1.0, 1.0};
+        int[] ids = {10, 11, 12, 13};
+        int[] out = new int[4];
+
+        int selected = PartialSelection.selectSmallest(keys, ids, keys.length, 2, out);
+
+        int[] picked = Arrays.copyOf(out, selected);
+        Arrays.sort(picked);
+        assertArrayEquals(new int[]{10, 11}, picked, "Ties should be broken by ascending id");
+    }
+
+    @Test
+    void testSelectSmallest_KLargerThanCount() {
+        double[] keys = {3.0, 2.0};
+        int[] ids = {0, 1};
+        int[] out = new int[2];
+
+        assertEquals(2, PartialSelection.selectSmallest(keys, ids, 2, 5, out),
+            "Should select at most the number of candidates");
+        assertEquals(0, PartialSelection.selectSmallest(keys, ids, 2, 0, out),
+            "Should select nothing when k is zero");
+    }
+
+    @Test
+    void testSelectSmallest_MatchesStableSort() {
+        Random random = new Random(3L);
+        int count = 1000;
+        double[] keys = new double[count];
+        int[] ids = new int[count];
+        Integer[] order = new Integer[count];
+        for (int i = 0; i < count; i++) {
+            keys[i] = random.nextInt(50);
+            ids[i] = i;
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Double.compare(keys[a], keys[b]));
+
+        int k = 37;
+        int[] out = new int[k];
+        PartialSelection.selectSmallest(keys, ids, count, k, out);
+
+        int[] expected = new int[k];
+        for (int i = 0; i < k; i++) {
+            expected[i] = order[i];
+        }
+        Arrays.sort(expected);
+        Arrays.sort(out);
+        assertArrayEquals(expected, out, "Selection should match the head of a stable sort");
+    }
+
+    @Test
+    void testSelectSmallestPositions_WithinRange() {
+        double[] keys = {0.0, 9.0, 3.0, 1.0, 2.0, 0.5};
+        int[] ids = {0, 1, 2, 3, 4, 5};
+        int[] out = new int[8];
+
+        int selected = PartialSelection.selectSmallestPositions(keys, ids, 1, 5, 2, out, 3);
+
+        assertEquals(2, selected, "Should select the requested number within the range");
+        int[] picked = Arrays.copyOfRange(out, 3, 3 + selected);
+        Arrays.sort(picked);
+        assertArrayEquals(new int[]{3, 4}, picked, "Should only consider positions inside the range");
+    }
+
+    @Test
+    void testSortSelectedPositions_MatchesStableSort() {
+        Random random = new Random(5L);
+        int count = 500;
+        double[] keys = new double[count];
+        int[] ids = new int[count];
+        Integer[] order = new Integer[count];
+        for (int i = 0; i < count; i++) {
+            keys[i] = random.nextInt(40);
+            ids[i] = i;
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Double.compare(keys[a], keys[b]));
+
+        int k = 60;
+        int[] out = new int[k + 2];
+        int selected = PartialSelection.selectSmallestPositions(keys, ids, 0, count, k, out, 2);
+        PartialSelection.sortSelectedPositions(keys, ids, out, 2, selected);
+
+        for (int i = 0; i < k; i++) {
+            assertEquals((int) order[i], out[2 + i], "Sorted selection should follow the stable sort");
+        }
+    }
+}
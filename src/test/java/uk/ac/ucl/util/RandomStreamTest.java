@@ -0,0 +1,86 @@
+package uk.ac.ucl.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RandomStreamTest {
+
+    @Test
+    void testSameSeedSameSequence() {
+        RandomStream a = new RandomStream(123L);
+        RandomStream b = new RandomStream(123L);
+
+        for (int i = 0; i < 100; i++) {
+            assertEquals(a.nextLong(), b.nextLong(), "Streams with the same seed should agree");
+        }
+    }
+
+    @Test
+    void testDeriveIgnoresConsumption() {
+        RandomStream master = new RandomStream(7L);
+        long expected = master.derive(3).nextLong();
+
+        master.nextLong();
+        master.nextInt(10);
+
+        assertEquals(expected, master.derive(3).nextLong(), "Children should depend only on the seed and key");
+        assertNotEquals(master.derive(3).nextLong(), master.derive(4).nextLong(), "Different keys should differ");
+        assertEquals(RandomStream.deriveSeed(7L, 3), master.derive(3).getSeed());
+    }
+
+    @Test
+    void testStateRestore() {
+        RandomStream stream = new RandomStream(11L);
+        stream.nextLong();
+        long state = stream.getState();
+        long next = stream.nextLong();
+
+        stream.nextLong();
+        stream.setState(state);
+
+        assertEquals(next, stream.nextLong(), "Restored state should resume the sequence");
+    }
+
+    @Test
+    void testNextIntWithinBoundAndUniform() {
+        RandomStream stream = new RandomStream(5L);
+        int[] counts = new int[6];
+        for (int i = 0; i < 60000; i++) {
+            counts[stream.nextInt(6)]++;
+        }
+        for (int count : counts) {
+            assertTrue(count > 9500 && count < 10500, "Each value should appear about equally often");
+        }
+        for (int i = 0; i < 1000; i++) {
+            int value = stream.nextInt(8);
+            assertTrue(value >= 0 && value < 8, "Power-of-two bounds should stay in range");
+        }
+        assertThrows(IllegalArgumentException.class, () -> stream.nextInt(0));
+    }
+
+    @Test
+    void testNextDoubleInUnitInterval() {
+        RandomStream stream = new RandomStream(9L);
+        for (int i = 0; i < 1000; i++) {
+            double value = stream.nextDouble();
+            assertTrue(value >= 0.0 && value < 1.0, "Doubles should lie in [0, 1)");
+        }
+    }
+
+    @Test
+    void testNextGaussianMoments() {
+        RandomStream random = new RandomStream(8L);
+        double sum = 0.0;
+        double sumSquares = 0.0;
+        int n = 100000;
+        for (int i = 0; i < n; i++) {
+            double value = random.nextGaussian();
+            sum += value;
+            sumSquares += value * value;
+        }
+
+        assertEquals(0.0, sum / n, 0.02);
+        assertEquals(1.0, sumSquares / n, 0.02);
+    }
+}
@@ -0,0 +1,116 @@
+package uk.ac.ucl.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SpatialGridTest {
+
+    @Test
+    void testNearestDistance_EmptyGrid() {
+        SpatialGrid grid = new SpatialGrid(new BoundingBox(0.0, 1.0, 0.0, 1.0), 10);
+
+        assertEquals(Double.MAX_VALUE, grid.nearestDistance(0.5, 0.5),
+            "Empty grid should report no nearest point");
+    }
+
+    @Test
+    void testNearestDistance_SinglePoint() {
+        SpatialGrid grid = new SpatialGrid(new BoundingBox(0.0, 10.0, 0.0, 10.0), 1);
+        grid.insert(3.0, 4.0);
+
+        assertEquals(5.0, grid.nearestDistance(0.0, 0.0), 0.0001, "3-4-5 triangle should have distance 5");
+    }
+
+    @Test
+    void testNearestDistance_QueryOutsideBounds() {
+        SpatialGrid grid = new SpatialGrid(new BoundingBox(0.0, 1.0, 0.0, 1.0), 4);
+        grid.insert(0.0, 0.0);
+        grid.insert(1.0, 1.0);
+
+        assertEquals(Math.sqrt(2.0), grid.nearestDistance(2.0, 2.0), 0.0001,
+            "Queries outside the grid bounds should still find the nearest point");
+    }
+
+    @Test
+    void testNearestDistance_MatchesBruteForce() {
+        Random random = new Random(42L);
+        int count = 500;
+        double[] xs = new double[count];
+        double[] ys = new double[count];
+        SpatialGrid grid = new SpatialGrid(new BoundingBox(-5.0, 5.0, 50.0, 58.0), count);
+        for (int i = 0; i < count; i++) {
+            xs[i] = -5.0 + random.nextDouble() * 10.0;
+            ys[i] = 50.0 + random.nextDouble() * 8.0;
+            grid.insert(xs[i], ys[i]);
+        }
+
+        for (int q = 0; q < 200; q++) {
+            double x = -6.0 + random.nextDouble() * 12.0;
+            double y = 49.0 + random.nextDouble() * 10.0;
+            double expected = Double.MAX_VALUE;
+            for (int i = 0; i < count; i++) {
+                double dx = x - xs[i];
+                double dy = y - ys[i];
+                expected = Math.min(expected, Math.sqrt(dx * dx + dy * dy));
+            }
+            assertEquals(expected, grid.nearestDistance(x, y), "Grid search should be exact");
+        }
+    }
+
+    @Test
+    void testNearestDistance_BoundedSearchIsExactWithinBound() {
+        Random random = new Random(11L);
+        int count = 500;
+        double[] xs = new double[count];
+        double[] ys = new double[count];
+        SpatialGrid grid = new SpatialGrid(new BoundingBox(-5.0, 5.0, 50.0, 58.0), count);
+        for (int i = 0; i < count; i++) {
+            xs[i] = -5.0 + random.nextDouble() * 10.0;
+            ys[i] = 50.0 + random.nextDouble() * 8.0;
+            grid.insert(xs[i], ys[i]);
+        }
+
+        for (int q = 0; q < 200; q++) {
+            double x = -6.0 + random.nextDouble() * 12.0;
+            double y = 49.0 + random.nextDouble() * 10.0;
+            double maxDistance = random.nextDouble() * 0.5;
+            double expected = Double.MAX_VALUE;
+            for (int i = 0; i < count; i++) {
+                double dx = x - xs[i];
+                double dy = y - ys[i];
+                expected = Math.min(expected, Math.sqrt(dx * dx + dy * dy));
+            }
+            double found = grid.nearestDistance(x, y, maxDistance);
+            if (expected <= maxDistance) {
+                assertEquals(expected, found, "Bounded search should be exact within the bound");
+            } else {
+                assertTrue(found > maxDistance, "Bounded search should report nothing within the bound");
+            }
+        }
+    }
+
+    @Test
+    void testClear() {
+        SpatialGrid grid = new SpatialGrid(new BoundingBox(0.0, 1.0, 0.0, 1.0), 4);
+        grid.insert(0.5, 0.5);
+        grid.clear();
+
+        assertEquals(0, grid.size(), "Cleared grid should be empty");
+        assertEquals(Double.MAX_VALUE, grid.nearestDistance(0.5, 0.5), "Cleared grid should have no points");
+    }
+
+    @Test
+    void testReset_RefitsToNewRegion() {
+        SpatialGrid grid = new SpatialGrid(new BoundingBox(0.0, 1.0, 0.0, 1.0), 1000);
+        grid.insert(0.5, 0.5);
+        grid.reset(10.0, 20.0, 10.0, 12.0, 4);
+        grid.insert(15.0, 11.0);
+
+        assertEquals(1, grid.size(), "Reset should discard previous points");
+        assertEquals(1.0, grid.nearestDistance(15.0, 10.0), 0.0001, "Reset grid should only hold new points");
+        assertTrue(grid.getCols() * grid.getRows() <= 4, "Resolution should follow the new expected size");
+    }
+}